@@ -0,0 +1,72 @@
+package edu.buffalo.cse.jive.command;
+
+import java.util.List;
+
+import edu.buffalo.cse.jive.command.JiveCommand;
+import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.jdi.model.IJDIManager;
+import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
+
+public class JiveContentionCommand extends JiveCommand
+{
+  private static final String CMD_NAME = "contention";
+  private static final String CMD_HELP = "Reports the time threads of the given target spent blocked on contended monitors and waiting on monitors, per monitor, per thread, and per call site, longest first. The optional limit (default 10) bounds the entries of each section. CLEAR discards the times recorded so far. Requires monitor events to be enabled in the JIVE preferences before the target is launched.";
+  private static final String CMD_SYNTAX = CMD_NAME + " <tid> [limit | CLEAR]";
+  private static final int DEFAULT_LIMIT = 10;
+
+  @Override
+  public String getCommand()
+  {
+    return CMD_NAME;
+  }
+
+  @Override
+  public String getHelp()
+  {
+    return CMD_HELP;
+  }
+
+  @Override
+  public String getSyntax()
+  {
+    return CMD_SYNTAX;
+  }
+
+  @Override
+  public String handle(final List<String> args)
+  {
+    if (args.size() != 1 && args.size() != 2)
+    {
+      return invalidArguments(2, args.size());
+    }
+    // targetId
+    final Integer targetId = toInteger(args.get(0));
+    if (targetId == null)
+    {
+      return invalidIntegerArgument(args.get(0));
+    }
+    // target
+    final IJiveDebugTarget target = getTarget(targetId);
+    final IJDIManager manager = target == null ? null : JiveDebugPlugin.getDefault().jdiManager(
+        target);
+    if (manager == null)
+    {
+      return String.format("Could not find a target for 'jive contention %d'.\n", targetId);
+    }
+    if (!manager.generateMonitorEvents())
+    {
+      return "Monitor events are not recorded for this target.";
+    }
+    if (args.size() == 2 && args.get(1).equalsIgnoreCase("CLEAR"))
+    {
+      manager.contentionReport().clear();
+      return "Contention times cleared.";
+    }
+    final Integer limit = args.size() == 2 ? toInteger(args.get(1)) : DEFAULT_LIMIT;
+    if (limit == null || limit <= 0)
+    {
+      return invalidIntegerArgument(args.get(1));
+    }
+    return manager.contentionReport().summary(limit);
+  }
+}
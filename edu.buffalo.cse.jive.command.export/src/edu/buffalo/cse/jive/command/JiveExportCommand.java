@@ -9,7 +9,7 @@ import edu.buffalo.cse.jive.exporter.JiveExporterPlugin;
 public class JiveExportCommand extends JiveCommand
 {
   private static final String CMD_NAME = "export";
-  private static final String CMD_HELP = "Exports the specified model kind (one of: AST, MDG, TRACE) to the specified target. If the target is a file, its extension determines the output format-- XML (*.xml) or textual (any other extension); for TRACE, a JDBC url is also supported (the respective JDBC driver must be in the class path).";
+  private static final String CMD_HELP = "Exports the specified model kind (one of: AST, MDG, TRACE) to the specified target. If the target is a file, its extension determines the output format-- XML (*.xml) or textual (any other extension); for TRACE, the binary trace format (*.jtb) and a JDBC url are also supported (the respective JDBC driver must be in the class path).";
   private static final String CMD_SYNTAX = CMD_NAME + " <tid> <kind> <target>";
 
   private String invalidExporter(final String element, final Integer targetId)
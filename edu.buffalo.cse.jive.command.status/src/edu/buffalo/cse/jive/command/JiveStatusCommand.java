@@ -5,13 +5,15 @@ import java.util.Collection;
 import java.util.List;
 
 import edu.buffalo.cse.jive.command.JiveCommand;
+import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.jdi.model.IJiveEventDispatcher;
 import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
 import edu.buffalo.cse.jive.launch.JiveLaunchPlugin;
 
 public class JiveStatusCommand extends JiveCommand
 {
   private static final String CMD_NAME = "status";
-  private static final String CMD_HELP = "Shows the current debug target's status.";
+  private static final String CMD_HELP = "Shows the current debug target's status, including the number of events waiting to be delivered to the model, the number of event batches delivered, and the number of events dropped.";
   private static final String CMD_SYNTAX = CMD_NAME;
 
   @Override
@@ -59,12 +61,16 @@ public class JiveStatusCommand extends JiveCommand
     final Collection<IJiveDebugTarget> targets = JiveLaunchPlugin.getDefault().getLaunchManager()
         .lookupTargets();
     final List<String> result = new ArrayList<String>();
-    result.add("  TID   STATUS    CLASS");
+    result.add("  TID   STATUS     QUEUED  BATCHES   DROPPED  CLASS");
     final IJiveDebugTarget active = JiveLaunchPlugin.getDefault().getLaunchManager().activeTarget();
     for (final IJiveDebugTarget t : targets)
     {
-      result.add(String.format("%5d%s  %s   %s", t.targetId(), t == active ? "*" : " ",
-          (t.isStopped() ? "stopped" : t.isStarted() ? "started" : "manual "), t.getName()));
+      // event dispatch metrics
+      final IJiveEventDispatcher dispatcher = JiveDebugPlugin.getDefault().jdiManager(t)
+          .jiveDispatcher();
+      result.add(String.format("%5d%s  %s  %7d  %7d  %8d   %s", t.targetId(), t == active ? "*"
+          : " ", (t.isStopped() ? "stopped" : t.isStarted() ? "started" : "manual "), dispatcher
+          .queueDepth(), dispatcher.deliveredBatches(), dispatcher.droppedEvents(), t.getName()));
     }
     return result;
   }
@@ -0,0 +1,86 @@
+package edu.buffalo.cse.jive.command;
+
+import java.util.List;
+
+import edu.buffalo.cse.jive.command.JiveCommand;
+import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.jdi.model.IFieldWatchPolicy;
+import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
+
+public class JiveWatchCommand extends JiveCommand
+{
+  private static final String CMD_NAME = "watch";
+  private static final String CMD_HELP = "Enables (READS) or disables (NOREADS) the recording of field reads on the given target, for a single field (type#field), all fields of a type, or all types (*). Field reads are recorded by default and field writes are always recorded. Takes effect without restarting the launch.";
+  private static final String CMD_SYNTAX = CMD_NAME + " <tid> <READS | NOREADS> <type[#field] | *>";
+
+  @Override
+  public String getCommand()
+  {
+    return CMD_NAME;
+  }
+
+  @Override
+  public String getHelp()
+  {
+    return CMD_HELP;
+  }
+
+  @Override
+  public String getSyntax()
+  {
+    return CMD_SYNTAX;
+  }
+
+  @Override
+  public String handle(final List<String> args)
+  {
+    if (args.size() != 3)
+    {
+      return invalidArguments(3, args.size());
+    }
+    // targetId
+    final Integer targetId = toInteger(args.get(0));
+    if (targetId == null)
+    {
+      return invalidIntegerArgument(args.get(0));
+    }
+    // target
+    final IJiveDebugTarget target = getTarget(targetId);
+    if (target == null)
+    {
+      return String.format("Could not find a target for 'jive watch %d'.\n", targetId);
+    }
+    // READS or NOREADS
+    final boolean enabled;
+    if (args.get(1).equalsIgnoreCase("READS"))
+    {
+      enabled = true;
+    }
+    else if (args.get(1).equalsIgnoreCase("NOREADS"))
+    {
+      enabled = false;
+    }
+    else
+    {
+      return "Invalid watch option: expected READS or NOREADS.";
+    }
+    final IFieldWatchPolicy policy = JiveDebugPlugin.getDefault().jdiManager(target)
+        .fieldWatchPolicy();
+    // all types, a type, or a single field
+    final String member = args.get(2);
+    final int index = member.indexOf('#');
+    if (member.equals("*"))
+    {
+      policy.watchAllReads(enabled);
+    }
+    else if (index == -1)
+    {
+      policy.watchReads(member, null, enabled);
+    }
+    else
+    {
+      policy.watchReads(member.substring(0, index), member.substring(index + 1), enabled);
+    }
+    return String.format("Field reads of %s %s.", member, enabled ? "watched" : "not watched");
+  }
+}
@@ -0,0 +1,103 @@
+package edu.buffalo.cse.jive.command;
+
+import java.util.List;
+
+import edu.buffalo.cse.jive.command.JiveCommand;
+import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.jdi.model.IRecordingWindows;
+import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
+
+public class JiveWindowCommand extends JiveCommand
+{
+  private static final String CMD_NAME = "window";
+  private static final String CMD_HELP = "Adds a trigger that opens (OPEN) or closes (CLOSE) a recording window on the given target, lists the triggers and recorded segments (LIST), removes all triggers (CLEAR), or adds a trigger that freezes the trace (FREEZE). FREEZE without a trigger freezes the trace immediately. Events are only recorded inside windows. Triggers: enter:type.method, exit:type.method, throw:type, write:type#field, line:type:line[:n] (n-th execution of the line).";
+  private static final String CMD_SYNTAX = CMD_NAME + " <tid> <OPEN | CLOSE> <trigger> | " + CMD_NAME + " <tid> <LIST | CLEAR | FREEZE> | " + CMD_NAME + " <tid> FREEZE <trigger>";
+
+  @Override
+  public String getCommand()
+  {
+    return CMD_NAME;
+  }
+
+  @Override
+  public String getHelp()
+  {
+    return CMD_HELP;
+  }
+
+  @Override
+  public String getSyntax()
+  {
+    return CMD_SYNTAX;
+  }
+
+  @Override
+  public String handle(final List<String> args)
+  {
+    if (args.size() != 2 && args.size() != 3)
+    {
+      return invalidArguments(3, args.size());
+    }
+    // targetId
+    final Integer targetId = toInteger(args.get(0));
+    if (targetId == null)
+    {
+      return invalidIntegerArgument(args.get(0));
+    }
+    // target
+    final IJiveDebugTarget target = getTarget(targetId);
+    final IRecordingWindows windows = target == null ? null : JiveDebugPlugin.getDefault()
+        .recordingWindows(target);
+    if (windows == null)
+    {
+      return String.format("Could not find a live target for 'jive window %d'.\n", targetId);
+    }
+    final String option = args.get(1);
+    if (args.size() == 2 && option.equalsIgnoreCase("LIST"))
+    {
+      final StringBuffer buffer = new StringBuffer("Triggers:\n");
+      for (final String trigger : windows.triggers())
+      {
+        buffer.append("  ").append(trigger).append("\n");
+      }
+      buffer.append("Segments:\n");
+      for (final String segment : windows.segments())
+      {
+        buffer.append("  ").append(segment).append("\n");
+      }
+      return buffer.toString();
+    }
+    if (args.size() == 2 && option.equalsIgnoreCase("CLEAR"))
+    {
+      windows.clearTriggers();
+      return "Triggers removed.";
+    }
+    if (args.size() == 2 && option.equalsIgnoreCase("FREEZE"))
+    {
+      windows.freeze();
+      return "Trace frozen.";
+    }
+    if (args.size() == 3
+        && (option.equalsIgnoreCase("OPEN") || option.equalsIgnoreCase("CLOSE") || option
+            .equalsIgnoreCase("FREEZE")))
+    {
+      try
+      {
+        if (option.equalsIgnoreCase("FREEZE"))
+        {
+          windows.addFreezeTrigger(args.get(2));
+        }
+        else
+        {
+          windows.addTrigger(args.get(2), option.equalsIgnoreCase("OPEN"));
+        }
+      }
+      catch (final IllegalArgumentException e)
+      {
+        return e.getMessage();
+      }
+      return String.format("Trigger %s %s added.", option.toUpperCase(), args.get(2));
+    }
+    return "Invalid window option: expected OPEN, CLOSE, FREEZE, LIST, or CLEAR.";
+  }
+}
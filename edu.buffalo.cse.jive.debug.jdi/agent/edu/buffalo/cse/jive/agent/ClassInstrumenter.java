@@ -0,0 +1,1019 @@
+package edu.buffalo.cse.jive.agent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Rewrites a class file so that each of its methods reports its entry and exit to the
+ * {@code Probe}. A probe is a constant load followed by a static call, preceded by a load of the
+ * receiver for the probes that report it:
+ *
+ * <pre>
+ *   ldc_w         #methodId
+ *   invokestatic  Probe.enter(I)V                   at the start of static methods and
+ *                                                   constructors
+ *   invokestatic  Probe.enter(Ljava/lang/Object;I)V at the start of instance methods
+ *   invokestatic  Probe.exit(I)V                    before each return instruction
+ *   invokestatic  Probe.exit(Ljava/lang/Object;I)V  before each return of constructors
+ *   invokestatic  Probe.delegate(I)V                before the call of a constructor to the
+ *                                                   superclass or sibling constructor
+ *   invokestatic  Probe.unwind(I)V                  in a catch-all handler appended to the
+ *                                                   method, which rethrows the exception
+ * </pre>
+ *
+ * Inserting code relocates the method body, so branch offsets, switch padding, exception tables,
+ * line and local variable tables, and stack map frames are rewritten accordingly. Branches into
+ * a return or delegating call land on its probe, while branches to the start of the method skip
+ * the entry probe. Constructors get no catch-all handler, since a handler cannot cover the code
+ * that runs before the superclass constructor call.
+ * <p>
+ * Methods that cannot be relocated safely, such as methods whose branches would overflow or whose
+ * code carries attributes with unknown offsets, are left unchanged. Abstract, native, bridge, and
+ * synthetic methods are never instrumented, as they are not part of the model.
+ */
+final class ClassInstrumenter
+{
+  private static final int ACC_ABSTRACT = 0x0400;
+  private static final int ACC_BRIDGE = 0x0040;
+  private static final int ACC_NATIVE = 0x0100;
+  private static final int ACC_STATIC = 0x0008;
+  private static final int ACC_SYNTHETIC = 0x1000;
+  // ldc_w and athrow following the probe call of the catch-all handler
+  private static final int HANDLER_LENGTH = 7;
+  private static final int MAX_CODE_LENGTH = 65535;
+  private static final int OP_ALOAD_0 = 0x2a;
+  private static final int OP_ATHROW = 0xbf;
+  private static final int OP_GOTO_W = 0xc8;
+  private static final int OP_INVOKESPECIAL = 0xb7;
+  private static final int OP_INVOKESTATIC = 0xb8;
+  private static final int OP_JSR_W = 0xc9;
+  private static final int OP_LDC_W = 0x13;
+  private static final int OP_LOOKUPSWITCH = 0xab;
+  private static final int OP_NEW = 0xbb;
+  private static final int OP_TABLESWITCH = 0xaa;
+  private static final int OP_WIDE = 0xc4;
+  private static final String PROBE_CLASS = "edu/buffalo/cse/jive/agent/Probe";
+  // ldc_w and invokestatic
+  private static final int PROBE_LENGTH = 6;
+  /**
+   * Lengths of the fixed length instructions, indexed by opcode; zero marks variable length
+   * instructions and -1 marks unused opcodes.
+   */
+  private static final int[] LENGTHS = new int[256];
+  static
+  {
+    Arrays.fill(ClassInstrumenter.LENGTHS, 0x00, 0xca, 1);
+    Arrays.fill(ClassInstrumenter.LENGTHS, 0xca, 0x100, -1);
+    // constants
+    ClassInstrumenter.LENGTHS[0x10] = 2;
+    ClassInstrumenter.LENGTHS[0x11] = 3;
+    ClassInstrumenter.LENGTHS[0x12] = 2;
+    ClassInstrumenter.LENGTHS[0x13] = 3;
+    ClassInstrumenter.LENGTHS[0x14] = 3;
+    // loads, stores, and iinc with a local variable index
+    Arrays.fill(ClassInstrumenter.LENGTHS, 0x15, 0x1a, 2);
+    Arrays.fill(ClassInstrumenter.LENGTHS, 0x36, 0x3b, 2);
+    ClassInstrumenter.LENGTHS[0x84] = 3;
+    // conditional branches, goto, jsr, and ret
+    Arrays.fill(ClassInstrumenter.LENGTHS, 0x99, 0xa9, 3);
+    ClassInstrumenter.LENGTHS[0xa9] = 2;
+    ClassInstrumenter.LENGTHS[ClassInstrumenter.OP_TABLESWITCH] = 0;
+    ClassInstrumenter.LENGTHS[ClassInstrumenter.OP_LOOKUPSWITCH] = 0;
+    // field access and invocations
+    Arrays.fill(ClassInstrumenter.LENGTHS, 0xb2, 0xb9, 3);
+    ClassInstrumenter.LENGTHS[0xb9] = 5;
+    ClassInstrumenter.LENGTHS[0xba] = 5;
+    // object creation and type checks
+    ClassInstrumenter.LENGTHS[0xbb] = 3;
+    ClassInstrumenter.LENGTHS[0xbc] = 2;
+    ClassInstrumenter.LENGTHS[0xbd] = 3;
+    ClassInstrumenter.LENGTHS[0xc0] = 3;
+    ClassInstrumenter.LENGTHS[0xc1] = 3;
+    ClassInstrumenter.LENGTHS[ClassInstrumenter.OP_WIDE] = 0;
+    ClassInstrumenter.LENGTHS[0xc5] = 4;
+    // ifnull, ifnonnull, and wide branches
+    ClassInstrumenter.LENGTHS[0xc6] = 3;
+    ClassInstrumenter.LENGTHS[0xc7] = 3;
+    ClassInstrumenter.LENGTHS[ClassInstrumenter.OP_GOTO_W] = 5;
+    ClassInstrumenter.LENGTHS[ClassInstrumenter.OP_JSR_W] = 5;
+  }
+  private final byte[] bytes;
+  private String className;
+  // offsets of the constant pool entries, indexed by entry
+  private int[] entries;
+  private int major;
+  // constant pool entries appended by the instrumentation
+  private final ByteArrayOutputStream pool;
+  private int poolCount;
+  private int probeDelegate;
+  private int probeEnter;
+  private int probeEnterReceiver;
+  private int probeExit;
+  private int probeExitReceiver;
+  private int probeUnwind;
+  private String sourcePath;
+  private int stackMapName;
+  private final TraceSymbols symbols;
+  private int throwableClass;
+
+  ClassInstrumenter(final byte[] bytes, final TraceSymbols symbols)
+  {
+    this.bytes = bytes;
+    this.pool = new ByteArrayOutputStream();
+    this.symbols = symbols;
+  }
+
+  /**
+   * Returns the instrumented class file, or null if no method was instrumented.
+   */
+  byte[] instrument() throws IOException
+  {
+    if (u4(0) != 0xCAFEBABE)
+    {
+      return null;
+    }
+    major = u2(6);
+    int pos = parsePool();
+    final int poolEnd = pos;
+    className = utf8(u2(entries[u2(pos + 2)] + 1));
+    pos += 6;
+    pos += 2 + 2 * u2(pos);
+    // fields
+    int count = u2(pos);
+    pos += 2;
+    for (int i = 0; i < count; i++)
+    {
+      pos = skipAttributes(pos + 6);
+    }
+    final int methodsStart = pos;
+    count = u2(pos);
+    pos += 2;
+    final int[] methods = new int[count + 1];
+    for (int i = 0; i < count; i++)
+    {
+      methods[i] = pos;
+      pos = skipAttributes(pos + 6);
+    }
+    methods[count] = pos;
+    parseSourceFile(pos);
+    // instrument the methods, appending constant pool entries as needed
+    final ByteArrayOutputStream body = new ByteArrayOutputStream(bytes.length + 1024);
+    boolean changed = false;
+    for (int i = 0; i < count; i++)
+    {
+      final byte[] method = method(methods[i], methods[i + 1]);
+      changed |= method != null;
+      if (method != null)
+      {
+        body.write(method);
+      }
+      else
+      {
+        body.write(bytes, methods[i], methods[i + 1] - methods[i]);
+      }
+    }
+    if (!changed || poolCount > 0xFFFF)
+    {
+      return null;
+    }
+    final ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length + pool.size()
+        + body.size());
+    final DataOutputStream out = new DataOutputStream(result);
+    out.write(bytes, 0, 8);
+    out.writeShort(poolCount);
+    out.write(bytes, 10, poolEnd - 10);
+    pool.writeTo(out);
+    out.write(bytes, poolEnd, methodsStart + 2 - poolEnd);
+    body.writeTo(out);
+    out.write(bytes, pos, bytes.length - pos);
+    out.flush();
+    return result.toByteArray();
+  }
+
+  private int addEntry(final int tag, final int first, final int second)
+  {
+    pool.write(tag);
+    pool.write(first >> 8);
+    pool.write(first);
+    if (second >= 0)
+    {
+      pool.write(second >> 8);
+      pool.write(second);
+    }
+    return poolCount++;
+  }
+
+  private int addInteger(final int value)
+  {
+    pool.write(3);
+    pool.write(value >> 24);
+    pool.write(value >> 16);
+    pool.write(value >> 8);
+    pool.write(value);
+    return poolCount++;
+  }
+
+  private int addUtf8(final String value) throws IOException
+  {
+    pool.write(1);
+    new DataOutputStream(pool).writeUTF(value);
+    return poolCount++;
+  }
+
+  /**
+   * Key of the method, as computed by the execution state from the JDI method.
+   */
+  private String methodKey(final String owner, final String name, final String descriptor)
+  {
+    final String prefix = "L" + owner + ";.";
+    if ("<clinit>".equals(name))
+    {
+      return prefix + "<clinit>()";
+    }
+    final String signature = descriptor.substring(0, descriptor.indexOf(')') + 1);
+    if (!"<init>".equals(name))
+    {
+      return prefix + name + signature;
+    }
+    final String typeName = owner.replace('/', '.');
+    String lastName = typeName;
+    if (typeName.indexOf('$') != -1)
+    {
+      lastName = typeName.substring(typeName.lastIndexOf('$') + 1);
+      try
+      {
+        Integer.parseInt(lastName);
+        lastName = "<init>";
+      }
+      catch (final NumberFormatException e)
+      {
+        // not an anonymous class
+      }
+    }
+    else if (typeName.indexOf('.') != -1)
+    {
+      lastName = typeName.substring(typeName.lastIndexOf('.') + 1);
+    }
+    return prefix + lastName + signature;
+  }
+
+  /**
+   * Returns the instrumented method, or null if the method is left unchanged.
+   */
+  private byte[] method(final int start, final int end) throws IOException
+  {
+    final int access = u2(start);
+    if ((access & (ClassInstrumenter.ACC_ABSTRACT | ClassInstrumenter.ACC_NATIVE
+        | ClassInstrumenter.ACC_BRIDGE | ClassInstrumenter.ACC_SYNTHETIC)) != 0)
+    {
+      return null;
+    }
+    final String name = utf8(u2(start + 2));
+    int code = -1;
+    int pos = start + 8;
+    for (int i = 0; i < u2(start + 6); i++)
+    {
+      if ("Code".equals(utf8(u2(pos))))
+      {
+        code = pos;
+      }
+      pos += 6 + u4(pos + 2);
+    }
+    if (code == -1)
+    {
+      return null;
+    }
+    final byte[] instrumented = new CodeRewriter(code, name, utf8(u2(start + 4)),
+        (access & ClassInstrumenter.ACC_STATIC) != 0).rewrite();
+    if (instrumented == null)
+    {
+      return null;
+    }
+    final ByteArrayOutputStream result = new ByteArrayOutputStream(end - start
+        + instrumented.length);
+    result.write(bytes, start, code - start);
+    result.write(instrumented);
+    final int codeEnd = code + 6 + u4(code + 2);
+    result.write(bytes, codeEnd, end - codeEnd);
+    return result.toByteArray();
+  }
+
+  /**
+   * Records the offset of each constant pool entry and returns the offset past the pool.
+   */
+  private int parsePool()
+  {
+    poolCount = u2(8);
+    entries = new int[poolCount];
+    int pos = 10;
+    for (int i = 1; i < poolCount; i++)
+    {
+      entries[i] = pos;
+      final int tag = bytes[pos] & 0xFF;
+      switch (tag)
+      {
+        case 1:
+          pos += 3 + u2(pos + 1);
+          break;
+        case 3:
+        case 4:
+        case 9:
+        case 10:
+        case 11:
+        case 12:
+        case 17:
+        case 18:
+          pos += 5;
+          break;
+        case 5:
+        case 6:
+          // eight byte constants take two entries
+          pos += 9;
+          i++;
+          break;
+        case 7:
+        case 8:
+        case 16:
+        case 19:
+        case 20:
+          pos += 3;
+          break;
+        case 15:
+          pos += 4;
+          break;
+        default:
+          throw new IllegalStateException("Unknown constant pool tag: " + tag);
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * Computes the source path of the class, as reported by JDI locations, from the SourceFile
+   * attribute.
+   */
+  private void parseSourceFile(final int attributes)
+  {
+    sourcePath = "";
+    int pos = attributes + 2;
+    for (int i = 0; i < u2(attributes); i++)
+    {
+      if ("SourceFile".equals(utf8(u2(pos))))
+      {
+        final String fileName = utf8(u2(pos + 6));
+        final int slash = className.lastIndexOf('/');
+        sourcePath = slash == -1 ? fileName : className.substring(0, slash + 1) + fileName;
+      }
+      pos += 6 + u4(pos + 2);
+    }
+  }
+
+  /**
+   * Creates the constant pool entries shared by all probes of the class.
+   */
+  private void resolveProbes() throws IOException
+  {
+    if (probeEnter != 0)
+    {
+      return;
+    }
+    final int probe = addEntry(7, addUtf8(ClassInstrumenter.PROBE_CLASS), -1);
+    final int descriptor = addUtf8("(I)V");
+    final int receiverDescriptor = addUtf8("(Ljava/lang/Object;I)V");
+    final int enter = addUtf8("enter");
+    final int exit = addUtf8("exit");
+    probeDelegate = addEntry(10, probe, addEntry(12, addUtf8("delegate"), descriptor));
+    probeEnter = addEntry(10, probe, addEntry(12, enter, descriptor));
+    probeEnterReceiver = addEntry(10, probe, addEntry(12, enter, receiverDescriptor));
+    probeExit = addEntry(10, probe, addEntry(12, exit, descriptor));
+    probeExitReceiver = addEntry(10, probe, addEntry(12, exit, receiverDescriptor));
+    probeUnwind = addEntry(10, probe, addEntry(12, addUtf8("unwind"), descriptor));
+    throwableClass = addEntry(7, addUtf8("java/lang/Throwable"), -1);
+    stackMapName = addUtf8("StackMapTable");
+  }
+
+  private int s2(final int pos)
+  {
+    return (short) u2(pos);
+  }
+
+  private int skipAttributes(final int pos)
+  {
+    int result = pos + 2;
+    for (int i = 0; i < u2(pos); i++)
+    {
+      result += 6 + u4(result + 2);
+    }
+    return result;
+  }
+
+  private int u1(final int pos)
+  {
+    return bytes[pos] & 0xFF;
+  }
+
+  private int u2(final int pos)
+  {
+    return ((bytes[pos] & 0xFF) << 8) | (bytes[pos + 1] & 0xFF);
+  }
+
+  private int u4(final int pos)
+  {
+    return (u2(pos) << 16) | u2(pos + 2);
+  }
+
+  private String utf8(final int index)
+  {
+    final int pos = entries[index];
+    try
+    {
+      return new DataInputStream(new ByteArrayInputStream(bytes, pos + 1, 2 + u2(pos + 1)))
+          .readUTF();
+    }
+    catch (final IOException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Relocates the body of one Code attribute around the inserted probes.
+   */
+  private final class CodeRewriter
+  {
+    private final int attribute;
+    private int bodyEnd;
+    private final int code;
+    private final int codeLength;
+    // offset of the call of a constructor to another constructor of the same object, or -1
+    private int delegation = -1;
+    private final String descriptor;
+    private int entryLength;
+    private int exitLength;
+    private boolean handler;
+    private final boolean isStatic;
+    private int lineNumbers = -1;
+    private int localTypes = -1;
+    private int locals = -1;
+    // new offset of each original instruction, or of the exit probe inserted before it
+    private int[] map;
+    private final String name;
+    // new offset of each original instruction
+    private int[] moved;
+    private int stackMap = -1;
+
+    CodeRewriter(final int attribute, final String name, final String descriptor,
+        final boolean isStatic)
+    {
+      this.attribute = attribute;
+      this.code = attribute + 14;
+      this.codeLength = u4(attribute + 10);
+      this.descriptor = descriptor;
+      this.isStatic = isStatic;
+      this.name = name;
+    }
+
+    /**
+     * Returns the rewritten Code attribute, or null if the method cannot be instrumented.
+     */
+    byte[] rewrite() throws IOException
+    {
+      final int exceptions = code + codeLength;
+      final int attributes = exceptions + 2 + 8 * u2(exceptions);
+      int pos = attributes + 2;
+      for (int i = 0; i < u2(attributes); i++)
+      {
+        final String attributeName = utf8(u2(pos));
+        if ("LineNumberTable".equals(attributeName))
+        {
+          lineNumbers = pos;
+        }
+        else if ("LocalVariableTable".equals(attributeName))
+        {
+          locals = pos;
+        }
+        else if ("LocalVariableTypeTable".equals(attributeName))
+        {
+          localTypes = pos;
+        }
+        else if ("StackMapTable".equals(attributeName))
+        {
+          stackMap = pos;
+        }
+        else
+        {
+          // other attributes may hold code offsets that cannot be relocated
+          return null;
+        }
+        pos += 6 + u4(pos + 2);
+      }
+      final boolean constructor = "<init>".equals(name);
+      // a new stack map table is unsafe in version 50 classes that rely on type inference
+      handler = !constructor && (major != 50 || stackMap != -1);
+      // the receiver of a constructor is only initialized once the delegating call completes
+      entryLength = ClassInstrumenter.PROBE_LENGTH + (isStatic || constructor ? 0 : 1);
+      exitLength = ClassInstrumenter.PROBE_LENGTH + (constructor ? 1 : 0);
+      if (constructor)
+      {
+        delegation = findDelegation();
+      }
+      if (!layout())
+      {
+        return null;
+      }
+      resolveProbes();
+      final int methodId = addInteger(symbols.defineMethod(methodKey(className, name,
+          descriptor), sourcePath, firstLine()));
+      final int delegateId = delegation == -1 ? 0 : addInteger(symbols.defineMethod(
+          delegationKey(), "", -1));
+      final byte[] body = emit(methodId, delegateId);
+      if (body == null)
+      {
+        return null;
+      }
+      final ByteArrayOutputStream result = new ByteArrayOutputStream(body.length + 256);
+      final DataOutputStream out = new DataOutputStream(result);
+      out.writeShort(u2(attribute));
+      // attribute length, patched below
+      out.writeInt(0);
+      // the receiver and method identifier on top of the operands of a return or delegating call
+      out.writeShort(u2(attribute + 6) + 2);
+      out.writeShort(u2(attribute + 8));
+      out.writeInt(body.length);
+      out.write(body);
+      final int exceptionCount = u2(exceptions);
+      out.writeShort(exceptionCount + (handler ? 1 : 0));
+      for (int i = 0; i < exceptionCount; i++)
+      {
+        final int entry = exceptions + 2 + 8 * i;
+        out.writeShort(map[u2(entry)]);
+        out.writeShort(map[u2(entry + 2)]);
+        out.writeShort(map[u2(entry + 4)]);
+        out.writeShort(u2(entry + 6));
+      }
+      if (handler)
+      {
+        // lowest priority, so that the method's own handlers apply first
+        out.writeShort(entryLength);
+        out.writeShort(bodyEnd);
+        out.writeShort(bodyEnd);
+        out.writeShort(0);
+      }
+      final boolean newStackMap = handler && major >= 50 && stackMap == -1;
+      out.writeShort(u2(attributes) + (newStackMap ? 1 : 0));
+      if (lineNumbers != -1)
+      {
+        writeLineNumbers(out);
+      }
+      if (locals != -1)
+      {
+        writeLocals(out, locals);
+      }
+      if (localTypes != -1)
+      {
+        writeLocals(out, localTypes);
+      }
+      if (stackMap != -1 || newStackMap)
+      {
+        writeStackMap(out);
+      }
+      out.flush();
+      final byte[] codeAttribute = result.toByteArray();
+      write4(codeAttribute, 2, codeAttribute.length - 6);
+      return codeAttribute;
+    }
+
+    /**
+     * Key of the constructor called by the delegating call.
+     */
+    private String delegationKey()
+    {
+      final int method = entries[u2(code + delegation + 1)];
+      final String owner = utf8(u2(entries[u2(method + 1)] + 1));
+      return methodKey(owner, "<init>", utf8(u2(entries[u2(method + 3)] + 3)));
+    }
+
+    /**
+     * Writes the relocated body and returns it, or returns null if a branch overflows.
+     */
+    private byte[] emit(final int methodId, final int delegateId)
+    {
+      final byte[] out = new byte[bodyEnd + (handler ? ClassInstrumenter.HANDLER_LENGTH : 0)];
+      if (entryLength > ClassInstrumenter.PROBE_LENGTH)
+      {
+        writeProbe(out, 0, methodId, probeEnterReceiver, true);
+      }
+      else
+      {
+        writeProbe(out, 0, methodId, probeEnter, false);
+      }
+      int pos = 0;
+      while (pos < codeLength)
+      {
+        final int op = u1(code + pos);
+        final int length = length(pos);
+        final int target = moved[pos];
+        if (op >= 0xac && op <= 0xb1)
+        {
+          if (exitLength > ClassInstrumenter.PROBE_LENGTH)
+          {
+            writeProbe(out, map[pos], methodId, probeExitReceiver, true);
+          }
+          else
+          {
+            writeProbe(out, map[pos], methodId, probeExit, false);
+          }
+        }
+        else if (pos == delegation)
+        {
+          writeProbe(out, map[pos], delegateId, probeDelegate, false);
+        }
+        if ((op >= 0x99 && op <= 0xa8) || op == 0xc6 || op == 0xc7)
+        {
+          final int offset = map[pos + s2(code + pos + 1)] - target;
+          if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+          {
+            return null;
+          }
+          out[target] = (byte) op;
+          write2(out, target + 1, offset);
+        }
+        else if (op == ClassInstrumenter.OP_GOTO_W || op == ClassInstrumenter.OP_JSR_W)
+        {
+          out[target] = (byte) op;
+          write4(out, target + 1, map[pos + u4(code + pos + 1)] - target);
+        }
+        else if (op == ClassInstrumenter.OP_TABLESWITCH || op == ClassInstrumenter.OP_LOOKUPSWITCH)
+        {
+          out[target] = (byte) op;
+          int from = code + pos + 1 + padding(pos, pos);
+          int to = target + 1 + padding(pos, target);
+          write4(out, to, map[pos + u4(from)] - target);
+          final int jumps;
+          if (op == ClassInstrumenter.OP_TABLESWITCH)
+          {
+            write4(out, to + 4, u4(from + 4));
+            write4(out, to + 8, u4(from + 8));
+            jumps = u4(from + 8) - u4(from + 4) + 1;
+            from += 12;
+            to += 12;
+          }
+          else
+          {
+            write4(out, to + 4, u4(from + 4));
+            jumps = u4(from + 4);
+            from += 8;
+            to += 8;
+          }
+          for (int i = 0; i < jumps; i++)
+          {
+            if (op == ClassInstrumenter.OP_LOOKUPSWITCH)
+            {
+              // match
+              write4(out, to, u4(from));
+              from += 4;
+              to += 4;
+            }
+            write4(out, to, map[pos + u4(from)] - target);
+            from += 4;
+            to += 4;
+          }
+        }
+        else
+        {
+          System.arraycopy(bytes, code + pos, out, target, length);
+        }
+        pos += length;
+      }
+      if (handler)
+      {
+        writeProbe(out, bodyEnd, methodId, probeUnwind, false);
+        out[bodyEnd + ClassInstrumenter.PROBE_LENGTH] = (byte) ClassInstrumenter.OP_ATHROW;
+      }
+      return out;
+    }
+
+    /**
+     * Offset of the call to the superclass or sibling constructor, that is, the first constructor
+     * call not matched by a preceding object creation, or -1 if there is none.
+     */
+    private int findDelegation()
+    {
+      int created = 0;
+      int pos = 0;
+      while (pos < codeLength)
+      {
+        final int op = u1(code + pos);
+        final int length = length(pos);
+        if (length <= 0)
+        {
+          return -1;
+        }
+        if (op == ClassInstrumenter.OP_NEW)
+        {
+          created++;
+        }
+        else if (op == ClassInstrumenter.OP_INVOKESPECIAL
+            && "<init>".equals(utf8(u2(entries[u2(entries[u2(code + pos + 1)] + 3)] + 1))))
+        {
+          if (created == 0)
+          {
+            return pos;
+          }
+          created--;
+        }
+        pos += length;
+      }
+      return -1;
+    }
+
+    private int firstLine()
+    {
+      int result = -1;
+      if (lineNumbers != -1)
+      {
+        for (int i = 0; i < u2(lineNumbers + 6); i++)
+        {
+          final int line = u2(lineNumbers + 10 + 4 * i);
+          result = result == -1 ? line : Math.min(result, line);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Computes the new offset of each instruction. Instruction lengths only change with the
+     * padding of switches, which depends on the new offset of the switch itself.
+     */
+    private boolean layout()
+    {
+      map = new int[codeLength + 1];
+      moved = new int[codeLength + 1];
+      Arrays.fill(map, -1);
+      int pos = 0;
+      int target = entryLength;
+      while (pos < codeLength)
+      {
+        final int op = u1(code + pos);
+        final int length = length(pos);
+        if (length <= 0)
+        {
+          return false;
+        }
+        map[pos] = target;
+        if (op >= 0xac && op <= 0xb1)
+        {
+          target += exitLength;
+        }
+        else if (pos == delegation)
+        {
+          target += ClassInstrumenter.PROBE_LENGTH;
+        }
+        moved[pos] = target;
+        target += length - padding(pos, pos) + padding(pos, target);
+        pos += length;
+      }
+      map[codeLength] = target;
+      moved[codeLength] = target;
+      bodyEnd = target;
+      return bodyEnd + ClassInstrumenter.HANDLER_LENGTH <= ClassInstrumenter.MAX_CODE_LENGTH;
+    }
+
+    private int length(final int pos)
+    {
+      final int op = u1(code + pos);
+      final int length = ClassInstrumenter.LENGTHS[op];
+      if (length != 0)
+      {
+        return length;
+      }
+      if (op == ClassInstrumenter.OP_WIDE)
+      {
+        // wide iinc carries a two byte constant
+        return u1(code + pos + 1) == 0x84 ? 6 : 4;
+      }
+      final int from = code + pos + 1 + padding(pos, pos);
+      if (op == ClassInstrumenter.OP_TABLESWITCH)
+      {
+        return 1 + padding(pos, pos) + 12 + 4 * (u4(from + 8) - u4(from + 4) + 1);
+      }
+      if (op == ClassInstrumenter.OP_LOOKUPSWITCH)
+      {
+        return 1 + padding(pos, pos) + 8 + 8 * u4(from + 4);
+      }
+      return -1;
+    }
+
+    /**
+     * Padding after the original instruction when placed at the given offset, which is zero for
+     * all instructions but switches.
+     */
+    private int padding(final int pos, final int offset)
+    {
+      final int op = u1(code + pos);
+      if (op != ClassInstrumenter.OP_TABLESWITCH && op != ClassInstrumenter.OP_LOOKUPSWITCH)
+      {
+        return 0;
+      }
+      return (4 - ((offset + 1) % 4)) % 4;
+    }
+
+    private void write2(final byte[] out, final int pos, final int value)
+    {
+      out[pos] = (byte) (value >> 8);
+      out[pos + 1] = (byte) value;
+    }
+
+    private void write4(final byte[] out, final int pos, final int value)
+    {
+      write2(out, pos, value >> 16);
+      write2(out, pos + 2, value);
+    }
+
+    private void writeLineNumbers(final DataOutputStream out) throws IOException
+    {
+      final int count = u2(lineNumbers + 6);
+      out.writeShort(u2(lineNumbers));
+      out.writeInt(2 + 4 * count);
+      out.writeShort(count);
+      for (int i = 0; i < count; i++)
+      {
+        final int entry = lineNumbers + 8 + 4 * i;
+        out.writeShort(map[u2(entry)]);
+        out.writeShort(u2(entry + 2));
+      }
+    }
+
+    /**
+     * Writes a local variable table or local variable type table. Variables in scope at the start
+     * of the method, such as arguments, remain in scope during the entry probe.
+     */
+    private void writeLocals(final DataOutputStream out, final int table) throws IOException
+    {
+      final int count = u2(table + 6);
+      out.writeShort(u2(table));
+      out.writeInt(2 + 10 * count);
+      out.writeShort(count);
+      for (int i = 0; i < count; i++)
+      {
+        final int entry = table + 8 + 10 * i;
+        final int start = u2(entry);
+        final int newStart = start == 0 ? 0 : map[start];
+        out.writeShort(newStart);
+        out.writeShort(map[start + u2(entry + 2)] - newStart);
+        out.write(bytes, entry + 4, 6);
+      }
+    }
+
+    private void writeProbe(final byte[] out, final int pos, final int methodId, final int probe,
+        final boolean receiver)
+    {
+      int at = pos;
+      if (receiver)
+      {
+        out[at++] = (byte) ClassInstrumenter.OP_ALOAD_0;
+      }
+      out[at] = (byte) ClassInstrumenter.OP_LDC_W;
+      write2(out, at + 1, methodId);
+      out[at + 3] = (byte) ClassInstrumenter.OP_INVOKESTATIC;
+      write2(out, at + 4, probe);
+    }
+
+    /**
+     * Writes the stack map table with the frames moved to the new offsets, followed by the frame
+     * of the catch-all handler, if any. Frames keep their type, except that compact frames whose
+     * offset delta no longer fits are written in their extended form.
+     */
+    private void writeStackMap(final DataOutputStream out) throws IOException
+    {
+      final ByteArrayOutputStream table = new ByteArrayOutputStream();
+      final DataOutputStream frames = new DataOutputStream(table);
+      int count = 0;
+      int last = -1;
+      if (stackMap != -1)
+      {
+        count = u2(stackMap + 6);
+        int pos = stackMap + 8;
+        int offset = -1;
+        for (int i = 0; i < count; i++)
+        {
+          final int type = u1(pos);
+          final int delta;
+          if (type < 128)
+          {
+            delta = type < 64 ? type : type - 64;
+            pos += 1;
+          }
+          else
+          {
+            delta = u2(pos + 1);
+            pos += 3;
+          }
+          offset += delta + 1;
+          final int newOffset = map[offset];
+          final int newDelta = newOffset - last - 1;
+          last = newOffset;
+          if (type < 64 || type == 251)
+          {
+            // same frame
+            if (newDelta < 64)
+            {
+              frames.writeByte(newDelta);
+            }
+            else
+            {
+              frames.writeByte(251);
+              frames.writeShort(newDelta);
+            }
+          }
+          else if (type < 128 || type == 247)
+          {
+            // same locals, one stack item
+            if (newDelta < 64)
+            {
+              frames.writeByte(64 + newDelta);
+            }
+            else
+            {
+              frames.writeByte(247);
+              frames.writeShort(newDelta);
+            }
+            pos = writeTypes(frames, pos, 1);
+          }
+          else if (type < 251)
+          {
+            // chop
+            frames.writeByte(type);
+            frames.writeShort(newDelta);
+          }
+          else if (type < 255)
+          {
+            // append
+            frames.writeByte(type);
+            frames.writeShort(newDelta);
+            pos = writeTypes(frames, pos, type - 251);
+          }
+          else
+          {
+            frames.writeByte(type);
+            frames.writeShort(newDelta);
+            frames.writeShort(u2(pos));
+            pos = writeTypes(frames, pos + 2, u2(pos));
+            frames.writeShort(u2(pos));
+            pos = writeTypes(frames, pos + 2, u2(pos));
+          }
+        }
+      }
+      if (handler)
+      {
+        // full frame: no locals, the exception on the stack
+        frames.writeByte(255);
+        frames.writeShort(bodyEnd - last - 1);
+        frames.writeShort(0);
+        frames.writeShort(1);
+        frames.writeByte(7);
+        frames.writeShort(throwableClass);
+        count++;
+      }
+      frames.flush();
+      out.writeShort(stackMap != -1 ? u2(stackMap) : stackMapName);
+      out.writeInt(2 + table.size());
+      out.writeShort(count);
+      table.writeTo(out);
+    }
+
+    /**
+     * Copies verification types, moving the offsets of uninitialized types, and returns the
+     * position past the types.
+     */
+    private int writeTypes(final DataOutputStream out, final int start, final int count)
+        throws IOException
+    {
+      int pos = start;
+      for (int i = 0; i < count; i++)
+      {
+        final int tag = u1(pos);
+        out.writeByte(tag);
+        if (tag == 7)
+        {
+          out.writeShort(u2(pos + 1));
+          pos += 3;
+        }
+        else if (tag == 8)
+        {
+          out.writeShort(moved[u2(pos + 1)]);
+          pos += 3;
+        }
+        else
+        {
+          pos += 1;
+        }
+      }
+      return pos;
+    }
+  }
+}
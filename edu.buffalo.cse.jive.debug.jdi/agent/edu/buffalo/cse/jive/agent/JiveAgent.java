@@ -0,0 +1,46 @@
+package edu.buffalo.cse.jive.agent;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Agent that records method entries and exits of the target program into a trace buffer, as an
+ * alternative to JDI method entry and exit requests. The agent is loaded with
+ * 
+ * <pre>
+ *   -javaagent:jiveagent.jar=&lt;trace buffer&gt;|&lt;filter&gt;,&lt;filter&gt;...
+ * </pre>
+ * 
+ * where the trace buffer is created by JIVE before the launch and the exclusion filters are those
+ * of the launch configuration.
+ */
+public final class JiveAgent
+{
+  public static void premain(final String arguments, final Instrumentation instrumentation)
+  {
+    if (arguments == null || arguments.length() == 0)
+    {
+      System.err.println("JIVE agent: missing trace buffer argument.");
+      return;
+    }
+    final int separator = arguments.indexOf('|');
+    final File file = new File(separator == -1 ? arguments : arguments.substring(0, separator));
+    final String[] filters = separator == -1 ? new String[0] : arguments.substring(
+        separator + 1).split(",");
+    try
+    {
+      final TraceSymbols symbols = TraceSymbols.forBuffer(file);
+      Probe.initialize(TraceBuffer.open(file), symbols);
+      instrumentation.addTransformer(new ProbeTransformer(filters, symbols));
+    }
+    catch (final IOException e)
+    {
+      System.err.println("JIVE agent: cannot open trace buffer " + file + ": " + e.getMessage());
+    }
+  }
+
+  private JiveAgent()
+  {
+  }
+}
@@ -0,0 +1,166 @@
+package edu.buffalo.cse.jive.agent;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identifiers of the receivers reported by the probes. Objects are identified by reference and
+ * held weakly, and each identifier comes with the identifier of the object's type, which is
+ * defined in the trace symbols when first seen. The table is split in stripes selected by the
+ * identity hash code, so threads only contend when they look up objects of the same stripe.
+ */
+final class ObjectIds
+{
+  private static final int STRIPES = 64;
+  private final AtomicLong next;
+  private final Stripe[] stripes;
+  private final TraceSymbols symbols;
+  private final ConcurrentHashMap<Class<?>, Integer> types;
+
+  ObjectIds(final TraceSymbols symbols)
+  {
+    this.next = new AtomicLong();
+    this.stripes = new Stripe[ObjectIds.STRIPES];
+    for (int i = 0; i < stripes.length; i++)
+    {
+      stripes[i] = new Stripe();
+    }
+    this.symbols = symbols;
+    this.types = new ConcurrentHashMap<Class<?>, Integer>();
+  }
+
+  /**
+   * Entry of the object, which is created with a fresh identifier when the object is first seen.
+   */
+  Entry lookup(final Object object)
+  {
+    final int hash = System.identityHashCode(object);
+    return stripes[(hash ^ (hash >>> 16)) & (ObjectIds.STRIPES - 1)].lookup(object, hash);
+  }
+
+  private int typeId(final Class<?> type)
+  {
+    final Integer result = types.get(type);
+    if (result != null)
+    {
+      return result;
+    }
+    synchronized (types)
+    {
+      Integer id = types.get(type);
+      if (id == null)
+      {
+        try
+        {
+          id = symbols.defineType("L" + type.getName().replace('.', '/') + ";");
+        }
+        catch (final IOException e)
+        {
+          // the reader treats the receiver as an instance of the method's declaring type
+          id = 0;
+        }
+        types.put(type, id);
+      }
+      return id;
+    }
+  }
+
+  static final class Entry extends WeakReference<Object>
+  {
+    private final int hash;
+    final long id;
+    private Entry next;
+    final int typeId;
+
+    private Entry(final Object object, final ReferenceQueue<Object> queue, final int hash,
+        final long id, final int typeId, final Entry next)
+    {
+      super(object, queue);
+      this.hash = hash;
+      this.id = id;
+      this.next = next;
+      this.typeId = typeId;
+    }
+  }
+
+  /**
+   * Hash table of weak entries chained by identity hash code, purged of collected objects on
+   * each insertion.
+   */
+  private final class Stripe
+  {
+    private int count;
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    private Entry[] table = new Entry[16];
+
+    synchronized Entry lookup(final Object object, final int hash)
+    {
+      for (Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next)
+      {
+        if (entry.get() == object)
+        {
+          return entry;
+        }
+      }
+      purge();
+      if (count >= table.length - (table.length >> 2))
+      {
+        resize();
+      }
+      final int index = hash & (table.length - 1);
+      final Entry result = new Entry(object, queue, hash, next.incrementAndGet(),
+          typeId(object.getClass()), table[index]);
+      table[index] = result;
+      count++;
+      return result;
+    }
+
+    private void purge()
+    {
+      Object collected;
+      while ((collected = queue.poll()) != null)
+      {
+        final Entry entry = (Entry) collected;
+        final int index = entry.hash & (table.length - 1);
+        Entry previous = null;
+        for (Entry current = table[index]; current != null; current = current.next)
+        {
+          if (current == entry)
+          {
+            if (previous == null)
+            {
+              table[index] = current.next;
+            }
+            else
+            {
+              previous.next = current.next;
+            }
+            count--;
+            break;
+          }
+          previous = current;
+        }
+      }
+    }
+
+    private void resize()
+    {
+      final Entry[] resized = new Entry[2 * table.length];
+      for (Entry head : table)
+      {
+        while (head != null)
+        {
+          final Entry entry = head;
+          head = head.next;
+          final int index = entry.hash & (resized.length - 1);
+          entry.next = resized[index];
+          resized[index] = entry;
+        }
+      }
+      table = resized;
+    }
+  }
+}
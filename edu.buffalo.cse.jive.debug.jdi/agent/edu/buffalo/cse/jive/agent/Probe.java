@@ -0,0 +1,98 @@
+package edu.buffalo.cse.jive.agent;
+
+import java.io.IOException;
+
+/**
+ * Entry points called by the instrumented methods of the target program. Each call appends one
+ * record to the trace buffer through the writer of the calling thread, whose creation defines the
+ * thread. Instance methods report their receiver on entry; constructors, whose receiver cannot be
+ * passed before the superclass constructor completes, report it on exit and report the
+ * constructor they delegate to right before the delegating call.
+ */
+public final class Probe
+{
+  private static TraceBuffer buffer;
+  private static ObjectIds objects;
+  private static TraceSymbols symbols;
+  private static final ThreadLocal<TraceBuffer.Writer> writers =
+      new ThreadLocal<TraceBuffer.Writer>()
+    {
+      @Override
+      protected TraceBuffer.Writer initialValue()
+      {
+        final Thread thread = Thread.currentThread();
+        try
+        {
+          Probe.symbols.defineThread(thread.getId(), thread.getName());
+        }
+        catch (final IOException e)
+        {
+          // the reader falls back to a generated name
+        }
+        return Probe.buffer.writer(thread.getId());
+      }
+    };
+
+  /**
+   * Called before a constructor calls another constructor of the same object, with the
+   * identifier of the called constructor's key.
+   */
+  public static void delegate(final int methodId)
+  {
+    Probe.record(TraceBuffer.KIND_DELEGATE, methodId, null);
+  }
+
+  public static void enter(final int methodId)
+  {
+    Probe.record(TraceBuffer.KIND_ENTER, methodId, null);
+  }
+
+  public static void enter(final Object receiver, final int methodId)
+  {
+    Probe.record(TraceBuffer.KIND_ENTER, methodId, receiver);
+  }
+
+  public static void exit(final int methodId)
+  {
+    Probe.record(TraceBuffer.KIND_EXIT, methodId, null);
+  }
+
+  public static void exit(final Object receiver, final int methodId)
+  {
+    Probe.record(TraceBuffer.KIND_EXIT, methodId, receiver);
+  }
+
+  /**
+   * Called when the method completes abruptly, right before the exception is rethrown.
+   */
+  public static void unwind(final int methodId)
+  {
+    Probe.record(TraceBuffer.KIND_UNWIND, methodId, null);
+  }
+
+  static void initialize(final TraceBuffer buffer, final TraceSymbols symbols)
+  {
+    Probe.objects = new ObjectIds(symbols);
+    Probe.symbols = symbols;
+    Probe.buffer = buffer;
+  }
+
+  private static void record(final long kind, final int methodId, final Object receiver)
+  {
+    if (Probe.buffer == null)
+    {
+      return;
+    }
+    if (receiver == null)
+    {
+      Probe.writers.get().put(kind, 0, methodId, 0);
+      return;
+    }
+    final ObjectIds.Entry entry = Probe.objects.lookup(receiver);
+    Probe.writers.get().put(kind, entry.typeId, methodId, entry.id);
+  }
+
+  private Probe()
+  {
+  }
+}
@@ -0,0 +1,72 @@
+package edu.buffalo.cse.jive.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+
+/**
+ * Instruments the classes of the model, that is, classes defined by application class loaders
+ * that are not matched by any exclusion filter. Filters follow the syntax of the model filter: a
+ * class name with an optional wildcard at either end, such as "java.*" or "*Test".
+ */
+final class ProbeTransformer implements ClassFileTransformer
+{
+  private static final String AGENT_PACKAGE = "edu/buffalo/cse/jive/agent/";
+  private final String[] filters;
+  private final TraceSymbols symbols;
+
+  ProbeTransformer(final String[] filters, final TraceSymbols symbols)
+  {
+    this.filters = filters;
+    this.symbols = symbols;
+  }
+
+  @Override
+  public byte[] transform(final ClassLoader loader, final String className,
+      final Class<?> classBeingRedefined, final ProtectionDomain protectionDomain,
+      final byte[] classfileBuffer)
+  {
+    // bootstrap classes, redefinitions, and the agent itself are never instrumented
+    if (loader == null || className == null || classBeingRedefined != null
+        || className.startsWith(ProbeTransformer.AGENT_PACKAGE) || !accepts(className))
+    {
+      return null;
+    }
+    try
+    {
+      return new ClassInstrumenter(classfileBuffer, symbols).instrument();
+    }
+    catch (final Throwable e)
+    {
+      // leave the class unchanged rather than fail to load it
+      return null;
+    }
+  }
+
+  private boolean accepts(final String className)
+  {
+    final String name = className.replace('/', '.');
+    for (final String filter : filters)
+    {
+      if (filter.length() > 0 && match(name, filter.trim()))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // same matching as the model cache, so that the agent and the model agree on the model
+  private boolean match(final String input, final String pattern)
+  {
+    final int wildcardIndex = pattern.indexOf('*');
+    if (wildcardIndex == 0)
+    {
+      return input.endsWith(pattern.substring(1));
+    }
+    if (wildcardIndex == pattern.length() - 1)
+    {
+      return input.startsWith(pattern.substring(0, wildcardIndex - 1));
+    }
+    return input.equals(pattern);
+  }
+}
@@ -0,0 +1,193 @@
+package edu.buffalo.cse.jive.agent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of fixed-width event records in a memory mapped file shared by the probes of the
+ * target VM (the writers) and the JIVE event producer (the only reader). The file starts with a
+ * header holding the capacity of the ring and the number of records read so far:
+ *
+ * <pre>
+ *   [0]  capacity, in records
+ *   [8]  records read
+ *   [64] records, four longs each
+ * </pre>
+ *
+ * Writers claim consecutive sequence numbers without locking and publish a record by writing its
+ * sequence number plus one as the record's first long, after the contents. The reader consumes
+ * records in sequence order up to the first slot whose stamp does not match, so a record claimed
+ * but not yet written holds back the records that follow it. Each record packs the event kind,
+ * type identifier, and method identifier in its second long, and holds the thread identifier and
+ * receiver identifier in the remaining two. Writers wait while the ring is full, so records are
+ * never dropped.
+ */
+public final class TraceBuffer
+{
+  public static final long KIND_DELEGATE = 4L;
+  public static final long KIND_ENTER = 1L;
+  public static final long KIND_EXIT = 2L;
+  public static final long KIND_UNWIND = 3L;
+  /**
+   * Longs per record moved out by {@code read}.
+   */
+  public static final int RECORD_LONGS = 3;
+  private static final int HEADER_SIZE = 64;
+  private static final long MASK_METHOD_ID = 0x00000000FFFFFFFFL;
+  private static final long MASK_TYPE_ID = 0x0000000000FFFFFFL;
+  private static final int OFFSET_CAPACITY = 0;
+  private static final int OFFSET_READ = 8;
+  private static final int RECORD_SIZE = 32;
+  private static final int SHIFT_KIND = 56;
+  private static final int SHIFT_TYPE_ID = 32;
+
+  /**
+   * Creates an empty buffer file with room for the given number of records.
+   */
+  public static TraceBuffer create(final File file, final int capacity) throws IOException
+  {
+    final TraceBuffer result = new TraceBuffer(file, TraceBuffer.HEADER_SIZE + (long) capacity
+        * TraceBuffer.RECORD_SIZE);
+    result.buffer.putLong(TraceBuffer.OFFSET_CAPACITY, capacity);
+    result.buffer.putLong(TraceBuffer.OFFSET_READ, 0);
+    return result;
+  }
+
+  public static long decodeKind(final long encoded)
+  {
+    return encoded >>> TraceBuffer.SHIFT_KIND;
+  }
+
+  public static int decodeMethodId(final long encoded)
+  {
+    return (int) (encoded & TraceBuffer.MASK_METHOD_ID);
+  }
+
+  /**
+   * Identifier of the receiver's type, or zero if the record carries no receiver.
+   */
+  public static int decodeTypeId(final long encoded)
+  {
+    return (int) ((encoded >>> TraceBuffer.SHIFT_TYPE_ID) & TraceBuffer.MASK_TYPE_ID);
+  }
+
+  /**
+   * Opens a buffer file created by {@code create}.
+   */
+  public static TraceBuffer open(final File file) throws IOException
+  {
+    return new TraceBuffer(file, file.length());
+  }
+
+  private final MappedByteBuffer buffer;
+  private final long capacity;
+  // sequence numbers claimed by the writers of this process
+  private final AtomicLong claimed;
+  // written after the contents of a batch are copied and before its slots are released
+  private volatile long consumed;
+
+  private TraceBuffer(final File file, final long size) throws IOException
+  {
+    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try
+    {
+      // the mapping remains valid after the channel is closed
+      this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    finally
+    {
+      raf.close();
+    }
+    this.capacity = buffer.getLong(TraceBuffer.OFFSET_CAPACITY);
+    this.claimed = new AtomicLong(buffer.getLong(TraceBuffer.OFFSET_READ));
+    this.consumed = claimed.get();
+  }
+
+  /**
+   * Moves the records published since the last call into the array, {@code RECORD_LONGS} longs
+   * per record, and returns the number of records moved.
+   */
+  public int read(final long[] records)
+  {
+    final long read = buffer.getLong(TraceBuffer.OFFSET_READ);
+    final int limit = records.length / TraceBuffer.RECORD_LONGS;
+    int count = 0;
+    while (count < limit)
+    {
+      final int offset = offset(read + count);
+      if (buffer.getLong(offset) != read + count + 1)
+      {
+        break;
+      }
+      // reading the volatile field keeps the contents from being read ahead of the stamp; it is
+      // never negative
+      if (consumed < 0)
+      {
+        break;
+      }
+      final int index = TraceBuffer.RECORD_LONGS * count;
+      records[index] = buffer.getLong(offset + 8);
+      records[index + 1] = buffer.getLong(offset + 16);
+      records[index + 2] = buffer.getLong(offset + 24);
+      count++;
+    }
+    consumed = read + count;
+    // release the slots to the writers
+    buffer.putLong(TraceBuffer.OFFSET_READ, read + count);
+    return count;
+  }
+
+  /**
+   * Creates the writer used by one thread of the target VM.
+   */
+  public Writer writer(final long threadId)
+  {
+    return new Writer(threadId);
+  }
+
+  private int offset(final long sequence)
+  {
+    return (int) (TraceBuffer.HEADER_SIZE + (sequence % capacity) * TraceBuffer.RECORD_SIZE);
+  }
+
+  /**
+   * Appends the records of one thread. Writers of different threads share no state other than
+   * the sequence counter, so appending takes no lock.
+   */
+  public final class Writer
+  {
+    private final long threadId;
+    // written after the contents of each record and before its stamp
+    private volatile long published;
+
+    private Writer(final long threadId)
+    {
+      this.threadId = threadId;
+    }
+
+    /**
+     * Appends a record, waiting for the reader while the ring is full.
+     */
+    public void put(final long kind, final int typeId, final int methodId, final long receiverId)
+    {
+      final long sequence = claimed.getAndIncrement();
+      while (sequence - buffer.getLong(TraceBuffer.OFFSET_READ) >= capacity)
+      {
+        Thread.yield();
+      }
+      final int offset = offset(sequence);
+      buffer.putLong(offset + 8, (kind << TraceBuffer.SHIFT_KIND)
+          | ((typeId & TraceBuffer.MASK_TYPE_ID) << TraceBuffer.SHIFT_TYPE_ID)
+          | (methodId & TraceBuffer.MASK_METHOD_ID));
+      buffer.putLong(offset + 16, threadId);
+      buffer.putLong(offset + 24, receiverId);
+      // publish the record only after its contents are written
+      published = sequence;
+      buffer.putLong(offset, sequence + 1);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package edu.buffalo.cse.jive.agent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Definitions of the methods, threads, and types referenced by the records of a
+ * {@code TraceBuffer}, kept in a text file next to the buffer. The agent appends a definition
+ * before the first record that references it, and the reader loads new definitions on demand. One
+ * definition per line:
+ *
+ * <pre>
+ *   M  method id  method key  source path  first line
+ *   T  thread id  thread name
+ *   C  type id    type signature
+ * </pre>
+ */
+public final class TraceSymbols
+{
+  private static final String CHARSET = "UTF-8";
+  private static final String EXTENSION = ".sym";
+
+  /**
+   * Symbols of the given trace buffer.
+   */
+  public static TraceSymbols forBuffer(final File buffer)
+  {
+    return new TraceSymbols(new File(buffer.getPath() + TraceSymbols.EXTENSION));
+  }
+
+  private final File file;
+  private RandomAccessFile in;
+  private final List<String[]> methods;
+  private OutputStream out;
+  // bytes of the file already loaded by the reader
+  private long position;
+  private final Map<Long, String> threads;
+  // type signatures, indexed by type identifier; identifier zero stands for no type
+  private final List<String> types;
+
+  private TraceSymbols(final File file)
+  {
+    this.file = file;
+    this.methods = new ArrayList<String[]>();
+    this.threads = new HashMap<Long, String>();
+    this.types = new ArrayList<String>();
+    this.types.add(null);
+  }
+
+  /**
+   * Appends the definition of a method and returns its identifier.
+   */
+  public synchronized int defineMethod(final String key, final String sourcePath, final int line)
+      throws IOException
+  {
+    final int id = methods.size();
+    methods.add(new String[]
+    { key, sourcePath, String.valueOf(line) });
+    write("M\t" + id + "\t" + key + "\t" + sourcePath + "\t" + line + "\n");
+    return id;
+  }
+
+  public synchronized void defineThread(final long threadId, final String name) throws IOException
+  {
+    threads.put(threadId, name);
+    write("T\t" + threadId + "\t" + name.replace('\t', ' ').replace('\n', ' ') + "\n");
+  }
+
+  /**
+   * Appends the definition of a type, given its JVM signature, and returns its identifier.
+   */
+  public synchronized int defineType(final String signature) throws IOException
+  {
+    final int id = types.size();
+    types.add(signature);
+    write("C\t" + id + "\t" + signature + "\n");
+    return id;
+  }
+
+  /**
+   * Key of the method, in the format of the static model, or null if the method is not defined.
+   */
+  public synchronized String methodKey(final int methodId)
+  {
+    return methodId < methods.size() ? methods.get(methodId)[0] : null;
+  }
+
+  public synchronized int methodLine(final int methodId)
+  {
+    return methodId < methods.size() ? Integer.parseInt(methods.get(methodId)[2]) : -1;
+  }
+
+  /**
+   * Source path of the method's class relative to its source folder, or null if unknown.
+   */
+  public synchronized String methodSource(final int methodId)
+  {
+    final String result = methodId < methods.size() ? methods.get(methodId)[1] : "";
+    return result.length() == 0 ? null : result;
+  }
+
+  /**
+   * Loads the definitions appended since the last call.
+   */
+  public synchronized void refresh() throws IOException
+  {
+    if (in == null)
+    {
+      in = new RandomAccessFile(file, "r");
+    }
+    final long length = in.length();
+    if (length <= position)
+    {
+      return;
+    }
+    final byte[] data = new byte[(int) (length - position)];
+    in.seek(position);
+    in.readFully(data);
+    final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    for (int i = 0; i < data.length; i++)
+    {
+      if (data[i] != '\n')
+      {
+        line.write(data[i]);
+        continue;
+      }
+      // only complete lines are consumed
+      position += line.size() + 1;
+      final String[] fields = line.toString(TraceSymbols.CHARSET).split("\t", -1);
+      line.reset();
+      if ("M".equals(fields[0]) && Integer.parseInt(fields[1]) == methods.size())
+      {
+        methods.add(new String[]
+        { fields[2], fields[3], fields[4] });
+      }
+      else if ("T".equals(fields[0]))
+      {
+        threads.put(Long.valueOf(fields[1]), fields[2]);
+      }
+      else if ("C".equals(fields[0]) && Integer.parseInt(fields[1]) == types.size())
+      {
+        types.add(fields[2]);
+      }
+    }
+  }
+
+  /**
+   * Name of the thread, or null if the thread is not defined.
+   */
+  public synchronized String threadName(final long threadId)
+  {
+    return threads.get(threadId);
+  }
+
+  /**
+   * JVM signature of the type, or null if the type is not defined.
+   */
+  public synchronized String typeSignature(final int typeId)
+  {
+    return typeId < types.size() ? types.get(typeId) : null;
+  }
+
+  private void write(final String definition) throws IOException
+  {
+    if (out == null)
+    {
+      out = new FileOutputStream(file, true);
+    }
+    // unbuffered, so that the definition reaches the file before any record references it
+    out.write(definition.getBytes(TraceSymbols.CHARSET));
+  }
+}
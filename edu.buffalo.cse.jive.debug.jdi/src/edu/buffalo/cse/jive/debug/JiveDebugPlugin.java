@@ -15,6 +15,7 @@ import edu.buffalo.cse.jive.core.ast.ASTPluginProxy;
 import edu.buffalo.cse.jive.debug.jdi.model.IJDIManager;
 import edu.buffalo.cse.jive.debug.jdi.model.IJDIModelFactory;
 import edu.buffalo.cse.jive.debug.jdi.model.IModelFilter;
+import edu.buffalo.cse.jive.debug.jdi.model.IRecordingWindows;
 import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
 import edu.buffalo.cse.jive.internal.debug.jdi.JDIDebugFactoryImpl;
 import edu.buffalo.cse.jive.internal.debug.jdi.model.JDIModelFactoryImpl;
@@ -37,6 +38,15 @@ public class JiveDebugPlugin extends Plugin
    */
   private static JiveDebugPlugin plugin;
 
+  /**
+   * VM argument that loads the instrumentation agent into the launched VM, or null if the launch
+   * does not record through the agent.
+   */
+  public static String createAgentArgument(final ILaunch launch)
+  {
+    return JiveDebugPlugin.getDefault().jdiModelFactory().createAgentArgument(launch);
+  }
+
   public static IDebugTarget createDebugTarget(final ILaunch launch, final VirtualMachine vm,
       final String name, final IProcess process, final boolean allowTerminate,
       final boolean allowDisconnect, final boolean resume, final IJiveProject project)
@@ -155,6 +165,11 @@ public class JiveDebugPlugin extends Plugin
     return jdiModelFactory().jdiManager(owner);
   }
 
+  public IRecordingWindows recordingWindows(final IJiveDebugTarget owner)
+  {
+    return JDIDebugFactoryImpl.recordingWindows(owner);
+  }
+
   @Override
   public void start(final BundleContext context) throws Exception
   {
@@ -0,0 +1,32 @@
+package edu.buffalo.cse.jive.debug.jdi.model;
+
+import edu.buffalo.cse.jive.model.IEventModel.LockOperation;
+
+/**
+ * Time spent by the threads of a target blocked on contended monitors and waiting on monitors,
+ * aggregated per monitor, per thread, and per call site. A thread is blocked from the time it tries
+ * to enter a monitor owned by another thread until it enters the monitor, and waits from the time
+ * it calls {@code Object.wait} until it owns the monitor again. Times are taken by the debugger as
+ * it handles the monitor events, so they are accurate up to the event delivery latency.
+ */
+public interface IContentionReport
+{
+  /**
+   * Discards all times recorded so far.
+   */
+  public void clear();
+
+  /**
+   * Records a monitor operation of the thread: {@code LOCK_WAIT} when the thread blocks on a
+   * contended monitor, {@code LOCK_RELEASE} when it releases the monitor to wait, and
+   * {@code LOCK_ACQUIRE} when it owns the monitor again. The site is the location of the operation.
+   */
+  public void record(long threadId, String thread, String monitor, String site,
+      LockOperation operation);
+
+  /**
+   * Text report of the monitors, threads, and call sites with the longest blocked and waiting
+   * times, at most limit of each, sorted by total time.
+   */
+  public String summary(int limit);
+}
@@ -41,6 +41,8 @@ public interface IExecutionState
 
   public ILineValue currentLine(IThreadValue threadId);
 
+  public ILineValue currentLine(long threadId);
+
   public IObjectContour deleteObject(long oid);
 
   public int frameCount(long threadId);
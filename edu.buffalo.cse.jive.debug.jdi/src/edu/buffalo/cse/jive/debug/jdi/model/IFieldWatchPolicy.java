@@ -0,0 +1,52 @@
+package edu.buffalo.cse.jive.debug.jdi.model;
+
+import java.util.Set;
+
+import com.sun.jdi.Field;
+import com.sun.jdi.ReferenceType;
+
+/**
+ * Decides which fields of the prepared in-model types are watched. Writes are watched for the
+ * fields that the static model shows are accessed from in-model code. Reads of those fields are
+ * watched by default and can be turned off and on for a field, a type, or all types. Changes to
+ * the read choices are reported to the subscribed listeners, which update the watchpoints of the
+ * running target.
+ */
+public interface IFieldWatchPolicy
+{
+  /**
+   * Records the fields accessed by the methods of the prepared type, according to the dependence
+   * graphs of its static model. Returns the signatures of the types with fields newly known to be
+   * accessed, or null if the accesses of the type cannot be determined and every field it can
+   * access must now be watched.
+   */
+  public Set<String> analyze(ReferenceType type);
+
+  public void subscribe(IFieldWatchListener listener);
+
+  public void unsubscribe(IFieldWatchListener listener);
+
+  /**
+   * Enables or disables the watching of reads for every accessed field, discarding the choices
+   * for single fields and types.
+   */
+  public void watchAllReads(boolean enabled);
+
+  /**
+   * Enables or disables the watching of reads for the given field, or for every accessed field of
+   * the type if the field name is null. The type name is fully qualified.
+   */
+  public void watchReads(String typeName, String fieldName, boolean enabled);
+
+  public boolean watchesReads(Field field);
+
+  public boolean watchesWrites(Field field);
+
+  public interface IFieldWatchListener
+  {
+    /**
+     * Called when the read choices of the policy change.
+     */
+    public void watchPolicyChanged();
+  }
+}
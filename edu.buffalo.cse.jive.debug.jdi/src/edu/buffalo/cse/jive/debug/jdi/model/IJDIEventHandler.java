@@ -6,6 +6,10 @@ import com.sun.jdi.event.ExceptionEvent;
 import com.sun.jdi.event.MethodEntryEvent;
 import com.sun.jdi.event.MethodExitEvent;
 import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.MonitorContendedEnterEvent;
+import com.sun.jdi.event.MonitorContendedEnteredEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.MonitorWaitedEvent;
 import com.sun.jdi.event.StepEvent;
 import com.sun.jdi.event.ThreadDeathEvent;
 import com.sun.jdi.event.ThreadStartEvent;
@@ -25,6 +29,16 @@ public interface IJDIEventHandler
    */
   void createSnapshot(final Object jvm);
 
+  /**
+   * Stops the handler. Events captured but not yet translated are translated first.
+   */
+  void done();
+
+  /**
+   * Waits until all events captured so far have been translated and dispatched.
+   */
+  void drain();
+
   /**
    * Notification of a field access in the target VM.
    */
@@ -50,6 +64,26 @@ public interface IJDIEventHandler
    */
   void jdiMethodExit(MethodExitEvent event);
 
+  /**
+   * Notification of a thread blocking on a monitor owned by another thread in the target VM.
+   */
+  void jdiMonitorContendedEnter(MonitorContendedEnterEvent event);
+
+  /**
+   * Notification of a thread entering a monitor after blocking on it in the target VM.
+   */
+  void jdiMonitorContendedEntered(MonitorContendedEnteredEvent event);
+
+  /**
+   * Notification of a thread about to wait on a monitor in the target VM.
+   */
+  void jdiMonitorWait(MonitorWaitEvent event);
+
+  /**
+   * Notification of a thread done waiting on a monitor in the target VM.
+   */
+  void jdiMonitorWaited(MonitorWaitedEvent event);
+
   /**
    * Notification of a field modification in the target VM.
    */
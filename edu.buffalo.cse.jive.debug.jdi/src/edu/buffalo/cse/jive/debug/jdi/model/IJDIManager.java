@@ -5,16 +5,42 @@ import edu.buffalo.cse.jive.model.IExecutionModel;
 
 public interface IJDIManager
 {
+  /**
+   * Number of cells of the largest array whose cells are tracked when array events are generated.
+   * Longer arrays are described by their type and length.
+   */
+  public int arrayMaxCells();
+
+  /**
+   * Blocked and waiting times of the target's threads, recorded when monitor events are generated.
+   */
+  public IContentionReport contentionReport();
+
   public void done();
 
+  /**
+   * Delivers the events recorded by the instrumentation agent that were not yet delivered. Does
+   * nothing if the target is not instrumented.
+   */
+  public void drainInstrumentedEvents();
+
   public IExecutionModel executionModel();
 
   public IExecutionState executionState();
 
+  public IFieldWatchPolicy fieldWatchPolicy();
+
   public boolean generateArrayEvents();
 
   public boolean generateLocalEvents();
 
+  /**
+   * Determines whether monitor contention and wait events are generated.
+   */
+  public boolean generateMonitorEvents();
+
+  public boolean isInstrumented();
+
   public boolean isManualStart();
 
   public IJDIEventHandler jdiHandler();
@@ -26,4 +52,9 @@ public interface IJDIManager
   public IJiveDebugTarget owner();
 
   public void reset();
+
+  /**
+   * Determines whether only the local variables defined on the line just executed are captured.
+   */
+  public boolean targetedLocals();
 }
\ No newline at end of file
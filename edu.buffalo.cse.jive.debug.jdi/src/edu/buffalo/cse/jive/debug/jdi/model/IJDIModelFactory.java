@@ -1,5 +1,7 @@
 package edu.buffalo.cse.jive.debug.jdi.model;
 
+import org.eclipse.debug.core.ILaunch;
+
 import com.sun.jdi.VirtualMachine;
 
 import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
@@ -9,6 +11,8 @@ import edu.buffalo.cse.jive.model.factory.IStaticModelFactory.IStaticModelDelega
 @SuppressWarnings("restriction")
 public interface IJDIModelFactory
 {
+  public String createAgentArgument(ILaunch launch);
+
   public IStaticModelDelegate createStaticModelDelegate(final IExecutionModel model,
       VirtualMachine vm, final IModelFilter filter);
 
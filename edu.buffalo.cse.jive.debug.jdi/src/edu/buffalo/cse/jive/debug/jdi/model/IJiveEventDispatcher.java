@@ -16,8 +16,10 @@ import com.sun.jdi.event.MethodExitEvent;
 import com.sun.jdi.event.ModificationWatchpointEvent;
 
 import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
 import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
 import edu.buffalo.cse.jive.model.IEventModel.IEventProducer;
+import edu.buffalo.cse.jive.model.IEventModel.LockOperation;
 
 /**
  * This dispatchers takes JDI model elements, especially JDI events, and dispatches the respective
@@ -27,6 +29,16 @@ import edu.buffalo.cse.jive.model.IEventModel.IEventProducer;
 @SuppressWarnings("restriction")
 public interface IJiveEventDispatcher extends IEventProducer
 {
+  /**
+   * Number of event batches delivered to the listeners so far.
+   */
+  public long deliveredBatches();
+
+  /**
+   * Number of events delivered to the listeners so far.
+   */
+  public long deliveredEvents();
+
   public void dispatchArrayCellWriteEvent(Location location, ThreadReference thread,
       IContextContour array, IContourMember cell, Value cellValue, String componentTypeName);
 
@@ -62,6 +74,13 @@ public interface IJiveEventDispatcher extends IEventProducer
    */
   public void dispatchLoadEvent(ReferenceType type, ThreadReference thread);
 
+  /**
+   * Creates and dispatches a lock event for a monitor operation of the event's thread. The lock is
+   * the monitor's contour, or null if the monitor is not in the model.
+   */
+  public void dispatchLockEvent(LocatableEvent event, LockOperation operation, IContour lock,
+      String lockDescription);
+
   /**
    * Creates and dispatches an in-model {@code ReturnEvent} from the given {@code MethodExitEvent}.
    */
@@ -139,4 +158,20 @@ public interface IJiveEventDispatcher extends IEventProducer
    */
   public void dispatchVarDeleteEvent(LocatableEvent event, StackFrame frame,
       IContourMember varInstance);
-}
\ No newline at end of file
+
+  /**
+   * Number of events dropped because the event queue was full.
+   */
+  public long droppedEvents();
+
+  /**
+   * Waits until the events dispatched so far are delivered to the listeners. Must not be called
+   * from a listener.
+   */
+  public void flush();
+
+  /**
+   * Number of events dispatched but not yet delivered to the listeners.
+   */
+  public int queueDepth();
+}
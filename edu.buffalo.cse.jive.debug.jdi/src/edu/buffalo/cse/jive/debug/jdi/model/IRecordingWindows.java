@@ -0,0 +1,60 @@
+package edu.buffalo.cse.jive.debug.jdi.model;
+
+import java.util.List;
+
+/**
+ * Recording triggers of a debug target. A trigger opens or closes a recording window when the
+ * target reaches a program point; the JDI requests that drive the recording are only installed
+ * inside a window. Every window begins with a snapshot of the virtual machine, and is recorded in
+ * the trace of the model by the identifiers of its first and last events. Triggers are specified
+ * as:
+ *
+ * <pre>
+ *   enter:type.method      entry of the method
+ *   exit:type.method       exit of the method
+ *   throw:type             exception of the type (or a subtype) thrown
+ *   write:type#field       write of the field
+ *   line:type:line[:n]     n-th execution of the line (first by default)
+ * </pre>
+ *
+ * A freeze trigger closes the current window and freezes the trace, so that no other window opens
+ * and the trace keeps the history leading up to the trigger.
+ */
+public interface IRecordingWindows
+{
+  /**
+   * Adds a trigger that freezes the trace.
+   *
+   * @throws IllegalArgumentException
+   *           if the trigger is not well formed
+   */
+  public void addFreezeTrigger(String trigger);
+
+  /**
+   * Adds a trigger that opens a window (if opens is true) or closes the current window.
+   *
+   * @throws IllegalArgumentException
+   *           if the trigger is not well formed
+   */
+  public void addTrigger(String trigger, boolean opens);
+
+  /**
+   * Removes all triggers. The current window, if any, remains open.
+   */
+  public void clearTriggers();
+
+  /**
+   * Closes the current window and freezes the trace.
+   */
+  public void freeze();
+
+  /**
+   * Descriptions of the windows recorded in the trace, in order, including the current window.
+   */
+  public List<String> segments();
+
+  /**
+   * Descriptions of the triggers, in the order they were added.
+   */
+  public List<String> triggers();
+}
@@ -3,6 +3,7 @@ package edu.buffalo.cse.jive.internal.debug.jdi;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.jdt.internal.debug.core.IJDIEventListener;
@@ -18,20 +19,25 @@ import com.sun.jdi.event.ExceptionEvent;
 import com.sun.jdi.event.MethodEntryEvent;
 import com.sun.jdi.event.MethodExitEvent;
 import com.sun.jdi.event.ModificationWatchpointEvent;
-import com.sun.jdi.request.AccessWatchpointRequest;
+import com.sun.jdi.event.MonitorContendedEnterEvent;
+import com.sun.jdi.event.MonitorContendedEnteredEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.MonitorWaitedEvent;
 import com.sun.jdi.request.ClassPrepareRequest;
 import com.sun.jdi.request.EventRequest;
 import com.sun.jdi.request.EventRequestManager;
 import com.sun.jdi.request.ExceptionRequest;
 import com.sun.jdi.request.MethodEntryRequest;
 import com.sun.jdi.request.MethodExitRequest;
-import com.sun.jdi.request.ModificationWatchpointRequest;
 
 import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
 import edu.buffalo.cse.jive.debug.jdi.model.IEventHandlerFactory;
+import edu.buffalo.cse.jive.debug.jdi.model.IFieldWatchPolicy;
+import edu.buffalo.cse.jive.debug.jdi.model.IFieldWatchPolicy.IFieldWatchListener;
+import edu.buffalo.cse.jive.lib.TypeTools;
 
 @SuppressWarnings("restriction")
-final class EventHandlerFactory implements IEventHandlerFactory
+final class EventHandlerFactory implements IEventHandlerFactory, IFieldWatchListener
 {
   private final JiveDebugTarget owner;
   private final AccessWatchpointHandler fieldReadHandler;
@@ -40,6 +46,7 @@ final class EventHandlerFactory implements IEventHandlerFactory
   private final MethodEntryHandler methodEntryHandler;
   private final MethodExitHandler methodExitHandler;
   private final ExceptionHandler exceptionHandler;
+  private final MonitorHandler monitorHandler;
   private final Set<ReferenceType> classes;
 
   EventHandlerFactory(final JiveDebugTarget owner)
@@ -51,32 +58,53 @@ final class EventHandlerFactory implements IEventHandlerFactory
     this.methodEntryHandler = new MethodEntryHandler();
     this.methodExitHandler = new MethodExitHandler();
     this.exceptionHandler = new ExceptionHandler();
+    this.monitorHandler = new MonitorHandler();
     this.classes = new HashSet<ReferenceType>();
+    owner.jdiManager().fieldWatchPolicy().subscribe(this);
     if (owner.isActive())
     {
       createRequests();
     }
   }
 
+  /**
+   * Method calls and returns of an instrumented target are recorded by the agent, and the target
+   * only reports class prepare events through JDI.
+   */
   @Override
   public void createRequests()
   {
-    for (final ReferenceType refType : classes)
+    if (owner.jdiManager().isInstrumented())
     {
-      classPrepareHandler.createFieldRequests(owner, refType);
+      return;
     }
+    classPrepareHandler.updatePreparedTypes(null);
     methodEntryHandler.createRequest();
     methodExitHandler.createRequest();
     exceptionHandler.createRequest();
+    monitorHandler.createRequests();
   }
 
   @Override
   public void removeRequests()
   {
-    classPrepareHandler.removeFieldRequests(owner);
+    classPrepareHandler.removeFieldRequests();
     methodEntryHandler.removeRequest();
     methodExitHandler.removeRequest();
     exceptionHandler.removeRequest();
+    monitorHandler.removeRequests();
+  }
+
+  /**
+   * Read choices changed at runtime, so the watchpoints of all prepared types are updated.
+   */
+  @Override
+  public void watchPolicyChanged()
+  {
+    if (owner.isActive() && !owner.jdiManager().isInstrumented())
+    {
+      classPrepareHandler.updatePreparedTypes(null);
+    }
   }
 
   private class AccessWatchpointHandler implements IJDIEventListener
@@ -106,7 +134,8 @@ final class EventHandlerFactory implements IEventHandlerFactory
 
   private class ClassPrepareHandler implements IJDIEventListener
   {
-    final List<EventRequest> fieldRequests = new ArrayList<EventRequest>();
+    private final Map<Field, EventRequest> readRequests = TypeTools.newHashMap();
+    private final Map<Field, EventRequest> writeRequests = TypeTools.newHashMap();
 
     protected ClassPrepareHandler()
     {
@@ -124,45 +153,42 @@ final class EventHandlerFactory implements IEventHandlerFactory
     public boolean handleEvent(final Event event, final JDIDebugTarget target,
         final boolean suspendVote, final EventSet eventSet)
     {
-      classes.add(((ClassPrepareEvent) event).referenceType());
+      final ReferenceType refType = ((ClassPrepareEvent) event).referenceType();
+      synchronized (classes)
+      {
+        classes.add(refType);
+      }
       if (!owner.isActive())
       {
         return true;
       }
-      createFieldRequests(target, ((ClassPrepareEvent) event).referenceType());
+      // the static model of the type is created while handling the event
       owner.jdiHandler().jdiClassPrepare((ClassPrepareEvent) event);
+      if (!owner.jdiManager().isInstrumented())
+      {
+        // fields of previously prepared types may now be known to be accessed
+        final Set<String> accessed = owner.jdiManager().fieldWatchPolicy().analyze(refType);
+        if (accessed == null || !accessed.isEmpty())
+        {
+          updatePreparedTypes(accessed);
+        }
+        updateFieldRequests(refType);
+      }
       return true;
     }
 
-    protected void createFieldRequests(final JDIDebugTarget target, final ReferenceType refType)
+    protected void createRequest()
     {
-      final EventRequestManager manager = target.getEventRequestManager();
+      final EventRequestManager manager = owner.getEventRequestManager();
       if (manager != null)
       {
         try
         {
-          // monitor all non-synthetic fields of the prepared classes for reads/writes
-          for (final Object o : refType.fields())
-          {
-            final Field f = (Field) o;
-            // Ignore compiler generated fields
-            if (!f.isSynthetic() && f.name().indexOf("$") == -1)
-            {
-              // monitor field reads
-              final AccessWatchpointRequest readRequest = manager.createAccessWatchpointRequest(f);
-              readRequest.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
-              readRequest.enable();
-              fieldRequests.add(readRequest);
-              target.addJDIEventListener(fieldReadHandler, readRequest);
-              // monitor field writes
-              final ModificationWatchpointRequest writeRequest = manager
-                  .createModificationWatchpointRequest(f);
-              writeRequest.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
-              writeRequest.enable();
-              fieldRequests.add(writeRequest);
-              target.addJDIEventListener(fieldWriteHandler, writeRequest);
-            }
-          }
+          final ClassPrepareRequest request = manager.createClassPrepareRequest();
+          owner.jdiManager().modelFilter().filter(request);
+          request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+          request.enable();
+          owner.addJDIEventListener(this, request);
         }
         catch (final RuntimeException e)
         {
@@ -171,44 +197,111 @@ final class EventHandlerFactory implements IEventHandlerFactory
       }
     }
 
-    protected void createRequest()
+    protected synchronized void removeFieldRequests()
     {
       final EventRequestManager manager = owner.getEventRequestManager();
       if (manager != null)
       {
         try
         {
-          final ClassPrepareRequest request = manager.createClassPrepareRequest();
-          owner.jdiManager().modelFilter().filter(request);
-          request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
-          request.enable();
-          owner.addJDIEventListener(this, request);
+          for (final EventRequest request : readRequests.values())
+          {
+            owner.removeJDIEventListener(fieldReadHandler, request);
+          }
+          for (final EventRequest request : writeRequests.values())
+          {
+            owner.removeJDIEventListener(fieldWriteHandler, request);
+          }
+          manager.deleteEventRequests(new ArrayList<EventRequest>(readRequests.values()));
+          manager.deleteEventRequests(new ArrayList<EventRequest>(writeRequests.values()));
         }
         catch (final RuntimeException e)
         {
           JiveDebugPlugin.log(e);
         }
       }
+      readRequests.clear();
+      writeRequests.clear();
     }
 
-    protected void removeFieldRequests(final JDIDebugTarget target)
+    /**
+     * Creates and deletes the watchpoints of the type's non-synthetic fields so that they match the
+     * field watch policy.
+     */
+    protected synchronized void updateFieldRequests(final ReferenceType refType)
     {
-      final EventRequestManager manager = target.getEventRequestManager();
-      if (manager != null && !fieldRequests.isEmpty())
+      final EventRequestManager manager = owner.getEventRequestManager();
+      if (manager == null)
       {
-        try
+        return;
+      }
+      final IFieldWatchPolicy policy = owner.jdiManager().fieldWatchPolicy();
+      try
+      {
+        for (final Object o : refType.fields())
         {
-          manager.deleteEventRequests(fieldRequests);
-          for (final EventRequest request : fieldRequests)
+          final Field f = (Field) o;
+          // Ignore compiler generated fields
+          if (f.isSynthetic() || f.name().indexOf("$") != -1)
+          {
+            continue;
+          }
+          // monitor field reads
+          EventRequest request = readRequests.get(f);
+          if (request == null && policy.watchesReads(f))
           {
-            target.removeJDIEventListener(
-                request instanceof AccessWatchpointRequest ? fieldReadHandler : fieldWriteHandler,
-                request);
+            request = manager.createAccessWatchpointRequest(f);
+            request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+            request.enable();
+            readRequests.put(f, request);
+            owner.addJDIEventListener(fieldReadHandler, request);
+          }
+          else if (request != null && !policy.watchesReads(f))
+          {
+            owner.removeJDIEventListener(fieldReadHandler, request);
+            manager.deleteEventRequest(request);
+            readRequests.remove(f);
+          }
+          // monitor field writes
+          request = writeRequests.get(f);
+          if (request == null && policy.watchesWrites(f))
+          {
+            request = manager.createModificationWatchpointRequest(f);
+            request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+            request.enable();
+            writeRequests.put(f, request);
+            owner.addJDIEventListener(fieldWriteHandler, request);
+          }
+          else if (request != null && !policy.watchesWrites(f))
+          {
+            owner.removeJDIEventListener(fieldWriteHandler, request);
+            manager.deleteEventRequest(request);
+            writeRequests.remove(f);
           }
         }
-        catch (final RuntimeException e)
+      }
+      catch (final RuntimeException e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+    }
+
+    /**
+     * Updates the watchpoints of the prepared types with the given signatures, or of all prepared
+     * types if the signatures are null.
+     */
+    protected void updatePreparedTypes(final Set<String> signatures)
+    {
+      final List<ReferenceType> prepared;
+      synchronized (classes)
+      {
+        prepared = new ArrayList<ReferenceType>(classes);
+      }
+      for (final ReferenceType refType : prepared)
+      {
+        if (signatures == null || signatures.contains(refType.signature()))
         {
-          JiveDebugPlugin.log(e);
+          updateFieldRequests(refType);
         }
       }
     }
@@ -428,6 +521,105 @@ final class EventHandlerFactory implements IEventHandlerFactory
     }
   }
 
+  private class MonitorHandler implements IJDIEventListener
+  {
+    private final List<EventRequest> requests = TypeTools.newArrayList();
+
+    protected MonitorHandler()
+    {
+    }
+
+    @Override
+    public void eventSetComplete(final Event event, final JDIDebugTarget target,
+        final boolean suspend, final EventSet eventSet)
+    {
+      // TODO: add support for Eclipse 3.5 event handling
+    }
+
+    @Override
+    public boolean handleEvent(final Event event, final JDIDebugTarget target,
+        final boolean suspendVote, final EventSet eventSet)
+    {
+      if (!owner.isActive())
+      {
+        return true;
+      }
+      if (event instanceof MonitorContendedEnterEvent)
+      {
+        owner.jdiHandler().jdiMonitorContendedEnter((MonitorContendedEnterEvent) event);
+      }
+      else if (event instanceof MonitorContendedEnteredEvent)
+      {
+        owner.jdiHandler().jdiMonitorContendedEntered((MonitorContendedEnteredEvent) event);
+      }
+      else if (event instanceof MonitorWaitEvent)
+      {
+        owner.jdiHandler().jdiMonitorWait((MonitorWaitEvent) event);
+      }
+      else if (event instanceof MonitorWaitedEvent)
+      {
+        owner.jdiHandler().jdiMonitorWaited((MonitorWaitedEvent) event);
+      }
+      return true;
+    }
+
+    /**
+     * Monitor events do not suspend their threads, so that contended monitors are not held longer
+     * than they would be without the debugger.
+     */
+    protected synchronized void createRequests()
+    {
+      final EventRequestManager manager = owner.getEventRequestManager();
+      if (manager == null || !owner.jdiManager().generateMonitorEvents() || owner.getVM() == null
+          || !owner.getVM().canRequestMonitorEvents())
+      {
+        return;
+      }
+      if (!requests.isEmpty())
+      {
+        removeRequests();
+      }
+      try
+      {
+        requests.add(manager.createMonitorContendedEnterRequest());
+        requests.add(manager.createMonitorContendedEnteredRequest());
+        requests.add(manager.createMonitorWaitRequest());
+        requests.add(manager.createMonitorWaitedRequest());
+        for (final EventRequest request : requests)
+        {
+          request.setSuspendPolicy(EventRequest.SUSPEND_NONE);
+          request.enable();
+          owner.addJDIEventListener(this, request);
+        }
+      }
+      catch (final RuntimeException e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+    }
+
+    protected synchronized void removeRequests()
+    {
+      final EventRequestManager manager = owner.getEventRequestManager();
+      if (manager != null && !requests.isEmpty())
+      {
+        try
+        {
+          for (final EventRequest request : requests)
+          {
+            owner.removeJDIEventListener(this, request);
+          }
+          manager.deleteEventRequests(new ArrayList<EventRequest>(requests));
+        }
+        catch (final RuntimeException e)
+        {
+          JiveDebugPlugin.log(e);
+        }
+      }
+      requests.clear();
+    }
+  }
+
   private class ModificationWatchpointHandler implements IJDIEventListener
   {
     protected ModificationWatchpointHandler()
@@ -12,6 +12,8 @@ import org.eclipse.jdt.debug.core.IJavaDebugTarget;
 import com.sun.jdi.VirtualMachine;
 
 import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.jdi.model.IRecordingWindows;
+import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
 import edu.buffalo.cse.jive.model.IJiveProject;
 
 @SuppressWarnings("restriction")
@@ -26,6 +28,15 @@ public enum JDIDebugFactoryImpl
         resume, project);
   }
 
+  /**
+   * Recording windows of the target, or null if the target is not a live JIVE target.
+   */
+  public static IRecordingWindows recordingWindows(final IJiveDebugTarget target)
+  {
+    return target instanceof JiveDebugTarget ? ((JiveDebugTarget) target).recordingWindows()
+        : null;
+  }
+
   /**
    * Creates and returns a debug target for the given VM, with the specified name, and associates
    * the debug target with the given process for console I/O. The allow terminate flag specifies
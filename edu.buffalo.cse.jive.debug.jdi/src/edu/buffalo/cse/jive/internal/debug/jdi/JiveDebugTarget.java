@@ -44,6 +44,7 @@ class JiveDebugTarget extends JDIDebugTargetAdapter implements IJavaDebugTarget,
   private boolean isStarted;
   private boolean isStopped;
   private final IEventHandlerFactory eventHandlerFactory;
+  private final RecordingWindows recordingWindows;
 
   JiveDebugTarget(final ILaunch launch, final VirtualMachine jvm, final String name,
       final boolean supportTerminate, final boolean supportDisconnect, final IProcess process,
@@ -55,6 +56,7 @@ class JiveDebugTarget extends JDIDebugTargetAdapter implements IJavaDebugTarget,
     this.isStopped = false;
     new ThreadDeathHandler();
     this.eventHandlerFactory = new EventHandlerFactory(this);
+    this.recordingWindows = new RecordingWindows(this);
     this.viewsEnabled = new AtomicInteger(0);
   }
 
@@ -118,7 +120,11 @@ class JiveDebugTarget extends JDIDebugTargetAdapter implements IJavaDebugTarget,
   @Override
   public void eventsInserted(final List<IJiveEvent> events)
   {
-    // TODO Auto-generated method stub
+    // the trace froze on an exception, so there is no point in keeping the requests
+    if (isActive() && model() != null && model().traceView().isFrozen())
+    {
+      stop();
+    }
   }
 
   @Override
@@ -394,6 +400,14 @@ class JiveDebugTarget extends JDIDebugTargetAdapter implements IJavaDebugTarget,
     eventHandlerFactory.removeRequests();
   }
 
+  /**
+   * Closes the current recording window by removing the recording requests.
+   */
+  void closeWindow()
+  {
+    stop();
+  }
+
   boolean generateArrayEvents()
   {
     return jdiManager().generateArrayEvents();
@@ -405,6 +419,66 @@ class JiveDebugTarget extends JDIDebugTargetAdapter implements IJavaDebugTarget,
         : null;
   }
 
+  /**
+   * Opens a recording window. Every window begins with a snapshot of the virtual machine, which is
+   * then resumed. The first window starts the target; later windows keep the model of the previous
+   * windows, and the snapshot brings it up to date with the objects, field values, and call stacks
+   * of the virtual machine.
+   */
+  void openWindow()
+  {
+    if (!isStarted)
+    {
+      start();
+    }
+    else if (isStopped)
+    {
+      // disable view updates
+      disableViews();
+      try
+      {
+        try
+        {
+          suspend();
+        }
+        catch (final Exception de)
+        {
+          de.printStackTrace();
+        }
+        // update the model from the virtual machine
+        jdiManager().jdiHandler().createSnapshot(getVM());
+        // mark not stopped
+        isStopped = false;
+        // create requests
+        createRequests();
+        // signal change
+        fireChangeEvent(DebugEvent.STATE);
+      }
+      finally
+      {
+        // re-enable view updates
+        enableViews();
+      }
+    }
+    else
+    {
+      return;
+    }
+    try
+    {
+      resume();
+    }
+    catch (final DebugException e)
+    {
+      JiveDebugPlugin.log(e);
+    }
+  }
+
+  RecordingWindows recordingWindows()
+  {
+    return recordingWindows;
+  }
+
   private final class ThreadDeathHandler extends JDIDebugTargetAdapter.ThreadDeathHandlerAdapter
   {
     protected ThreadDeathHandler()
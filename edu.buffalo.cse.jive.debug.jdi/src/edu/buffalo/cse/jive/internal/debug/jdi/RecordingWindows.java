@@ -0,0 +1,415 @@
+package edu.buffalo.cse.jive.internal.debug.jdi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.internal.debug.core.IJDIEventListener;
+import org.eclipse.jdt.internal.debug.core.model.JDIDebugTarget;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.Field;
+import com.sun.jdi.Location;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventSet;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.request.BreakpointRequest;
+import com.sun.jdi.request.ClassPrepareRequest;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.MethodEntryRequest;
+import com.sun.jdi.request.MethodExitRequest;
+
+import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.jdi.model.IRecordingWindows;
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.IExecutionModel.ITraceWindow;
+
+/**
+ * Recording windows of a debug target. Each trigger owns the requests that detect its program
+ * point on the loaded types, and a class prepare request that installs them on types loaded later.
+ * Trigger requests are independent of the recording requests, so triggers fire outside windows.
+ * Windows are recorded in the trace of the model as the identifiers of their first and last events,
+ * once the events dispatched before the window opens or closes are stored.
+ */
+@SuppressWarnings("restriction")
+final class RecordingWindows implements IRecordingWindows
+{
+  private static final String KIND_ENTER = "enter";
+  private static final String KIND_EXIT = "exit";
+  private static final String KIND_LINE = "line";
+  private static final String KIND_THROW = "throw";
+  private static final String KIND_WRITE = "write";
+  private final JiveDebugTarget owner;
+  private final List<Trigger> triggers;
+
+  RecordingWindows(final JiveDebugTarget owner)
+  {
+    this.owner = owner;
+    this.triggers = TypeTools.newArrayList();
+  }
+
+  @Override
+  public synchronized void addFreezeTrigger(final String trigger)
+  {
+    final Trigger t = parse(trigger, false, true);
+    t.createRequests();
+    triggers.add(t);
+  }
+
+  @Override
+  public synchronized void addTrigger(final String trigger, final boolean opens)
+  {
+    final Trigger t = parse(trigger, opens, false);
+    t.createRequests();
+    triggers.add(t);
+  }
+
+  @Override
+  public synchronized void clearTriggers()
+  {
+    for (final Trigger t : triggers)
+    {
+      t.removeRequests();
+    }
+    triggers.clear();
+  }
+
+  @Override
+  public synchronized void freeze()
+  {
+    if (owner.model() != null)
+    {
+      owner.model().traceView().freeze();
+    }
+    close("freeze");
+  }
+
+  @Override
+  public synchronized List<String> segments()
+  {
+    final List<String> result = TypeTools.newArrayList();
+    if (owner.model() == null)
+    {
+      return result;
+    }
+    for (final ITraceWindow w : owner.model().traceView().windows())
+    {
+      if (w.closer() == null)
+      {
+        result.add(String.format("events %d.. opened by %s (recording)", w.firstEvent(),
+            w.opener()));
+      }
+      else
+      {
+        result.add(String.format("events %d..%d opened by %s, closed by %s", w.firstEvent(),
+            w.lastEvent(), w.opener(), w.closer()));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized List<String> triggers()
+  {
+    final List<String> result = TypeTools.newArrayList();
+    for (final Trigger t : triggers)
+    {
+      result.add(t.toString());
+    }
+    return result;
+  }
+
+  private void close(final String closer)
+  {
+    if (!owner.isActive())
+    {
+      return;
+    }
+    owner.closeWindow();
+    if (owner.model() != null)
+    {
+      // the window ends with the last event dispatched before its requests were removed
+      owner.jdiManager().jiveDispatcher().flush();
+      owner.model().traceView().closeWindow(closer);
+    }
+  }
+
+  private synchronized void fire(final Trigger trigger)
+  {
+    if (trigger.freezes)
+    {
+      if (owner.model() != null)
+      {
+        owner.model().traceView().freeze();
+      }
+      close(trigger.spec);
+    }
+    else if (trigger.opens && !owner.isActive())
+    {
+      // a frozen trace records no more windows
+      if (owner.model() != null && owner.model().traceView().isFrozen())
+      {
+        return;
+      }
+      if (owner.model() != null)
+      {
+        // the window begins with the snapshot taken when it opens
+        owner.jdiManager().jiveDispatcher().flush();
+        owner.model().traceView().openWindow(trigger.spec);
+      }
+      owner.openWindow();
+    }
+    else if (!trigger.opens)
+    {
+      close(trigger.spec);
+    }
+  }
+
+  private Trigger parse(final String spec, final boolean opens, final boolean freezes)
+  {
+    final int colon = spec.indexOf(':');
+    final String kind = colon == -1 ? "" : spec.substring(0, colon);
+    final String target = spec.substring(colon + 1);
+    if (kind.equals(KIND_ENTER) || kind.equals(KIND_EXIT))
+    {
+      final int index = target.lastIndexOf('.');
+      if (index > 0 && index < target.length() - 1)
+      {
+        return new Trigger(spec, opens, freezes, kind, target.substring(0, index),
+            target.substring(index + 1), 0, 1);
+      }
+    }
+    else if (kind.equals(KIND_THROW))
+    {
+      if (target.length() > 0)
+      {
+        return new Trigger(spec, opens, freezes, kind, target, null, 0, 1);
+      }
+    }
+    else if (kind.equals(KIND_WRITE))
+    {
+      final int index = target.indexOf('#');
+      if (index > 0 && index < target.length() - 1)
+      {
+        return new Trigger(spec, opens, freezes, kind, target.substring(0, index),
+            target.substring(index + 1), 0, 1);
+      }
+    }
+    else if (kind.equals(KIND_LINE))
+    {
+      final String[] parts = target.split(":");
+      if ((parts.length == 2 || parts.length == 3) && parts[0].length() > 0)
+      {
+        try
+        {
+          final int line = Integer.parseInt(parts[1]);
+          final int count = parts.length == 3 ? Integer.parseInt(parts[2]) : 1;
+          if (line > 0 && count > 0)
+          {
+            return new Trigger(spec, opens, freezes, kind, parts[0], null, line, count);
+          }
+        }
+        catch (final NumberFormatException e)
+        {
+          // fall through
+        }
+      }
+    }
+    throw new IllegalArgumentException("Invalid trigger: " + spec);
+  }
+
+  private final class Trigger implements IJDIEventListener
+  {
+    private final int count;
+    private final boolean freezes;
+    private final String kind;
+    private final int line;
+    private final String member;
+    private final boolean opens;
+    private final List<EventRequest> requests;
+    private final String spec;
+    private final String typeName;
+
+    Trigger(final String spec, final boolean opens, final boolean freezes, final String kind,
+        final String typeName, final String member, final int line, final int count)
+    {
+      this.count = count;
+      this.freezes = freezes;
+      this.kind = kind;
+      this.line = line;
+      this.member = member;
+      this.opens = opens;
+      this.requests = TypeTools.newArrayList();
+      this.spec = spec;
+      this.typeName = typeName;
+    }
+
+    @Override
+    public void eventSetComplete(final Event event, final JDIDebugTarget target,
+        final boolean suspend, final EventSet eventSet)
+    {
+      // TODO: add support for Eclipse 3.5 event handling
+    }
+
+    @Override
+    public boolean handleEvent(final Event event, final JDIDebugTarget target,
+        final boolean suspendVote, final EventSet eventSet)
+    {
+      if (event instanceof ClassPrepareEvent)
+      {
+        createRequests(((ClassPrepareEvent) event).referenceType());
+      }
+      else if (event instanceof MethodEntryEvent)
+      {
+        if (((MethodEntryEvent) event).method().name().equals(member))
+        {
+          fire(this);
+        }
+      }
+      else if (event instanceof MethodExitEvent)
+      {
+        if (((MethodExitEvent) event).method().name().equals(member))
+        {
+          fire(this);
+        }
+      }
+      else
+      {
+        fire(this);
+      }
+      return true;
+    }
+
+    @Override
+    public String toString()
+    {
+      return (freezes ? "FREEZE " : opens ? "OPEN " : "CLOSE ") + spec;
+    }
+
+    private void addRequest(final EventRequest request)
+    {
+      request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+      request.enable();
+      owner.addJDIEventListener(this, request);
+      synchronized (requests)
+      {
+        requests.add(request);
+      }
+    }
+
+    /**
+     * Installs the trigger on the loaded types and watches for the types loaded later.
+     */
+    void createRequests()
+    {
+      final EventRequestManager manager = owner.getEventRequestManager();
+      if (manager == null)
+      {
+        return;
+      }
+      try
+      {
+        final ClassPrepareRequest request = manager.createClassPrepareRequest();
+        request.addClassFilter(typeName);
+        addRequest(request);
+        for (final Object o : owner.getVM().classesByName(typeName))
+        {
+          createRequests((ReferenceType) o);
+        }
+      }
+      catch (final RuntimeException e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+    }
+
+    /**
+     * Installs the trigger on the given type.
+     */
+    void createRequests(final ReferenceType refType)
+    {
+      final EventRequestManager manager = owner.getEventRequestManager();
+      if (manager == null)
+      {
+        return;
+      }
+      try
+      {
+        if (kind.equals(KIND_ENTER))
+        {
+          final MethodEntryRequest request = manager.createMethodEntryRequest();
+          request.addClassFilter(refType);
+          addRequest(request);
+        }
+        else if (kind.equals(KIND_EXIT))
+        {
+          final MethodExitRequest request = manager.createMethodExitRequest();
+          request.addClassFilter(refType);
+          addRequest(request);
+        }
+        else if (kind.equals(KIND_THROW))
+        {
+          addRequest(manager.createExceptionRequest(refType, true, true));
+        }
+        else if (kind.equals(KIND_WRITE))
+        {
+          final Field field = refType.fieldByName(member);
+          if (field != null)
+          {
+            addRequest(manager.createModificationWatchpointRequest(field));
+          }
+        }
+        else if (kind.equals(KIND_LINE))
+        {
+          for (final Object o : refType.locationsOfLine(line))
+          {
+            final BreakpointRequest request = manager.createBreakpointRequest((Location) o);
+            if (count > 1)
+            {
+              request.addCountFilter(count);
+            }
+            addRequest(request);
+          }
+        }
+      }
+      catch (final AbsentInformationException e)
+      {
+        JiveDebugPlugin.warn("No line information for trigger " + spec, e);
+      }
+      catch (final RuntimeException e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+    }
+
+    void removeRequests()
+    {
+      final EventRequestManager manager = owner.getEventRequestManager();
+      final List<EventRequest> removed;
+      synchronized (requests)
+      {
+        removed = new ArrayList<EventRequest>(requests);
+        requests.clear();
+      }
+      if (manager == null)
+      {
+        return;
+      }
+      try
+      {
+        for (final EventRequest request : removed)
+        {
+          owner.removeJDIEventListener(this, request);
+        }
+        manager.deleteEventRequests(removed);
+      }
+      catch (final RuntimeException e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+    }
+  }
+}
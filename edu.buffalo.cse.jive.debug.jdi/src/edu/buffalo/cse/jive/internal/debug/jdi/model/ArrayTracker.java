@@ -0,0 +1,160 @@
+package edu.buffalo.cse.jive.internal.debug.jdi.model;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.sun.jdi.ArrayReference;
+import com.sun.jdi.BooleanValue;
+import com.sun.jdi.DoubleValue;
+import com.sun.jdi.FloatValue;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.PrimitiveValue;
+import com.sun.jdi.Value;
+
+import edu.buffalo.cse.jive.lib.TypeTools;
+
+/**
+ * Keeps a fingerprint of each fixed size chunk of the cells of tracked arrays, so that only the
+ * chunks whose fingerprint changed are compared cell by cell. Since JDWP cannot compute
+ * fingerprints in the target, and a line may write cells in any number of chunks, all cells of the
+ * array are read in a single request and the fingerprints are compared locally. The traffic per
+ * call is therefore proportional to the length of the array, which is bounded by the limit on
+ * tracked arrays; the chunks only save the cell by cell comparisons against the model.
+ * <p>
+ * Arrays are tracked by identifier. Whenever the number of tracked arrays doubles, the arrays
+ * collected in the target are evicted, so the tracker holds entries for live arrays only, give or
+ * take a factor of two.
+ */
+final class ArrayTracker
+{
+  // number of cells per fingerprint
+  private static final int CHUNK_SIZE = 256;
+  // number of tracked arrays below which collected arrays are not evicted
+  private static final int MIN_EVICTION_SIZE = 64;
+
+  /**
+   * Bits of a cell value. The hash codes of JDI values are unspecified, so primitive values are
+   * hashed by their raw bits and references by the unique identifier of the object.
+   */
+  private static long bits(final Value value)
+  {
+    if (value instanceof ObjectReference)
+    {
+      return ((ObjectReference) value).uniqueID();
+    }
+    if (value instanceof BooleanValue)
+    {
+      return ((BooleanValue) value).value() ? 1 : 0;
+    }
+    if (value instanceof DoubleValue || value instanceof FloatValue)
+    {
+      return Double.doubleToLongBits(((PrimitiveValue) value).doubleValue());
+    }
+    if (value instanceof PrimitiveValue)
+    {
+      return ((PrimitiveValue) value).longValue();
+    }
+    // null references
+    return 0;
+  }
+
+  /**
+   * FNV-1a hash of the bits of the cell values. Each step is a bijection on the bits of the cell,
+   * so a chunk in which a single cell changed always changes its fingerprint.
+   */
+  private static long fingerprint(final List<Value> values)
+  {
+    long result = 0xcbf29ce484222325L;
+    for (final Value value : values)
+    {
+      result ^= ArrayTracker.bits(value);
+      result *= 0x100000001b3L;
+    }
+    return result;
+  }
+
+  private final Map<Long, Chunks> arrays;
+  // number of tracked arrays at which collected arrays are evicted
+  private int evictionSize;
+
+  ArrayTracker()
+  {
+    this.arrays = TypeTools.newHashMap();
+    this.evictionSize = ArrayTracker.MIN_EVICTION_SIZE;
+  }
+
+  /**
+   * Values of the chunks of the array that changed since the last call for the array, keyed by the
+   * index of their first cell. All chunks are returned on the first call, and on every call if
+   * requested, as when the cells of an array of arrays must be visited anyway.
+   */
+  SortedMap<Integer, List<Value>> changedChunks(final ArrayReference array, final boolean all)
+  {
+    final SortedMap<Integer, List<Value>> result = TypeTools.newSortedMap();
+    // one round trip for the whole array
+    final List<Value> cells = array.getValues();
+    final int length = cells.size();
+    final int count = (length + ArrayTracker.CHUNK_SIZE - 1) / ArrayTracker.CHUNK_SIZE;
+    Chunks chunks = arrays.get(array.uniqueID());
+    final boolean fresh = chunks == null;
+    if (fresh)
+    {
+      chunks = new Chunks(array, count);
+      arrays.put(array.uniqueID(), chunks);
+      if (arrays.size() >= evictionSize)
+      {
+        evictCollected();
+      }
+    }
+    for (int i = 0; i < count; i++)
+    {
+      final int index = i * ArrayTracker.CHUNK_SIZE;
+      final List<Value> values = cells.subList(index,
+          Math.min(index + ArrayTracker.CHUNK_SIZE, length));
+      final long fingerprint = ArrayTracker.fingerprint(values);
+      if (fresh || all || fingerprint != chunks.fingerprints[i])
+      {
+        chunks.fingerprints[i] = fingerprint;
+        result.put(index, values);
+      }
+    }
+    return result;
+  }
+
+  void reset()
+  {
+    arrays.clear();
+    evictionSize = ArrayTracker.MIN_EVICTION_SIZE;
+  }
+
+  /**
+   * Removes the entries of the arrays collected in the target, and evicts again once the number of
+   * tracked arrays doubles.
+   */
+  private void evictCollected()
+  {
+    final Iterator<Chunks> iterator = arrays.values().iterator();
+    while (iterator.hasNext())
+    {
+      if (iterator.next().array.isCollected())
+      {
+        iterator.remove();
+      }
+    }
+    evictionSize = Math.max(ArrayTracker.MIN_EVICTION_SIZE, 2 * arrays.size());
+  }
+
+  private static final class Chunks
+  {
+    private final ArrayReference array;
+    private final long[] fingerprints;
+
+    Chunks(final ArrayReference array, final int count)
+    {
+      this.array = array;
+      this.fingerprints = new long[count];
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package edu.buffalo.cse.jive.internal.debug.jdi.model;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import edu.buffalo.cse.jive.debug.jdi.model.IContentionReport;
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.IEventModel.LockOperation;
+
+/**
+ * Contention report fed by the monitor events of the JDI handler. Each thread has at most one
+ * pending operation, since a thread that blocks or waits on a monitor does nothing else until it
+ * owns the monitor again.
+ */
+final class ContentionReport implements IContentionReport
+{
+  private static final double NANOS_PER_MILLI = 1000000.0;
+  private final Map<Long, Pending> pending;
+  private final Map<String, Times> perMonitor;
+  private final Map<String, Times> perSite;
+  private final Map<String, Times> perThread;
+
+  ContentionReport()
+  {
+    this.pending = TypeTools.newHashMap();
+    this.perMonitor = TypeTools.newHashMap();
+    this.perSite = TypeTools.newHashMap();
+    this.perThread = TypeTools.newHashMap();
+  }
+
+  private static void summary(final StringBuffer buffer, final String title,
+      final Map<String, Times> times, final int limit)
+  {
+    final List<Map.Entry<String, Times>> entries = TypeTools.newArrayList(times.size());
+    entries.addAll(times.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<String, Times>>()
+      {
+        @Override
+        public int compare(final Map.Entry<String, Times> e1, final Map.Entry<String, Times> e2)
+        {
+          final long t1 = e1.getValue().blocked + e1.getValue().waited;
+          final long t2 = e2.getValue().blocked + e2.getValue().waited;
+          return t1 < t2 ? 1 : t1 == t2 ? 0 : -1;
+        }
+      });
+    buffer.append(title).append(":\n");
+    for (int i = 0; i < entries.size() && i < limit; i++)
+    {
+      final Times t = entries.get(i).getValue();
+      buffer.append(String.format(
+          "  %s: blocked %d times for %.3f ms (max %.3f ms), waited %d times for %.3f ms\n",
+          entries.get(i).getKey(), t.blocks, t.blocked / ContentionReport.NANOS_PER_MILLI,
+          t.maxBlocked / ContentionReport.NANOS_PER_MILLI, t.waits, t.waited
+              / ContentionReport.NANOS_PER_MILLI));
+    }
+  }
+
+  private static Times times(final Map<String, Times> times, final String key)
+  {
+    Times result = times.get(key);
+    if (result == null)
+    {
+      result = new Times();
+      times.put(key, result);
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized void clear()
+  {
+    pending.clear();
+    perMonitor.clear();
+    perSite.clear();
+    perThread.clear();
+  }
+
+  @Override
+  public synchronized void record(final long threadId, final String thread, final String monitor,
+      final String site, final LockOperation operation)
+  {
+    final long now = System.nanoTime();
+    if (operation != LockOperation.LOCK_ACQUIRE)
+    {
+      pending.put(threadId, new Pending(thread, monitor, site,
+          operation == LockOperation.LOCK_RELEASE, now));
+      return;
+    }
+    final Pending p = pending.remove(threadId);
+    if (p == null)
+    {
+      return;
+    }
+    final long elapsed = now - p.start;
+    ContentionReport.times(perMonitor, p.monitor).add(elapsed, p.waiting);
+    ContentionReport.times(perSite, p.site).add(elapsed, p.waiting);
+    ContentionReport.times(perThread, p.thread).add(elapsed, p.waiting);
+  }
+
+  @Override
+  public synchronized String summary(final int limit)
+  {
+    final StringBuffer buffer = new StringBuffer();
+    ContentionReport.summary(buffer, "Monitors", perMonitor, limit);
+    ContentionReport.summary(buffer, "Threads", perThread, limit);
+    ContentionReport.summary(buffer, "Call sites", perSite, limit);
+    if (!pending.isEmpty())
+    {
+      buffer.append("Blocked or waiting now:\n");
+      for (final Pending p : pending.values())
+      {
+        buffer.append(String.format("  %s %s on %s at %s\n", p.thread, p.waiting ? "waiting"
+            : "blocked", p.monitor, p.site));
+      }
+    }
+    return buffer.toString();
+  }
+
+  private static final class Pending
+  {
+    private final String monitor;
+    private final String site;
+    private final long start;
+    private final String thread;
+    private final boolean waiting;
+
+    Pending(final String thread, final String monitor, final String site, final boolean waiting,
+        final long start)
+    {
+      this.monitor = monitor;
+      this.site = site;
+      this.start = start;
+      this.thread = thread;
+      this.waiting = waiting;
+    }
+  }
+
+  private static final class Times
+  {
+    private long blocked;
+    private long blocks;
+    private long maxBlocked;
+    private long waited;
+    private long waits;
+
+    void add(final long elapsed, final boolean waiting)
+    {
+      if (waiting)
+      {
+        waits++;
+        waited += elapsed;
+      }
+      else
+      {
+        blocks++;
+        blocked += elapsed;
+        maxBlocked = Math.max(maxBlocked, elapsed);
+      }
+    }
+  }
+}
@@ -4,15 +4,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.BooleanValue;
 import com.sun.jdi.CharType;
 import com.sun.jdi.ClassType;
+import com.sun.jdi.DoubleValue;
 import com.sun.jdi.Field;
+import com.sun.jdi.FloatValue;
 import com.sun.jdi.IncompatibleThreadStateException;
 import com.sun.jdi.LocalVariable;
 import com.sun.jdi.Location;
 import com.sun.jdi.Method;
 import com.sun.jdi.ObjectReference;
 import com.sun.jdi.PrimitiveType;
+import com.sun.jdi.PrimitiveValue;
 import com.sun.jdi.ReferenceType;
 import com.sun.jdi.StackFrame;
 import com.sun.jdi.ThreadReference;
@@ -57,8 +61,8 @@ import edu.buffalo.cse.jive.model.factory.IValueFactory;
 final class EventFactoryAdapter
 {
   private static final String VOID_TYPE_NAME = "VOID";
-  public static final int SMALL_ARRAY_SIZE = 50;
   public static final boolean PROCESS_MULTI_ARRAY = true;
+
   private final IJiveDebugTarget owner;
 
   EventFactoryAdapter(final IJiveDebugTarget owner)
@@ -448,7 +452,21 @@ final class EventFactoryAdapter
       {
         return valueFactory().createPrimitiveValue(escapeStringValue(value.toString()));
       }
-      return valueFactory().createPrimitiveValue(value.toString());
+      // typed values are interned without formatting them as strings
+      if (value instanceof BooleanValue)
+      {
+        return valueFactory().createPrimitiveValue(((BooleanValue) value).value());
+      }
+      if (value instanceof DoubleValue)
+      {
+        return valueFactory().createPrimitiveValue(((DoubleValue) value).value());
+      }
+      if (value instanceof FloatValue)
+      {
+        return valueFactory().createPrimitiveValue(((FloatValue) value).value());
+      }
+      // byte, short, int, and long values
+      return valueFactory().createPrimitiveValue(((PrimitiveValue) value).longValue());
     }
     return null;
   }
@@ -624,12 +642,12 @@ final class EventFactoryAdapter
     return eventFactory().createLineStepEvent(threadId, line);
   }
 
-  IJiveEvent createLockEvent(final ThreadReference thread, final LockOperation lockOperation,
+  IJiveEvent createLockEvent(final LocatableEvent event, final LockOperation lockOperation,
       final IContour lock, final String lockDescription)
   {
-    final IThreadValue threadId = resolveThread(thread);
-    final StackFrame frame = executionState().framePeek(thread.uniqueID());
-    final ILineValue line = executionState().nextLine(threadId, resolveLine(frame));
+    final IThreadValue threadId = resolveThread(event);
+    // the thread is not suspended, so the line is that of the event's location
+    final ILineValue line = resolveLine(event.location());
     return eventFactory().createLockEvent(threadId, line, lockOperation, lock, lockDescription);
   }
 
@@ -1,5 +1,9 @@
 package edu.buffalo.cse.jive.internal.debug.jdi.model;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -27,6 +31,10 @@ import com.sun.jdi.event.LocatableEvent;
 import com.sun.jdi.event.MethodEntryEvent;
 import com.sun.jdi.event.MethodExitEvent;
 import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.MonitorContendedEnterEvent;
+import com.sun.jdi.event.MonitorContendedEnteredEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.MonitorWaitedEvent;
 import com.sun.jdi.event.StepEvent;
 import com.sun.jdi.event.ThreadDeathEvent;
 import com.sun.jdi.event.ThreadStartEvent;
@@ -34,14 +42,19 @@ import com.sun.jdi.event.VMDeathEvent;
 import com.sun.jdi.event.VMDisconnectEvent;
 import com.sun.jdi.event.VMStartEvent;
 
+import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
 import edu.buffalo.cse.jive.debug.jdi.model.IJDIEventHandler;
 import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
 import edu.buffalo.cse.jive.lib.TypeTools;
 
 /**
- * 1) Create the memory mapped to back the event store.
- * 2) Create a flyweight object that maps to a position in the event store and exposed its data.
- * 3) Support get/set methods that read/write events to the store.
+ * Lightweight recorder that packs each JDI event into a fixed-width record of three longs and
+ * appends it to a memory mapped {@code EventStoreLite}. Static and runtime elements (types, methods,
+ * sources, threads, objects, fields, values) are interned by the {@code Registry} and referenced by
+ * identifier, so that no model objects are created while recording.
+ * <p>
+ * Records are read back through {@code EventStoreLite.EventLite} flyweights, which decode the
+ * packed fields on demand.
  * 
  * @author demian
  *
@@ -49,58 +62,125 @@ import edu.buffalo.cse.jive.lib.TypeTools;
 @SuppressWarnings({ "restriction", "unused" })
 public class EventHandlerLite implements IJDIEventHandler
 {
-  private final static String ENCODED_FIELD_READ = "FR....: %016x-%016x, oId.....: %016x, fId...: %016x\n";
-  private final static String ENCODED_FIELD_WRITE = "FW....: %016x-%016x, oId.....: %016x, fId...: %016x, vId...: %016x\n";
-  private final static String ENCODED_LINE_STEP = "STP...: %016x-%016x\n";
-  private final static String ENCODED_METHOD_ENTERED = "MEN...: %016x-%016x, pfrId...: %016x, oId...: %016x\n";
-  private final static String ENCODED_METHOD_EXITING = "MEX...: %016x-%016x, nfrId...: %016x\n";
-  private final static String ENCODED_METHOD_RETURNED = "MRT...: %016x-%016x\n";
-  private final static String ENCODED_OBJECT_NEW = "ON....: %016x-%016x, tId...: %016x, oId...: %016x\n";
-  private final static String ENCODED_TYPE_LOAD = "TL....: %016x-%016x, tId...: %016x\n";
   //
-  private final static long KIND_FIELD_READ = 1L;
-  private final static long KIND_FIELD_WRITE = 2L;
-  private final static long KIND_LINE_STEP = 3L;
-  private final static long KIND_METHOD_CALL = 4L;
-  private final static long KIND_METHOD_ENTERED = 5L;
-  private final static long KIND_METHOD_EXITING = 6L;
-  private final static long KIND_METHOD_RETURNED = 7L;
-  private final static long KIND_OBJECT_NEW = 8L;
-  private final static long KIND_TYPE_LOAD = 9L;
+  static final long KIND_FIELD_READ = 1L;
+  static final long KIND_FIELD_WRITE = 2L;
+  static final long KIND_LINE_STEP = 3L;
+  static final long KIND_METHOD_CALL = 4L;
+  static final long KIND_METHOD_ENTERED = 5L;
+  static final long KIND_METHOD_EXITING = 6L;
+  static final long KIND_METHOD_RETURNED = 7L;
+  static final long KIND_OBJECT_NEW = 8L;
+  static final long KIND_TYPE_LOAD = 9L;
+  // marks a record holding the operands of the preceding event record
+  static final long KIND_OPERANDS = 31L;
   //
-  private final static long ID_NONE = -1L;
+  static final long ID_NONE = -1L;
   // bits per element, LONG #1
-  private static final byte BITS_TYPE_ID = 14; // 16K maximum type definitions per program
-  private static final byte BITS_METHOD_ID = 20; // 1M maximum method definitions per program
-  private static final byte BITS_SOURCE_ID = 14; // 16K maximum source files per program
-  private static final byte BITS_LINE_NO = 16; // 65K maximum lines per file
+  static final byte BITS_TYPE_ID = 14; // 16K maximum type definitions per program
+  static final byte BITS_METHOD_ID = 20; // 1M maximum method definitions per program
+  static final byte BITS_SOURCE_ID = 14; // 16K maximum source files per program
+  static final byte BITS_LINE_NO = 16; // 65K maximum lines per file
   // bits per element, LONG #2
-  private static final byte BITS_KIND = 5; // 32 maximum event kinds
-  private static final byte BITS_THREAD_ID = 14; // 16K maximum threads per execution
-  private static final byte BITS_STACK_DEPTH = 15; // 32K maximum stack depth per stack
-  private static final byte BITS_STACK_ID = 30; // 1B maximum stack frames per execution
+  static final byte BITS_KIND = 5; // 32 maximum event kinds
+  static final byte BITS_THREAD_ID = 14; // 16K maximum threads per execution
+  static final byte BITS_STACK_DEPTH = 15; // 32K maximum stack depth per stack
+  static final byte BITS_STACK_ID = 30; // 1B maximum stack frames per execution
   // bits per element, LONG #3
-  private static final long BITS_OBJECT_ID = 32; // 4.3B maximum objects
+  static final long BITS_OBJECT_ID = 32; // 4.3B maximum objects
   // mask per element, LONG #1
-  private static final long MASK_TYPE_ID = 0x0000000000003FFF; // 14 bits ~ 16K
-  private static final long MASK_METHOD_ID = 0x00000000000FFFFF; // 20 bits ~ 1M
-  private static final long MASK_SOURCE_ID = 0x0000000000003FFF; // 14 bits ~ 16K
-  private static final long MASK_LINE_NO = 0x000000000000FFFF; // 16 bits ~ 65K
+  static final long MASK_TYPE_ID = 0x0000000000003FFF; // 14 bits ~ 16K
+  static final long MASK_METHOD_ID = 0x00000000000FFFFF; // 20 bits ~ 1M
+  static final long MASK_SOURCE_ID = 0x0000000000003FFF; // 14 bits ~ 16K
+  static final long MASK_LINE_NO = 0x000000000000FFFF; // 16 bits ~ 65K
   // mask per element, LONG #2
-  private static final long MASK_KIND = 0x000000000000001F; // 5 bits ~ 32
-  private static final long MASK_THREAD_ID = 0x0000000000003FFF; // 14 bits ~ 16K
-  private static final long MASK_STACK_DEPTH = 0x0000000000007FFF; // 15 bits ~ 32K
-  private static final long MASK_STACK_ID = 0x000000003FFFFFFF; // 30 bits ~ 1B
+  static final long MASK_KIND = 0x000000000000001F; // 5 bits ~ 32
+  static final long MASK_THREAD_ID = 0x0000000000003FFF; // 14 bits ~ 16K
+  static final long MASK_STACK_DEPTH = 0x0000000000007FFF; // 15 bits ~ 32K
+  static final long MASK_STACK_ID = 0x000000003FFFFFFF; // 30 bits ~ 1B
+  // mask of the operand packed with the kind in LONG #2 of an operand record
+  static final long MASK_OPERAND = 0x07FFFFFFFFFFFFFFL; // 59 bits
   // mask per element, LONG #3
-  private static final long MASK_OBJECT_ID = 0x00000000FFFFFFFF; // 32 bits ~ 4.3B
+  static final long MASK_OBJECT_ID = 0x00000000FFFFFFFF; // 32 bits ~ 4.3B
+  // position of the kind in LONG #2
+  private static final int SHIFT_KIND = EventHandlerLite.BITS_STACK_DEPTH
+      + EventHandlerLite.BITS_STACK_ID + EventHandlerLite.BITS_THREAD_ID;
+  // extension of the trace files created by this handler
+  private static final String TRACE_FILE_EXTENSION = ".jel";
+  // trace files created by this session, which are still in use
+  private static final Set<File> TRACE_FILES = new HashSet<File>();
+
+  static long decodeKind(final long encoded)
+  {
+    return (encoded >> EventHandlerLite.SHIFT_KIND) & EventHandlerLite.MASK_KIND;
+  }
+
+  static long decodeOperand(final long encoded)
+  {
+    return encoded & EventHandlerLite.MASK_OPERAND;
+  }
+
+  static long encodeOperandsHeader(final long operand)
+  {
+    return (EventHandlerLite.KIND_OPERANDS << EventHandlerLite.SHIFT_KIND)
+        | (operand & EventHandlerLite.MASK_OPERAND);
+  }
+
+  /**
+   * Creates the trace file of a new handler. Trace files are deleted when the workbench exits, and
+   * files left behind by a previous session that did not exit cleanly are deleted here, since the
+   * state location belongs to a single running workbench.
+   */
+  private static File createTraceFile() throws IOException
+  {
+    final JiveDebugPlugin plugin = JiveDebugPlugin.getDefault();
+    final File result;
+    if (plugin == null)
+    {
+      result = File.createTempFile("jive", EventHandlerLite.TRACE_FILE_EXTENSION);
+    }
+    else
+    {
+      final File location = plugin.getStateLocation().toFile();
+      synchronized (EventHandlerLite.TRACE_FILES)
+      {
+        EventHandlerLite.deleteStaleTraceFiles(location);
+        result = new File(location, "trace-" + System.currentTimeMillis() + "-"
+            + EventHandlerLite.TRACE_FILES.size() + EventHandlerLite.TRACE_FILE_EXTENSION);
+        EventHandlerLite.TRACE_FILES.add(result);
+      }
+    }
+    result.deleteOnExit();
+    return result;
+  }
+
+  private static void deleteStaleTraceFiles(final File location)
+  {
+    final File[] files = location.listFiles();
+    if (files == null)
+    {
+      return;
+    }
+    for (final File file : files)
+    {
+      if (file.getName().endsWith(EventHandlerLite.TRACE_FILE_EXTENSION)
+          && !EventHandlerLite.TRACE_FILES.contains(file) && !file.delete())
+      {
+        JiveDebugPlugin.warn("Cannot delete the stale trace file '" + file + "'.");
+      }
+    }
+  }
+
   //
   private final Registry registry;
+  private final EventStoreLite store;
   private LocatableEvent currentEvent;
   private ThreadReference currentThread;
 
-  public EventHandlerLite(final IJiveDebugTarget owner)
+  public EventHandlerLite(final IJiveDebugTarget owner) throws IOException
   {
     this.registry = new Registry();
+    this.store = new EventStoreLite(EventHandlerLite.createTraceFile());
     this.currentEvent = null;
   }
 
@@ -110,6 +190,57 @@ public class EventHandlerLite implements IJDIEventHandler
     // TODO Auto-generated method stub
   }
 
+  /**
+   * Decodes the event record under the flyweight into a human readable description.
+   */
+  public String describe(final EventStoreLite.EventLite event)
+  {
+    final long[] eventId = new long[]
+    { event.word(0), event.word(1), event.word(2) };
+    final StringBuilder result = new StringBuilder(registry.decode(eventId));
+    if (event.kind() == EventHandlerLite.KIND_FIELD_READ
+        || event.kind() == EventHandlerLite.KIND_FIELD_WRITE)
+    {
+      result.append(registry.decodeObject(event.operand(0)));
+      result.append(registry.decodeField(event.operand(1)));
+      if (event.kind() == EventHandlerLite.KIND_FIELD_WRITE)
+      {
+        result.append(registry.decodeValue(event.operand(2)));
+      }
+    }
+    else if (event.kind() == EventHandlerLite.KIND_OBJECT_NEW)
+    {
+      result.append(registry.decodeType(event.operand(1)));
+      result.append(registry.decodeObject(event.operand(0)));
+    }
+    else if (event.kind() == EventHandlerLite.KIND_TYPE_LOAD)
+    {
+      result.append(registry.decodeType(event.operand(0)));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Events are recorded as they occur, so there is nothing to translate.
+   */
+  @Override
+  public void done()
+  {
+  }
+
+  @Override
+  public void drain()
+  {
+  }
+
+  /**
+   * Store with the event records recorded by this handler.
+   */
+  public EventStoreLite events()
+  {
+    return store;
+  }
+
   /**
    * Notification of a field access in the target VM. Field modifications are not considered field
    * accesses.
@@ -141,11 +272,7 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     final long[] eventId = registry.encode(EventHandlerLite.KIND_FIELD_READ);
     //
-    System.out.format(EventHandlerLite.ENCODED_FIELD_READ, eventId[0], eventId[1], oId, fId);
-    //
-    System.out.println(registry.decode(eventId));
-    System.out.print(registry.decodeObject(oId));
-    System.out.print(registry.decodeField(fId));
+    store.append(eventId, true, oId, fId, EventHandlerLite.ID_NONE);
     //
     this.currentEvent = null;
     this.currentThread = null;
@@ -226,10 +353,7 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     final long[] eventId = registry.encode(EventHandlerLite.KIND_METHOD_ENTERED);
     //
-    System.out.format(EventHandlerLite.ENCODED_METHOD_ENTERED, eventId[0], eventId[1], pfrId,
-        eventId[2]);
-    //
-    System.out.println(registry.decode(eventId));
+    store.append(eventId, true, pfrId, 0, EventHandlerLite.ID_NONE);
     //
     this.currentEvent = null;
     this.currentThread = null;
@@ -263,9 +387,7 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     final long nfrId = registry.methodExiting(thId);
     //
-    System.out.format(EventHandlerLite.ENCODED_METHOD_EXITING, eventId[0], eventId[1], nfrId);
-    //
-    System.out.println(registry.decode(eventId));
+    store.append(eventId, true, nfrId, 0, EventHandlerLite.ID_NONE);
     //
     this.currentEvent = null;
     this.currentThread = null;
@@ -303,17 +425,35 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     final long[] eventId = registry.encode(EventHandlerLite.KIND_FIELD_WRITE);
     //
-    System.out.format(EventHandlerLite.ENCODED_FIELD_WRITE, eventId[0], eventId[1], oId, fId, vId);
-    //
-    System.out.print(registry.decode(eventId));
-    System.out.print(registry.decodeObject(oId));
-    System.out.print(registry.decodeField(fId));
-    System.out.println(registry.decodeValue(vId));
+    store.append(eventId, true, oId, fId, vId);
     //
     this.currentEvent = null;
     this.currentThread = null;
   }
 
+  /**
+   * Monitor events are not recorded by the lightweight recorder.
+   */
+  @Override
+  public void jdiMonitorContendedEnter(final MonitorContendedEnterEvent event)
+  {
+  }
+
+  @Override
+  public void jdiMonitorContendedEntered(final MonitorContendedEnteredEvent event)
+  {
+  }
+
+  @Override
+  public void jdiMonitorWait(final MonitorWaitEvent event)
+  {
+  }
+
+  @Override
+  public void jdiMonitorWaited(final MonitorWaitedEvent event)
+  {
+  }
+
   public void jdiObjectNew(final ObjectReference object)
   {
     if (currentEvent == null)
@@ -327,11 +467,7 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     final long oId = registry.getObjectId(object) & EventHandlerLite.MASK_OBJECT_ID;
     //
-    System.out.format(EventHandlerLite.ENCODED_OBJECT_NEW, eventId[0], eventId[1], tId, oId);
-    //
-    System.out.print(registry.decode(eventId));
-    System.out.print(registry.decodeType(tId));
-    System.out.println(registry.decodeObject(oId));
+    store.append(eventId, true, oId, tId, EventHandlerLite.ID_NONE);
   }
 
   @Override
@@ -348,9 +484,7 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     final long[] eventId = registry.encode(EventHandlerLite.KIND_LINE_STEP);
     //
-    System.out.format(EventHandlerLite.ENCODED_LINE_STEP, eventId[0], eventId[1]);
-    //
-    System.out.println(registry.decode(eventId));
+    store.append(eventId, false, EventHandlerLite.ID_NONE, 0, EventHandlerLite.ID_NONE);
     //
     this.currentEvent = null;
     this.currentThread = null;
@@ -440,10 +574,7 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     final long tId = registry.getTypeId(type) & EventHandlerLite.MASK_OBJECT_ID;
     //
-    System.out.format(EventHandlerLite.ENCODED_TYPE_LOAD, eventId[0], eventId[1], tId);
-    //
-    System.out.print(registry.decode(eventId));
-    System.out.println(registry.decodeType(tId));
+    store.append(eventId, true, tId, 0, EventHandlerLite.ID_NONE);
   }
 
   public void jdiTypeLoadInterface(final InterfaceType type)
@@ -465,6 +596,8 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     this.currentEvent = null;
     this.currentThread = null;
+    // flush the records and release the mapped file
+    store.close();
     //
     this.currentEvent = null;
     this.currentThread = null;
@@ -476,6 +609,8 @@ public class EventHandlerLite implements IJDIEventHandler
     //
     this.currentEvent = null;
     this.currentThread = null;
+    // flush the records and release the mapped file
+    store.close();
     //
     this.currentEvent = null;
     this.currentThread = null;
@@ -495,7 +630,7 @@ public class EventHandlerLite implements IJDIEventHandler
   @Override
   public void reset()
   {
-    // ignored
+    store.reset();
   }
 
   private final class Registry
@@ -0,0 +1,325 @@
+package edu.buffalo.cse.jive.internal.debug.jdi.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+
+/**
+ * Append-only store of fixed-width event records backed by a memory mapped file. Each record is
+ * exactly three longs (24 bytes) using the bit layout defined in {@code EventHandlerLite}. Events
+ * that carry operands (object, field, value, type, or frame identifiers) are followed by a single
+ * operand record whose kind is {@code KIND_OPERANDS}.
+ * <p>
+ * The file is mapped in fixed size segments so that the store is not limited by the 2GB limit of a
+ * single mapped buffer. Records are never materialized as objects-- readers position an
+ * {@code EventLite} flyweight over a record index and decode the packed fields on demand.
+ * <p>
+ * Appends are serialized by the store lock, but reads take no lock. The writer publishes a new
+ * segment array before it writes into a new segment, and publishes the size after the record is
+ * written, so a reader that sees an index below the size also sees its segment and its contents.
+ * Closing the store flushes the segments and closes the file, but keeps the segments mapped so
+ * that the trace can still be read once the target is gone.
+ */
+final class EventStoreLite
+{
+  static final int RECORD_SIZE = 24;
+  // 2M records per segment (48MB)
+  private static final int SEGMENT_RECORDS = 1 << 21;
+  private static final long SEGMENT_SIZE = (long) EventStoreLite.SEGMENT_RECORDS
+      * EventStoreLite.RECORD_SIZE;
+  private static final MappedByteBuffer[] NO_SEGMENTS = new MappedByteBuffer[0];
+  private FileChannel channel;
+  private final File file;
+  private RandomAccessFile raf;
+  // segments mapped so far, replaced by a larger copy when a segment is mapped
+  private volatile MappedByteBuffer[] segments;
+  // number of records in the store
+  private volatile long size;
+
+  EventStoreLite(final File file) throws IOException
+  {
+    this.file = file;
+    this.segments = EventStoreLite.NO_SEGMENTS;
+    this.size = 0;
+    open();
+  }
+
+  /**
+   * Appends an event record and, if the event has operands, its operand record. Both records are
+   * appended atomically with respect to other writers. Returns the index of the event record, or -1
+   * if the store is closed.
+   */
+  synchronized long append(final long[] encoded, final boolean hasOperands, final long op0,
+      final long op1, final long op2)
+  {
+    if (!isOpen())
+    {
+      return -1;
+    }
+    final long index = size;
+    write(index, encoded[0], encoded[1], encoded[2]);
+    if (hasOperands)
+    {
+      write(index + 1, op0, EventHandlerLite.encodeOperandsHeader(op1), op2);
+    }
+    // publish the records
+    size = hasOperands ? index + 2 : index + 1;
+    return index;
+  }
+
+  /**
+   * Flushes the mapped segments and closes the file. The records remain readable.
+   */
+  synchronized void close()
+  {
+    if (!isOpen())
+    {
+      return;
+    }
+    try
+    {
+      for (final MappedByteBuffer segment : segments)
+      {
+        segment.force();
+      }
+      channel.close();
+      raf.close();
+    }
+    catch (final IOException e)
+    {
+      JiveDebugPlugin.warn("Error closing the event store '" + file + "'.", e);
+    }
+  }
+
+  /**
+   * Returns a new flyweight positioned on the given record.
+   */
+  EventLite event(final long index)
+  {
+    return new EventLite().moveTo(index);
+  }
+
+  File file()
+  {
+    return file;
+  }
+
+  /**
+   * Discards all records. The backing file keeps its mapped segments so that they can be reused,
+   * and is opened again if the store was closed.
+   */
+  synchronized void reset()
+  {
+    size = 0;
+    if (isOpen())
+    {
+      return;
+    }
+    try
+    {
+      segments = EventStoreLite.NO_SEGMENTS;
+      open();
+    }
+    catch (final IOException e)
+    {
+      // the store stays closed and refuses appends
+      JiveDebugPlugin.warn("Error reopening the event store '" + file + "'.", e);
+    }
+  }
+
+  long size()
+  {
+    return size;
+  }
+
+  private boolean isOpen()
+  {
+    return channel != null && channel.isOpen();
+  }
+
+  private void open() throws IOException
+  {
+    this.raf = new RandomAccessFile(file, "rw");
+    this.channel = raf.getChannel();
+  }
+
+  private long read(final long index, final int word)
+  {
+    final MappedByteBuffer segment = segments[(int) (index / EventStoreLite.SEGMENT_RECORDS)];
+    return segment.getLong((int) (index % EventStoreLite.SEGMENT_RECORDS)
+        * EventStoreLite.RECORD_SIZE + (word << 3));
+  }
+
+  private MappedByteBuffer segmentFor(final long index) throws IOException
+  {
+    final int segmentId = (int) (index / EventStoreLite.SEGMENT_RECORDS);
+    if (segmentId >= segments.length)
+    {
+      final MappedByteBuffer[] grown = Arrays.copyOf(segments, segmentId + 1);
+      for (int i = segments.length; i < grown.length; i++)
+      {
+        grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * EventStoreLite.SEGMENT_SIZE,
+            EventStoreLite.SEGMENT_SIZE);
+      }
+      segments = grown;
+    }
+    return segments[segmentId];
+  }
+
+  private void write(final long index, final long w0, final long w1, final long w2)
+  {
+    try
+    {
+      final MappedByteBuffer segment = segmentFor(index);
+      final int offset = (int) (index % EventStoreLite.SEGMENT_RECORDS)
+          * EventStoreLite.RECORD_SIZE;
+      segment.putLong(offset, w0);
+      segment.putLong(offset + 8, w1);
+      segment.putLong(offset + 16, w2);
+    }
+    catch (final IOException e)
+    {
+      throw new IllegalStateException("Cannot map the event store '" + file + "'.", e);
+    }
+  }
+
+  /**
+   * Flyweight view of a single event record. A flyweight can be repositioned over any record in
+   * the store, so that traversals do not allocate per event.
+   */
+  final class EventLite
+  {
+    private long index;
+
+    private EventLite()
+    {
+      this.index = -1;
+    }
+
+    public long depth()
+    {
+      return (read(index, 1) >> EventHandlerLite.BITS_STACK_ID)
+          & EventHandlerLite.MASK_STACK_DEPTH;
+    }
+
+    public long frameId()
+    {
+      return read(index, 1) & EventHandlerLite.MASK_STACK_ID;
+    }
+
+    /**
+     * Returns true if this record is followed by an operand record.
+     */
+    public boolean hasOperands()
+    {
+      return index + 1 < size()
+          && EventHandlerLite.decodeKind(read(index + 1, 1)) == EventHandlerLite.KIND_OPERANDS;
+    }
+
+    public long index()
+    {
+      return index;
+    }
+
+    public long kind()
+    {
+      return EventHandlerLite.decodeKind(read(index, 1));
+    }
+
+    public long lineNumber()
+    {
+      return read(index, 0) & EventHandlerLite.MASK_LINE_NO;
+    }
+
+    public long methodId()
+    {
+      return (read(index, 0) >> (EventHandlerLite.BITS_SOURCE_ID + EventHandlerLite.BITS_LINE_NO))
+          & EventHandlerLite.MASK_METHOD_ID;
+    }
+
+    /**
+     * Positions this flyweight on the given record.
+     */
+    public EventLite moveTo(final long index)
+    {
+      if (index < 0 || index >= size())
+      {
+        throw new IndexOutOfBoundsException("Invalid event record: " + index);
+      }
+      this.index = index;
+      return this;
+    }
+
+    /**
+     * Positions this flyweight on the next event record, skipping operand records. Returns false if
+     * there are no more events in the store.
+     */
+    public boolean next()
+    {
+      final long next = hasOperands() ? index + 2 : index + 1;
+      if (next >= size())
+      {
+        return false;
+      }
+      this.index = next;
+      return true;
+    }
+
+    public long objectId()
+    {
+      return read(index, 2) & EventHandlerLite.MASK_OBJECT_ID;
+    }
+
+    /**
+     * Operand at the given position (0, 1, or 2) of the operand record following this event.
+     */
+    public long operand(final int position)
+    {
+      if (!hasOperands())
+      {
+        return EventHandlerLite.ID_NONE;
+      }
+      if (position == 1)
+      {
+        return EventHandlerLite.decodeOperand(read(index + 1, 1));
+      }
+      return read(index + 1, position);
+    }
+
+    public long sourceId()
+    {
+      return (read(index, 0) >> EventHandlerLite.BITS_LINE_NO) & EventHandlerLite.MASK_SOURCE_ID;
+    }
+
+    public long threadId()
+    {
+      return (read(index, 1) >> (EventHandlerLite.BITS_STACK_DEPTH + EventHandlerLite.BITS_STACK_ID))
+          & EventHandlerLite.MASK_THREAD_ID;
+    }
+
+    public long typeId()
+    {
+      return (read(index, 0) >> (EventHandlerLite.BITS_METHOD_ID + EventHandlerLite.BITS_SOURCE_ID + EventHandlerLite.BITS_LINE_NO))
+          & EventHandlerLite.MASK_TYPE_ID;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("EventLite[%d]: %016x-%016x-%016x", index, word(0), word(1), word(2));
+    }
+
+    /**
+     * Raw packed word (0, 1, or 2) of this event record.
+     */
+    public long word(final int position)
+    {
+      return read(index, position);
+    }
+  }
+}
@@ -109,7 +109,13 @@ final class ExecutionState implements IExecutionState
   @Override
   public ILineValue currentLine(final IThreadValue thread)
   {
-    final ILineValue old = threadToLine.get(thread.id());
+    return currentLine(thread.id());
+  }
+
+  @Override
+  public ILineValue currentLine(final long threadId)
+  {
+    final ILineValue old = threadToLine.get(threadId);
     return old == null ? model.valueFactory().createUnavailableLine() : old;
   }
 
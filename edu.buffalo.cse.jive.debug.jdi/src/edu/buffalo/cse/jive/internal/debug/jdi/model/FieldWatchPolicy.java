@@ -0,0 +1,278 @@
+package edu.buffalo.cse.jive.internal.debug.jdi.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.jdi.Field;
+import com.sun.jdi.ReferenceType;
+
+import edu.buffalo.cse.jive.debug.jdi.model.IFieldWatchPolicy;
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IMethodDependenceGraph;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IResolvedCall;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IResolvedData;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IResolvedLazyData;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IResolvedLine;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IResolvedNode;
+import edu.buffalo.cse.jive.model.IStaticModel.IDataNode;
+import edu.buffalo.cse.jive.model.IStaticModel.IMethodNode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNodeRef;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeKind;
+
+/**
+ * Field watch policy backed by the method dependence graphs of the static model. Accessed fields
+ * are identified by the signature of the declaring type and the field name. The fields of a type
+ * that was not analyzed are all watched. An in-model type without dependence graphs is opaque, as
+ * its accesses are unknown, so every field it can access is watched: its own fields, the private
+ * fields of its enclosing and nested types, the package private fields of its package, and all
+ * protected and public fields.
+ * <p>
+ * Reads are watched by default, since handling a read also discovers new objects, completes
+ * pending returns, and records the steps of enum initializers. Choices for a field take precedence
+ * over choices for its type, which take precedence over the choice for all types.
+ */
+final class FieldWatchPolicy implements IFieldWatchPolicy
+{
+  private final Set<String> accessed;
+  private boolean allReads;
+  private final Set<String> analyzed;
+  private final boolean arrayReads;
+  private final List<IFieldWatchListener> listeners;
+  private final IExecutionModel model;
+  private final Set<String> opaque;
+  // read choices by field key and by type name
+  private final Map<String, Boolean> readFields;
+  private final Map<String, Boolean> readTypes;
+
+  /**
+   * Reads of array fields are watched when array events are generated, as array cell changes are
+   * detected on field reads.
+   */
+  FieldWatchPolicy(final IExecutionModel model, final boolean arrayReads)
+  {
+    this.accessed = TypeTools.newHashSet();
+    this.allReads = true;
+    this.analyzed = TypeTools.newHashSet();
+    this.arrayReads = arrayReads;
+    this.listeners = new ArrayList<IFieldWatchListener>();
+    this.model = model;
+    this.opaque = TypeTools.newHashSet();
+    this.readFields = TypeTools.newHashMap();
+    this.readTypes = TypeTools.newHashMap();
+  }
+
+  /**
+   * Package of the type with the given signature, including the trailing separator.
+   */
+  private static String packageOf(final String signature)
+  {
+    return signature.substring(0, signature.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * Signature of the top level type enclosing the type with the given signature.
+   */
+  private static String topLevelOf(final String signature)
+  {
+    final int index = signature.indexOf('$', signature.lastIndexOf('/') + 1);
+    return index == -1 ? signature : signature.substring(0, index) + ";";
+  }
+
+  @Override
+  public synchronized Set<String> analyze(final ReferenceType type)
+  {
+    if (analyzed.contains(type.signature()))
+    {
+      return Collections.emptySet();
+    }
+    final ITypeNode node = model.staticModelFactory().lookupTypeNode(type.signature());
+    if (node == null)
+    {
+      return Collections.emptySet();
+    }
+    analyzed.add(type.signature());
+    final Set<String> keys = TypeTools.newHashSet();
+    boolean resolved = node.methodMembers().isEmpty();
+    for (final IMethodNode method : node.methodMembers().values())
+    {
+      final IMethodDependenceGraph mdg = method.getDependenceGraph();
+      if (mdg != null)
+      {
+        resolved = true;
+        for (final IResolvedLine line : mdg.dependenceMap().values())
+        {
+          collectFields(line.definitions(), keys);
+          collectFields(line.uses(), keys);
+        }
+      }
+    }
+    if (!resolved)
+    {
+      opaque.add(type.signature());
+      return null;
+    }
+    final Set<String> result = TypeTools.newHashSet();
+    for (final String key : keys)
+    {
+      if (accessed.add(key))
+      {
+        result.add(key.substring(0, key.lastIndexOf('.')));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized void subscribe(final IFieldWatchListener listener)
+  {
+    if (!listeners.contains(listener))
+    {
+      listeners.add(listener);
+    }
+  }
+
+  @Override
+  public synchronized void unsubscribe(final IFieldWatchListener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void watchAllReads(final boolean enabled)
+  {
+    synchronized (this)
+    {
+      allReads = enabled;
+      readTypes.clear();
+      readFields.clear();
+    }
+    notifyListeners();
+  }
+
+  @Override
+  public boolean watchesReads(final Field field)
+  {
+    final String typeName = field.declaringType().name();
+    synchronized (this)
+    {
+      final Boolean fieldChoice = readFields.get(typeName + "." + field.name());
+      if (fieldChoice != null)
+      {
+        return fieldChoice;
+      }
+      if (!watchesWrites(field))
+      {
+        return false;
+      }
+      final Boolean typeChoice = readTypes.get(typeName);
+      if (typeChoice != null)
+      {
+        return typeChoice;
+      }
+      return allReads || (arrayReads && field.typeName().endsWith("[]"));
+    }
+  }
+
+  @Override
+  public synchronized boolean watchesWrites(final Field field)
+  {
+    final String signature = field.declaringType().signature();
+    return !analyzed.contains(signature) || accessed.contains(signature + "." + field.name())
+        || accessibleFromOpaque(field, signature);
+  }
+
+  @Override
+  public void watchReads(final String typeName, final String fieldName, final boolean enabled)
+  {
+    synchronized (this)
+    {
+      if (fieldName == null)
+      {
+        readTypes.put(typeName, enabled);
+      }
+      else
+      {
+        readFields.put(typeName + "." + fieldName, enabled);
+      }
+    }
+    notifyListeners();
+  }
+
+  /**
+   * Whether the field may be accessed by an opaque type.
+   */
+  private boolean accessibleFromOpaque(final Field field, final String signature)
+  {
+    if (opaque.isEmpty())
+    {
+      return false;
+    }
+    if (field.isPublic() || field.isProtected())
+    {
+      return true;
+    }
+    // private fields are accessible within the top level type, package private ones within the
+    // package
+    final String scope = field.isPrivate() ? FieldWatchPolicy.topLevelOf(signature)
+        : FieldWatchPolicy.packageOf(signature);
+    for (final String type : opaque)
+    {
+      if (scope.equals(field.isPrivate() ? FieldWatchPolicy.topLevelOf(type) : FieldWatchPolicy
+          .packageOf(type)))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void collectFields(final List<? extends IResolvedNode> nodes, final Set<String> keys)
+  {
+    for (final IResolvedNode node : nodes)
+    {
+      if (node instanceof IResolvedCall)
+      {
+        final IResolvedCall call = (IResolvedCall) node;
+        for (int i = 0; i < call.size(); i++)
+        {
+          collectFields(call.uses(i), keys);
+        }
+      }
+      else if (node instanceof IResolvedLazyData)
+      {
+        final IResolvedLazyData data = (IResolvedLazyData) node;
+        if (data.type() != null)
+        {
+          keys.add(data.type().key() + "." + data.name());
+        }
+      }
+      else if (node instanceof IResolvedData)
+      {
+        final IDataNode data = ((IResolvedData) node).data();
+        if (data != null && data.kind() == NodeKind.NK_FIELD
+            && data.parent() instanceof ITypeNodeRef)
+        {
+          keys.add(((ITypeNodeRef) data.parent()).key() + "." + data.name());
+        }
+      }
+    }
+  }
+
+  private void notifyListeners()
+  {
+    final List<IFieldWatchListener> targets;
+    synchronized (this)
+    {
+      targets = new ArrayList<IFieldWatchListener>(listeners);
+    }
+    for (final IFieldWatchListener listener : targets)
+    {
+      listener.watchPolicyChanged();
+    }
+  }
+}
@@ -0,0 +1,537 @@
+package edu.buffalo.cse.jive.internal.debug.jdi.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.debug.core.ILaunch;
+
+import com.sun.jdi.Field;
+import com.sun.jdi.LongValue;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Value;
+import com.sun.jdi.VirtualMachine;
+
+import edu.buffalo.cse.jive.agent.TraceBuffer;
+import edu.buffalo.cse.jive.agent.TraceSymbols;
+import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
+import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
+import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
+import edu.buffalo.cse.jive.model.IContourModel.IObjectContour;
+import edu.buffalo.cse.jive.model.IEventModel.IEventListener;
+import edu.buffalo.cse.jive.model.IEventModel.IEventProducer;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodTerminatorEvent;
+import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.IModel.ILineValue;
+import edu.buffalo.cse.jive.model.IModel.IThreadValue;
+import edu.buffalo.cse.jive.model.IModel.IValue;
+import edu.buffalo.cse.jive.model.IStaticModel.IMethodNode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNode;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeModifier;
+import edu.buffalo.cse.jive.preferences.PreferencesPlugin;
+
+/**
+ * Producer of the method call and return events recorded by the instrumentation agent running in
+ * the target VM. The agent's probes append records to a memory mapped {@code TraceBuffer}, which
+ * this job drains periodically, translating the records into JIVE events against per-thread
+ * shadow stacks. Types are still loaded through JDI class prepare events, so a round is deferred
+ * while the JIVE event dispatcher has pending events, and calls are only matched to method
+ * contours of types already in the model.
+ * <p>
+ * Instance methods report their receiver on entry, identified by the agent, and run in the
+ * instance contour of their receiver. Objects first seen as receivers are created in the model
+ * with the receiver's type. Constructors cannot report their receiver before it is initialized,
+ * so a constructor call creates a new instance unless it is the delegating call of the
+ * constructor below it, and the instance is bound to the agent's identifier when a constructor
+ * reports it on exit. Threads and instances known only to the agent get identifiers outside the
+ * range of JDI unique identifiers.
+ */
+@SuppressWarnings("restriction")
+final class InstrumentedEventProducer extends Job implements IEventProducer
+{
+  /**
+   * Launch attribute holding the path of the trace buffer shared with the agent.
+   */
+  static final String ATTR_TRACE_BUFFER = JiveDebugPlugin.PLUGIN_ID + ".traceBuffer";
+  private static final String AGENT_JAR = "jiveagent.jar";
+  // identifiers of the instances created from agent records
+  private static final long AGENT_OBJECT_IDS = 1L << 61;
+  // identifiers of the threads known only to the agent
+  private static final long AGENT_THREAD_IDS = 1L << 62;
+  // records moved out of the trace buffer per batch
+  private static final int BATCH_SIZE = 4096;
+  // capacity of the trace buffer, in records (32MB)
+  private static final int BUFFER_CAPACITY = 1 << 20;
+  // delay between drain rounds, in milliseconds
+  private static final long DRAIN_DELAY = 50;
+  private static final String TRACE_FILE_EXTENSION = ".jtb";
+
+  /**
+   * Creates the trace buffer for the launch and returns the VM argument that loads the agent, or
+   * null if the launch does not record through the agent.
+   */
+  @SuppressWarnings("unchecked")
+  static String createAgentArgument(final ILaunch launch)
+  {
+    try
+    {
+      if (!launch.getLaunchConfiguration().getAttribute(
+          PreferencesPlugin.getDefault().getInstrumentedRecordingKey(), false))
+      {
+        return null;
+      }
+      final String agent = FileLocator.toFileURL(
+          JiveDebugPlugin.getDefault().getBundle().getEntry(InstrumentedEventProducer.AGENT_JAR))
+          .getPath();
+      final File file = File.createTempFile("jive",
+          InstrumentedEventProducer.TRACE_FILE_EXTENSION);
+      file.deleteOnExit();
+      TraceBuffer.create(file, InstrumentedEventProducer.BUFFER_CAPACITY);
+      // the symbols file must exist before the reader opens it
+      final File symbols = new File(file.getPath() + ".sym");
+      symbols.createNewFile();
+      symbols.deleteOnExit();
+      launch.setAttribute(InstrumentedEventProducer.ATTR_TRACE_BUFFER, file.getPath());
+      final StringBuffer filters = new StringBuffer();
+      final List<String> exclusions = launch.getLaunchConfiguration().getAttribute(
+          PreferencesPlugin.getDefault().getExclusionFiltersKey(), (List<String>) null);
+      if (exclusions != null)
+      {
+        for (final String filter : exclusions)
+        {
+          filters.append(filters.length() == 0 ? "" : ",").append(filter);
+        }
+      }
+      return "-javaagent:" + agent + "=" + file.getPath() + "|" + filters;
+    }
+    catch (final CoreException e)
+    {
+      JiveDebugPlugin.log(e);
+    }
+    catch (final IOException e)
+    {
+      JiveDebugPlugin.log(e);
+    }
+    return null;
+  }
+
+  private final TraceBuffer buffer;
+  // pending delegating call of each thread, by thread identifier
+  private final Map<Long, Integer> delegations;
+  private final JiveEventDispatcher dispatcher;
+  // instances bound to the agent's receiver identifiers
+  private final Map<Long, Instance> instances;
+  private final ListenerList listenerList = new ListenerList();
+  private final IExecutionModel model;
+  private long objectCount;
+  private final IJiveDebugTarget owner;
+  private final long[] records;
+  private final Map<Long, Stack<Frame>> stacks;
+  private volatile boolean stopped;
+  private final TraceSymbols symbols;
+  private final Map<Long, IThreadValue> threads;
+
+  InstrumentedEventProducer(final IJiveDebugTarget owner, final IExecutionModel model,
+      final JiveEventDispatcher dispatcher, final File file) throws IOException
+  {
+    super("JIVE Instrumented Event Producer");
+    setPriority(Job.SHORT);
+    setSystem(true);
+    this.buffer = TraceBuffer.open(file);
+    this.delegations = new HashMap<Long, Integer>();
+    this.dispatcher = dispatcher;
+    this.instances = new HashMap<Long, Instance>();
+    this.model = model;
+    this.owner = owner;
+    this.records = new long[TraceBuffer.RECORD_LONGS * InstrumentedEventProducer.BATCH_SIZE];
+    this.stacks = new HashMap<Long, Stack<Frame>>();
+    this.symbols = TraceSymbols.forBuffer(file);
+    this.threads = new HashMap<Long, IThreadValue>();
+  }
+
+  /**
+   * Translates all records in the trace buffer and notifies the listeners of the resulting events.
+   * Called by the job and, before thread and system termination events are dispatched, by the JDI
+   * event handler.
+   */
+  synchronized void drain()
+  {
+    int count;
+    while ((count = buffer.read(records)) > 0)
+    {
+      // the definitions referenced by the records were written before the records
+      try
+      {
+        symbols.refresh();
+      }
+      catch (final IOException e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+      // records are discarded while JIVE is not recording
+      if (!owner.isActive())
+      {
+        continue;
+      }
+      final List<IJiveEvent> events = new ArrayList<IJiveEvent>(2 * count);
+      for (int i = 0; i < count; i++)
+      {
+        final int index = TraceBuffer.RECORD_LONGS * i;
+        final long kind = TraceBuffer.decodeKind(records[index]);
+        final int methodId = TraceBuffer.decodeMethodId(records[index]);
+        final IThreadValue thread = resolveThread(records[index + 1]);
+        // a delegating call only applies to the record that follows it
+        final Integer delegation = delegations.remove(thread.id());
+        if (kind == TraceBuffer.KIND_DELEGATE)
+        {
+          delegations.put(thread.id(), methodId);
+        }
+        else if (kind == TraceBuffer.KIND_ENTER)
+        {
+          enter(methodId, TraceBuffer.decodeTypeId(records[index]), records[index + 2],
+              delegation, thread, events);
+        }
+        else
+        {
+          exit(methodId, records[index + 2], thread, events);
+        }
+      }
+      if (!events.isEmpty())
+      {
+        fireEvents(events);
+      }
+    }
+  }
+
+  synchronized void reset()
+  {
+    delegations.clear();
+    instances.clear();
+    stacks.clear();
+    threads.clear();
+  }
+
+  void stop()
+  {
+    stopped = true;
+    cancel();
+  }
+
+  @Override
+  public void subscribe(final IEventListener listener)
+  {
+    listenerList.add(listener);
+  }
+
+  @Override
+  public void unsubscribe(final IEventListener listener)
+  {
+    listenerList.remove(listener);
+  }
+
+  /**
+   * Binds the instance to the agent's identifier of the object, unless either is already bound.
+   */
+  private void bind(final Instance instance, final long receiverId)
+  {
+    if (instance.receiverId == 0 && !instances.containsKey(receiverId))
+    {
+      instance.receiverId = receiverId;
+      instances.put(receiverId, instance);
+    }
+  }
+
+  private Instance createInstance(final ITypeNode type, final IThreadValue thread,
+      final ILineValue line, final List<IJiveEvent> events)
+  {
+    final IObjectContour contour = type.createInstanceContour(
+        InstrumentedEventProducer.AGENT_OBJECT_IDS | ++objectCount);
+    events.add(model.eventFactory().createNewObjectEvent(thread, line, contour));
+    return new Instance(contour, type);
+  }
+
+  private void enter(final int methodId, final int typeId, final long receiverId,
+      final Integer delegation, final IThreadValue thread, final List<IJiveEvent> events)
+  {
+    final String key = symbols.methodKey(methodId);
+    if (key == null)
+    {
+      return;
+    }
+    final Stack<Frame> stack = stack(thread);
+    final IMethodNode node = model.staticModelFactory().lookupMethodNode(key);
+    final ILineValue line = resolveLine(methodId);
+    final IValue caller = stack.isEmpty() ? model.valueFactory().createSystemCaller() : stack
+        .peek().target;
+    // the call is made from the caller's current line
+    final ILineValue callLine = stack.isEmpty() ? line : stack.peek().line;
+    Instance instance = null;
+    IContextContour context = null;
+    if (node != null)
+    {
+      if (receiverId != 0)
+      {
+        instance = resolveInstance(receiverId, typeId, node.parent(), stack, thread, callLine,
+            events);
+      }
+      else if (node.modifiers().contains(NodeModifier.NM_CONSTRUCTOR))
+      {
+        // the delegating call continues the construction of the caller's instance
+        instance = delegation != null && !stack.isEmpty() && stack.peek().instance != null
+            && key.equals(symbols.methodKey(delegation)) ? stack.peek().instance
+            : createInstance(node.parent(), thread, callLine, events);
+      }
+      if (instance == null)
+      {
+        context = model.contourFactory().lookupStaticContour(node.parent().name());
+      }
+      else
+      {
+        context = model.contourFactory().lookupInstanceContour(node.parent().name(),
+            instance.contour.oid());
+      }
+    }
+    final Frame frame;
+    if (context != null)
+    {
+      final IMethodContour method = context.createMethodContour(node, thread);
+      frame = new Frame(methodId, model.valueFactory().createReference(method), line, true,
+          instance);
+    }
+    else
+    {
+      frame = new Frame(methodId, model.valueFactory().createOutOfModelMethodKeyReference(key,
+          key), line, false, instance);
+    }
+    stack.push(frame);
+    events.add(model.eventFactory().createMethodCallEvent(thread, callLine, caller, frame.target));
+    if (frame.inModel)
+    {
+      events.add(model.eventFactory().createMethodEnteredEvent(thread, line));
+    }
+  }
+
+  /**
+   * Pops the frames of the thread up to the frame of the given method. Frames above it belong to
+   * activations whose exit was not recorded (e.g., constructors completing abruptly). A
+   * constructor reports the agent's identifier of its instance on exit.
+   */
+  private void exit(final int methodId, final long receiverId, final IThreadValue thread,
+      final List<IJiveEvent> events)
+  {
+    final Stack<Frame> stack = stack(thread);
+    int index = stack.size() - 1;
+    while (index >= 0 && stack.get(index).methodId != methodId)
+    {
+      index--;
+    }
+    // no matching activation, e.g., the method was entered before recording started
+    if (index < 0)
+    {
+      return;
+    }
+    if (receiverId != 0 && stack.get(index).instance != null)
+    {
+      bind(stack.get(index).instance, receiverId);
+    }
+    while (stack.size() > index)
+    {
+      final Frame frame = stack.pop();
+      final IMethodTerminatorEvent terminator = (IMethodTerminatorEvent) model.eventFactory()
+          .createMethodExitEvent(thread, frame.line);
+      events.add(terminator);
+      if (!stack.isEmpty() && stack.peek().inModel)
+      {
+        events.add(model.eventFactory().createMethodReturnedEvent(terminator));
+      }
+    }
+  }
+
+  private void fireEvents(final List<IJiveEvent> events)
+  {
+    for (final Object listener : listenerList.getListeners())
+    {
+      try
+      {
+        ((IEventListener) listener).eventOccurred(this, events);
+      }
+      catch (final Exception e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+    }
+  }
+
+  /**
+   * Maps the thread identifiers used by the agent to the JDI threads that are still alive.
+   */
+  private void mapThreads()
+  {
+    try
+    {
+      for (final ThreadReference thread : ((VirtualMachine) owner.getJVM()).allThreads())
+      {
+        final Field field = thread.referenceType().fieldByName("tid");
+        final Value value = field == null ? null : thread.getValue(field);
+        if (value instanceof LongValue && !threads.containsKey(((LongValue) value).value()))
+        {
+          threads.put(((LongValue) value).value(),
+              model.valueFactory().createThread(thread.uniqueID(), thread.name()));
+        }
+      }
+    }
+    catch (final RuntimeException e)
+    {
+      // the VM is gone or the thread died in the meantime
+    }
+  }
+
+  /**
+   * Instance bound to the agent's identifier of the receiver. A receiver first seen while an
+   * instance of its type is under construction on the thread is taken to be that instance, as
+   * constructors commonly call methods of the object they construct. Otherwise, the receiver is
+   * created with its own type, or with the method's declaring type if its type is not in the
+   * model.
+   */
+  private Instance resolveInstance(final long receiverId, final int typeId,
+      final ITypeNode declaringType, final Stack<Frame> stack, final IThreadValue thread,
+      final ILineValue line, final List<IJiveEvent> events)
+  {
+    Instance result = instances.get(receiverId);
+    if (result != null)
+    {
+      return result;
+    }
+    final String signature = symbols.typeSignature(typeId);
+    final ITypeNode type = signature == null ? null : model.staticModelFactory().lookupTypeNode(
+        signature);
+    for (int i = stack.size() - 1; i >= 0 && result == null; i--)
+    {
+      final Instance candidate = stack.get(i).instance;
+      if (candidate != null && candidate.receiverId == 0 && candidate.type == type)
+      {
+        result = candidate;
+      }
+    }
+    if (result == null)
+    {
+      result = createInstance(type == null ? declaringType : type, thread, line, events);
+    }
+    bind(result, receiverId);
+    return result;
+  }
+
+  private ILineValue resolveLine(final int methodId)
+  {
+    final String source = symbols.methodSource(methodId);
+    final int line = symbols.methodLine(methodId);
+    if (source != null && line != -1)
+    {
+      return model.staticModelFactory().lookupLine(source.replace('/', File.separatorChar), line);
+    }
+    return model.valueFactory().createUnavailableLine();
+  }
+
+  /**
+   * JIVE thread for the agent's thread identifier. Threads that died before they could be mapped
+   * to their JDI counterparts are identified by the agent's identifier.
+   */
+  private IThreadValue resolveThread(final long threadId)
+  {
+    IThreadValue result = threads.get(threadId);
+    if (result == null)
+    {
+      mapThreads();
+      result = threads.get(threadId);
+    }
+    if (result == null)
+    {
+      final String name = symbols.threadName(threadId);
+      result = model.valueFactory().createThread(
+          InstrumentedEventProducer.AGENT_THREAD_IDS | threadId,
+          name == null ? "Thread-" + threadId : name);
+      threads.put(threadId, result);
+    }
+    return result;
+  }
+
+  private Stack<Frame> stack(final IThreadValue thread)
+  {
+    Stack<Frame> result = stacks.get(thread.id());
+    if (result == null)
+    {
+      result = new Stack<Frame>();
+      stacks.put(thread.id(), result);
+    }
+    return result;
+  }
+
+  @Override
+  protected IStatus run(final IProgressMonitor monitor)
+  {
+    if (stopped)
+    {
+      return Status.OK_STATUS;
+    }
+    // type loads must reach the model before the calls into the loaded types
+    if (dispatcher.isIdle())
+    {
+      drain();
+    }
+    schedule(InstrumentedEventProducer.DRAIN_DELAY);
+    return Status.OK_STATUS;
+  }
+
+  /**
+   * Activation on the shadow stack of a thread.
+   */
+  private static final class Frame
+  {
+    private final boolean inModel;
+    // instance whose method or constructor runs, or null for static and out-of-model methods
+    private final Instance instance;
+    private final ILineValue line;
+    private final int methodId;
+    private final IValue target;
+
+    Frame(final int methodId, final IValue target, final ILineValue line, final boolean inModel,
+        final Instance instance)
+    {
+      this.inModel = inModel;
+      this.instance = instance;
+      this.line = line;
+      this.methodId = methodId;
+      this.target = target;
+    }
+  }
+
+  /**
+   * Instance created from agent records, shared by the frames of its constructor chain.
+   */
+  private static final class Instance
+  {
+    private final IObjectContour contour;
+    // agent's identifier of the object, or zero while the object is under construction
+    private long receiverId;
+    private final ITypeNode type;
+
+    Instance(final IObjectContour contour, final ITypeNode type)
+    {
+      this.contour = contour;
+      this.type = type;
+    }
+  }
+}
@@ -1,10 +1,22 @@
 package edu.buffalo.cse.jive.internal.debug.jdi.model;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import com.sun.jdi.AbsentInformationException;
 import com.sun.jdi.ArrayReference;
@@ -15,6 +27,7 @@ import com.sun.jdi.ObjectReference;
 import com.sun.jdi.ReferenceType;
 import com.sun.jdi.StackFrame;
 import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Value;
 import com.sun.jdi.VirtualMachine;
 import com.sun.jdi.event.AccessWatchpointEvent;
 import com.sun.jdi.event.ClassPrepareEvent;
@@ -22,6 +35,10 @@ import com.sun.jdi.event.ExceptionEvent;
 import com.sun.jdi.event.MethodEntryEvent;
 import com.sun.jdi.event.MethodExitEvent;
 import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.MonitorContendedEnterEvent;
+import com.sun.jdi.event.MonitorContendedEnteredEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.MonitorWaitedEvent;
 import com.sun.jdi.event.StepEvent;
 import com.sun.jdi.event.ThreadDeathEvent;
 import com.sun.jdi.event.VMDeathEvent;
@@ -29,31 +46,76 @@ import com.sun.jdi.event.VMDisconnectEvent;
 import com.sun.jdi.event.VMStartEvent;
 
 import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.jdi.model.IExecutionState;
 import edu.buffalo.cse.jive.debug.jdi.model.IJDIEventHandler;
 import edu.buffalo.cse.jive.debug.jdi.model.IJDIManager;
 import edu.buffalo.cse.jive.debug.jdi.model.IJiveEventDispatcher;
 import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.IEventModel.LockOperation;
 import edu.buffalo.cse.jive.model.IModel.IThreadValue;
+import edu.buffalo.cse.jive.preferences.PreferencesPlugin;
 
 @SuppressWarnings("restriction")
 public class JDIEventHandler implements IJDIEventHandler
 {
+  // threads fetching instances and field values for a snapshot
+  private static final int SNAPSHOT_WORKERS = 4;
+
+  /**
+   * Result of a snapshot worker, or null if the worker was interrupted.
+   */
+  private static <T> T fetched(final Future<T> future)
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    catch (final ExecutionException e)
+    {
+      JiveDebugPlugin.log(e);
+    }
+    return null;
+  }
+
   private boolean override;
   private final IJiveDebugTarget owner;
   private IThreadValue vmThreadId;
   private final JDIEventHandlerDelegate delegate;
+  // last translation submitted to the translator
+  private volatile Future<?> translation;
+  // translates captured events in capture order, or null if events are translated on capture
+  private final ExecutorService translator;
 
   public JDIEventHandler(final IJiveDebugTarget owner)
   {
     this.owner = owner;
     this.override = false;
     this.delegate = new JDIEventHandlerDelegate(this.owner);
+    this.translation = null;
+    this.translator = PreferencesPlugin.getDefault().pipelinedTranslation() ? Executors
+        .newSingleThreadExecutor(new ThreadFactory()
+          {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+              final Thread thread = new Thread(runnable, "JIVE Event Translator");
+              thread.setDaemon(true);
+              return thread;
+            }
+          }) : null;
   }
 
   /**
    * Creates all JIVE model elements that are relevant at the current execution state, assuming that
    * all prior execution states are irrelevant. The snapshot provides the necessary model elements
    * at a particular point in execution in order to be able to trace consistently from that point.
+   * The snapshot runs in a job that reports its progress, and this method returns when the job
+   * completes.
    */
   @Override
   public void createSnapshot(final Object jvm)
@@ -62,171 +124,55 @@ public class JDIEventHandler implements IJDIEventHandler
     {
       return;
     }
-    final VirtualMachine vm = (VirtualMachine) jvm;
-    // allow event processing for now
-    override = true;
-    // initialize the snapshot: system, thread, and run
-    final StackFrame syntheticFrame = Synthetics.createSyntheticFrame(vm);
-    // load the snapshot thread type
-    dispatcher().dispatchSyntheticTypeLoad(syntheticFrame.thread());
-    // call the run() method on the snapshot thread
-    dispatcher().dispatchSyntheticMethodCall(syntheticFrame);
-    // traverse loaded classes to create type load and object new events
-    for (final Object c : vm.allClasses())
-    {
-      // might need to skip array types
-      if (c instanceof ArrayType && !manager().generateArrayEvents())
-      {
-        continue;
-      }
-      // reference type
-      final ReferenceType refType = (ReferenceType) c;
-      // do not load out-of-model types explicitly
-      if (!delegate.isInModel(refType))
-      {
-        continue;
-      }
-      // load the type and its super types
-      delegate.handleTypeLoad(refType, syntheticFrame.thread());
-      // create all instances but do not assign field values
-      for (final Object o : refType.instances(0))
-      {
-        if (o instanceof ArrayReference)
-        {
-          delegate.handleNewArray((ArrayReference) o, syntheticFrame.location(), syntheticFrame);
-        }
-        else
-        {
-          delegate.handleNewObject((ObjectReference) o, syntheticFrame.thread());
-        }
-      }
-    }
-    // traverse loaded classes to create field write events
-    for (final Object c : vm.allClasses())
-    {
-      // skip array types
-      if (c instanceof ArrayType)
-      {
-        continue;
-      }
-      // reference type
-      final ReferenceType refType = (ReferenceType) c;
-      // do not load out-of-model types and their objects
-      if (!delegate.isInModel(refType))
-      {
-        continue;
-      }
-      // static fields (all objects available)
-      for (final Object f : refType.fields())
-      {
-        final Field field = (Field) f;
-        // create an assignment for this field
-        if (field.isStatic() && !field.isSynthetic())
-        {
-          dispatcher().dispatchSyntheticFieldWrite(syntheticFrame.thread(), null, field,
-              refType.getValue(field));
-        }
-      }
-      // instance fields (all objects available)
-      for (final Object o : refType.instances(0))
-      {
-        final ObjectReference object = (ObjectReference) o;
-        for (final Object f : object.referenceType().fields())
-        {
-          final Field field = (Field) f;
-          // create an assignment for this field
-          if (!field.isStatic() && !field.isSynthetic())
-          {
-            dispatcher().dispatchSyntheticFieldWrite(syntheticFrame.thread(), object, field,
-                object.getValue(field));
-          }
-        }
-      }
-      // System.err.println(refType.name() + " processed correctly.");
-    }
-    // return from the run() method on the snapshot thread
-    dispatcher().dispatchSyntheticMethodExit(syntheticFrame);
-    // terminate the snapshot thread
-    dispatcher().dispatchThreadDeath(syntheticFrame.thread());
-    // traverse call stacks
-    final List<ThreadReference> threads = vm.allThreads();
-    Collections.sort(threads, new Comparator<ThreadReference>()
+    final Job job = new Job("Creating JIVE snapshot")
       {
         @Override
-        public int compare(final ThreadReference o1, final ThreadReference o2)
-        {
-          return (int) (o1.uniqueID() - o2.uniqueID());
-        }
-      });
-    for (int i = 0; i < threads.size(); i++)
-    {
-      final ThreadReference thread = threads.get(i);
-      try
-      {
-        // not a thread of interest, move to the next
-        if (!manager().modelFilter().acceptsThread(thread))
-        {
-          continue;
-        }
-        boolean isInModel = false;
-        final Map<StackFrame, Boolean> frameToModel = new LinkedHashMap<StackFrame, Boolean>();
-        // traverse the thread to determine if we have to process it
-        for (int index = thread.frames().size() - 1; index >= 0; index--)
-        {
-          // obtain the frame
-          final StackFrame frame = thread.frames().get(index);
-          // the caller's type reference
-          final ReferenceType callerType = frame.location().method().declaringType();
-          // map the frame to its in-model status
-          frameToModel.put(frame, delegate.isInModel(callerType));
-          // mark as in-model
-          if (delegate.isInModel(callerType))
-          {
-            isInModel = true;
-          }
-        }
-        // if the thread is not in-model, ignore it
-        if (!isInModel)
-        {
-          continue;
-        }
-        // create the thread
-        // dispatcher().dispatchThreadStart(thread);
-        // traverse the thread
-        for (final StackFrame frame : frameToModel.keySet())
+        protected IStatus run(final IProgressMonitor monitor)
         {
-          // create an out-of-model call and continue
-          if (!frameToModel.get(frame))
+          try
           {
-            dispatcher().dispatchOutOfModelCallEvent(frame);
-            continue;
+            snapshot((VirtualMachine) jvm, monitor);
           }
-          // resolve the method
-          delegate.resolveMethod(frame, frame.location().method());
-          // create an in-model call
-          dispatcher().dispatchInModelCallEvent(null, frame);
-          // process local variables
-          if (manager().generateLocalEvents())
+          catch (final RuntimeException e)
           {
-            try
-            {
-              // first visit the arguments
-              delegate.handleLocals(null, frame, frame.location());
-              // then visit the remaining locals
-              delegate.handleLocals(null, frame, frame.location());
-            }
-            catch (final AbsentInformationException e)
-            {
-              // cowardly ignore
-            }
+            JiveDebugPlugin.log(e);
           }
+          return Status.OK_STATUS;
         }
-      }
-      catch (final IncompatibleThreadStateException e)
-      {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
-      }
+      };
+    job.setPriority(Job.SHORT);
+    job.schedule();
+    try
+    {
+      job.join();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void done()
+  {
+    drain();
+    if (translator != null)
+    {
+      translator.shutdown();
+    }
+  }
+
+  /**
+   * Pending translations run on the translator thread in submission order, so the last one
+   * completes after all others.
+   */
+  @Override
+  public void drain()
+  {
+    final Future<?> last = translation;
+    if (last != null)
+    {
+      JDIEventHandler.fetched(last);
     }
   }
 
@@ -239,6 +185,7 @@ public class JDIEventHandler implements IJDIEventHandler
     }
     try
     {
+      drain();
       delegate.handleFieldRead(event, manager().generateLocalEvents());
     }
     catch (final Throwable e)
@@ -256,6 +203,7 @@ public class JDIEventHandler implements IJDIEventHandler
     }
     try
     {
+      drain();
       delegate.handleTypeLoad(event.referenceType(), event.thread());
     }
     catch (final Throwable e)
@@ -273,6 +221,7 @@ public class JDIEventHandler implements IJDIEventHandler
     }
     try
     {
+      drain();
       delegate.handleExceptionThrown(event);
     }
     catch (final Throwable e)
@@ -293,6 +242,7 @@ public class JDIEventHandler implements IJDIEventHandler
       // if (manager().generateLockEvents()) {
       // inspectThreads();
       // }
+      drain();
       delegate.handleMethodEntry(event, manager().generateLocalEvents());
     }
     catch (final Throwable e)
@@ -310,6 +260,7 @@ public class JDIEventHandler implements IJDIEventHandler
     }
     try
     {
+      drain();
       delegate.handleMethodExit(event, manager().generateLocalEvents());
       // if (manager().generateLockEvents()) {
       // inspectThreads();
@@ -330,7 +281,87 @@ public class JDIEventHandler implements IJDIEventHandler
     }
     try
     {
-      delegate.handleFieldWrite(event);
+      if (translator == null || translator.isShutdown() || !delegate.isDeferrableFieldWrite(event))
+      {
+        drain();
+        delegate.handleFieldWrite(event);
+      }
+      else
+      {
+        translate(event);
+      }
+    }
+    catch (final Throwable e)
+    {
+      JiveDebugPlugin.log(e);
+    }
+  }
+
+  @Override
+  public void jdiMonitorContendedEnter(final MonitorContendedEnterEvent event)
+  {
+    if (!override && !owner.isStarted())
+    {
+      return;
+    }
+    try
+    {
+      drain();
+      delegate.handleMonitorEvent(event, event.monitor(), LockOperation.LOCK_WAIT);
+    }
+    catch (final Throwable e)
+    {
+      JiveDebugPlugin.log(e);
+    }
+  }
+
+  @Override
+  public void jdiMonitorContendedEntered(final MonitorContendedEnteredEvent event)
+  {
+    if (!override && !owner.isStarted())
+    {
+      return;
+    }
+    try
+    {
+      drain();
+      delegate.handleMonitorEvent(event, event.monitor(), LockOperation.LOCK_ACQUIRE);
+    }
+    catch (final Throwable e)
+    {
+      JiveDebugPlugin.log(e);
+    }
+  }
+
+  @Override
+  public void jdiMonitorWait(final MonitorWaitEvent event)
+  {
+    if (!override && !owner.isStarted())
+    {
+      return;
+    }
+    try
+    {
+      drain();
+      delegate.handleMonitorEvent(event, event.monitor(), LockOperation.LOCK_RELEASE);
+    }
+    catch (final Throwable e)
+    {
+      JiveDebugPlugin.log(e);
+    }
+  }
+
+  @Override
+  public void jdiMonitorWaited(final MonitorWaitedEvent event)
+  {
+    if (!override && !owner.isStarted())
+    {
+      return;
+    }
+    try
+    {
+      drain();
+      delegate.handleMonitorEvent(event, event.monitor(), LockOperation.LOCK_ACQUIRE);
     }
     catch (final Throwable e)
     {
@@ -347,6 +378,7 @@ public class JDIEventHandler implements IJDIEventHandler
     }
     try
     {
+      drain();
       delegate.handleStep(event, manager().generateLocalEvents());
       // if (manager().generateLockEvents()) {
       // inspectThreads();
@@ -367,8 +399,11 @@ public class JDIEventHandler implements IJDIEventHandler
     }
     try
     {
+      drain();
       if (vmThreadId != null)
       {
+        // calls and returns recorded by the agent precede the thread's death
+        manager().drainInstrumentedEvents();
         delegate.handleThreadDeath(event);
       }
     }
@@ -442,11 +477,293 @@ public class JDIEventHandler implements IJDIEventHandler
     return manager().jiveDispatcher();
   }
 
+  /**
+   * Instances of the type, up to the given maximum (zero for all). The instance count is used to
+   * skip the request for types without instances, and is negative if unknown.
+   */
+  private Callable<List<ObjectReference>> fetchInstances(final ReferenceType refType,
+      final long count, final int maxInstances)
+  {
+    return new Callable<List<ObjectReference>>()
+      {
+        @Override
+        public List<ObjectReference> call()
+        {
+          if (count == 0)
+          {
+            return Collections.emptyList();
+          }
+          try
+          {
+            return refType.instances(maxInstances);
+          }
+          catch (final RuntimeException e)
+          {
+            JiveDebugPlugin.log(e);
+            return Collections.emptyList();
+          }
+        }
+      };
+  }
+
+  /**
+   * Values of the static fields of the type and of the instance fields of its objects, fetched with
+   * one request for the type and one request per object.
+   */
+  private Callable<SnapshotValues> fetchValues(final ReferenceType refType,
+      final List<ObjectReference> objects)
+  {
+    return new Callable<SnapshotValues>()
+      {
+        @Override
+        public SnapshotValues call()
+        {
+          final SnapshotValues result = new SnapshotValues(objects);
+          try
+          {
+            for (final Object f : refType.fields())
+            {
+              final Field field = (Field) f;
+              if (field.isSynthetic())
+              {
+                continue;
+              }
+              if (field.isStatic())
+              {
+                result.staticFields.add(field);
+              }
+              else
+              {
+                result.instanceFields.add(field);
+              }
+            }
+            if (!result.staticFields.isEmpty())
+            {
+              result.staticValues.putAll(refType.getValues(result.staticFields));
+            }
+            for (final ObjectReference object : objects)
+            {
+              result.instanceValues.add(result.instanceFields.isEmpty() ? Collections
+                  .<Field, Value> emptyMap() : object.getValues(result.instanceFields));
+            }
+            return result;
+          }
+          catch (final RuntimeException e)
+          {
+            JiveDebugPlugin.log(e);
+            return null;
+          }
+        }
+      };
+  }
+
   private IJDIManager manager()
   {
     return JiveDebugPlugin.getDefault().jdiManager(owner);
   }
 
+  /**
+   * Creates the snapshot, reporting the progress of the type loads and field values to the
+   * monitor.
+   */
+  private void snapshot(final VirtualMachine vm, final IProgressMonitor monitor)
+  {
+    drain();
+    // allow event processing for now
+    override = true;
+    // initialize the snapshot: system, thread, and run
+    final StackFrame syntheticFrame = Synthetics.createSyntheticFrame(vm);
+    // load the snapshot thread type
+    dispatcher().dispatchSyntheticTypeLoad(syntheticFrame.thread());
+    // call the run() method on the snapshot thread
+    dispatcher().dispatchSyntheticMethodCall(syntheticFrame);
+    // in-model types, in the order of the loaded classes
+    final List<ReferenceType> types = new ArrayList<ReferenceType>();
+    for (final Object c : vm.allClasses())
+    {
+      // might need to skip array types
+      if (c instanceof ArrayType && !manager().generateArrayEvents())
+      {
+        continue;
+      }
+      // do not load out-of-model types explicitly
+      if (delegate.isInModel((ReferenceType) c))
+      {
+        types.add((ReferenceType) c);
+      }
+    }
+    // a single request counts the instances of all types, so that empty types are skipped
+    final long[] counts = vm.canGetInstanceInfo() ? vm.instanceCounts(types) : null;
+    final int maxInstances = PreferencesPlugin.getDefault().snapshotMaxInstances();
+    monitor.beginTask("Creating JIVE snapshot", 2 * types.size());
+    // instances and field values are fetched by the workers, events are dispatched in type order
+    final ExecutorService workers = Executors
+        .newFixedThreadPool(JDIEventHandler.SNAPSHOT_WORKERS);
+    try
+    {
+      final List<Future<List<ObjectReference>>> instances = TypeTools.newArrayList();
+      for (int i = 0; i < types.size(); i++)
+      {
+        instances.add(workers.submit(fetchInstances(types.get(i), counts == null ? -1
+            : counts[i], maxInstances)));
+      }
+      // create type load and object new events, but do not assign field values
+      for (int i = 0; i < types.size(); i++)
+      {
+        final ReferenceType refType = types.get(i);
+        monitor.subTask(refType.name());
+        // load the type and its super types
+        delegate.handleTypeLoad(refType, syntheticFrame.thread());
+        final List<ObjectReference> objects = JDIEventHandler.fetched(instances.get(i));
+        for (int j = 0; objects != null && j < objects.size(); j++)
+        {
+          if (objects.get(j) instanceof ArrayReference)
+          {
+            delegate.handleNewArray((ArrayReference) objects.get(j), syntheticFrame.location(),
+                syntheticFrame);
+          }
+          else
+          {
+            delegate.handleNewObject(objects.get(j), syntheticFrame.thread());
+          }
+        }
+        monitor.worked(1);
+      }
+      final List<Future<SnapshotValues>> values = TypeTools.newArrayList();
+      for (int i = 0; i < types.size(); i++)
+      {
+        final List<ObjectReference> objects = JDIEventHandler.fetched(instances.get(i));
+        // skip array types
+        values.add(types.get(i) instanceof ArrayType || objects == null ? null : workers
+            .submit(fetchValues(types.get(i), objects)));
+      }
+      // create field write events (all objects available)
+      for (int i = 0; i < types.size(); i++)
+      {
+        final SnapshotValues snapshot = values.get(i) == null ? null : JDIEventHandler
+            .fetched(values.get(i));
+        if (snapshot != null)
+        {
+          monitor.subTask(types.get(i).name());
+          // static fields
+          for (final Field field : snapshot.staticFields)
+          {
+            dispatcher().dispatchSyntheticFieldWrite(syntheticFrame.thread(), null, field,
+                snapshot.staticValues.get(field));
+          }
+          // instance fields
+          for (int j = 0; j < snapshot.objects.size(); j++)
+          {
+            final ObjectReference object = snapshot.objects.get(j);
+            for (final Field field : snapshot.instanceFields)
+            {
+              dispatcher().dispatchSyntheticFieldWrite(syntheticFrame.thread(), object, field,
+                  snapshot.instanceValues.get(j).get(field));
+            }
+          }
+        }
+        monitor.worked(1);
+      }
+    }
+    finally
+    {
+      workers.shutdown();
+      monitor.done();
+    }
+    // return from the run() method on the snapshot thread
+    dispatcher().dispatchSyntheticMethodExit(syntheticFrame);
+    // terminate the snapshot thread
+    dispatcher().dispatchThreadDeath(syntheticFrame.thread());
+    // traverse call stacks
+    final List<ThreadReference> threads = vm.allThreads();
+    Collections.sort(threads, new Comparator<ThreadReference>()
+      {
+        @Override
+        public int compare(final ThreadReference o1, final ThreadReference o2)
+        {
+          return (int) (o1.uniqueID() - o2.uniqueID());
+        }
+      });
+    for (int i = 0; i < threads.size(); i++)
+    {
+      final ThreadReference thread = threads.get(i);
+      try
+      {
+        // not a thread of interest, move to the next
+        if (!manager().modelFilter().acceptsThread(thread))
+        {
+          continue;
+        }
+        boolean isInModel = false;
+        final Map<StackFrame, Boolean> frameToModel = new LinkedHashMap<StackFrame, Boolean>();
+        // traverse the thread to determine if we have to process it
+        final List<StackFrame> frames = thread.frames();
+        for (int index = frames.size() - 1; index >= 0; index--)
+        {
+          // obtain the frame
+          final StackFrame frame = frames.get(index);
+          // the caller's type reference
+          final ReferenceType callerType = frame.location().method().declaringType();
+          // map the frame to its in-model status
+          frameToModel.put(frame, delegate.isInModel(callerType));
+          // mark as in-model
+          if (delegate.isInModel(callerType))
+          {
+            isInModel = true;
+          }
+        }
+        // if the thread is not in-model, ignore it
+        if (!isInModel)
+        {
+          continue;
+        }
+        // create the thread
+        // dispatcher().dispatchThreadStart(thread);
+        // frames recorded by a previous window are not created again
+        int recorded = unwindRecordedFrames(thread, frames);
+        // traverse the thread
+        for (final StackFrame frame : frameToModel.keySet())
+        {
+          if (recorded > 0)
+          {
+            recorded--;
+            continue;
+          }
+          // create an out-of-model call and continue
+          if (!frameToModel.get(frame))
+          {
+            dispatcher().dispatchOutOfModelCallEvent(frame);
+            continue;
+          }
+          // resolve the method
+          delegate.resolveMethod(frame, frame.location().method());
+          // create an in-model call
+          dispatcher().dispatchInModelCallEvent(null, frame);
+          // process local variables
+          if (manager().generateLocalEvents())
+          {
+            try
+            {
+              // first visit the arguments
+              delegate.handleLocals(null, frame, frame.location(), false);
+              // then visit all remaining locals, regardless of the line last executed
+              delegate.handleLocals(null, frame, frame.location(), false);
+            }
+            catch (final AbsentInformationException e)
+            {
+              // cowardly ignore
+            }
+          }
+        }
+      }
+      catch (final IncompatibleThreadStateException e)
+      {
+        // TODO Auto-generated catch block
+        e.printStackTrace();
+      }
+    }
+  }
+
   private void systemExit()
   {
     if (!override && !owner.isStarted())
@@ -456,8 +773,10 @@ public class JDIEventHandler implements IJDIEventHandler
     try
     {
       // when the main thread has already died, e.g., due to an exception, vmThreadId is null
+      drain();
       if (owner.model().lookupRoot().terminator() == null)
       {
+        manager().drainInstrumentedEvents();
         dispatcher().dispatchSystemExitEvent();
         vmThreadId = null;
       }
@@ -468,6 +787,48 @@ public class JDIEventHandler implements IJDIEventHandler
     }
   }
 
+  /**
+   * Submits the translation of a field write to the translator. The translation reads only the
+   * data carried by the event and JIVE's own state, so the thread resumes as soon as this returns.
+   */
+  private void translate(final ModificationWatchpointEvent event)
+  {
+    translation = translator.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            delegate.handleDeferredFieldWrite(event);
+          }
+          catch (final Throwable e)
+          {
+            JiveDebugPlugin.log(e);
+          }
+        }
+      });
+  }
+
+  /**
+   * Dispatches the exits of the frames that a previous window recorded on the thread but that are
+   * no longer on its stack, and returns the number of recorded frames that remain, which are the
+   * bottom frames of the stack. No frames are recorded for the threads of the first snapshot.
+   */
+  private int unwindRecordedFrames(final ThreadReference thread, final List<StackFrame> frames)
+  {
+    final IExecutionState state = manager().executionState();
+    int recorded = state.frameCount(thread.uniqueID());
+    while (recorded > 0
+        && (recorded > frames.size() || !state.framePeek(thread.uniqueID()).equals(
+            frames.get(frames.size() - recorded))))
+    {
+      dispatcher().dispatchMethodExitEvent(thread);
+      recorded--;
+    }
+    return recorded;
+  }
+
   // private void inspectThreadLockAcquires(final List<IThreadSummary> summaries) {
   //
   // for (final IThreadSummary summary : summaries) {
@@ -538,4 +899,25 @@ public class JDIEventHandler implements IJDIEventHandler
     vmThreadId = null;
     delegate.reset();
   }
+
+  /**
+   * Field values of a type and its objects, as fetched for a snapshot.
+   */
+  private static final class SnapshotValues
+  {
+    private final List<Field> instanceFields;
+    private final List<Map<Field, Value>> instanceValues;
+    private final List<ObjectReference> objects;
+    private final List<Field> staticFields;
+    private final Map<Field, Value> staticValues;
+
+    private SnapshotValues(final List<ObjectReference> objects)
+    {
+      this.instanceFields = TypeTools.newArrayList();
+      this.instanceValues = TypeTools.newArrayList(objects.size());
+      this.objects = objects;
+      this.staticFields = TypeTools.newArrayList();
+      this.staticValues = TypeTools.newHashMap();
+    }
+  }
 }
@@ -1,5 +1,6 @@
 package edu.buffalo.cse.jive.internal.debug.jdi.model;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -10,6 +11,7 @@ import com.sun.jdi.AbsentInformationException;
 import com.sun.jdi.ArrayReference;
 import com.sun.jdi.ArrayType;
 import com.sun.jdi.ClassNotLoadedException;
+import com.sun.jdi.ClassObjectReference;
 import com.sun.jdi.ClassType;
 import com.sun.jdi.IncompatibleThreadStateException;
 import com.sun.jdi.InterfaceType;
@@ -39,15 +41,22 @@ import edu.buffalo.cse.jive.debug.jdi.model.IJiveEventDispatcher;
 import edu.buffalo.cse.jive.debug.jdi.model.IModelFilter;
 import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
 import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
 import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
 import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
 import edu.buffalo.cse.jive.model.IContourModel.IObjectContour;
 import edu.buffalo.cse.jive.model.IEventModel.IMethodExitEvent;
 import edu.buffalo.cse.jive.model.IEventModel.ITerminatorEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IThreadStartEvent;
+import edu.buffalo.cse.jive.model.IEventModel.LockOperation;
 import edu.buffalo.cse.jive.model.IJiveProject;
 import edu.buffalo.cse.jive.model.IModel.IContourReference;
+import edu.buffalo.cse.jive.model.IModel.ILineValue;
 import edu.buffalo.cse.jive.model.IModel.IThreadValue;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IMethodDependenceGraph;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IResolvedData;
+import edu.buffalo.cse.jive.model.IStaticAnalysis.IResolvedLine;
+import edu.buffalo.cse.jive.model.IStaticModel.IDataNode;
 import edu.buffalo.cse.jive.model.IStaticModel.IMethodNode;
 import edu.buffalo.cse.jive.model.IStaticModel.ITypeNode;
 import edu.buffalo.cse.jive.model.IStaticModel.ITypeNodeRef;
@@ -61,16 +70,21 @@ import edu.buffalo.cse.jive.model.factory.IStaticModelFactory.IStaticModelDelega
 class JDIEventHandlerDelegate
 {
   private static final String VOID_TYPE_NAME = "void";
+  private final ArrayTracker arrays;
   private final IJiveDebugTarget owner;
   private final Set<ReferenceType> noInfoTypes;
   private final Set<ArrayReference> pendingCellWrites;
+  // variables of each method, indexed by their position in the method's variable list
+  private final Map<Method, LocalVariable[]> variableSlots;
   private IStaticModelDelegate adapterForAST;
 
   JDIEventHandlerDelegate(final IJiveDebugTarget owner)
   {
+    this.arrays = new ArrayTracker();
     this.owner = owner;
     this.noInfoTypes = Collections.newSetFromMap(new ConcurrentHashMap<ReferenceType, Boolean>());
     this.pendingCellWrites = TypeTools.newHashSet();
+    this.variableSlots = TypeTools.newHashMap();
   }
 
   private IStaticModelDelegate adapterForAST(final VirtualMachine vm)
@@ -115,6 +129,36 @@ class JDIEventHandlerDelegate
     return owner.model().contourFactory();
   }
 
+  /**
+   * Variables defined on the line just executed by the thread, or null if the method dependence
+   * graph is not available or does not resolve the line.
+   */
+  private Set<IDataNode> definedVariables(final IMethodContour method,
+      final ThreadReference thread)
+  {
+    final IMethodDependenceGraph mdg = method.schema().getDependenceGraph();
+    if (mdg == null)
+    {
+      return null;
+    }
+    final ILineValue line = executionState().currentLine(thread.uniqueID());
+    if (line == owner.model().valueFactory().createUnavailableLine())
+    {
+      return null;
+    }
+    final IResolvedLine rline = mdg.dependenceMap().get(line.lineNumber());
+    if (rline == null)
+    {
+      return null;
+    }
+    final Set<IDataNode> result = TypeTools.newHashSet();
+    for (final IResolvedData rd : rline.definitions())
+    {
+      result.add(rd.data());
+    }
+    return result;
+  }
+
   /**
    * Determines the correct stack frame for the {@code LocatableEvent}. The method associated with
    * the event is normally the top frame (number 0) on the thread's stack. In some situations this
@@ -389,6 +433,15 @@ class JDIEventHandlerDelegate
     return type.name().contains("$") && !type.name().startsWith("$");
   }
 
+  /**
+   * Arrays longer than the limit are not tracked cell by cell. They are not in the model and their
+   * values are described by their type and length.
+   */
+  private boolean isTracked(final ArrayReference array)
+  {
+    return array.length() <= manager().arrayMaxCells();
+  }
+
   private IJDIManager manager()
   {
     return JiveDebugPlugin.getDefault().jdiManager(owner);
@@ -465,10 +518,11 @@ class JDIEventHandlerDelegate
       return;
     }
     final IMethodContour method = executionState().retrieveTopContour(frame.thread().uniqueID());
-    for (final Object o : getVariables(m))
+    final LocalVariable[] slots = variableSlots(m);
+    for (int i = 0; i < slots.length; i++)
     {
-      final LocalVariable var = (LocalVariable) o;
-      IContourMember varInstance = method.lookupMember(m.variables().indexOf(var));
+      final LocalVariable var = slots[i];
+      IContourMember varInstance = method.lookupMember(i);
       if (varInstance == null || !varInstance.schema().name().equals(var.name()))
       {
         varInstance = method.lookupMember(var.name(), loc.lineNumber());
@@ -514,6 +568,22 @@ class JDIEventHandlerDelegate
     return owner.model().staticModelFactory();
   }
 
+  /**
+   * Slot table of the method, computed once. The position of a variable in the table is the index
+   * of its member in the method's contours.
+   */
+  private LocalVariable[] variableSlots(final Method m)
+  {
+    LocalVariable[] result = variableSlots.get(m);
+    if (result == null)
+    {
+      final List<?> variables = getVariables(m);
+      result = variables.toArray(new LocalVariable[variables.size()]);
+      variableSlots.put(m, result);
+    }
+    return result;
+  }
+
   private void visitArguments(final LocatableEvent event, final StackFrame frame)
       throws AbsentInformationException
   {
@@ -559,9 +629,8 @@ class JDIEventHandlerDelegate
   private boolean visitArrayCells(final Location location, final StackFrame frame,
       final ArrayReference arrayRef)
   {
-    // only process small arrays
-    if (!manager().generateArrayEvents() || arrayRef == null
-        || arrayRef.length() > EventFactoryAdapter.SMALL_ARRAY_SIZE)
+    // only process tracked arrays
+    if (!manager().generateArrayEvents() || arrayRef == null || !isTracked(arrayRef))
     {
       return false;
     }
@@ -582,35 +651,42 @@ class JDIEventHandlerDelegate
       final ArrayReference arrayRef, final IContextContour array)
   {
     boolean modified = false;
-    // retrieve the array values
-    final List<Value> values = arrayRef.length() > 0 ? arrayRef.getValues() : null;
-    // check for modifications on each of the array cells
-    for (int i = 0; values != null && i < values.size(); i++)
-    {
-      final IContourMember cell = array.lookupMember(i);
-      final Value cellValue = values.get(i);
-      // recursively process the array reference value
-      if (cellValue instanceof ArrayReference)
+    // cells of inner arrays may change without changing the outer array
+    final boolean nested = ((ArrayType) arrayRef.type()).componentSignature().startsWith("[");
+    // check for modifications on each of the cells of the chunks that changed
+    for (final Map.Entry<Integer, List<Value>> chunk : arrays.changedChunks(arrayRef, nested)
+        .entrySet())
+    {
+      final List<Value> values = chunk.getValue();
+      for (int j = 0; j < values.size(); j++)
       {
-        if (!handleNewArray((ArrayReference) cellValue, location, frame)
-            && EventFactoryAdapter.PROCESS_MULTI_ARRAY)
+        final int i = chunk.getKey() + j;
+        final IContourMember cell = array.lookupMember(i);
+        final Value cellValue = values.get(j);
+        // recursively process the array reference value
+        if (cellValue instanceof ArrayReference)
         {
-          final ArrayReference innerArray = (ArrayReference) cellValue;
-          // retrieve the array reference type
-          final ArrayType at = (ArrayType) cellValue.type();
-          // retrieve the array contour
-          final IContextContour innerContour = contourFactory().lookupInstanceContour(at.name(),
-              innerArray.uniqueID());
-          visitArrayCells(location, frame, innerArray, innerContour);
+          if (!handleNewArray((ArrayReference) cellValue, location, frame)
+              && EventFactoryAdapter.PROCESS_MULTI_ARRAY)
+          {
+            final ArrayReference innerArray = (ArrayReference) cellValue;
+            // retrieve the array reference type
+            final ArrayType at = (ArrayType) cellValue.type();
+            // retrieve the array contour
+            final IContextContour innerContour = contourFactory().lookupInstanceContour(at.name(),
+                innerArray.uniqueID());
+            visitArrayCells(location, frame, innerArray, innerContour);
+          }
+        }
+        // true if the variable was newly observed or its value changed
+        if (executionState().observedVariable(cell, cellValue, frame.thread(),
+            location.lineNumber()))
+        {
+          // dispatch the assignment to the modified cell
+          dispatcher().dispatchArrayCellWriteEvent(location, frame.thread(), array, cell, cellValue,
+              ((ArrayType) arrayRef.type()).componentTypeName());
+          modified = true;
         }
-      }
-      // true if the variable was newly observed or its value changed
-      if (executionState().observedVariable(cell, cellValue, frame.thread(), location.lineNumber()))
-      {
-        // dispatch the assignment to the modified cell
-        dispatcher().dispatchArrayCellWriteEvent(location, frame.thread(), array, cell, cellValue,
-            ((ArrayType) arrayRef.type()).componentTypeName());
-        modified = true;
       }
     }
     return modified;
@@ -624,8 +700,8 @@ class JDIEventHandlerDelegate
    * 
    * @see {@code org.eclipse.jdi.internal.LocalVariableImpl}
    */
-  private void visitLocals(final LocatableEvent event, final StackFrame frame, final Location loc)
-      throws AbsentInformationException
+  private void visitLocals(final LocatableEvent event, final StackFrame frame, final Location loc,
+      final boolean targeted) throws AbsentInformationException
   {
     final Method m = loc.method();
     if (m.isAbstract() || m.isNative() || m.isSynthetic())
@@ -634,26 +710,52 @@ class JDIEventHandlerDelegate
     }
     final ThreadReference thread = frame.thread();
     final IMethodContour method = executionState().retrieveTopContour(thread.uniqueID());
-    for (final Object o : getVariables(m))
+    final LocalVariable[] slots = variableSlots(m);
+    final Set<IDataNode> defined = targeted ? definedVariables(method, thread) : null;
+    // resolve the variable instances and determine which values to capture
+    final IContourMember[] instances = new IContourMember[slots.length];
+    final boolean[] visible = new boolean[slots.length];
+    final List<LocalVariable> captured = new ArrayList<LocalVariable>();
+    for (int i = 0; i < slots.length; i++)
     {
-      final LocalVariable var = (LocalVariable) o;
-      IContourMember varInstance = method.lookupMember(m.variables().indexOf(var));
+      final LocalVariable var = slots[i];
+      IContourMember varInstance = method.lookupMember(i);
       if (varInstance == null || !varInstance.schema().name().equals(var.name()))
       {
         varInstance = method.lookupMember(var.name(), loc.lineNumber());
       }
+      instances[i] = varInstance;
+      /**
+       * A null instance should only happen when a variable is declared final but not initialized in
+       * the source. The compiler apparently creates two instances of the variable with different
+       * scopes. Thus, if the lines don't match here, it's because the variable is not in scope
+       * anyway, so missing this event is fine.
+       */
+      visible[i] = varInstance != null && var.isVisible(frame);
+      if (visible[i] && (defined == null || defined.contains(varInstance.schema())))
+      {
+        captured.add(var);
+      }
+    }
+    // a single request retrieves the values of all captured variables
+    final Map<LocalVariable, Value> values = captured.isEmpty() ? Collections
+        .<LocalVariable, Value> emptyMap() : frame.getValues(captured);
+    for (int i = 0; i < slots.length; i++)
+    {
+      final LocalVariable var = slots[i];
+      final IContourMember varInstance = instances[i];
       if (varInstance == null)
       {
-        /**
-         * This should only happen when a variable is declared final but not initialized in the
-         * source. The compiler apparently creates two instances of the variable with different
-         * scopes. Thus, if the lines don't match here, it's because the variable is not in scope
-         * anyway, so missing this event is fine.
-         */
+        continue;
       }
-      else if (var.isVisible(frame))
+      if (visible[i])
       {
-        final Value val = frame.getValue(var);
+        // variables not defined on the line just executed are not captured
+        if (!values.containsKey(var))
+        {
+          continue;
+        }
+        final Value val = values.get(var);
         // true if the variable was newly observed, its value changed, or it is a multi-array
         if (executionState().observedVariable(varInstance, val, thread, loc.lineNumber()))
         {
@@ -721,6 +823,15 @@ class JDIEventHandlerDelegate
     }
   }
 
+  /**
+   * Translates a field write accepted by {@code isDeferrableFieldWrite} after its thread has
+   * resumed. The field write event is created from the event's own data and JIVE's state only.
+   */
+  void handleDeferredFieldWrite(final ModificationWatchpointEvent event)
+  {
+    dispatcher().dispatchFieldWriteEvent(event);
+  }
+
   void handleExceptionThrown(final ExceptionEvent event) throws IncompatibleThreadStateException
   {
     boolean mapException = false;
@@ -823,7 +934,7 @@ class JDIEventHandlerDelegate
             final ArrayReference arrayRef = (ArrayReference) fieldValue;
             // TODO we may need to conservatively guarantee the existence of the array contour here
             // handleNewArray(arrayRef, event.thread());
-            if (arrayRef != null && arrayRef.length() <= EventFactoryAdapter.SMALL_ARRAY_SIZE)
+            if (arrayRef != null && isTracked(arrayRef))
             {
               pendingCellWrites.add(arrayRef);
             }
@@ -852,6 +963,16 @@ class JDIEventHandlerDelegate
 
   void handleLocals(final LocatableEvent event, final StackFrame frame, final Location location)
       throws AbsentInformationException
+  {
+    handleLocals(event, frame, location, manager().targetedLocals());
+  }
+
+  /**
+   * Targeted capture only retrieves the values of the variables defined on the line just executed,
+   * whenever the method dependence graph resolves that line.
+   */
+  void handleLocals(final LocatableEvent event, final StackFrame frame, final Location location,
+      final boolean targeted) throws AbsentInformationException
   {
     // checks for modified and deleted (out-of-scope) local variables
     if (!location.method().isNative()
@@ -868,7 +989,7 @@ class JDIEventHandlerDelegate
         }
         else
         {
-          visitLocals(event, frame, location);
+          visitLocals(event, frame, location, targeted);
         }
       }
       catch (final AbsentInformationException aie)
@@ -944,14 +1065,40 @@ class JDIEventHandlerDelegate
     dispatcher().dispatchMethodExitEvent(event);
   }
 
+  /**
+   * Monitor events do not suspend their threads, so only the event's location and monitor are
+   * inspected. Operations of threads without recorded executions are ignored. Class objects are
+   * the monitors of static synchronized methods and are described by their static contours.
+   */
+  void handleMonitorEvent(final LocatableEvent event, final ObjectReference monitor,
+      final LockOperation operation)
+  {
+    final ThreadReference thread = event.thread();
+    if (!eventFilter().acceptsThread(thread) || executionState().frameCount(thread.uniqueID()) == 0)
+    {
+      return;
+    }
+    final IContour lock = monitor instanceof ClassObjectReference ? contourFactory()
+        .lookupStaticContour(((ClassObjectReference) monitor).reflectedType().name())
+        : contourFactory().lookupInstanceContour(monitor.type().name(), monitor.uniqueID());
+    final String description = lock != null ? lock.signature() : String.format("%s(id=%d)",
+        monitor.type().name(), monitor.uniqueID());
+    final Location location = event.location();
+    final String site = String.format("%s.%s:%d", location.declaringType().name(), location
+        .method().name(), location.lineNumber());
+    manager().contentionReport().record(thread.uniqueID(), thread.name(), description, site,
+        operation);
+    dispatcher().dispatchLockEvent(event, operation, lock, description);
+  }
+
   boolean handleNewArray(final ArrayReference array, final Location location, final StackFrame frame)
   {
     if (array == null || !manager().generateArrayEvents())
     {
       return false;
     }
-    // handle the instantiation of of small arrays
-    if (array != null && array.length() <= EventFactoryAdapter.SMALL_ARRAY_SIZE
+    // handle the instantiation of tracked arrays
+    if (isTracked(array)
         && contourFactory().lookupInstanceContour(array.type().name(), array.uniqueID()) == null)
     {
       handleTypeLoad((ReferenceType) array.type(), frame.thread());
@@ -1120,6 +1267,37 @@ class JDIEventHandlerDelegate
     }
   }
 
+  /**
+   * Determines whether the field write can be translated after its thread resumes. The decision
+   * uses only the data carried by the event and JIVE's own state, without querying the target VM.
+   * The write must happen in the in-model method on top of JIVE's stack for the thread, with no
+   * exception outstanding, and must assign a primitive or null value to a field of that method's
+   * context. Such a write needs no stack reconciliation, type load, new object, or value
+   * resolution, all of which read the state of the suspended thread.
+   */
+  boolean isDeferrableFieldWrite(final ModificationWatchpointEvent event)
+  {
+    final ThreadReference thread = event.thread();
+    if (event.valueToBe() instanceof ObjectReference || !executionState().containsThread(thread)
+        || executionState().containsException(thread.uniqueID()))
+    {
+      return false;
+    }
+    // JIVE's frames are captured when their methods are entered
+    final StackFrame top = executionState().framePeek(thread.uniqueID());
+    if (top == null || !executionState().containsInModelFrame(top))
+    {
+      return false;
+    }
+    final Method method = top.location().method();
+    if (!method.equals(event.location().method()))
+    {
+      return false;
+    }
+    return event.field().isStatic() ? event.field().declaringType().equals(method.declaringType())
+        : event.object().equals(top.thisObject());
+  }
+
   boolean isInModel(final ReferenceType classType)
   {
     return manager().modelFilter().acceptsType(classType);
@@ -1128,7 +1306,9 @@ class JDIEventHandlerDelegate
   void reset()
   {
     adapterForAST = null;
+    arrays.reset();
     noInfoTypes.clear();
+    variableSlots.clear();
   }
 
   /**
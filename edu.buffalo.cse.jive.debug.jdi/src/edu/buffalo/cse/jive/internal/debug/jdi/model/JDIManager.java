@@ -1,5 +1,7 @@
 package edu.buffalo.cse.jive.internal.debug.jdi.model;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -8,7 +10,9 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.debug.core.ILaunchConfigurationWorkingCopy;
 
 import edu.buffalo.cse.jive.debug.JiveDebugPlugin;
+import edu.buffalo.cse.jive.debug.jdi.model.IContentionReport;
 import edu.buffalo.cse.jive.debug.jdi.model.IExecutionState;
+import edu.buffalo.cse.jive.debug.jdi.model.IFieldWatchPolicy;
 import edu.buffalo.cse.jive.debug.jdi.model.IJDIEventHandler;
 import edu.buffalo.cse.jive.debug.jdi.model.IJDIManager;
 import edu.buffalo.cse.jive.debug.jdi.model.IJiveEventDispatcher;
@@ -20,15 +24,21 @@ import edu.buffalo.cse.jive.preferences.PreferencesPlugin;
 
 final class JDIManager implements IJDIManager
 {
+  private final int arrayMaxCells;
+  private final ContentionReport contentionReport;
   private final JiveEventDispatcher jiveDispatcher;
   private final IModelFilter modelFilter;
   private final IExecutionModel executionModel;
+  private final FieldWatchPolicy fieldWatchPolicy;
   private final boolean generateLocalEvents;
   private final boolean generateArrayEvents;
+  private final boolean generateMonitorEvents;
   private final IJiveDebugTarget owner;
   private final IExecutionState executionState;
   private final IJDIEventHandler jdiHandler;
   private final boolean isManualStart;
+  private final InstrumentedEventProducer producer;
+  private final boolean targetedLocals;
 
   @SuppressWarnings("unchecked")
   JDIManager(final IJiveDebugTarget owner)
@@ -37,6 +47,8 @@ final class JDIManager implements IJDIManager
     boolean localEvents = true;
     boolean arrayEvents = false;
     boolean manualStart = false;
+    boolean liteRecording = false;
+    boolean instrumented = false;
     try
     {
       final ILaunchConfigurationWorkingCopy config = owner.getLaunch().getLaunchConfiguration()
@@ -60,6 +72,10 @@ final class JDIManager implements IJDIManager
           false);
       manualStart = config.getAttribute(PreferencesPlugin.getDefault().getManualStartEventsKey(),
           false);
+      liteRecording = config.getAttribute(PreferencesPlugin.getDefault().getLiteRecordingKey(),
+          false);
+      instrumented = config.getAttribute(PreferencesPlugin.getDefault()
+          .getInstrumentedRecordingKey(), false);
     }
     catch (final CoreException e)
     {
@@ -69,24 +85,116 @@ final class JDIManager implements IJDIManager
     this.owner = owner;
     // adapts JDI events to Jive events
     this.jiveDispatcher = new JiveEventDispatcher(this.owner);
-    this.jdiHandler = new JDIEventHandler(this.owner);
+    this.jdiHandler = createHandler(this.owner, liteRecording);
     // model filter
     this.modelFilter = filter;
     // execution model and its adapter
     this.executionModel = Factory.memoryExecutionModel(jiveDispatcher);
     this.executionModel.traceView().register(owner);
+    this.executionModel.temporalState().setCheckpointInterval(
+        PreferencesPlugin.getDefault().checkpointInterval());
+    this.executionModel.sliceView().setDefUseIndex(PreferencesPlugin.getDefault().defUseIndex());
+    this.executionModel.traceView().setFreezeExceptions(
+        PreferencesPlugin.getDefault().freezeExceptions());
+    this.executionModel.traceView().setRetainedEvents(
+        PreferencesPlugin.getDefault().retainedEvents());
+    // method calls and returns recorded by the instrumentation agent
+    this.producer = createProducer(this.owner, executionModel, jiveDispatcher, instrumented);
     // optional event generation flags
     this.generateLocalEvents = localEvents;
     this.generateArrayEvents = arrayEvents;
+    this.arrayMaxCells = PreferencesPlugin.getDefault().arrayMaxCells();
+    this.generateMonitorEvents = PreferencesPlugin.getDefault().monitorEvents();
+    this.contentionReport = new ContentionReport();
     this.isManualStart = manualStart;
+    // fields watched by the JDI requests
+    this.fieldWatchPolicy = new FieldWatchPolicy(executionModel, arrayEvents);
+    this.targetedLocals = PreferencesPlugin.getDefault().targetedLocals();
     // State management based on JDI event processing
     this.executionState = new ExecutionState(executionModel);
   }
 
+  /**
+   * Lightweight recording appends packed event records to a memory mapped file instead of creating
+   * model events. If the trace file cannot be created, the regular handler is used.
+   */
+  private static IJDIEventHandler createHandler(final IJiveDebugTarget owner,
+      final boolean liteRecording)
+  {
+    if (liteRecording)
+    {
+      try
+      {
+        return new EventHandlerLite(owner);
+      }
+      catch (final IOException e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+    }
+    return new JDIEventHandler(owner);
+  }
+
+  /**
+   * Instrumented recording drains the trace buffer created for the agent when the target VM was
+   * launched. If the agent was not loaded or its buffer cannot be opened, JDI requests are used.
+   */
+  private static InstrumentedEventProducer createProducer(final IJiveDebugTarget owner,
+      final IExecutionModel model, final JiveEventDispatcher dispatcher,
+      final boolean instrumented)
+  {
+    final String path = instrumented ? owner.getLaunch().getAttribute(
+        InstrumentedEventProducer.ATTR_TRACE_BUFFER) : null;
+    if (path != null)
+    {
+      try
+      {
+        final InstrumentedEventProducer result = new InstrumentedEventProducer(owner, model,
+            dispatcher, new File(path));
+        result.subscribe(model);
+        result.schedule();
+        return result;
+      }
+      catch (final IOException e)
+      {
+        JiveDebugPlugin.log(e);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int arrayMaxCells()
+  {
+    return this.arrayMaxCells;
+  }
+
+  @Override
+  public IContentionReport contentionReport()
+  {
+    return this.contentionReport;
+  }
+
   @Override
   public void done()
   {
+    jdiHandler.done();
     jiveDispatcher.unsubscribe(this.executionModel);
+    jiveDispatcher.stop();
+    if (producer != null)
+    {
+      producer.unsubscribe(this.executionModel);
+      producer.stop();
+    }
+  }
+
+  @Override
+  public void drainInstrumentedEvents()
+  {
+    if (producer != null)
+    {
+      producer.drain();
+    }
   }
 
   @Override
@@ -101,12 +209,24 @@ final class JDIManager implements IJDIManager
     return this.executionState;
   }
 
+  @Override
+  public IFieldWatchPolicy fieldWatchPolicy()
+  {
+    return this.fieldWatchPolicy;
+  }
+
   @Override
   public boolean generateLocalEvents()
   {
     return this.generateLocalEvents;
   }
 
+  @Override
+  public boolean generateMonitorEvents()
+  {
+    return this.generateMonitorEvents;
+  }
+
   @Override
   public boolean generateArrayEvents()
   {
@@ -118,6 +238,12 @@ final class JDIManager implements IJDIManager
     return this.owner;
   }
 
+  @Override
+  public boolean isInstrumented()
+  {
+    return this.producer != null;
+  }
+
   @Override
   public boolean isManualStart()
   {
@@ -154,6 +280,8 @@ final class JDIManager implements IJDIManager
   @Override
   public void reset()
   {
+    // events captured before the reset must not reach the new model
+    jdiHandler.drain();
     executionModel.readLock();
     try
     {
@@ -165,10 +293,23 @@ final class JDIManager implements IJDIManager
       jdiHandler.reset();
       // clears event queues
       jiveDispatcher.reset();
+      // discards the blocked and waiting times
+      contentionReport.clear();
+      // clears the shadow stacks of the instrumented threads
+      if (producer != null)
+      {
+        producer.reset();
+      }
     }
     finally
     {
       executionModel.readUnlock();
     }
   }
+
+  @Override
+  public boolean targetedLocals()
+  {
+    return this.targetedLocals;
+  }
 }
\ No newline at end of file
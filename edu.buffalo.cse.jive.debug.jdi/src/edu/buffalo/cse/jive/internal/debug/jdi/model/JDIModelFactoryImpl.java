@@ -3,6 +3,8 @@ package edu.buffalo.cse.jive.internal.debug.jdi.model;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.eclipse.debug.core.ILaunch;
+
 import com.sun.jdi.VirtualMachine;
 
 import edu.buffalo.cse.jive.debug.jdi.model.IJDIManager;
@@ -19,6 +21,12 @@ public enum JDIModelFactoryImpl implements IJDIModelFactory
   private final ConcurrentMap<Object, JDIManager> adapterMap = new ConcurrentHashMap<Object, JDIManager>(
       16, 0.75F, 4);
 
+  @Override
+  public String createAgentArgument(final ILaunch launch)
+  {
+    return InstrumentedEventProducer.createAgentArgument(launch);
+  }
+
   @Override
   public IStaticModelDelegate createStaticModelDelegate(final IExecutionModel model,
       final VirtualMachine vm, final IModelFilter filter)
@@ -1,15 +1,12 @@
 package edu.buffalo.cse.jive.internal.debug.jdi.model;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 
 import com.sun.jdi.AbsentInformationException;
 import com.sun.jdi.Field;
@@ -31,12 +28,16 @@ import edu.buffalo.cse.jive.debug.jdi.model.IJDIManager;
 import edu.buffalo.cse.jive.debug.jdi.model.IJiveEventDispatcher;
 import edu.buffalo.cse.jive.debug.model.IJiveDebugTarget;
 import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
 import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
 import edu.buffalo.cse.jive.model.IEventModel.IEventListener;
 import edu.buffalo.cse.jive.model.IEventModel.IEventProducer;
 import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IMethodCallEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IMethodExitEvent;
+import edu.buffalo.cse.jive.model.IEventModel.LockOperation;
+import edu.buffalo.cse.jive.preferences.PreferenceKeys;
+import edu.buffalo.cse.jive.preferences.PreferencesPlugin;
 
 /**
  * Adapter for converting JDI events to JIVE events. Conversion ensures that the appropriate
@@ -45,9 +46,9 @@ import edu.buffalo.cse.jive.model.IEventModel.IMethodExitEvent;
 @SuppressWarnings("restriction")
 final class JiveEventDispatcher implements IJiveEventDispatcher
 {
-  private final LocalDispatcher dispatcher;
   private final IJiveDebugTarget owner;
   private final EventFactoryAdapter adapter;
+  private final EventPipeline pipeline;
 
   JiveEventDispatcher(final IJiveDebugTarget owner)
   {
@@ -55,7 +56,19 @@ final class JiveEventDispatcher implements IJiveEventDispatcher
     this.owner = owner;
     // event factory adapter
     this.adapter = new EventFactoryAdapter(this.owner);
-    this.dispatcher = new LocalDispatcher();
+    this.pipeline = new EventPipeline(this);
+  }
+
+  @Override
+  public long deliveredBatches()
+  {
+    return pipeline.deliveredBatches();
+  }
+
+  @Override
+  public long deliveredEvents()
+  {
+    return pipeline.deliveredEvents();
   }
 
   @Override
@@ -116,6 +129,13 @@ final class JiveEventDispatcher implements IJiveEventDispatcher
     dispatchEvent(adapter().createTypeLoadEvent(type, thread));
   }
 
+  @Override
+  public void dispatchLockEvent(final LocatableEvent event, final LockOperation operation,
+      final IContour lock, final String lockDescription)
+  {
+    dispatchEvent(adapter().createLockEvent(event, operation, lock, lockDescription));
+  }
+
   /**
    * Creates and dispatches an in-model {@code ReturnEvent} from the given {@code MethodExitEvent}.
    */
@@ -276,16 +296,34 @@ final class JiveEventDispatcher implements IJiveEventDispatcher
     dispatchEvent(adapter().createVarDeleteEvent(event, frame, varInstance));
   }
 
+  @Override
+  public long droppedEvents()
+  {
+    return pipeline.droppedEvents();
+  }
+
+  @Override
+  public void flush()
+  {
+    pipeline.flush();
+  }
+
+  @Override
+  public int queueDepth()
+  {
+    return pipeline.queueDepth();
+  }
+
   @Override
   public void subscribe(final IEventListener listener)
   {
-    dispatcher.subscribe(listener);
+    pipeline.subscribe(listener);
   }
 
   @Override
   public void unsubscribe(final IEventListener listener)
   {
-    dispatcher.unsubscribe(listener);
+    pipeline.unsubscribe(listener);
   }
 
   private EventFactoryAdapter adapter()
@@ -295,7 +333,7 @@ final class JiveEventDispatcher implements IJiveEventDispatcher
 
   private void dispatchEvent(final IJiveEvent event)
   {
-    dispatcher.dispatchEvent(event);
+    pipeline.publish(event);
   }
 
   private IJDIManager manager()
@@ -303,35 +341,189 @@ final class JiveEventDispatcher implements IJiveEventDispatcher
     return JiveDebugPlugin.getDefault().jdiManager(owner);
   }
 
+  /**
+   * Determines whether all events dispatched so far have been delivered to the listeners.
+   */
+  boolean isIdle()
+  {
+    return pipeline.isIdle();
+  }
+
   void reset()
   {
-    dispatcher.queue.clear();
-    dispatcher.dispatcherDelegate.queue.clear();
+    pipeline.reset();
   }
 
-  private final static class DispatcherDelegate extends Job
+  /**
+   * Stops the consumer thread. Events not yet delivered are discarded.
+   */
+  void stop()
   {
+    pipeline.stop();
+  }
+
+  /**
+   * Delivers JIVE events to the listeners in batches, on a dedicated consumer thread, so as to
+   * avoid suspending the virtual machine while events are being processed by the listeners.
+   * Dispatched events are published to a ring buffer, normally by the JDI event thread alone;
+   * producers are serialized by an uncontended monitor and never wait for the consumer unless the
+   * ring is full. The consumer delivers a batch as soon as it is full or the oldest pending event
+   * is older than the flush latency.
+   * <p>
+   * When the ring is full, the backpressure policy either blocks the producer until the consumer
+   * frees a slot, spills the events to an unbounded overflow queue delivered after the ring, or
+   * drops and counts the events. Dropped events leave the model inconsistent, so dropping is only
+   * meant for measuring the cost of event generation.
+   */
+  private final static class EventPipeline implements Runnable
+  {
+    // number of slots in the ring, a power of two
+    private static final int CAPACITY = 8192;
+    private static final int MASK = EventPipeline.CAPACITY - 1;
+    // producer wait while the ring is full, in nanoseconds
+    private static final long FULL_WAIT = 50000L;
+    private final int batchSize;
+    private final Thread consumer;
+    private volatile long deliveredBatches;
+    private volatile long deliveredEvents;
+    // events with a lower sequence number are discarded by the consumer
+    private volatile long discardBelow;
+    private final boolean dropWhenFull;
+    private volatile long droppedEvents;
+    private final long flushLatency;
+    // sequence number of the next event to consume
+    private final AtomicLong head;
+    // events published and not yet delivered or discarded, including those being delivered
+    private final AtomicLong inFlight;
     /**
      * A list of listeners to be notified when {@code JiveEvent}s occur.
      */
-    private final ListenerList listenerList = new ListenerList();
-    private final BlockingQueue<List<IJiveEvent>> queue = new ArrayBlockingQueue<List<IJiveEvent>>(
-        4096);
-    private final IEventProducer owner;
+    private final ListenerList listenerList;
+    private final Object producerLock;
+    private final LinkedList<IJiveEvent> overflow;
+    private final IJiveEvent[] ring;
+    private volatile boolean running;
+    private final Object signal;
+    private final IEventProducer source;
+    private final boolean spillWhenFull;
+    // sequence number of the next event to publish
+    private final AtomicLong tail;
+    private volatile boolean waiting;
+
+    EventPipeline(final IEventProducer source)
+    {
+      final PreferencesPlugin preferences = PreferencesPlugin.getDefault();
+      this.batchSize = Math.max(1, preferences.dispatchBatchSize());
+      this.flushLatency = Math.max(0, preferences.dispatchFlushLatency()) * 1000000L;
+      this.head = new AtomicLong();
+      this.inFlight = new AtomicLong();
+      this.listenerList = new ListenerList();
+      this.producerLock = new Object();
+      this.overflow = new LinkedList<IJiveEvent>();
+      this.ring = new IJiveEvent[EventPipeline.CAPACITY];
+      this.running = true;
+      this.signal = new Object();
+      this.source = source;
+      this.dropWhenFull = PreferenceKeys.PREF_DISPATCH_DROP.equals(preferences
+          .dispatchBackpressure());
+      this.spillWhenFull = PreferenceKeys.PREF_DISPATCH_SPILL.equals(preferences
+          .dispatchBackpressure());
+      this.tail = new AtomicLong();
+      this.consumer = new Thread(this, "JIVE Event Dispatcher");
+      this.consumer.setDaemon(true);
+      this.consumer.start();
+    }
 
-    DispatcherDelegate(final IEventProducer owner)
+    @Override
+    public void run()
     {
-      super("JIVE Event Dispatcher");
-      setPriority(Job.LONG);
-      setSystem(true);
-      this.owner = owner;
+      // time at which the consumer first saw the pending events, while waiting for a full batch
+      long pendingSince = -1;
+      while (running)
+      {
+        final long available = tail.get() - head.get();
+        if (available == 0)
+        {
+          pendingSince = -1;
+          final List<IJiveEvent> batch = pollOverflow();
+          if (batch.isEmpty())
+          {
+            await(0);
+          }
+          else
+          {
+            deliver(batch, batch.size());
+          }
+          continue;
+        }
+        if (available < batchSize && flushLatency > 0)
+        {
+          final long now = System.nanoTime();
+          if (pendingSince == -1)
+          {
+            pendingSince = now;
+          }
+          if (now - pendingSince < flushLatency)
+          {
+            await(flushLatency - (now - pendingSince));
+            continue;
+          }
+        }
+        pendingSince = -1;
+        final int count = (int) Math.min(available, batchSize);
+        deliver(pollRing(count), count);
+      }
+    }
+
+    private void await(final long nanos)
+    {
+      synchronized (signal)
+      {
+        waiting = true;
+        try
+        {
+          // re-check after publishing the flag, so that a signal is not missed
+          final long available = tail.get() - head.get();
+          final boolean idle = available == 0 && overflowSize() == 0;
+          if (running && (nanos == 0 ? idle : available < batchSize))
+          {
+            signal.wait(nanos / 1000000L, (int) (nanos % 1000000L));
+          }
+        }
+        catch (final InterruptedException e)
+        {
+          // re-check the pipeline state
+        }
+        finally
+        {
+          waiting = false;
+        }
+      }
     }
 
     /**
-     * Notifies all the listeners of the given event.
-     * 
-     * @param event
-     *          event to dispatch
+     * Delivers the batch, which holds the events consumed from the pipeline other than those
+     * discarded.
+     */
+    private void deliver(final List<IJiveEvent> batch, final int consumed)
+    {
+      try
+      {
+        if (!batch.isEmpty())
+        {
+          fireEvents(batch);
+          deliveredBatches++;
+          deliveredEvents += batch.size();
+        }
+      }
+      finally
+      {
+        inFlight.addAndGet(-consumed);
+      }
+    }
+
+    /**
+     * Notifies all the listeners of the given events.
      */
     private void fireEvents(final List<IJiveEvent> events)
     {
@@ -339,7 +531,7 @@ final class JiveEventDispatcher implements IJiveEventDispatcher
       {
         try
         {
-          ((IEventListener) listener).eventOccurred(owner, events);
+          ((IEventListener) listener).eventOccurred(source, events);
         }
         catch (final Exception e)
         {
@@ -348,106 +540,178 @@ final class JiveEventDispatcher implements IJiveEventDispatcher
       }
     }
 
-    @Override
-    protected IStatus run(final IProgressMonitor monitor)
+    private int overflowSize()
     {
-      while (queue.peek() != null)
+      synchronized (overflow)
       {
-        fireEvents(queue.poll());
+        return overflow.size();
       }
-      return Status.OK_STATUS;
     }
 
-    void dispatchEvents(final List<IJiveEvent> events)
+    /**
+     * Removes the next batch of spilled events, which are only consumed once the ring is empty.
+     */
+    private List<IJiveEvent> pollOverflow()
     {
-      try
+      final List<IJiveEvent> result = new ArrayList<IJiveEvent>();
+      synchronized (overflow)
       {
-        queue.put(events);
-        schedule();
+        while (!overflow.isEmpty() && result.size() < batchSize)
+        {
+          result.add(overflow.removeFirst());
+        }
       }
-      catch (final Exception e)
+      return result;
+    }
+
+    /**
+     * Removes the next events from the ring and releases their slots to the producer.
+     */
+    private List<IJiveEvent> pollRing(final int count)
+    {
+      final List<IJiveEvent> result = new ArrayList<IJiveEvent>(count);
+      final long first = head.get();
+      final long discard = discardBelow;
+      for (long seq = first; seq < first + count; seq++)
       {
-        JiveDebugPlugin.log(e);
+        final int slot = (int) seq & EventPipeline.MASK;
+        if (seq >= discard)
+        {
+          result.add(ring[slot]);
+        }
+        ring[slot] = null;
       }
+      head.set(first + count);
+      return result;
     }
 
-    void subscribe(final IEventListener listener)
+    private void signal()
     {
-      listenerList.add(listener);
+      synchronized (signal)
+      {
+        signal.notifyAll();
+      }
     }
 
-    void unsubscribe(final IEventListener listener)
+    long deliveredBatches()
     {
-      listenerList.remove(listener);
+      return deliveredBatches;
     }
-  }
 
-  /**
-   * A job for notifying listeners of JIVE events. The dispatcher operates periodically on a
-   * separate thread so as to avoid suspending the virtual machine while JIVE events are being
-   * dispatched to the listeners.
-   */
-  private final static class LocalDispatcher extends Job implements IEventProducer
-  {
-    private final DispatcherDelegate dispatcherDelegate;
-    /**
-     * A blocking concurrent queue used to store newly created events. The
-     * {@code JiveEventDispatcher} periodically removes events from the queue and notifies
-     * listeners.
-     */
-    private final BlockingQueue<IJiveEvent> queue = new ArrayBlockingQueue<IJiveEvent>(128);
+    long deliveredEvents()
+    {
+      return deliveredEvents;
+    }
 
-    LocalDispatcher()
+    long droppedEvents()
     {
-      super("JIVE Event Queue");
-      setPriority(Job.SHORT);
-      setSystem(true);
-      dispatcherDelegate = new DispatcherDelegate(this);
+      return droppedEvents;
     }
 
-    @Override
-    public void subscribe(final IEventListener listener)
+    /**
+     * Waits until the events published so far are delivered to the listeners, or the pipeline
+     * stops.
+     */
+    void flush()
     {
-      dispatcherDelegate.subscribe(listener);
+      while (running && !isIdle())
+      {
+        signal();
+        LockSupport.parkNanos(EventPipeline.FULL_WAIT);
+      }
     }
 
-    @Override
-    public void unsubscribe(final IEventListener listener)
+    /**
+     * The pipeline is idle once every event published is delivered or discarded. A single counter
+     * avoids reading the ring, the overflow queue and the consumer state at different times.
+     */
+    boolean isIdle()
     {
-      dispatcherDelegate.unsubscribe(listener);
+      return inFlight.get() == 0;
     }
 
-    @Override
-    protected IStatus run(final IProgressMonitor monitor)
+    /**
+     * Publishes the event to the consumer, applying the backpressure policy if the ring is full.
+     */
+    void publish(final IJiveEvent event)
     {
-      if (queue.peek() != null)
+      long depth;
+      synchronized (producerLock)
+      {
+        final long seq = tail.get();
+        depth = seq - head.get();
+        // once spilled, events follow the overflow queue until it is consumed
+        if (depth >= EventPipeline.CAPACITY || (spillWhenFull && overflowSize() > 0))
+        {
+          if (dropWhenFull)
+          {
+            droppedEvents++;
+            return;
+          }
+          if (spillWhenFull)
+          {
+            inFlight.incrementAndGet();
+            synchronized (overflow)
+            {
+              overflow.addLast(event);
+            }
+            signal();
+            return;
+          }
+          // block until the consumer frees a slot
+          while (running && tail.get() - head.get() >= EventPipeline.CAPACITY)
+          {
+            signal();
+            LockSupport.parkNanos(EventPipeline.FULL_WAIT);
+          }
+        }
+        inFlight.incrementAndGet();
+        ring[(int) seq & EventPipeline.MASK] = event;
+        tail.set(seq + 1);
+        depth = seq + 1 - head.get();
+      }
+      // wake the consumer when it waits for the first event or for a full batch
+      if (waiting && (depth == 1 || depth >= batchSize))
       {
-        final List<IJiveEvent> events = new LinkedList<IJiveEvent>();
-        queue.drainTo(events);
-        // bulk dispatch
-        dispatcherDelegate.dispatchEvents(events);
+        signal();
       }
-      return Status.OK_STATUS;
+    }
+
+    int queueDepth()
+    {
+      return (int) (tail.get() - head.get()) + overflowSize();
     }
 
     /**
-     * Dispatches the event to all event listeners registered with the dispatcher. Listeners are
-     * notified of events on a separate thread.
-     * 
-     * @param event
-     *          event to dispatch
+     * Discards the events not yet delivered.
      */
-    void dispatchEvent(final IJiveEvent event)
+    void reset()
     {
-      try
-      {
-        queue.put(event);
-        schedule();
-      }
-      catch (final Exception e)
+      synchronized (producerLock)
       {
-        JiveDebugPlugin.log(e);
+        discardBelow = tail.get();
+        synchronized (overflow)
+        {
+          inFlight.addAndGet(-overflow.size());
+          overflow.clear();
+        }
       }
     }
+
+    void stop()
+    {
+      running = false;
+      signal();
+    }
+
+    void subscribe(final IEventListener listener)
+    {
+      listenerList.add(listener);
+    }
+
+    void unsubscribe(final IEventListener listener)
+    {
+      listenerList.remove(listener);
+    }
   }
-}
\ No newline at end of file
+}
@@ -4,9 +4,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 
+import edu.buffalo.cse.jive.exporter.trace.BinaryExporter;
 import edu.buffalo.cse.jive.exporter.trace.JDBCExporter;
 import edu.buffalo.cse.jive.exporter.trace.StringExporter;
 import edu.buffalo.cse.jive.exporter.trace.XMLExporter;
+import edu.buffalo.cse.jive.lib.BinaryTraceTools;
 import edu.buffalo.cse.jive.model.IExecutionModel;
 import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
 
@@ -33,8 +35,12 @@ public class JiveTraceExporter implements IJiveExporter
       {
         return new JDBCExporter(model).export(path);
       }
-      final boolean isXML = path.endsWith("xml") || path.equals("copyToXML");
       final List<? extends IJiveEvent> events = model.traceView().events();
+      if (path.endsWith(BinaryTraceTools.EXTENSION))
+      {
+        return BinaryExporter.export(events, path);
+      }
+      final boolean isXML = path.endsWith("xml") || path.equals("copyToXML");
       String data = isXML ? XMLExporter.export(events, filter) : StringExporter.export(events,
           filter);
       if (path.equals("copyToXML") || path.equals("copyToCSV"))
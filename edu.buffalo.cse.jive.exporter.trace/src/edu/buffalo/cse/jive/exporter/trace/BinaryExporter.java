@@ -0,0 +1,65 @@
+package edu.buffalo.cse.jive.exporter.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import edu.buffalo.cse.jive.exporter.JiveExporterPlugin;
+import edu.buffalo.cse.jive.lib.BinaryTraceEncoder;
+import edu.buffalo.cse.jive.lib.BinaryTraceTools.TraceWriter;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+
+/**
+ * Exports the trace in the compact binary format, which the binary trace importer reads back into
+ * a model. Events refer to the calls, threads, and contours of earlier events, so the trace is
+ * always exported as a whole.
+ */
+public class BinaryExporter
+{
+  public static boolean export(final List<? extends IJiveEvent> events, final String path)
+  {
+    final File file = new File(path);
+    TraceWriter writer = null;
+    boolean result = false;
+    try
+    {
+      writer = new TraceWriter(file);
+      final BinaryTraceEncoder encoder = new BinaryTraceEncoder(writer);
+      for (final IJiveEvent event : events)
+      {
+        encoder.write(event);
+      }
+      result = true;
+    }
+    catch (final IOException e)
+    {
+      JiveExporterPlugin.log(e);
+    }
+    catch (final IllegalArgumentException e)
+    {
+      // events the binary format cannot represent, e.g., real-time events
+      JiveExporterPlugin.log(e);
+    }
+    finally
+    {
+      if (writer != null)
+      {
+        try
+        {
+          writer.close();
+        }
+        catch (final IOException e)
+        {
+          JiveExporterPlugin.log(e);
+          result = false;
+        }
+      }
+    }
+    // do not leave a partial trace behind
+    if (!result && file.exists() && !file.delete())
+    {
+      JiveExporterPlugin.log("Could not delete the incomplete binary trace '" + path + "'.");
+    }
+    return result;
+  }
+}
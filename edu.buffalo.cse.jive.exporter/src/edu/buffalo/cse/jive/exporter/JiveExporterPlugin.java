@@ -7,13 +7,19 @@ import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtension;
 import org.eclipse.core.runtime.IExtensionPoint;
 import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.InvalidRegistryObjectException;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.RegistryFactory;
+import org.eclipse.core.runtime.Status;
 import org.osgi.framework.BundleContext;
 
 public class JiveExporterPlugin extends Plugin
 {
+  /**
+   * The unique identifier of the plug-in.
+   */
+  public static final String PLUGIN_ID = "edu.buffalo.cse.jive.exporter"; //$NON-NLS-1$
   private static JiveExporterPlugin plugin;
   private final Map<String, IJiveExporter> CMDS = new HashMap<String, IJiveExporter>();
 
@@ -31,6 +37,42 @@ public class JiveExporterPlugin extends Plugin
     return JiveExporterPlugin.plugin;
   }
 
+  /**
+   * Logs a status object to the Eclipse error log.
+   * 
+   * @param status
+   *          the status object to record
+   */
+  public static void log(final IStatus status)
+  {
+    JiveExporterPlugin.getDefault().getLog().log(status);
+  }
+
+  /**
+   * Logs a string to the Eclipse error log as an <code>IStatus.ERROR</code> object.
+   * 
+   * @param message
+   *          the message to be recorded
+   */
+  public static void log(final String message)
+  {
+    JiveExporterPlugin.log(new Status(IStatus.ERROR, JiveExporterPlugin.PLUGIN_ID, IStatus.ERROR,
+        message, null));
+  }
+
+  /**
+   * Logs the message associated with a throwable object to the Eclipse error log as an
+   * <code>IStatus.ERROR</code> object.
+   * 
+   * @param e
+   *          the throwable object whose message is recorded
+   */
+  public static void log(final Throwable e)
+  {
+    JiveExporterPlugin.log(new Status(IStatus.ERROR, JiveExporterPlugin.PLUGIN_ID, IStatus.ERROR,
+        e.getMessage(), e));
+  }
+
   public void registerJiveExporter(IJiveExporter exporter)
   {
     if (exporter != null)
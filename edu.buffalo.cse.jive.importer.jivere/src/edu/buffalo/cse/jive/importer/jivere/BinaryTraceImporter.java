@@ -0,0 +1,46 @@
+package edu.buffalo.cse.jive.importer.jivere;
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.buffalo.cse.jive.launch.offline.IOfflineImporter;
+import edu.buffalo.cse.jive.launch.offline.OfflineImporterException;
+import edu.buffalo.cse.jive.lib.BinaryTraceDecoder;
+import edu.buffalo.cse.jive.lib.BinaryTraceTools.TraceReader;
+import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.factory.IStaticModelFactory.IStaticModelDelegate;
+
+/**
+ * Imports a trace exported in the compact binary format. The trace carries the static model nodes
+ * its events refer to, so the upstream delegate is not consulted.
+ */
+public class BinaryTraceImporter implements IOfflineImporter
+{
+  private static final String PROTO_JIVEBIN = "jivebin://";
+
+  @Override
+  public void process(final String url, final IExecutionModel model,
+      final IStaticModelDelegate upstream) throws OfflineImporterException
+  {
+    final long start = System.nanoTime();
+    try
+    {
+      final TraceReader reader = new TraceReader(new File(
+          url.substring(BinaryTraceImporter.PROTO_JIVEBIN.length())));
+      try
+      {
+        new BinaryTraceDecoder(model).decode(reader);
+      }
+      finally
+      {
+        reader.close();
+      }
+    }
+    catch (final IOException e)
+    {
+      throw new OfflineImporterException(e.getMessage(), e);
+    }
+    System.err.println("Imported the binary trace in " + ((System.nanoTime() - start) / 1000000)
+        + "ms.");
+  }
+}
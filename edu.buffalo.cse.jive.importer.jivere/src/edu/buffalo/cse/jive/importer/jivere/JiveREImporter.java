@@ -47,9 +47,12 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
   private final static String INIT_ESCAPED = "<init>";
   private static final String PROTO_JIVERE = "jivere://";
   private EventDAO event;
-  private List<EventDAO> eventList;
   private String fileName;
+  // events created but not yet pushed to the model
+  private List<IJiveEvent> jiveEvents;
   private IExecutionModel model;
+  // method call stacks of all threads
+  private Map<IThreadValue, Stack<IMethodContour>> stacks;
   private IStaticModelDelegate staticModelDelegate;
 
   @Override
@@ -61,196 +64,6 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
     }
   }
 
-  public void createEvents()
-  {
-    // result in trace log order
-    final List<IJiveEvent> jiveEvents = TypeTools.newArrayList(eventList.size());
-    // keep track of all stacks
-    final Map<IThreadValue, Stack<IMethodContour>> stacks = TypeTools.newHashMap();
-    for (final EventDAO event : eventList)
-    {
-      // all events reference a thread value
-      final IThreadValue thread = createThread(event);
-      // most events reference a line value
-      final ILineValue line = valueFactory().createUnavailableLine();
-      // specialized processing based on the event kind
-      if (event.kind() == null)
-      {
-        // SCJ T0, SCJ PEH Deadline, SCJ Cycle Start, SCJ PEH Release
-        System.err.println("SKIPPING EVENT" + event.fields);
-        continue;
-      }
-      try
-      {
-        switch (event.kind())
-        {
-        // unsupported by JiveRE
-        // case EXCEPTION_CATCH:
-        // case EXCEPTION_THROW:
-        // case FIELD_READ:
-        // case LINE_STEP:
-        // case METHOD_RETURNED:
-        // case THREAD_LOCK:
-        // case TYPE_LOAD:
-        // case VAR_ASSIGN:
-        // case VAR_DELETE:
-        // case FIELD_READ:
-        // case FIELD_WRITE:
-          case METHOD_CALL:
-            {
-              // <caller><![CDATA[java.lang.Thread#currentThread]]></caller>
-              // <target><![CDATA[java.lang.Object#wait]]></target>
-              // <signature><![CDATA[Ljava/lang/Object;/wait()V]]></signature>
-              final String scaller = event.getFieldValue(XMLEventField.CALLER);
-              final IValue caller;
-              if ("SYSTEM".equals(scaller))
-              {
-                // system
-                caller = valueFactory().createSystemCaller();
-              }
-              else
-              {
-                // top of the respective thread
-                final IMethodContour top = stacks.get(thread).peek();
-                caller = valueFactory().createReference(top);
-              }
-              final String starget = event.getFieldValue(XMLEventField.TARGET);
-              final IValue target;
-              if ("SYSTEM".equals(starget))
-              {
-                // system
-                target = valueFactory().createSystemCaller();
-              }
-              else
-              {
-                // signature of the target (i.e., type/method/args/return)
-                final String key = event.getFieldValue(XMLEventField.SIGNATURE).replace(";/", ";.");
-                // type part of the target's signature
-                final String typeKey = key.substring(0, key.indexOf(';') + 1);
-                // find the type node or create a new one
-                final ITypeNode typeNode = resolveType(typeKey);
-                // create the necessary type contours
-                createStaticContours(typeNode, thread, line, jiveEvents);
-                // the static contour must exist now
-                final IContextContour callerContour = contourFactory().lookupStaticContour(
-                    typeNode.name());
-                // signature of the return type
-                String returnTypeKey = key.indexOf(')') == -1 ? "V" : key.substring(
-                    key.indexOf(')') + 1, key.length());
-                if (!returnTypeKey.startsWith("L") && returnTypeKey.endsWith(";"))
-                {
-                  returnTypeKey = returnTypeKey.substring(0, returnTypeKey.length() - 1);
-                }
-                // find the return type node or create a new one
-                ITypeNode returnTypeNode = resolveType(returnTypeKey);
-                returnTypeNode = returnTypeNode == null ? staticFactory().lookupVoidType()
-                    : returnTypeNode;
-                // create the necessary type contours
-                createStaticContours(returnTypeNode, thread, line, jiveEvents);
-                final String targetName = starget.substring(starget.indexOf('#') + 1);
-                // target's schema
-                final String methodKey = key.substring(0, key.indexOf(')') + 1);
-                IMethodNode methodNode = staticFactory().lookupMethodNode(methodKey);
-                if (methodNode == null)
-                {
-                  methodNode = typeNode.addMethodMember(key.substring(0, key.indexOf(')') + 1),
-                      targetName, -1, -1, returnTypeNode, NodeOrigin.NO_JIVE,
-                      Collections.<NodeModifier> emptySet(), NodeVisibility.NV_PUBLIC,
-                      Collections.<ITypeNodeRef> emptySet());
-                }
-                // create the method contour
-                final IMethodContour method = callerContour.createMethodContour(methodNode, thread);
-                // push it onto the stack
-                stacks.get(thread).push(method);
-                // create an in-model reference to the method contour
-                target = valueFactory().createReference(method);
-              }
-              jiveEvents.add(eventFactory().createMethodCallEvent(thread, line, caller, target));
-            }
-            break;
-          case METHOD_ENTERED:
-            {
-              // no details
-              jiveEvents.add(eventFactory().createMethodEnteredEvent(thread, line));
-            }
-            break;
-          case METHOD_EXIT:
-            {
-              // pop the stack
-              stacks.get(thread).pop();
-              // no details
-              jiveEvents.add(eventFactory().createMethodExitEvent(thread, line));
-            }
-            break;
-          case OBJECT_NEW:
-            {
-              // . <type>edu.purdue.scj.BackingStoreID</type>
-              // . <size>24</size>
-              // . <object>00000000f5836050</object>
-              final String typeName = event.getFieldValue(XMLEventField.TYPE);
-              // find the type node or create a new one
-              final ITypeNode typeNode = resolveType(staticFactory().typeNameToSignature(typeName));
-              // create the necessary type contours
-              createStaticContours(typeNode, thread, line, jiveEvents);
-              // retrieve the object identifier-- may not be unique
-              final long objectId = Long.parseLong(event.getFieldValue(XMLEventField.OBJECT),
-                  JiveREImporter.BASE_16);
-              long oid = objectId;
-              IContextContour existing = contourFactory().lookupInstanceContour(typeName, oid);
-              // if the oid is not unique, find an unused one deterministically
-              while (existing != null)
-              {
-                oid = oid * 7 + (oid % 19);
-                existing = contourFactory().lookupInstanceContour(typeName, oid);
-              }
-              int length = -1;
-              if (event.hasAttribute(XMLEventField.ELEMENTS))
-              {
-                length = Integer.parseInt(event.getFieldValue(XMLEventField.ELEMENTS));
-              }
-              // create the instance contour
-              final IObjectContour contour = length == -1 ? typeNode.createInstanceContour(oid)
-                  : typeNode.createArrayContour(oid, length);
-              jiveEvents.add(eventFactory().createNewObjectEvent(thread, line, contour));
-            }
-            break;
-          case SYSTEM_END:
-            {
-              // no details
-              jiveEvents.add(eventFactory().createSystemExitEvent());
-            }
-            break;
-          case THREAD_END:
-            {
-              // no details
-              jiveEvents.add(eventFactory().createThreadEndEvent(thread));
-            }
-            break;
-          default:
-            {
-            }
-        }
-      }
-      catch (final RuntimeException e)
-      {
-        System.err.println(event);
-        e.printStackTrace();
-        throw e;
-      }
-      if (jiveEvents.size() == JiveREImporter.BLOCK_SIZE)
-      {
-        model.eventOccurred(null, jiveEvents);
-        jiveEvents.clear();
-      }
-    }
-    // process any remaining events
-    if (jiveEvents.size() > 0)
-    {
-      model.eventOccurred(null, jiveEvents);
-      jiveEvents.clear();
-    }
-  }
-
   @Override
   public void endElement(final String uri, final String localName, final String qName)
       throws SAXException
@@ -259,7 +72,7 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
     if (checkEvent(localName))
     {
       // System.out.print(event.toString());
-      eventList.add(event);
+      createEvents(event);
       event = null;
     }
     else if (event != null && event.currentField() != null
@@ -275,9 +88,10 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
   {
     final long start = System.nanoTime();
     this.event = null;
-    this.eventList = TypeTools.newArrayList();
+    this.jiveEvents = TypeTools.newArrayList(JiveREImporter.BLOCK_SIZE);
     this.fileName = url.substring(JiveREImporter.PROTO_JIVERE.length());
     this.model = model;
+    this.stacks = TypeTools.newHashMap();
     this.staticModelDelegate = upstream;
     try
     {
@@ -288,7 +102,8 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
       factory.setNamespaceAware(true);
       final SAXParser parser = factory.newSAXParser();
       parser.parse(fileName, this);
-      createEvents();
+      // process any remaining events
+      flushEvents();
     }
     catch (final ParserConfigurationException e)
     {
@@ -374,6 +189,188 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
     return model.contourFactory();
   }
 
+  /**
+   * Converts a single event read from the trace into JIVE events. Events are pushed to the model in
+   * blocks as soon as they are created, so that only the live state of the execution (call stacks)
+   * is kept by the importer.
+   */
+  private void createEvents(final EventDAO event)
+  {
+    // all events reference a thread value
+    final IThreadValue thread = createThread(event);
+    // most events reference a line value
+    final ILineValue line = valueFactory().createUnavailableLine();
+    // specialized processing based on the event kind
+    if (event.kind() == null)
+    {
+      // SCJ T0, SCJ PEH Deadline, SCJ Cycle Start, SCJ PEH Release
+      System.err.println("SKIPPING EVENT" + event.fields);
+      return;
+    }
+    try
+    {
+      switch (event.kind())
+      {
+      // unsupported by JiveRE
+      // case EXCEPTION_CATCH:
+      // case EXCEPTION_THROW:
+      // case FIELD_READ:
+      // case LINE_STEP:
+      // case METHOD_RETURNED:
+      // case THREAD_LOCK:
+      // case TYPE_LOAD:
+      // case VAR_ASSIGN:
+      // case VAR_DELETE:
+      // case FIELD_READ:
+      // case FIELD_WRITE:
+        case METHOD_CALL:
+          {
+            // <caller><![CDATA[java.lang.Thread#currentThread]]></caller>
+            // <target><![CDATA[java.lang.Object#wait]]></target>
+            // <signature><![CDATA[Ljava/lang/Object;/wait()V]]></signature>
+            final String scaller = event.getFieldValue(XMLEventField.CALLER);
+            final IValue caller;
+            if ("SYSTEM".equals(scaller))
+            {
+              // system
+              caller = valueFactory().createSystemCaller();
+            }
+            else
+            {
+              // top of the respective thread
+              final IMethodContour top = stacks.get(thread).peek();
+              caller = valueFactory().createReference(top);
+            }
+            final String starget = event.getFieldValue(XMLEventField.TARGET);
+            final IValue target;
+            if ("SYSTEM".equals(starget))
+            {
+              // system
+              target = valueFactory().createSystemCaller();
+            }
+            else
+            {
+              // signature of the target (i.e., type/method/args/return)
+              final String key = event.getFieldValue(XMLEventField.SIGNATURE).replace(";/", ";.");
+              // type part of the target's signature
+              final String typeKey = key.substring(0, key.indexOf(';') + 1);
+              // find the type node or create a new one
+              final ITypeNode typeNode = resolveType(typeKey);
+              // create the necessary type contours
+              createStaticContours(typeNode, thread, line, jiveEvents);
+              // the static contour must exist now
+              final IContextContour callerContour = contourFactory().lookupStaticContour(
+                  typeNode.name());
+              // signature of the return type
+              String returnTypeKey = key.indexOf(')') == -1 ? "V" : key.substring(
+                  key.indexOf(')') + 1, key.length());
+              if (!returnTypeKey.startsWith("L") && returnTypeKey.endsWith(";"))
+              {
+                returnTypeKey = returnTypeKey.substring(0, returnTypeKey.length() - 1);
+              }
+              // find the return type node or create a new one
+              ITypeNode returnTypeNode = resolveType(returnTypeKey);
+              returnTypeNode = returnTypeNode == null ? staticFactory().lookupVoidType()
+                  : returnTypeNode;
+              // create the necessary type contours
+              createStaticContours(returnTypeNode, thread, line, jiveEvents);
+              final String targetName = starget.substring(starget.indexOf('#') + 1);
+              // target's schema
+              final String methodKey = key.substring(0, key.indexOf(')') + 1);
+              IMethodNode methodNode = staticFactory().lookupMethodNode(methodKey);
+              if (methodNode == null)
+              {
+                methodNode = typeNode.addMethodMember(key.substring(0, key.indexOf(')') + 1),
+                    targetName, -1, -1, returnTypeNode, NodeOrigin.NO_JIVE,
+                    Collections.<NodeModifier> emptySet(), NodeVisibility.NV_PUBLIC,
+                    Collections.<ITypeNodeRef> emptySet());
+              }
+              // create the method contour
+              final IMethodContour method = callerContour.createMethodContour(methodNode, thread);
+              // push it onto the stack
+              stacks.get(thread).push(method);
+              // create an in-model reference to the method contour
+              target = valueFactory().createReference(method);
+            }
+            jiveEvents.add(eventFactory().createMethodCallEvent(thread, line, caller, target));
+          }
+          break;
+        case METHOD_ENTERED:
+          {
+            // no details
+            jiveEvents.add(eventFactory().createMethodEnteredEvent(thread, line));
+          }
+          break;
+        case METHOD_EXIT:
+          {
+            // pop the stack
+            stacks.get(thread).pop();
+            // no details
+            jiveEvents.add(eventFactory().createMethodExitEvent(thread, line));
+          }
+          break;
+        case OBJECT_NEW:
+          {
+            // . <type>edu.purdue.scj.BackingStoreID</type>
+            // . <size>24</size>
+            // . <object>00000000f5836050</object>
+            final String typeName = event.getFieldValue(XMLEventField.TYPE);
+            // find the type node or create a new one
+            final ITypeNode typeNode = resolveType(staticFactory().typeNameToSignature(typeName));
+            // create the necessary type contours
+            createStaticContours(typeNode, thread, line, jiveEvents);
+            // retrieve the object identifier-- may not be unique
+            final long objectId = Long.parseLong(event.getFieldValue(XMLEventField.OBJECT),
+                JiveREImporter.BASE_16);
+            long oid = objectId;
+            IContextContour existing = contourFactory().lookupInstanceContour(typeName, oid);
+            // if the oid is not unique, find an unused one deterministically
+            while (existing != null)
+            {
+              oid = oid * 7 + (oid % 19);
+              existing = contourFactory().lookupInstanceContour(typeName, oid);
+            }
+            int length = -1;
+            if (event.hasAttribute(XMLEventField.ELEMENTS))
+            {
+              length = Integer.parseInt(event.getFieldValue(XMLEventField.ELEMENTS));
+            }
+            // create the instance contour
+            final IObjectContour contour = length == -1 ? typeNode.createInstanceContour(oid)
+                : typeNode.createArrayContour(oid, length);
+            jiveEvents.add(eventFactory().createNewObjectEvent(thread, line, contour));
+          }
+          break;
+        case SYSTEM_END:
+          {
+            // no details
+            jiveEvents.add(eventFactory().createSystemExitEvent());
+          }
+          break;
+        case THREAD_END:
+          {
+            // no details
+            jiveEvents.add(eventFactory().createThreadEndEvent(thread));
+          }
+          break;
+        default:
+          {
+          }
+      }
+    }
+    catch (final RuntimeException e)
+    {
+      System.err.println(event);
+      e.printStackTrace();
+      throw e;
+    }
+    // push complete blocks to the model as soon as they are available
+    if (jiveEvents.size() >= JiveREImporter.BLOCK_SIZE)
+    {
+      flushEvents();
+    }
+  }
+
   private void createStaticContours(final ITypeNode typeNode, final IThreadValue thread,
       final ILineValue line, final List<IJiveEvent> jiveEvents)
   {
@@ -416,6 +413,18 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
     return model.eventFactory();
   }
 
+  /**
+   * Pushes the pending events to the model as a single block.
+   */
+  private void flushEvents()
+  {
+    if (!jiveEvents.isEmpty())
+    {
+      model.eventOccurred(null, jiveEvents);
+      jiveEvents = TypeTools.newArrayList(JiveREImporter.BLOCK_SIZE);
+    }
+  }
+
   private ITypeNode resolveType(final String key)
   {
     // primitive types
@@ -473,7 +482,14 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
   {
     private XMLEventField currentField;
     private final Map<XMLEventField, String> fields;
-    private final Map<String, EventKind> kindLookup;
+    private static final Map<String, EventKind> KIND_LOOKUP = TypeTools.newHashMap();
+    static
+    {
+      for (final EventKind kind : EventKind.values())
+      {
+        EventDAO.KIND_LOOKUP.put(kind.eventName(), kind);
+      }
+    }
     private String file;
     private Long id;
     private EventKind kind;
@@ -483,11 +499,6 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
     EventDAO()
     {
       this.fields = TypeTools.newHashMap();
-      this.kindLookup = TypeTools.newHashMap();
-      for (final EventKind kind : EventKind.values())
-      {
-        kindLookup.put(kind.eventName(), kind);
-      }
     }
 
     public XMLEventField currentField()
@@ -528,7 +539,7 @@ public class JiveREImporter extends DefaultHandler implements IOfflineImporter
           this.id = Long.valueOf(value);
           break;
         case KIND:
-          this.kind = kindLookup.get(value);
+          this.kind = EventDAO.KIND_LOOKUP.get(value);
           break;
         case FILE:
           this.file = value;
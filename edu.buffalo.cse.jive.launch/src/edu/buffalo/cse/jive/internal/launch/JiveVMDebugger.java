@@ -1,5 +1,7 @@
 package edu.buffalo.cse.jive.internal.launch;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.debug.core.model.IDebugTarget;
 import org.eclipse.debug.core.model.IProcess;
@@ -23,6 +25,28 @@ public class JiveVMDebugger extends StandardVMDebugger
     super(vmInstance);
   }
 
+  /**
+   * Loads the instrumentation agent into the launched VM if the launch records through it.
+   */
+  @Override
+  public void run(final VMRunnerConfiguration config, final ILaunch launch,
+      final IProgressMonitor monitor) throws CoreException
+  {
+    final String agent = JiveDebugPlugin.createAgentArgument(launch);
+    if (agent != null)
+    {
+      final String[] vmArgs = config.getVMArguments();
+      final String[] args = new String[vmArgs == null ? 1 : vmArgs.length + 1];
+      if (vmArgs != null)
+      {
+        System.arraycopy(vmArgs, 0, args, 0, vmArgs.length);
+      }
+      args[args.length - 1] = agent;
+      config.setVMArguments(args);
+    }
+    super.run(config, launch, monitor);
+  }
+
   @Override
   protected IDebugTarget createDebugTarget(final VMRunnerConfiguration config,
       final ILaunch launch, final int port, final IProcess process, final VirtualMachine vm)
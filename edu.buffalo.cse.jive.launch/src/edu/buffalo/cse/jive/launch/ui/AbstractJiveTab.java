@@ -110,6 +110,14 @@ public abstract class AbstractJiveTab extends AbstractLaunchConfigurationTab
       final boolean generateLockEvents = configuration.getAttribute(PreferencesPlugin.getDefault()
           .getGenerateArrayEventsKey(), false);
       jiveTabForm.enableArrayEvents(generateLockEvents);
+      // Initialize the lightweight recording flag
+      final boolean liteRecording = configuration.getAttribute(PreferencesPlugin.getDefault()
+          .getLiteRecordingKey(), false);
+      jiveTabForm.enableLiteRecording(liteRecording);
+      // Initialize the instrumented recording flag
+      final boolean instrumentedRecording = configuration.getAttribute(PreferencesPlugin
+          .getDefault().getInstrumentedRecordingKey(), false);
+      jiveTabForm.enableInstrumentedRecording(instrumentedRecording);
       // Initialize the exclusion filters list
       List<String> exclusionFilters = configuration.getAttribute(PreferencesPlugin.getDefault()
           .getExclusionFiltersKey(), (List<String>) null);
@@ -157,6 +165,12 @@ public abstract class AbstractJiveTab extends AbstractLaunchConfigurationTab
       // control the generation of lock events
       configuration.setAttribute(PreferencesPlugin.getDefault().getGenerateArrayEventsKey(),
           jiveTabForm.generateArrayEvents());
+      // control the lightweight recording mode
+      configuration.setAttribute(PreferencesPlugin.getDefault().getLiteRecordingKey(),
+          jiveTabForm.isLiteRecording());
+      // control the instrumented recording mode
+      configuration.setAttribute(PreferencesPlugin.getDefault().getInstrumentedRecordingKey(),
+          jiveTabForm.isInstrumentedRecording());
       // Add the exclusion filters to the configuration
       final List<String> filters = new ArrayList<String>();
       filters.addAll(jiveTabForm.filterList());
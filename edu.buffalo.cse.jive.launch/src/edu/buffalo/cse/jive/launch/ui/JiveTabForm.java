@@ -53,6 +53,14 @@ public class JiveTabForm
    * The check button used to enable array events.
    */
   private Button enableArrayEvents;
+  /**
+   * The check button used to enable recording through the instrumentation agent.
+   */
+  private Button enableInstrumentedRecording;
+  /**
+   * The check button used to enable lightweight recording to a memory mapped trace file.
+   */
+  private Button enableLiteRecording;
   /**
    * The check button used to enable manually starting JIVE.
    */
@@ -82,6 +90,10 @@ public class JiveTabForm
     createControlLocalEvents();
     // Control for enabling array events
     createControlEnableArrayEvents();
+    // Control for enabling lightweight recording
+    createControlLiteRecording();
+    // Control for enabling instrumented recording
+    createControlInstrumentedRecording();
     final Composite c1 = JiveTabForm.createComposite(control, 2);
     // Control for entering exclusion filters
     createControlAddFilter(c1);
@@ -255,6 +267,48 @@ public class JiveTabForm
       });
   }
 
+  private void createControlInstrumentedRecording()
+  {
+    enableInstrumentedRecording = new Button(control, SWT.CHECK);
+    enableInstrumentedRecording.setText("Record calls with an in-process agent (calls only)?"); // TODO Add NLS support
+    enableInstrumentedRecording.setLayoutData(new GridData());
+    enableInstrumentedRecording.setSelection(false);
+    enableInstrumentedRecording.addSelectionListener(new SelectionListener()
+      {
+        @Override
+        public void widgetDefaultSelected(final SelectionEvent e)
+        {
+        }
+
+        @Override
+        public void widgetSelected(final SelectionEvent e)
+        {
+          tab.widgetModified();
+        }
+      });
+  }
+
+  private void createControlLiteRecording()
+  {
+    enableLiteRecording = new Button(control, SWT.CHECK);
+    enableLiteRecording.setText("Record a compact trace to disk (no model updates)?"); // TODO Add NLS support
+    enableLiteRecording.setLayoutData(new GridData());
+    enableLiteRecording.setSelection(false);
+    enableLiteRecording.addSelectionListener(new SelectionListener()
+      {
+        @Override
+        public void widgetDefaultSelected(final SelectionEvent e)
+        {
+        }
+
+        @Override
+        public void widgetSelected(final SelectionEvent e)
+        {
+          tab.widgetModified();
+        }
+      });
+  }
+
   private void createControlLocalEvents()
   {
     enableLocalEvents = new Button(control, SWT.CHECK);
@@ -354,6 +408,8 @@ public class JiveTabForm
     enableLocalEvents.setEnabled(enabled);
     enableArrayEvents.setEnabled(enabled);
     enableManualStart.setEnabled(enabled);
+    enableLiteRecording.setEnabled(enabled);
+    enableInstrumentedRecording.setEnabled(enabled);
     addFilterText.setEnabled(enabled);
     addFilterButton.setEnabled(enabled && addFilterButton.isEnabled());
     removeFilterButton.setEnabled(enabled && removeFilterButton.isEnabled());
@@ -375,6 +431,16 @@ public class JiveTabForm
     enableArrayEvents.setSelection(value);
   }
 
+  void enableInstrumentedRecording(final boolean value)
+  {
+    enableInstrumentedRecording.setSelection(value);
+  }
+
+  void enableLiteRecording(final boolean value)
+  {
+    enableLiteRecording.setSelection(value);
+  }
+
   void enableManualStart(final boolean value)
   {
     enableManualStart.setSelection(value);
@@ -395,11 +461,21 @@ public class JiveTabForm
     return enableArrayEvents.getSelection();
   }
 
+  boolean isInstrumentedRecording()
+  {
+    return enableInstrumentedRecording.getSelection();
+  }
+
   boolean isJiveEnabled()
   {
     return enableJive.getSelection();
   }
 
+  boolean isLiteRecording()
+  {
+    return enableLiteRecording.getSelection();
+  }
+
   boolean isManualStart()
   {
     return enableManualStart.getSelection();
@@ -0,0 +1,436 @@
+package edu.buffalo.cse.jive.lib;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.buffalo.cse.jive.lib.BinaryTraceTools.TraceField;
+import edu.buffalo.cse.jive.lib.BinaryTraceTools.TraceReader;
+import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
+import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
+import edu.buffalo.cse.jive.model.IContourModel.IObjectContour;
+import edu.buffalo.cse.jive.model.IEventModel.EventKind;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodTerminatorEvent;
+import edu.buffalo.cse.jive.model.IEventModel.LockOperation;
+import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.IModel.ILineValue;
+import edu.buffalo.cse.jive.model.IModel.IThreadValue;
+import edu.buffalo.cse.jive.model.IModel.IValue;
+import edu.buffalo.cse.jive.model.IStaticModel.IDataNode;
+import edu.buffalo.cse.jive.model.IStaticModel.IEnvironmentNode;
+import edu.buffalo.cse.jive.model.IStaticModel.IMethodNode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNodeRef;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeKind;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeModifier;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeOrigin;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeVisibility;
+import edu.buffalo.cse.jive.model.factory.IStaticModelFactory;
+import edu.buffalo.cse.jive.model.factory.IValueFactory;
+
+/**
+ * Rebuilds in a model the events written by {@code BinaryTraceEncoder}. Definition records create
+ * the threads, static model nodes, and contours referenced by the events; event records are
+ * converted to events and pushed to the model one block at a time.
+ * <p>
+ * Identifiers in the trace are those of the exporting model. Data nodes, method contours, and
+ * terminator events are mapped from these identifiers to their counterparts in the importing
+ * model, while all other contours are looked up by type name and object identifier.
+ */
+public final class BinaryTraceDecoder
+{
+  private static final Map<String, EventKind> EVENT_KINDS = TypeTools.newHashMap();
+  static
+  {
+    for (final EventKind kind : EventKind.values())
+    {
+      BinaryTraceDecoder.EVENT_KINDS.put(kind.eventName(), kind);
+    }
+  }
+  private final Map<Long, IDataNode> dataNodes;
+  private final Map<Long, IMethodContour> frames;
+  private final IExecutionModel model;
+  // terminators that may still be followed by a method returned event
+  private final Map<Long, IMethodTerminatorEvent> terminators;
+  private final Map<Long, IThreadValue> threads;
+
+  public BinaryTraceDecoder(final IExecutionModel model)
+  {
+    this.dataNodes = TypeTools.newHashMap();
+    this.frames = TypeTools.newHashMap();
+    this.model = model;
+    this.terminators = TypeTools.newHashMap();
+    this.threads = TypeTools.newHashMap();
+  }
+
+  private static Set<NodeModifier> modifiers(final String modifiers)
+  {
+    if (modifiers == null)
+    {
+      return Collections.emptySet();
+    }
+    final Set<NodeModifier> result = TypeTools.newHashSet();
+    for (final String modifier : modifiers.split(" "))
+    {
+      result.add(NodeModifier.valueOf(modifier));
+    }
+    return result;
+  }
+
+  private static int number(final Map<TraceField, String> record, final TraceField field)
+  {
+    return Integer.parseInt(record.get(field));
+  }
+
+  /**
+   * Reads all records of the trace and pushes the resulting events to the model.
+   */
+  public void decode(final TraceReader reader) throws IOException
+  {
+    for (int i = 0; i < reader.blockCount(); i++)
+    {
+      final List<IJiveEvent> events = TypeTools.newArrayList();
+      for (final Map<TraceField, String> record : reader.readBlock(i))
+      {
+        try
+        {
+          decode(record, events);
+        }
+        catch (final RuntimeException e)
+        {
+          throw new IOException("Malformed binary trace record: " + record + ".", e);
+        }
+      }
+      if (!events.isEmpty())
+      {
+        model.eventOccurred(null, events);
+      }
+    }
+  }
+
+  /**
+   * Contour referenced by the {@code CONTEXT} and {@code OBJECT} fields of the record.
+   */
+  private IContextContour context(final Map<TraceField, String> record)
+  {
+    final String typeName = record.get(TraceField.CONTEXT);
+    return record.get(TraceField.OBJECT) == null ? model.contourFactory().lookupStaticContour(
+        typeName) : model.contourFactory().lookupInstanceContour(typeName,
+        Long.parseLong(record.get(TraceField.OBJECT)));
+  }
+
+  /**
+   * Creates the contour described by the record, along with any contours the model creates with
+   * it.
+   */
+  private IContour create(final Map<TraceField, String> record, final IThreadValue thread)
+  {
+    if (record.get(TraceField.METHOD) != null)
+    {
+      final IMethodNode method = staticModelFactory().lookupMethodNode(
+          record.get(TraceField.METHOD));
+      final IMethodContour frame = context(record).createMethodContour(method, thread);
+      frames.put(Long.valueOf(record.get(TraceField.TARGET)), frame);
+      return frame;
+    }
+    final ITypeNode type = staticModelFactory().lookupTypeNode(record.get(TraceField.TYPE));
+    if (record.get(TraceField.OBJECT) == null)
+    {
+      return type.createStaticContour();
+    }
+    final long oid = Long.parseLong(record.get(TraceField.OBJECT));
+    return type.kind() == NodeKind.NK_ARRAY ? type.createArrayContour(oid,
+        BinaryTraceDecoder.number(record, TraceField.ELEMENTS)) : type.createInstanceContour(oid);
+  }
+
+  private void decode(final Map<TraceField, String> record, final List<IJiveEvent> events)
+  {
+    final String kind = record.get(TraceField.KIND);
+    if (BinaryTraceTools.DEF_CONTOUR.equals(kind))
+    {
+      create(record, record.get(TraceField.THREAD) == null ? null : thread(record));
+    }
+    else if (BinaryTraceTools.DEF_DATA.equals(kind))
+    {
+      defineData(record);
+    }
+    else if (BinaryTraceTools.DEF_METHOD.equals(kind))
+    {
+      defineMethod(record);
+    }
+    else if (BinaryTraceTools.DEF_THREAD.equals(kind))
+    {
+      final long id = Long.parseLong(record.get(TraceField.THREAD));
+      threads.put(id, valueFactory().createThread(id, record.get(TraceField.NAME)));
+    }
+    else if (BinaryTraceTools.DEF_TYPE.equals(kind))
+    {
+      defineType(record);
+    }
+    else
+    {
+      final IJiveEvent event = createEvent(BinaryTraceDecoder.EVENT_KINDS.get(kind), record);
+      events.add(event);
+      if (event instanceof IMethodTerminatorEvent
+          && ((IMethodTerminatorEvent) event).framePopped())
+      {
+        terminators.put(Long.valueOf(record.get(TraceField.ID)), (IMethodTerminatorEvent) event);
+      }
+    }
+  }
+
+  private IJiveEvent createEvent(final EventKind kind, final Map<TraceField, String> record)
+  {
+    if (kind == EventKind.METHOD_RETURNED)
+    {
+      return model.eventFactory().createMethodReturnedEvent(
+          terminators.remove(Long.valueOf(record.get(TraceField.TERMINATOR))));
+    }
+    if (kind == EventKind.SYSTEM_END)
+    {
+      return model.eventFactory().createSystemExitEvent();
+    }
+    final IThreadValue thread = thread(record);
+    if (kind == EventKind.THREAD_END)
+    {
+      return model.eventFactory().createThreadEndEvent(thread);
+    }
+    final ILineValue line = valueFactory().createLine(record.get(TraceField.FILE),
+        BinaryTraceDecoder.number(record, TraceField.LINE));
+    switch (kind)
+    {
+      case EXCEPTION_CATCH:
+        return model.eventFactory().createExceptionCatchEvent(
+            thread,
+            line,
+            value(record.get(TraceField.EXCEPTION)),
+            record.get(TraceField.CONTEXT) == null ? null : local(record));
+      case EXCEPTION_THROW:
+        return model.eventFactory().createExceptionThrowEvent(thread, line,
+            value(record.get(TraceField.EXCEPTION)), frame(record.get(TraceField.THROWER)),
+            Boolean.parseBoolean(record.get(TraceField.FRAME_POPPED)));
+      case FIELD_READ:
+        return model.eventFactory().createFieldReadEvent(thread, line, context(record),
+            field(record));
+      case FIELD_WRITE:
+        return model.eventFactory().createFieldWriteEvent(thread, line, context(record),
+            value(record.get(TraceField.VALUE)), field(record));
+      case LINE_STEP:
+        return model.eventFactory().createLineStepEvent(thread, line);
+      case METHOD_CALL:
+        return model.eventFactory().createMethodCallEvent(
+            thread,
+            line,
+            frame(record.get(TraceField.CALLER)),
+            record.get(TraceField.METHOD) == null ? frame(record.get(TraceField.TARGET))
+                : valueFactory().createReference(create(record, thread)));
+      case METHOD_ENTERED:
+        return model.eventFactory().createMethodEnteredEvent(thread, line);
+      case METHOD_EXIT:
+        return model.eventFactory().createMethodExitEvent(thread, line);
+      case OBJECT_DESTROY:
+        return model.eventFactory().createDestroyEvent(thread, line,
+            (IObjectContour) context(record));
+      case OBJECT_NEW:
+        return model.eventFactory().createNewObjectEvent(thread, line,
+            (IObjectContour) create(record, thread));
+      case THREAD_LOCK:
+        return model.eventFactory().createLockEvent(thread, line,
+            LockOperation.valueOf(record.get(TraceField.OPERATION)),
+            record.get(TraceField.CONTEXT) == null ? null : context(record),
+            record.get(TraceField.LOCK));
+      case TYPE_LOAD:
+        return model.eventFactory().createTypeLoadEvent(thread, line,
+            (IContextContour) create(record, thread));
+      case VAR_ASSIGN:
+        return model.eventFactory().createVarAssignEvent(thread, line,
+            value(record.get(TraceField.VALUE)), local(record));
+      case VAR_DELETE:
+        return model.eventFactory().createVarDeleteEvent(thread, line, local(record));
+      default:
+        throw new IllegalArgumentException("Unsupported event kind: "
+            + record.get(TraceField.KIND));
+    }
+  }
+
+  /**
+   * Data members of methods and types are created along with their environment, except for those
+   * declared by the program, which are added as they are defined.
+   */
+  private void defineData(final Map<TraceField, String> record)
+  {
+    // methods and types share the same key space
+    final IEnvironmentNode environment = (IEnvironmentNode) model.store().lookupNode(
+        record.get(TraceField.PARENT));
+    final boolean isMethod = environment instanceof IMethodNode;
+    final Set<NodeModifier> modifiers = BinaryTraceDecoder.modifiers(record
+        .get(TraceField.MODIFIERS));
+    IDataNode data = null;
+    for (final IDataNode member : environment.dataMembers().values())
+    {
+      // method members are identified by their role, type members by their name
+      if (isMethod ? (modifiers.contains(NodeModifier.NM_RPDL) || modifiers
+          .contains(NodeModifier.NM_RESULT)) && member.modifiers().equals(modifiers)
+          : member.name().equals(record.get(TraceField.NAME)))
+      {
+        data = member;
+        break;
+      }
+    }
+    if (data == null)
+    {
+      final String[] node = record.get(TraceField.NODE).split(" ");
+      data = environment.addDataMember(record.get(TraceField.NAME),
+          BinaryTraceDecoder.number(record, TraceField.LINE),
+          BinaryTraceDecoder.number(record, TraceField.LAST_LINE),
+          typeRef(record.get(TraceField.TYPE)), NodeOrigin.valueOf(node[1]), modifiers,
+          NodeVisibility.valueOf(node[2]), value(record.get(TraceField.VALUE)));
+    }
+    dataNodes.put(Long.valueOf(record.get(TraceField.KEY)), data);
+  }
+
+  private void defineMethod(final Map<TraceField, String> record)
+  {
+    final String[] node = record.get(TraceField.NODE).split(" ");
+    staticModelFactory().lookupTypeNode(record.get(TraceField.PARENT)).addMethodMember(
+        record.get(TraceField.KEY), record.get(TraceField.NAME),
+        BinaryTraceDecoder.number(record, TraceField.LINE),
+        BinaryTraceDecoder.number(record, TraceField.LAST_LINE),
+        typeRef(record.get(TraceField.TYPE)), NodeOrigin.valueOf(node[1]),
+        BinaryTraceDecoder.modifiers(record.get(TraceField.MODIFIERS)),
+        NodeVisibility.valueOf(node[2]), Collections.<ITypeNodeRef> emptySet());
+  }
+
+  private void defineType(final Map<TraceField, String> record)
+  {
+    final IStaticModelFactory factory = staticModelFactory();
+    // known types are created along with the model
+    if (factory.lookupTypeNode(record.get(TraceField.KEY)) != null)
+    {
+      return;
+    }
+    final String[] node = record.get(TraceField.NODE).split(" ");
+    factory.createTypeNode(record.get(TraceField.KEY), record.get(TraceField.NAME), factory
+        .lookupRoot(), BinaryTraceDecoder.number(record, TraceField.LINE), BinaryTraceDecoder
+        .number(record, TraceField.LAST_LINE), NodeKind.valueOf(node[0]), NodeOrigin
+        .valueOf(node[1]), BinaryTraceDecoder.modifiers(record.get(TraceField.MODIFIERS)),
+        NodeVisibility.valueOf(node[2]), record.get(TraceField.PARENT) == null ? null
+            : typeRef(record.get(TraceField.PARENT)), Collections.<ITypeNodeRef> emptySet(),
+        value(record.get(TraceField.VALUE)));
+  }
+
+  /**
+   * Member of the context contour referenced by the {@code VARIABLE} field of the record.
+   */
+  private IContourMember field(final Map<TraceField, String> record)
+  {
+    final IContextContour contour = context(record);
+    return contour.schema().kind() == NodeKind.NK_ARRAY ? contour.lookupMember(BinaryTraceDecoder
+        .number(record, TraceField.VARIABLE)) : contour.lookupMember(dataNodes.get(Long
+        .valueOf(record.get(TraceField.VARIABLE))));
+  }
+
+  /**
+   * Decodes a caller, target, or thrower field, in which method contours are referenced by their
+   * identifiers.
+   */
+  private IValue frame(final String value)
+  {
+    return value != null && Character.isDigit(value.charAt(0)) ? valueFactory().createReference(
+        frames.get(Long.valueOf(value))) : value(value);
+  }
+
+  /**
+   * Member of the method contour referenced by the {@code CONTEXT} and {@code VARIABLE} fields of
+   * the record.
+   */
+  private IContourMember local(final Map<TraceField, String> record)
+  {
+    return frames.get(Long.valueOf(record.get(TraceField.CONTEXT))).lookupMember(
+        dataNodes.get(Long.valueOf(record.get(TraceField.VARIABLE))));
+  }
+
+  private IStaticModelFactory staticModelFactory()
+  {
+    return model.staticModelFactory();
+  }
+
+  private IThreadValue thread(final Map<TraceField, String> record)
+  {
+    return threads.get(Long.valueOf(record.get(TraceField.THREAD)));
+  }
+
+  /**
+   * Type nodes may be referenced before they are defined, so references are resolved lazily.
+   * Existing nodes are referenced directly, since some, such as the void type, are compared by
+   * identity.
+   */
+  private ITypeNodeRef typeRef(final String key)
+  {
+    final ITypeNode type = staticModelFactory().lookupTypeNode(key);
+    return type != null ? type : staticModelFactory().lookupTypeRef(key);
+  }
+
+  /**
+   * Decodes a value written by {@code BinaryTraceEncoder}.
+   */
+  private IValue value(final String value)
+  {
+    if (value == null)
+    {
+      return null;
+    }
+    final char tag = value.charAt(0);
+    if (tag == '-' || Character.isDigit(tag))
+    {
+      return valueFactory().createPrimitiveValue(value);
+    }
+    final String text = value.substring(1);
+    final int separator = text.indexOf('\n');
+    switch (tag)
+    {
+      case 'C':
+        return valueFactory().createReference(model.contourFactory().lookupStaticContour(text));
+      case 'K':
+        return valueFactory().createOutOfModelMethodKeyReference(text.substring(separator + 1),
+            text.substring(0, separator));
+      case 'M':
+        return valueFactory().createReference(frames.get(Long.valueOf(text)));
+      case 'N':
+        return valueFactory().createNullValue();
+      case 'O':
+        {
+          final int colon = text.indexOf(':');
+          return valueFactory().createReference(
+              model.contourFactory().lookupInstanceContour(text.substring(colon + 1),
+                  Long.parseLong(text.substring(0, colon))));
+        }
+      case 'P':
+        return valueFactory().createPrimitiveValue(text);
+      case 'R':
+        return valueFactory().createResolvedValue(text.substring(separator + 1),
+            text.substring(0, separator));
+      case 'S':
+        return valueFactory().createSystemCaller();
+      case 'U':
+        return valueFactory().createUninitializedValue();
+      case 'X':
+        return valueFactory().createOutOfModelValue(text);
+      case 'Y':
+        return valueFactory().createOutOfModelMethodReference(text.substring(separator + 1),
+            separator == 0 ? null : frames.get(Long.valueOf(text.substring(0, separator))));
+      default:
+        throw new IllegalArgumentException("Unknown value: " + value);
+    }
+  }
+
+  private IValueFactory valueFactory()
+  {
+    return model.valueFactory();
+  }
+}
@@ -0,0 +1,519 @@
+package edu.buffalo.cse.jive.lib;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.buffalo.cse.jive.lib.BinaryTraceTools.TraceField;
+import edu.buffalo.cse.jive.lib.BinaryTraceTools.TraceWriter;
+import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
+import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
+import edu.buffalo.cse.jive.model.IContourModel.IObjectContour;
+import edu.buffalo.cse.jive.model.IEventModel.EventKind;
+import edu.buffalo.cse.jive.model.IEventModel.IDestroyObjectEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IExceptionCatchEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IExceptionThrowEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IFieldAssignEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IFieldReadEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IEventModel.ILockEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodCallEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodReturnedEvent;
+import edu.buffalo.cse.jive.model.IEventModel.INewObjectEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IRealTimeEvent;
+import edu.buffalo.cse.jive.model.IEventModel.ITypeLoadEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IVarAssignEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IVarDeleteEvent;
+import edu.buffalo.cse.jive.model.IModel.IContourReference;
+import edu.buffalo.cse.jive.model.IModel.IOutOfModelMethodKeyReference;
+import edu.buffalo.cse.jive.model.IModel.IOutOfModelMethodReference;
+import edu.buffalo.cse.jive.model.IModel.IResolvedValue;
+import edu.buffalo.cse.jive.model.IModel.IThreadValue;
+import edu.buffalo.cse.jive.model.IModel.IValue;
+import edu.buffalo.cse.jive.model.IStaticModel.IDataNode;
+import edu.buffalo.cse.jive.model.IStaticModel.IMethodNode;
+import edu.buffalo.cse.jive.model.IStaticModel.INode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNodeRef;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeKind;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeModifier;
+
+/**
+ * Writes the events of a model as binary trace records. Event records only reference threads,
+ * static model nodes, and contours, so each of these is introduced by a definition record the first
+ * time it is referenced. Together, the records carry everything {@code BinaryTraceDecoder} needs to
+ * rebuild the events in another model.
+ * <p>
+ * System and thread start events are not written, since the model creates them when it processes
+ * the first event of the system and of each thread. Real-time events are not supported.
+ */
+public final class BinaryTraceEncoder
+{
+  // identifiers of the contours introduced so far
+  private final BitSet contours;
+  // identifiers of the data nodes introduced so far
+  private final Set<Long> dataNodes;
+  // keys of the method nodes introduced so far
+  private final Set<String> methodNodes;
+  private final Map<TraceField, String> record;
+  // identifiers of the threads introduced so far
+  private final Set<Long> threads;
+  // keys of the type nodes introduced so far
+  private final Set<String> typeNodes;
+  private final TraceWriter writer;
+
+  public BinaryTraceEncoder(final TraceWriter writer)
+  {
+    this.contours = new BitSet();
+    this.dataNodes = TypeTools.newHashSet();
+    this.methodNodes = TypeTools.newHashSet();
+    this.record = TypeTools.newLinkedHashMap();
+    this.threads = TypeTools.newHashSet();
+    this.typeNodes = TypeTools.newHashSet();
+    this.writer = writer;
+  }
+
+  /**
+   * Number of cells of the array contour. Cells are named after their index rather than after
+   * their data node.
+   */
+  private static int cellCount(final IContextContour array)
+  {
+    int result = 0;
+    for (final IContourMember member : array.members())
+    {
+      if (!member.name().equals(member.schema().name()))
+      {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  private static String modifiers(final Set<NodeModifier> modifiers)
+  {
+    if (modifiers.isEmpty())
+    {
+      return null;
+    }
+    final StringBuilder result = new StringBuilder();
+    for (final NodeModifier modifier : modifiers)
+    {
+      result.append(result.length() == 0 ? "" : " ").append(modifier.name());
+    }
+    return result.toString();
+  }
+
+  private static String node(final INode node)
+  {
+    return node.kind().name() + " " + node.origin().name() + " " + node.visibility().name();
+  }
+
+  /**
+   * Writes the record of the given event, preceded by the definitions of any threads, nodes, and
+   * contours it references for the first time.
+   *
+   * @throws IllegalArgumentException
+   *           if the event cannot be represented in the binary trace format
+   */
+  public void write(final IJiveEvent event) throws IOException
+  {
+    if (event instanceof IRealTimeEvent)
+    {
+      throw new IllegalArgumentException(
+          "Real-time events are not supported by the binary trace format.");
+    }
+    // created by the model as it processes the events
+    if (event.kind() == EventKind.SYSTEM_START || event.kind() == EventKind.THREAD_START)
+    {
+      return;
+    }
+    // details are encoded first, so that their definitions precede the event's record
+    final Map<TraceField, String> details = TypeTools.newLinkedHashMap();
+    encodeDetails(details, event);
+    defineThread(event.thread());
+    record.clear();
+    record.put(TraceField.ID, String.valueOf(event.eventId()));
+    record.put(TraceField.THREAD, String.valueOf(event.thread().id()));
+    record.put(TraceField.KIND, event.kind().eventName());
+    if (event.kind() != EventKind.METHOD_RETURNED)
+    {
+      record.put(TraceField.FILE, event.line().file().name());
+      record.put(TraceField.LINE, String.valueOf(event.line().lineNumber()));
+    }
+    record.putAll(details);
+    writer.write(record);
+  }
+
+  /**
+   * Records the context contour in the {@code CONTEXT} and {@code OBJECT} fields.
+   */
+  private void context(final Map<TraceField, String> fields, final IContextContour contour)
+      throws IOException
+  {
+    introduce(contour);
+    fields.put(TraceField.CONTEXT, contour.schema().name());
+    if (contour instanceof IObjectContour)
+    {
+      fields.put(TraceField.OBJECT, String.valueOf(((IObjectContour) contour).oid()));
+    }
+  }
+
+  /**
+   * Records the creation of the contour in the {@code TYPE}, {@code OBJECT}, and {@code ELEMENTS}
+   * fields, or, for method contours, in the {@code METHOD}, {@code TARGET}, and context fields.
+   */
+  private void create(final Map<TraceField, String> fields, final IContour contour)
+      throws IOException
+  {
+    if (contour instanceof IMethodContour)
+    {
+      final IMethodContour method = (IMethodContour) contour;
+      fields.put(TraceField.METHOD, defineMethod(method.schema()));
+      fields.put(TraceField.TARGET, String.valueOf(method.id()));
+      context(fields, method.parent());
+      contours.set((int) method.id());
+      return;
+    }
+    final IContextContour concrete = ((IContextContour) contour).concreteContour();
+    fields.put(TraceField.TYPE, defineType(concrete.schema()));
+    if (concrete instanceof IObjectContour)
+    {
+      fields.put(TraceField.OBJECT, String.valueOf(((IObjectContour) concrete).oid()));
+      if (concrete.schema().kind() == NodeKind.NK_ARRAY)
+      {
+        fields.put(TraceField.ELEMENTS, String.valueOf(BinaryTraceEncoder.cellCount(concrete)));
+      }
+    }
+    // the model creates the whole chain of super contours along with the concrete contour
+    for (IContour c = concrete; c != null; c = c.parent())
+    {
+      contours.set((int) c.id());
+    }
+  }
+
+  private void defineData(final IDataNode data) throws IOException
+  {
+    if (data.parent() instanceof IMethodNode)
+    {
+      defineMethod((IMethodNode) data.parent());
+    }
+    else
+    {
+      defineType((ITypeNode) data.parent());
+    }
+    if (!dataNodes.add(data.id()))
+    {
+      return;
+    }
+    final Map<TraceField, String> fields = TypeTools.newLinkedHashMap();
+    fields.put(TraceField.TYPE, defineType(data.type()));
+    fields.put(TraceField.VALUE, value(data.defaultValue()));
+    fields.put(TraceField.KIND, BinaryTraceTools.DEF_DATA);
+    fields.put(TraceField.KEY, String.valueOf(data.id()));
+    fields.put(TraceField.PARENT, data.parent() instanceof IMethodNode ? ((IMethodNode) data
+        .parent()).key() : ((ITypeNode) data.parent()).key());
+    fields.put(TraceField.NAME, data.name());
+    fields.put(TraceField.NODE, BinaryTraceEncoder.node(data));
+    fields.put(TraceField.MODIFIERS, BinaryTraceEncoder.modifiers(data.modifiers()));
+    fields.put(TraceField.LINE, String.valueOf(data.lineFrom()));
+    fields.put(TraceField.LAST_LINE, String.valueOf(data.lineTo()));
+    writer.write(fields);
+  }
+
+  private String defineMethod(final IMethodNode method) throws IOException
+  {
+    if (!methodNodes.add(method.key()))
+    {
+      return method.key();
+    }
+    final Map<TraceField, String> fields = TypeTools.newLinkedHashMap();
+    fields.put(TraceField.PARENT, defineType(method.parent()));
+    fields.put(TraceField.TYPE, defineType(method.returnType()));
+    fields.put(TraceField.KIND, BinaryTraceTools.DEF_METHOD);
+    fields.put(TraceField.KEY, method.key());
+    fields.put(TraceField.NAME, method.name());
+    fields.put(TraceField.NODE, BinaryTraceEncoder.node(method));
+    fields.put(TraceField.MODIFIERS, BinaryTraceEncoder.modifiers(method.modifiers()));
+    fields.put(TraceField.LINE, String.valueOf(method.lineFrom()));
+    fields.put(TraceField.LAST_LINE, String.valueOf(method.lineTo()));
+    writer.write(fields);
+    for (final IDataNode data : method.dataMembers().values())
+    {
+      defineData(data);
+    }
+    return method.key();
+  }
+
+  private void defineThread(final IThreadValue thread) throws IOException
+  {
+    if (threads.add(thread.id()))
+    {
+      final Map<TraceField, String> fields = TypeTools.newLinkedHashMap();
+      fields.put(TraceField.KIND, BinaryTraceTools.DEF_THREAD);
+      fields.put(TraceField.THREAD, String.valueOf(thread.id()));
+      fields.put(TraceField.NAME, thread.name());
+      writer.write(fields);
+    }
+  }
+
+  /**
+   * Introduces the type node, if it is resolved, and returns its key.
+   */
+  private String defineType(final ITypeNodeRef ref) throws IOException
+  {
+    final ITypeNode type = ref.node();
+    if (type == null || !typeNodes.add(ref.key()))
+    {
+      return ref.key();
+    }
+    final Map<TraceField, String> fields = TypeTools.newLinkedHashMap();
+    if (type.superClass() != null)
+    {
+      fields.put(TraceField.PARENT, defineType(type.superClass()));
+    }
+    fields.put(TraceField.VALUE, value(type.defaultValue()));
+    fields.put(TraceField.KIND, BinaryTraceTools.DEF_TYPE);
+    fields.put(TraceField.KEY, type.key());
+    fields.put(TraceField.NAME, type.name());
+    fields.put(TraceField.NODE, BinaryTraceEncoder.node(type));
+    fields.put(TraceField.MODIFIERS, BinaryTraceEncoder.modifiers(type.modifiers()));
+    fields.put(TraceField.LINE, String.valueOf(type.lineFrom()));
+    fields.put(TraceField.LAST_LINE, String.valueOf(type.lineTo()));
+    writer.write(fields);
+    for (final IDataNode data : type.dataMembers().values())
+    {
+      defineData(data);
+    }
+    return type.key();
+  }
+
+  private void encodeDetails(final Map<TraceField, String> fields, final IJiveEvent event)
+      throws IOException
+  {
+    switch (event.kind())
+    {
+      case EXCEPTION_CATCH:
+        {
+          final IExceptionCatchEvent exceptionCatch = (IExceptionCatchEvent) event;
+          fields.put(TraceField.EXCEPTION, value(exceptionCatch.exception()));
+          if (exceptionCatch.member() != null)
+          {
+            fields.put(TraceField.CONTEXT, frame(exceptionCatch.contour()));
+            fields.put(TraceField.VARIABLE, member(exceptionCatch.member().schema()));
+          }
+        }
+        break;
+      case EXCEPTION_THROW:
+        {
+          final IExceptionThrowEvent exceptionThrow = (IExceptionThrowEvent) event;
+          fields.put(TraceField.EXCEPTION, value(exceptionThrow.exception()));
+          fields.put(TraceField.THROWER, frame(exceptionThrow.thrower()));
+          fields.put(TraceField.FRAME_POPPED, String.valueOf(exceptionThrow.framePopped()));
+        }
+        break;
+      case FIELD_READ:
+        {
+          final IFieldReadEvent fieldRead = (IFieldReadEvent) event;
+          context(fields, fieldRead.contour());
+          fields.put(TraceField.VARIABLE, field(fieldRead.contour(), fieldRead.member()));
+        }
+        break;
+      case FIELD_WRITE:
+        {
+          final IFieldAssignEvent fieldWrite = (IFieldAssignEvent) event;
+          context(fields, fieldWrite.contour());
+          fields.put(TraceField.VARIABLE, field(fieldWrite.contour(), fieldWrite.member()));
+          fields.put(TraceField.VALUE, value(fieldWrite.newValue()));
+        }
+        break;
+      case METHOD_CALL:
+        {
+          final IMethodCallEvent call = (IMethodCallEvent) event;
+          fields.put(TraceField.CALLER, frame(call.caller()));
+          if (call.target().isMethodContourReference()
+              && !contours.get((int) ((IContourReference) call.target()).contour().id()))
+          {
+            create(fields, ((IContourReference) call.target()).contour());
+          }
+          else
+          {
+            fields.put(TraceField.TARGET, frame(call.target()));
+          }
+        }
+        break;
+      case METHOD_RETURNED:
+        {
+          final IMethodReturnedEvent returned = (IMethodReturnedEvent) event;
+          fields.put(TraceField.TERMINATOR, String.valueOf(returned.terminator().eventId()));
+        }
+        break;
+      case OBJECT_DESTROY:
+        {
+          context(fields, ((IDestroyObjectEvent) event).destroyedContour());
+        }
+        break;
+      case OBJECT_NEW:
+        {
+          create(fields, ((INewObjectEvent) event).newContour());
+        }
+        break;
+      case THREAD_LOCK:
+        {
+          final ILockEvent lock = (ILockEvent) event;
+          fields.put(TraceField.OPERATION, lock.lockOperation().name());
+          if (lock.lock() instanceof IContextContour)
+          {
+            context(fields, (IContextContour) lock.lock());
+          }
+          fields.put(TraceField.LOCK, lock.lockDescription());
+        }
+        break;
+      case TYPE_LOAD:
+        {
+          create(fields, ((ITypeLoadEvent) event).newContour());
+        }
+        break;
+      case VAR_ASSIGN:
+        {
+          final IVarAssignEvent varAssign = (IVarAssignEvent) event;
+          fields.put(TraceField.CONTEXT, frame(varAssign.contour()));
+          fields.put(TraceField.VARIABLE, member(varAssign.member().schema()));
+          fields.put(TraceField.VALUE, value(varAssign.newValue()));
+        }
+        break;
+      case VAR_DELETE:
+        {
+          final IVarDeleteEvent varDelete = (IVarDeleteEvent) event;
+          fields.put(TraceField.CONTEXT, frame((IMethodContour) varDelete.contour()));
+          fields.put(TraceField.VARIABLE, member(varDelete.member().schema()));
+        }
+        break;
+      case LINE_STEP:
+      case METHOD_ENTERED:
+      case METHOD_EXIT:
+      case SYSTEM_END:
+      case THREAD_END:
+        // no details
+        break;
+      default:
+        throw new IllegalArgumentException(String.format(
+            "Events of kind '%s' are not supported by the binary trace format.", event.kind()));
+    }
+  }
+
+  /**
+   * Encodes a member of a context contour. Array cells are identified by their index, all other
+   * members by their data node.
+   */
+  private String field(final IContextContour contour, final IContourMember member)
+      throws IOException
+  {
+    if (contour.schema().kind() != NodeKind.NK_ARRAY)
+    {
+      return member(member.schema());
+    }
+    // cells are named after their index, the members of the array type after their data node
+    return member.name().equals(member.schema().name()) ? String.valueOf(member.schema().index())
+        : member.name();
+  }
+
+  /**
+   * Encodes a reference to a method contour by the contour's identifier.
+   */
+  private String frame(final IMethodContour method) throws IOException
+  {
+    introduce(method);
+    return String.valueOf(method.id());
+  }
+
+  /**
+   * Encodes the value of a caller, target, or thrower field. References to method contours are
+   * encoded by the contour's identifier, all other values as in {@code value}.
+   */
+  private String frame(final IValue value) throws IOException
+  {
+    return value.isMethodContourReference() ? frame((IMethodContour) ((IContourReference) value)
+        .contour()) : value(value);
+  }
+
+  /**
+   * Writes a definition record for the contour if it has not been introduced yet.
+   */
+  private void introduce(final IContour contour) throws IOException
+  {
+    if (contours.get((int) contour.id()))
+    {
+      return;
+    }
+    final Map<TraceField, String> fields = TypeTools.newLinkedHashMap();
+    create(fields, contour);
+    if (contour instanceof IMethodContour)
+    {
+      defineThread(((IMethodContour) contour).thread());
+      fields.put(TraceField.THREAD, String.valueOf(((IMethodContour) contour).thread().id()));
+    }
+    fields.put(TraceField.KIND, BinaryTraceTools.DEF_CONTOUR);
+    writer.write(fields);
+  }
+
+  private String member(final IDataNode data) throws IOException
+  {
+    defineData(data);
+    return String.valueOf(data.id());
+  }
+
+  /**
+   * Encodes a value as a string whose first character identifies the kind of value. Primitive
+   * values that start with a digit or a minus sign are written as is, so that numbers are stored
+   * inline.
+   */
+  private String value(final IValue value) throws IOException
+  {
+    if (value == null)
+    {
+      return null;
+    }
+    switch (value.kind())
+    {
+      case IM_CONTOUR_REFERENCE:
+        {
+          final IContextContour contour = (IContextContour) ((IContourReference) value).contour();
+          introduce(contour);
+          return contour instanceof IObjectContour ? "O" + ((IObjectContour) contour).oid() + ":"
+              + contour.schema().name() : "C" + contour.schema().name();
+        }
+      case IM_METHOD_CONTOUR_REFERENCE:
+        return "M" + frame((IMethodContour) ((IContourReference) value).contour());
+      case IM_PRIMITIVE:
+        {
+          final String text = value.value();
+          final boolean isNumber = text.length() > 0
+              && (text.charAt(0) == '-' || Character.isDigit(text.charAt(0)));
+          return isNumber ? text : "P" + text;
+        }
+      case NULL:
+        return "N";
+      case OM_METHOD_KEY_REFERENCE:
+        return "K" + ((IOutOfModelMethodKeyReference) value).key() + "\n" + value.value();
+      case OM_METHOD_REFERENCE:
+        {
+          final IMethodContour method = ((IOutOfModelMethodReference) value).method();
+          return "Y" + (method == null ? "" : frame(method)) + "\n" + value.value();
+        }
+      case OM_RESOLVED:
+        return "R" + ((IResolvedValue) value).typeName() + "\n" + value.value();
+      case OUT_OF_MODEL:
+        return "X" + value.value();
+      case SYSTEM_CALLER:
+        return "S";
+      case UNINITIALIZED:
+        return "U";
+      default:
+        throw new IllegalArgumentException("Unknown value kind: " + value.kind());
+    }
+  }
+}
@@ -0,0 +1,439 @@
+package edu.buffalo.cse.jive.lib;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary encoding of trace records, i.e., maps from trace fields to string values. Records
+ * are produced from the events of a model by {@code BinaryTraceEncoder} and turned back into events
+ * by {@code BinaryTraceDecoder}. A binary trace file has the following layout:
+ *
+ * <pre>
+ *   header:     magic (int), version (int)
+ *   blocks:     deflated record blocks
+ *   dictionary: deflated string dictionary
+ *   index:      block count (int), [offset (long), length (int), raw length (int), records (int)]*,
+ *               dictionary offset (long), length (int), raw length (int)
+ *   trailer:    index offset (long), magic (int)
+ * </pre>
+ *
+ * A record is a varint field count followed by (field ordinal, value code) varint pairs. Canonical
+ * decimal values are encoded inline as zig-zag numbers-- event identifiers as deltas from the prior
+ * record of the block-- and all other values are references to the string dictionary. Each block is
+ * decoded independently of the others, so the index footer allows random access to the records.
+ */
+public class BinaryTraceTools
+{
+  public static final String EXTENSION = ".jtb";
+  // kinds of the definition records that introduce threads, nodes, and contours
+  static final String DEF_CONTOUR = "Contour";
+  static final String DEF_DATA = "Data";
+  static final String DEF_METHOD = "Method";
+  static final String DEF_THREAD = "Thread";
+  static final String DEF_TYPE = "Type";
+  private static final int BLOCK_RECORDS = 4096;
+  private static final int MAGIC = 0x4A544231;
+  // value code of null values
+  private static final long NULL_VALUE = 0;
+  // trailer: index offset and magic
+  private static final int TRAILER_SIZE = 12;
+  private static final int VERSION = 2;
+  private static final TraceField[] FIELDS = TraceField.values();
+
+  private static byte[] deflate(final Deflater deflater, final byte[] raw)
+  {
+    deflater.reset();
+    deflater.setInput(raw);
+    deflater.finish();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+    final byte[] buffer = new byte[8192];
+    while (!deflater.finished())
+    {
+      out.write(buffer, 0, deflater.deflate(buffer));
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] inflate(final byte[] data, final int rawLength) throws IOException
+  {
+    final Inflater inflater = new Inflater();
+    try
+    {
+      inflater.setInput(data);
+      final byte[] raw = new byte[rawLength];
+      int length = 0;
+      while (length < rawLength && !inflater.finished())
+      {
+        length += inflater.inflate(raw, length, rawLength - length);
+      }
+      if (length != rawLength)
+      {
+        throw new IOException("Corrupt binary trace block.");
+      }
+      return raw;
+    }
+    catch (final DataFormatException e)
+    {
+      throw new IOException("Corrupt binary trace block: " + e.getMessage());
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Returns true if the value is the canonical decimal representation of a number that fits the
+   * inline value encoding.
+   */
+  private static boolean isNumeric(final String value)
+  {
+    final int start = value.startsWith("-") ? 1 : 0;
+    final int digits = value.length() - start;
+    if (digits == 0 || digits > 18 || (digits > 1 && value.charAt(start) == '0')
+        || (start == 1 && "-0".equals(value)))
+    {
+      return false;
+    }
+    for (int i = start; i < value.length(); i++)
+    {
+      if (value.charAt(i) < '0' || value.charAt(i) > '9')
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long readVarLong(final ByteBuffer buffer)
+  {
+    long result = 0;
+    int shift = 0;
+    byte b;
+    do
+    {
+      b = buffer.get();
+      result |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return result;
+  }
+
+  private static void writeVarLong(final OutputStream out, final long value) throws IOException
+  {
+    long v = value;
+    while ((v & ~0x7FL) != 0)
+    {
+      out.write((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  /**
+   * Sequential reader of the records in a binary trace file.
+   */
+  public static final class TraceReader
+  {
+    private final String[] dictionary;
+    private final RandomAccessFile file;
+    // offset, length, raw length, and record count of each block
+    private final long[][] index;
+
+    public TraceReader(final File file) throws IOException
+    {
+      this.file = new RandomAccessFile(file, "r");
+      try
+      {
+        if (this.file.readInt() != BinaryTraceTools.MAGIC
+            || this.file.readInt() != BinaryTraceTools.VERSION)
+        {
+          throw new IOException("Not a binary trace file: '" + file + "'.");
+        }
+        this.file.seek(this.file.length() - BinaryTraceTools.TRAILER_SIZE);
+        final long indexOffset = this.file.readLong();
+        if (this.file.readInt() != BinaryTraceTools.MAGIC)
+        {
+          throw new IOException("Truncated binary trace file: '" + file + "'.");
+        }
+        this.file.seek(indexOffset);
+        this.index = new long[this.file.readInt()][];
+        for (int i = 0; i < index.length; i++)
+        {
+          index[i] = new long[]
+          { this.file.readLong(), this.file.readInt(), this.file.readInt(), this.file.readInt() };
+        }
+        final long dictionaryOffset = this.file.readLong();
+        final int dictionaryLength = this.file.readInt();
+        final int dictionaryRawLength = this.file.readInt();
+        final ByteBuffer buffer = ByteBuffer.wrap(BinaryTraceTools.inflate(
+            read(dictionaryOffset, dictionaryLength), dictionaryRawLength));
+        this.dictionary = new String[(int) BinaryTraceTools.readVarLong(buffer)];
+        for (int i = 0; i < dictionary.length; i++)
+        {
+          final int length = (int) BinaryTraceTools.readVarLong(buffer);
+          dictionary[i] = new String(buffer.array(), buffer.position(), length, "UTF-8");
+          buffer.position(buffer.position() + length);
+        }
+      }
+      catch (final IOException e)
+      {
+        this.file.close();
+        throw e;
+      }
+    }
+
+    public int blockCount()
+    {
+      return index.length;
+    }
+
+    public void close() throws IOException
+    {
+      file.close();
+    }
+
+    /**
+     * Decodes the records of the given block, in trace order.
+     */
+    public List<Map<TraceField, String>> readBlock(final int block) throws IOException
+    {
+      final long[] entry = index[block];
+      final ByteBuffer buffer = ByteBuffer.wrap(BinaryTraceTools.inflate(
+          read(entry[0], (int) entry[1]), (int) entry[2]));
+      final List<Map<TraceField, String>> records = TypeTools.newArrayList((int) entry[3]);
+      long lastId = 0;
+      for (int i = 0; i < entry[3]; i++)
+      {
+        final int fieldCount = (int) BinaryTraceTools.readVarLong(buffer);
+        final Map<TraceField, String> record = TypeTools.newLinkedHashMap(fieldCount);
+        for (int j = 0; j < fieldCount; j++)
+        {
+          final TraceField field = BinaryTraceTools.FIELDS[(int) BinaryTraceTools
+              .readVarLong(buffer)];
+          final long code = BinaryTraceTools.readVarLong(buffer);
+          if (code == BinaryTraceTools.NULL_VALUE)
+          {
+            record.put(field, null);
+          }
+          else if ((code & 1) == 0)
+          {
+            record.put(field, dictionary[(int) (code >>> 1) - 1]);
+          }
+          else
+          {
+            final long zigzag = code >>> 1;
+            long value = (zigzag >>> 1) ^ -(zigzag & 1);
+            if (field == TraceField.ID)
+            {
+              value += lastId;
+              lastId = value;
+            }
+            record.put(field, String.valueOf(value));
+          }
+        }
+        records.add(record);
+      }
+      return records;
+    }
+
+    public long recordCount()
+    {
+      long result = 0;
+      for (final long[] entry : index)
+      {
+        result += entry[3];
+      }
+      return result;
+    }
+
+    private byte[] read(final long offset, final int length) throws IOException
+    {
+      final byte[] data = new byte[length];
+      file.seek(offset);
+      file.readFully(data);
+      return data;
+    }
+  }
+
+  /**
+   * Writer of records to a binary trace file. Records are buffered in blocks of
+   * {@code BLOCK_RECORDS} and the dictionary and index are written when the writer is closed.
+   */
+  public static final class TraceWriter
+  {
+    private final ByteArrayOutputStream block;
+    private int blockRecords;
+    private final Deflater deflater;
+    private final Map<String, Integer> dictionary;
+    private final List<long[]> index;
+    private long lastId;
+    private final DataOutputStream out;
+    private long position;
+
+    public TraceWriter(final File file) throws IOException
+    {
+      this.block = new ByteArrayOutputStream(64 * 1024);
+      this.blockRecords = 0;
+      this.deflater = new Deflater(Deflater.BEST_SPEED);
+      this.dictionary = TypeTools.newLinkedHashMap();
+      this.index = TypeTools.newArrayList();
+      this.lastId = 0;
+      this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+          64 * 1024));
+      out.writeInt(BinaryTraceTools.MAGIC);
+      out.writeInt(BinaryTraceTools.VERSION);
+      this.position = 8;
+    }
+
+    /**
+     * Writes the pending records, the dictionary, and the index, and closes the file.
+     */
+    public void close() throws IOException
+    {
+      try
+      {
+        flushBlock();
+        // dictionary
+        final ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        BinaryTraceTools.writeVarLong(raw, dictionary.size());
+        for (final String value : dictionary.keySet())
+        {
+          final byte[] bytes = value.getBytes("UTF-8");
+          BinaryTraceTools.writeVarLong(raw, bytes.length);
+          raw.write(bytes);
+        }
+        final long dictionaryOffset = position;
+        final byte[] data = BinaryTraceTools.deflate(deflater, raw.toByteArray());
+        out.write(data);
+        position += data.length;
+        // index
+        final long indexOffset = position;
+        out.writeInt(index.size());
+        for (final long[] entry : index)
+        {
+          out.writeLong(entry[0]);
+          out.writeInt((int) entry[1]);
+          out.writeInt((int) entry[2]);
+          out.writeInt((int) entry[3]);
+        }
+        out.writeLong(dictionaryOffset);
+        out.writeInt(data.length);
+        out.writeInt(raw.size());
+        // trailer
+        out.writeLong(indexOffset);
+        out.writeInt(BinaryTraceTools.MAGIC);
+      }
+      finally
+      {
+        deflater.end();
+        out.close();
+      }
+    }
+
+    /**
+     * Appends a record to the trace.
+     */
+    public void write(final Map<TraceField, String> record) throws IOException
+    {
+      BinaryTraceTools.writeVarLong(block, record.size());
+      for (final Map.Entry<TraceField, String> entry : record.entrySet())
+      {
+        BinaryTraceTools.writeVarLong(block, entry.getKey().ordinal());
+        BinaryTraceTools.writeVarLong(block, encode(entry.getKey(), entry.getValue()));
+      }
+      if (++blockRecords == BinaryTraceTools.BLOCK_RECORDS)
+      {
+        flushBlock();
+      }
+    }
+
+    private long encode(final TraceField field, final String value)
+    {
+      if (value == null)
+      {
+        return BinaryTraceTools.NULL_VALUE;
+      }
+      if (BinaryTraceTools.isNumeric(value))
+      {
+        long number = Long.parseLong(value);
+        if (field == TraceField.ID)
+        {
+          final long delta = number - lastId;
+          lastId = number;
+          number = delta;
+        }
+        return (((number << 1) ^ (number >> 63)) << 1) | 1;
+      }
+      Integer id = dictionary.get(value);
+      if (id == null)
+      {
+        id = dictionary.size() + 1;
+        dictionary.put(value, id);
+      }
+      return ((long) id) << 1;
+    }
+
+    private void flushBlock() throws IOException
+    {
+      if (blockRecords == 0)
+      {
+        return;
+      }
+      final byte[] data = BinaryTraceTools.deflate(deflater, block.toByteArray());
+      index.add(new long[]
+      { position, data.length, block.size(), blockRecords });
+      out.write(data);
+      position += data.length;
+      block.reset();
+      blockRecords = 0;
+      lastId = 0;
+    }
+  }
+
+  /**
+   * Fields of binary trace records. Records are encoded with the ordinals of the fields, so new
+   * fields require a new format version.
+   */
+  public static enum TraceField
+  {
+    CALLER,
+    CONTEXT,
+    ELEMENTS,
+    EXCEPTION,
+    FILE,
+    FRAME_POPPED,
+    ID,
+    KEY,
+    KIND,
+    LAST_LINE,
+    LINE,
+    LOCK,
+    METHOD,
+    MODIFIERS,
+    NAME,
+    NODE,
+    OBJECT,
+    OPERATION,
+    PARENT,
+    TARGET,
+    TERMINATOR,
+    THREAD,
+    THROWER,
+    TYPE,
+    VALUE,
+    VARIABLE
+  }
+}
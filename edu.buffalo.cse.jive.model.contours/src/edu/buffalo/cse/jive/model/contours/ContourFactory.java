@@ -1,6 +1,7 @@
 package edu.buffalo.cse.jive.model.contours;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
@@ -218,6 +219,21 @@ public class ContourFactory implements IContourFactory
       return newMethodContour(schema, threadId, this);
     }
 
+    /**
+     * Removes the method calls discarded from the trace.
+     */
+    public void discardInitiators()
+    {
+      final Iterator<IMethodCallEvent> iterator = initiators.iterator();
+      while (iterator.hasNext())
+      {
+        if (!iterator.next().isVisible())
+        {
+          iterator.remove();
+        }
+      }
+    }
+
     @Override
     public boolean isStatic()
     {
@@ -12,8 +12,7 @@ import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
 import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
 import edu.buffalo.cse.jive.model.IContourModel.IObjectContour;
 import edu.buffalo.cse.jive.model.IExecutionModel;
-import edu.buffalo.cse.jive.model.IExecutionModel.AtomicUpdate;
-import edu.buffalo.cse.jive.model.IExecutionModel.IStateChange;
+import edu.buffalo.cse.jive.model.IStore;
 import edu.buffalo.cse.jive.model.factory.IEventFactory;
 
 public final class EventFactory implements IEventFactory
@@ -272,6 +271,32 @@ public final class EventFactory implements IEventFactory
     return new RTTypeLoadEvent(timestamp, thread, line, contour);
   }
 
+  /**
+   * Creates a line step or method entered event with the given identifier and parent. These events
+   * hold nothing beyond their kind, thread, line, and parent, so the store may keep these in its
+   * columns and recreate the events on demand. The parent is not notified of the recreated event.
+   */
+  public JiveEvent createScalarEvent(final EventKind kind, final long eventId,
+      final IThreadValue thread, final ILineValue line, final IInitiatorEvent parent)
+  {
+    final JiveEvent result;
+    if (kind == EventKind.LINE_STEP)
+    {
+      result = new LineStepEvent(thread, line);
+    }
+    else if (kind == EventKind.METHOD_ENTERED)
+    {
+      result = new MethodEnteredEvent(thread, line);
+    }
+    else
+    {
+      throw new IllegalArgumentException("Cannot create a scalar event of kind " + kind + ".");
+    }
+    result.eventId = eventId;
+    result.parentExecution = parent;
+    return result;
+  }
+
   @Override
   public IJiveEvent createScopeAllocEvent(final long timestamp, final IThreadValue thread,
       final ILineValue line, final String scope, final int size, final boolean isImmortal)
@@ -380,6 +405,14 @@ public final class EventFactory implements IEventFactory
     return new VarDeleteEvent(thread, line, variable);
   }
 
+  /**
+   * Determines whether the event can be recreated by {@code createScalarEvent}.
+   */
+  public boolean isScalarEvent(final IJiveEvent event)
+  {
+    return event.getClass() == LineStepEvent.class || event.getClass() == MethodEnteredEvent.class;
+  }
+
   @Override
   public IExecutionModel model()
   {
@@ -392,8 +425,6 @@ public final class EventFactory implements IEventFactory
   public abstract class AssignEvent extends DataEvent implements IAssignEvent
   {
     private final IValue newValue;
-    // relevant only for sliced models
-    private IValue lastValue;
 
     private AssignEvent(final IThreadValue thread, final ILineValue line, final IContour contour,
         final IValue newValue, final IContourMember member)
@@ -408,14 +439,6 @@ public final class EventFactory implements IEventFactory
         throw new IllegalArgumentException("Cannot create an assign event with a null new value.");
       }
       this.newValue = newValue;
-      this.lastValue = null;
-    }
-
-    // relevant only for sliced models
-    @Override
-    public IValue getLastValue()
-    {
-      return model.sliceView() == null ? null : this.lastValue;
     }
 
     @Override
@@ -423,24 +446,6 @@ public final class EventFactory implements IEventFactory
     {
       return this.newValue;
     }
-
-    // relevant only for sliced models
-    @Override
-    public void setLastAssignment(final IDataEvent event)
-    {
-      if (event == null)
-      {
-        this.lastValue = null;
-      }
-      else if (event instanceof IAssignEvent || event instanceof IVarDeleteEvent)
-      {
-        final List<IStateChange> changes = event.transaction().changes();
-        if (changes.size() == 1 && changes.get(0) instanceof AtomicUpdate)
-        {
-          this.lastValue = ((AtomicUpdate) changes.get(0)).oldValue();
-        }
-      }
-    }
   }
 
   /**
@@ -454,19 +459,12 @@ public final class EventFactory implements IEventFactory
     private final List<? extends IInitiatorEvent> initiators;
     private IJiveEvent lastEvent;
     private ITerminatorEvent terminator;
-    /**
-     * Virtual fragment of the state.
-     */
-    private boolean virtualHasChildren;
-    private List<? extends IInitiatorEvent> virtualInitiators;
-    private IJiveEvent virtualLastEvent;
 
     private InitiatorEvent(final IThreadValue thread, final ILineValue line)
     {
       super(thread, line);
       hasChildren = false;
       initiators = TypeTools.newArrayList();
-      virtualHasChildren = false;
     }
 
     /**
@@ -532,6 +530,28 @@ public final class EventFactory implements IEventFactory
       initiators.add(initiator);
     }
 
+    /**
+     * Removes the nested initiators discarded from the trace, along with the out-of-model call
+     * separators left adjacent to each other.
+     */
+    public void discardInitiators()
+    {
+      final Iterator<? extends IInitiatorEvent> iterator = initiators.iterator();
+      boolean isLastNull = false;
+      while (iterator.hasNext())
+      {
+        final IInitiatorEvent child = iterator.next();
+        if ((child == null && isLastNull) || (child != null && !((JiveEvent) child).isVisible()))
+        {
+          iterator.remove();
+        }
+        else
+        {
+          isLastNull = child == null;
+        }
+      }
+    }
+
     /**
      * NOTE: This method does not need to take any special action to handle virtual/normal modes in
      * the initiator since it relies on methods (rather than fields) that are supposed to resolve
@@ -613,7 +633,8 @@ public final class EventFactory implements IEventFactory
     @Override
     public boolean hasChildren()
     {
-      return model.store().isVirtual() ? virtualHasChildren : hasChildren;
+      final InitiatorViewState state = viewState();
+      return state == null ? hasChildren : state.hasChildren;
     }
 
     /**
@@ -647,17 +668,8 @@ public final class EventFactory implements IEventFactory
     @Override
     public List<? extends IInitiatorEvent> nestedInitiators()
     {
-      return model.store().isVirtual() ? virtualInitiators : initiators;
-    }
-
-    @Override
-    public void resetVirtualId()
-    {
-      super.resetVirtualId();
-      virtualHasChildren = false;
-      virtualInitiators.clear();
-      virtualInitiators = null;
-      virtualLastEvent = null;
+      final InitiatorViewState state = viewState();
+      return state == null ? initiators : state.initiators;
     }
 
     public void setLastEvent(final IJiveEvent event)
@@ -688,13 +700,22 @@ public final class EventFactory implements IEventFactory
     }
 
     /**
-     * Important-- when a call event is virtualized, all its children must have been virtualized
-     * already (otherwise, all nested children would be empty!).
+     * Resolves the terminator based on whether this event is virtual/normal.
      */
     @Override
-    public void setVirtualId(final long virtualId)
+    public ITerminatorEvent terminator()
+    {
+      return terminator != null && terminator.eventId() > EventFactory.EVENT_NULL ? terminator
+          : null;
+    }
+
+    /**
+     * Computes the state of this initiator under the view in place. Nested initiators and the last
+     * event of a visible child are resolved through the child's own state under the view, which is
+     * computed on demand in turn.
+     */
+    private InitiatorViewState computeViewState()
     {
-      super.setVirtualId(virtualId);
       final List<IInitiatorEvent> virtualInitiators = TypeTools.newArrayList();
       boolean isLastNull = false;
       IInitiatorEvent lastChild = null;
@@ -725,8 +746,7 @@ public final class EventFactory implements IEventFactory
       {
         virtualInitiators.add(null);
       }
-      // make it formal
-      this.virtualHasChildren = lastChild != null;
+      boolean virtualHasChildren = lastChild != null;
       // at this point, we need brute force
       if (hasChildren && !virtualHasChildren)
       {
@@ -756,23 +776,10 @@ public final class EventFactory implements IEventFactory
           }
         }
       }
-      // make it formal
-      this.virtualInitiators = virtualInitiators;
-      // now set the virtual last event
-      if (lastEvent != null)
-      {
-        setLastVirtualEvent(lastChild);
-      }
-    }
-
-    /**
-     * Resolves the terminator based on whether this event is virtual/normal.
-     */
-    @Override
-    public ITerminatorEvent terminator()
-    {
-      return terminator != null && terminator.eventId() > EventFactory.EVENT_NULL ? terminator
-          : null;
+      // now compute the virtual last event
+      final IJiveEvent virtualLastEvent = lastEvent == null ? null
+          : lookupLastVirtualEvent(lastChild);
+      return new InitiatorViewState(virtualHasChildren, virtualInitiators, virtualLastEvent);
     }
 
     /**
@@ -801,13 +808,13 @@ public final class EventFactory implements IEventFactory
         return null;
       }
       // traverse back through the visible events within this initiator's execution context
-      JiveEvent currentEvent = (JiveEvent) priorEvent.prior();
+      JiveEvent currentEvent = (JiveEvent) priorInContext(priorEvent);
       while (currentEvent != null
           && currentEvent.eventId() > eventId()
           && !executionContext().equals(
               currentEvent.parent() == null ? null : currentEvent.parent().executionContext()))
       {
-        currentEvent = (JiveEvent) currentEvent.prior();
+        currentEvent = (JiveEvent) priorInContext(currentEvent);
       }
       // either null or a visible event in this event's execution context
       return currentEvent;
@@ -818,12 +825,12 @@ public final class EventFactory implements IEventFactory
      * 
      * TODO: reduce the cyclomatic complexity.
      */
-    private void setLastVirtualEvent(final IJiveEvent lastChild)
+    private IJiveEvent lookupLastVirtualEvent(final IJiveEvent lastChild)
     {
       // the virtual last event is the actual last event
       if (lastEvent.eventId() > EventFactory.EVENT_NULL)
       {
-        virtualLastEvent = lastEvent;
+        return lastEvent;
       }
       else
       {
@@ -836,7 +843,7 @@ public final class EventFactory implements IEventFactory
               && currentEvent.eventId() == EventFactory.EVENT_NULL)
           {
             // && (currentEvent.eventId() == EVENT_NULL || currentEvent.parent() != this)) {
-            currentEvent = model.store().lookupRawEvent(((JiveEvent) currentEvent).eventId - 1);
+            currentEvent = model.store().lookupRawPriorEvent(currentEvent);
           }
         }
         // search anywhere in this thread
@@ -847,7 +854,7 @@ public final class EventFactory implements IEventFactory
               && (currentEvent.eventId() == EventFactory.EVENT_NULL || currentEvent.thread() != thread()))
           {
             // && (currentEvent.eventId() == EVENT_NULL || currentEvent.parent() != this)) {
-            currentEvent = model.store().lookupRawEvent(((JiveEvent) currentEvent).eventId - 1);
+            currentEvent = model.store().lookupRawPriorEvent(currentEvent);
           }
         }
         // search anywhere in this method
@@ -857,7 +864,7 @@ public final class EventFactory implements IEventFactory
               && (((JiveEvent) currentEvent).eventId >= super.eventId)
               && (currentEvent.eventId() == EventFactory.EVENT_NULL || currentEvent.parent() != this))
           {
-            currentEvent = model.store().lookupRawEvent(((JiveEvent) currentEvent).eventId - 1);
+            currentEvent = model.store().lookupRawPriorEvent(currentEvent);
           }
         }
         IJiveEvent lastFromChild = null;
@@ -871,27 +878,37 @@ public final class EventFactory implements IEventFactory
           // current event occurred before the call to the child
           if (lastFromChild.eventId() > currentEvent.eventId())
           {
-            virtualLastEvent = lastFromChild;
+            return lastFromChild;
           }
           // current event occurred after the call to the child
           else
           {
-            virtualLastEvent = currentEvent;
+            return currentEvent;
           }
         }
         // this initiator's own event
         else if (currentEvent != null)
         {
-          virtualLastEvent = currentEvent;
+          return currentEvent;
         }
         // the last child's event is inherited
         else
         {
-          virtualLastEvent = lastFromChild;
+          return lastFromChild;
         }
       }
     }
 
+    /**
+     * Returns the prior event that may belong to this initiator's execution context. Events of a
+     * method execution all occur on the initiator's thread, so the events of other threads are not
+     * visited.
+     */
+    private IJiveEvent priorInContext(final IJiveEvent event)
+    {
+      return thread() == null ? event.prior() : model.store().lookupPriorEventInThread(event);
+    }
+
     protected void setHasChildren()
     {
       this.hasChildren = true;
@@ -902,7 +919,25 @@ public final class EventFactory implements IEventFactory
      */
     IJiveEvent lastEvent()
     {
-      return model.store().isVirtual() ? virtualLastEvent : lastEvent;
+      final InitiatorViewState state = viewState();
+      return state == null ? lastEvent : state.lastEvent;
+    }
+
+    /**
+     * State of this initiator under the view in place, or null if no view is in place. The state is
+     * computed the first time it is needed and cached by the view, never by this event, so views
+     * can be switched or used side by side without touching the events they select.
+     */
+    private InitiatorViewState viewState()
+    {
+      final IStore store = model.store();
+      if (!store.isVirtual())
+      {
+        return null;
+      }
+      final InitiatorViewState state = (InitiatorViewState) store.lookupViewState(this);
+      return state != null ? state : (InitiatorViewState) store.storeViewState(this,
+          computeViewState());
     }
   }
 
@@ -916,8 +951,6 @@ public final class EventFactory implements IEventFactory
     private ILineValue line;
     private IInitiatorEvent parentExecution;
     private final IThreadValue thread;
-    private ITransaction transaction;
-    private long virtualId;
 
     private JiveEvent(final IThreadValue thread, final ILineValue line)
     {
@@ -937,7 +970,14 @@ public final class EventFactory implements IEventFactory
       {
         this.line = line;
       }
-      this.virtualId = EventFactory.EVENT_NULL;
+    }
+
+    /**
+     * The actual event identifier, regardless of whether this event is virtual/normal.
+     */
+    public long actualId()
+    {
+      return eventId;
     }
 
     /**
@@ -975,8 +1015,8 @@ public final class EventFactory implements IEventFactory
     @Override
     public long eventId()
     {
-      // Check the store and use either the virtual or the actual identifier.
-      return model.store().isVirtual() ? virtualId : eventId;
+      // the store derives the virtual identifier from the view in place, if any
+      return model.store().lookupEventId(eventId);
     }
 
     @Override
@@ -1021,11 +1061,6 @@ public final class EventFactory implements IEventFactory
       return model.store().lookupPriorEvent(this);
     }
 
-    public void resetVirtualId()
-    {
-      virtualId = EventFactory.EVENT_NULL;
-    }
-
     public void setEventId(final long eventId)
     {
       this.eventId = eventId;
@@ -1037,17 +1072,6 @@ public final class EventFactory implements IEventFactory
       this.parentExecution = event;
     }
 
-    public void setTransaction(final ITransaction transaction)
-    {
-      this.transaction = transaction;
-    }
-
-    public void setVirtualId(final long virtualId)
-    {
-      assert virtualId > 0 : "A virtual event identifier must be a positive value.";
-      this.virtualId = virtualId;
-    }
-
     @Override
     public IThreadValue thread()
     {
@@ -1063,7 +1087,7 @@ public final class EventFactory implements IEventFactory
     @Override
     public ITransaction transaction()
     {
-      return transaction;
+      return model.store().lookupTransaction(this);
     }
   }
 
@@ -1208,14 +1232,8 @@ public final class EventFactory implements IEventFactory
           }
         }
       }
-      // skip through events in other threads
-      IJiveEvent currentEvent = nextEvent.next();
-      while (currentEvent != null && !currentEvent.thread().equals(rootEvent.thread()))
-      {
-        currentEvent = currentEvent.next();
-      }
-      // either null or an event in the root event's thread
-      nextEvent = currentEvent;
+      // events in other threads are not visited
+      nextEvent = model.store().lookupNextEventInThread(nextEvent);
     }
   }
 
@@ -1374,10 +1392,29 @@ public final class EventFactory implements IEventFactory
     }
   }
 
+  /**
+   * State of an initiator event under a view: the visible nested initiators, whether any of the
+   * initiator's events is visible, and the last visible event in the initiator.
+   */
+  private static final class InitiatorViewState
+  {
+    private final boolean hasChildren;
+    private final List<? extends IInitiatorEvent> initiators;
+    private final IJiveEvent lastEvent;
+
+    private InitiatorViewState(final boolean hasChildren,
+        final List<? extends IInitiatorEvent> initiators, final IJiveEvent lastEvent)
+    {
+      this.hasChildren = hasChildren;
+      this.initiators = initiators;
+      this.lastEvent = lastEvent;
+    }
+  }
+
   /**
    * Data members introduced by this event: none.
    */
-  private final class LineStepEvent extends JiveEvent implements ILineStepEvent
+  private final class LineStepEvent extends ScalarEvent implements ILineStepEvent
   {
     LineStepEvent(final IThreadValue thread, final ILineValue line)
     {
@@ -1583,7 +1620,7 @@ public final class EventFactory implements IEventFactory
   /**
    * Data members introduced by this event: none.
    */
-  private class MethodEnteredEvent extends JiveEvent implements IMethodEnteredEvent
+  private class MethodEnteredEvent extends ScalarEvent implements IMethodEnteredEvent
   {
     MethodEnteredEvent(final IThreadValue thread, final ILineValue line)
     {
@@ -2210,6 +2247,35 @@ public final class EventFactory implements IEventFactory
    * 
    * TODO: update the string representation in StringTools
    */
+  /**
+   * Events that the store may recreate from its columns. Two such events are equal if they are
+   * recreated from the same entry of the store.
+   */
+  private abstract class ScalarEvent extends JiveEvent
+  {
+    private ScalarEvent(final IThreadValue thread, final ILineValue line)
+    {
+      super(thread, line);
+    }
+
+    @Override
+    public boolean equals(final Object other)
+    {
+      if (this == other)
+      {
+        return true;
+      }
+      return other != null && other.getClass() == getClass() && actualId() > 0
+          && ((ScalarEvent) other).actualId() == actualId();
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (int) (actualId() ^ (actualId() >>> 32));
+    }
+  }
+
   private final class ScopeAllocEvent extends ScopeEvent implements IScopeAllocEvent
   {
     private final boolean isImmortal;
@@ -2635,8 +2701,6 @@ public final class EventFactory implements IEventFactory
    */
   private final class VarAssignEvent extends LocalDataEvent implements IVarAssignEvent
   {
-    // relevant only for sliced models
-    private IValue lastValue;
     private final IValue newValue;
 
     private VarAssignEvent(final IThreadValue thread, final ILineValue line, final IValue newValue,
@@ -2652,7 +2716,6 @@ public final class EventFactory implements IEventFactory
         throw new IllegalArgumentException("Cannot create an assign event with a null new value.");
       }
       this.newValue = newValue;
-      this.lastValue = null;
     }
 
     @Override
@@ -2661,13 +2724,6 @@ public final class EventFactory implements IEventFactory
       model.transactionLog().atomicValueSet(this, contour(), member(), newValue());
     }
 
-    // relevant only for sliced models
-    @Override
-    public IValue getLastValue()
-    {
-      return model.sliceView() == null ? null : this.lastValue;
-    }
-
     @Override
     public EventKind kind()
     {
@@ -2679,17 +2735,6 @@ public final class EventFactory implements IEventFactory
     {
       return this.newValue;
     }
-
-    // relevant only for sliced models
-    @Override
-    public void setLastAssignment(final IDataEvent event)
-    {
-      final List<IStateChange> changes = event.transaction().changes();
-      if (changes.size() == 1 && changes.get(0) instanceof AtomicUpdate)
-      {
-        this.lastValue = ((AtomicUpdate) changes.get(0)).oldValue();
-      }
-    }
   }
 
   /**
@@ -1,8 +1,13 @@
 package edu.buffalo.cse.jive.model.queries;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import edu.buffalo.cse.jive.model.IContourModel.IContour;
@@ -19,8 +24,15 @@ import edu.buffalo.cse.jive.model.IEventModel.IMethodExitEvent;
 import edu.buffalo.cse.jive.model.IEventModel.INewObjectEvent;
 import edu.buffalo.cse.jive.model.IExecutionModel;
 import edu.buffalo.cse.jive.model.IExecutionModel.IProgramSlice;
+import edu.buffalo.cse.jive.model.IStaticModel.INode;
 import edu.buffalo.cse.jive.model.RelationalOperator;
 import edu.buffalo.cse.jive.model.factory.IQueryFactory;
+import edu.buffalo.cse.jive.practql.IFactory;
+import edu.buffalo.cse.jive.practql.PractqlFactory;
+import edu.buffalo.cse.jive.practql.expression.query.IQueryExpression;
+import edu.buffalo.cse.jive.practql.expression.query.QueryException;
+import edu.buffalo.cse.jive.practql.parser.ParserException;
+import edu.buffalo.cse.jive.practql.schema.SchemaException;
 
 public class QueryFactory implements IQueryFactory
 {
@@ -79,6 +91,12 @@ public class QueryFactory implements IQueryFactory
     return new SlicingQuery(params);
   }
 
+  @Override
+  public EventQuery createTemporalQuery(final TemporalQueryParams params)
+  {
+    return new TemporalQuery(params);
+  }
+
   @Override
   public EventQuery createVariableChangedQuery(final VariableChangedQueryParams params)
   {
@@ -103,6 +121,12 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      return createIndexedIterator(EventKind.EXCEPTION_CATCH);
+    }
+
     @Override
     public boolean satisfies(final IJiveEvent event)
     {
@@ -127,6 +151,19 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    /**
+     * Exception values are rendered as their contour signatures, i.e., the type name and the
+     * instance number separated by a colon. The type of a matching exception must end with the part
+     * of the exception text prior to the colon, if any.
+     */
+    @Override
+    protected boolean acceptKey(final Object key)
+    {
+      final String text = params().exceptionText();
+      final int colon = text.lastIndexOf(':');
+      return key == null || colon == -1 || ((INode) key).name().endsWith(text.substring(0, colon));
+    }
+
     @Override
     protected ExceptionQueryParams params()
     {
@@ -168,6 +205,12 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      return createIndexedIterator(EventKind.EXCEPTION_THROW);
+    }
+
     @Override
     public boolean satisfies(final IJiveEvent event)
     {
@@ -190,6 +233,60 @@ public class QueryFactory implements IQueryFactory
     }
   }
 
+  /**
+   * Iterates over the events with the given identifiers in the model, in increasing order. Under a
+   * view, these are the virtual identifiers of the events. Identifiers of events not in the trace,
+   * such as discarded events, are skipped. Only the events returned are materialized.
+   */
+  private class IndexedEventIterator implements Iterator<IJiveEvent>
+  {
+    private final long[] eventIds;
+    private int next;
+    // event to return next, if already looked up
+    private IJiveEvent nextEvent;
+
+    private IndexedEventIterator(final long[] eventIds)
+    {
+      this.eventIds = eventIds;
+      this.next = 0;
+      this.nextEvent = null;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      while (nextEvent == null && next < eventIds.length)
+      {
+        final long eventId = eventIds[next++];
+        // events indexed under more than one key appear more than once
+        while (next < eventIds.length && eventIds[next] == eventId)
+        {
+          next++;
+        }
+        nextEvent = model.lookupEvent(eventId);
+      }
+      return nextEvent != null;
+    }
+
+    @Override
+    public IJiveEvent next()
+    {
+      if (!hasNext())
+      {
+        throw new NoSuchElementException();
+      }
+      final IJiveEvent result = nextEvent;
+      nextEvent = null;
+      return result;
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   private class InvariantViolatedQuery extends JiveQuery
   {
     /**
@@ -208,6 +305,20 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    @Override
+    protected boolean acceptKey(final Object key)
+    {
+      final String name = ((INode) key).name();
+      return !rejectString(params().leftVariableText(), name)
+          || !rejectString(params().rightVariableText(), name);
+    }
+
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      return createIndexedIterator(EventKind.FIELD_WRITE);
+    }
+
     @Override
     public void close()
     {
@@ -465,6 +576,8 @@ public class QueryFactory implements IQueryFactory
    */
   private abstract class JiveQuery implements EventQuery
   {
+    // whether the read lock is held until the query is closed
+    private boolean isLocked;
     private Iterator<? extends IJiveEvent> iterator;
     private IJiveEvent match;
     private final Object params;
@@ -474,6 +587,16 @@ public class QueryFactory implements IQueryFactory
       this.params = params;
     }
 
+    /**
+     * Determines whether events indexed under the key may satisfy the query. Keys are the static
+     * entities under which the store indexes searchable events, so this is a necessary condition
+     * for the events to satisfy the query, which is still checked event by event.
+     */
+    protected boolean acceptKey(final Object key)
+    {
+      return true;
+    }
+
     @Override
     public void close()
     {
@@ -481,10 +604,54 @@ public class QueryFactory implements IQueryFactory
       {
         match = null;
         iterator = null;
-        model.readUnlock();
+        if (isLocked)
+        {
+          isLocked = false;
+          model.readUnlock();
+        }
       }
     }
 
+    /**
+     * Returns an iterator over the events of the given kinds indexed under the keys accepted by
+     * this query, in trace order. The search index refers to the actual events, so while a view is
+     * in place their identifiers are mapped to the view, and the events outside of it are skipped.
+     */
+    protected Iterator<? extends IJiveEvent> createIndexedIterator(final EventKind... kinds)
+    {
+      final List<long[]> keyIds = new ArrayList<long[]>();
+      int size = 0;
+      for (final EventKind kind : kinds)
+      {
+        for (final Object key : model.store().lookupSearchKeys(kind))
+        {
+          if (acceptKey(key))
+          {
+            keyIds.add(model.store().lookupSearchEvents(kind, key));
+            size += keyIds.get(keyIds.size() - 1).length;
+          }
+        }
+      }
+      long[] eventIds = new long[size];
+      size = 0;
+      for (final long[] ids : keyIds)
+      {
+        for (final long id : ids)
+        {
+          // zero if the event is not in the view in place
+          final long eventId = model.store().lookupEventId(id);
+          if (eventId > 0)
+          {
+            eventIds[size++] = eventId;
+          }
+        }
+      }
+      // restore the trace order across keys
+      eventIds = Arrays.copyOf(eventIds, size);
+      Arrays.sort(eventIds);
+      return new IndexedEventIterator(eventIds);
+    }
+
     /**
      * Returns the iterator over the trace events for this query.
      */
@@ -504,8 +671,25 @@ public class QueryFactory implements IQueryFactory
     {
       if (iterator == null)
       {
+        /**
+         * The iterator is created under the lock so that the search index and the trace agree.
+         * Outside of views, the trace is an immutable snapshot, so the lock is released right away
+         * and the search runs concurrently with the recording of new events.
+         */
         model.readLock();
-        iterator = createIterator();
+        isLocked = true;
+        try
+        {
+          iterator = createIterator();
+        }
+        finally
+        {
+          if (iterator == null || !model.store().isVirtual())
+          {
+            isLocked = false;
+            model.readUnlock();
+          }
+        }
       }
     }
 
@@ -563,6 +747,20 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    @Override
+    protected boolean acceptKey(final Object key)
+    {
+      final ILineValue line = (ILineValue) key;
+      return !rejectString(params().sourcePathText(), line.file().name())
+          && !rejectString(params().lineNumberText(), String.valueOf(line.lineNumber()));
+    }
+
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      return createIndexedIterator(EventKind.LINE_STEP);
+    }
+
     @Override
     public boolean satisfies(final IJiveEvent event)
     {
@@ -600,6 +798,12 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      return createIndexedIterator(EventKind.METHOD_CALL);
+    }
+
     @Override
     public boolean satisfies(final IJiveEvent event)
     {
@@ -631,6 +835,15 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    /**
+     * The method name of a method contour is the name of its schema.
+     */
+    @Override
+    protected boolean acceptKey(final Object key)
+    {
+      return !rejectString(params().methodText(), ((INode) key).name());
+    }
+
     @Override
     protected MethodQueryParams params()
     {
@@ -668,6 +881,12 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      return createIndexedIterator(EventKind.METHOD_EXIT);
+    }
+
     @Override
     public boolean satisfies(final IJiveEvent event)
     {
@@ -715,6 +934,21 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    /**
+     * The class name of an instance contour is the name of its schema.
+     */
+    @Override
+    protected boolean acceptKey(final Object key)
+    {
+      return params().classText().equals(((INode) key).name());
+    }
+
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      return createIndexedIterator(EventKind.OBJECT_NEW);
+    }
+
     @Override
     public boolean satisfies(final IJiveEvent event)
     {
@@ -774,6 +1008,79 @@ public class QueryFactory implements IQueryFactory
     }
   }
 
+  /**
+   * A query over the temporal database of the trace. The query is executed in memory when it is
+   * opened, and it matches the events whose identifiers appear in the first field of the result.
+   */
+  private class TemporalQuery extends JiveQuery
+  {
+    private final Set<Long> eventIds;
+
+    private TemporalQuery(final TemporalQueryParams params)
+    {
+      super(params);
+      this.eventIds = new HashSet<Long>();
+    }
+
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      final IFactory factory = PractqlFactory.getDefault();
+      eventIds.clear();
+      try
+      {
+        final TemporalDatabase database = new TemporalDatabase(model);
+        final IQueryExpression expression = factory.createParser().parse(params().queryText(),
+            database.getSchema());
+        for (final Object[] tuple : factory.createExecutor(database).execute(expression)
+            .getTuples())
+        {
+          if (tuple.length > 0 && tuple[0] instanceof Long)
+          {
+            eventIds.add((Long) tuple[0]);
+          }
+        }
+      }
+      catch (final SchemaException e)
+      {
+        throw new IllegalStateException(e.getMessage(), e);
+      }
+      catch (final ParserException e)
+      {
+        throw new IllegalArgumentException(e.getMessage(), e);
+      }
+      catch (final QueryException e)
+      {
+        throw new IllegalArgumentException(e.getMessage(), e);
+      }
+      // the event tuples hold the identifiers of the events in the view in place, if any
+      final long[] ids = new long[eventIds.size()];
+      int size = 0;
+      for (final Long eventId : eventIds)
+      {
+        if (eventId > 0)
+        {
+          ids[size++] = eventId;
+        }
+      }
+      final long[] sorted = Arrays.copyOf(ids, size);
+      Arrays.sort(sorted);
+      return new IndexedEventIterator(sorted);
+    }
+
+    @Override
+    protected TemporalQueryParams params()
+    {
+      return (TemporalQueryParams) super.params();
+    }
+
+    @Override
+    public boolean satisfies(final IJiveEvent event)
+    {
+      return eventIds.contains(event.eventId());
+    }
+  }
+
   /**
    * A query to check where a variable has changed and also when a condition on the new value holds.
    * The query is capable of checking for variable changes on a single instance or over all
@@ -789,6 +1096,18 @@ public class QueryFactory implements IQueryFactory
       super(params);
     }
 
+    @Override
+    protected boolean acceptKey(final Object key)
+    {
+      return !rejectString(params().variableText(), ((INode) key).name());
+    }
+
+    @Override
+    protected Iterator<? extends IJiveEvent> createIterator()
+    {
+      return createIndexedIterator(EventKind.FIELD_WRITE, EventKind.VAR_ASSIGN);
+    }
+
     /**
      * TODO: reduce the cyclomatic complexity.
      */
@@ -0,0 +1,476 @@
+package edu.buffalo.cse.jive.model.queries;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
+import edu.buffalo.cse.jive.model.IEventModel.EventKind;
+import edu.buffalo.cse.jive.model.IEventModel.IAssignEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IDataEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IDestroyObjectEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodCallEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodTerminatorEvent;
+import edu.buffalo.cse.jive.model.IEventModel.INewObjectEvent;
+import edu.buffalo.cse.jive.model.IEventModel.ITypeLoadEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IVarDeleteEvent;
+import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.IModel.ILineValue;
+import edu.buffalo.cse.jive.model.IModel.IThreadValue;
+import edu.buffalo.cse.jive.model.IStore;
+import edu.buffalo.cse.jive.practql.PractqlFactory;
+import edu.buffalo.cse.jive.practql.execution.CInterval;
+import edu.buffalo.cse.jive.practql.execution.IDatabase;
+import edu.buffalo.cse.jive.practql.execution.IRelation;
+import edu.buffalo.cse.jive.practql.schema.IDatabaseSchema;
+import edu.buffalo.cse.jive.practql.schema.IRelationSchema;
+import edu.buffalo.cse.jive.practql.schema.ISchemaFactory;
+import edu.buffalo.cse.jive.practql.schema.ISchemaSignature;
+import edu.buffalo.cse.jive.practql.schema.SchemaException;
+import edu.buffalo.cse.jive.practql.schema.Type;
+
+/**
+ * Temporal database over the in-memory execution model, so that queries run against the trace
+ * without exporting it to a relational database. The relations mirror the views of the exported
+ * schema, and time is measured in event identifiers:
+ *
+ * <pre>
+ *   event(eventId, parentId, thread, line, kind, t)
+ *   contour(contourId, parentId, kind, signature, span)
+ *   contour_member(contourId, member, value, span)
+ * </pre>
+ *
+ * The relations are views of the trace and are never copied. Each iteration over a relation walks
+ * the identifiers of the events of the published trace, and computes the tuples on the fly. Event
+ * tuples are read from the columns of the store, so no event is materialized; contours and member
+ * values are read from the events that create, assign, or end them. Contours and member values are
+ * only held while they are live in the iteration, that is, until the event that ends their
+ * lifespan.
+ */
+public class TemporalDatabase implements IDatabase
+{
+  private static final String REL_CONTOUR = "contour";
+  private static final String REL_CONTOUR_MEMBER = "contour_member";
+  private static final String REL_EVENT = "event";
+  private final IExecutionModel model;
+  private final IDatabaseSchema schema;
+
+  public TemporalDatabase(final IExecutionModel model) throws SchemaException
+  {
+    this.model = model;
+    this.schema = createSchema();
+  }
+
+  @Override
+  public IDatabaseSchema getSchema()
+  {
+    return schema;
+  }
+
+  @Override
+  public IRelation lookupRelation(final String name)
+  {
+    final String key = name.toLowerCase();
+    if (TemporalDatabase.REL_EVENT.equals(key))
+    {
+      return new TemporalRelation(key)
+        {
+          @Override
+          protected TraceIterator createIterator()
+          {
+            return new EventIterator();
+          }
+        };
+    }
+    if (TemporalDatabase.REL_CONTOUR.equals(key))
+    {
+      return new TemporalRelation(key)
+        {
+          @Override
+          protected TraceIterator createIterator()
+          {
+            return new ContourIterator();
+          }
+        };
+    }
+    if (TemporalDatabase.REL_CONTOUR_MEMBER.equals(key))
+    {
+      return new TemporalRelation(key)
+        {
+          @Override
+          protected TraceIterator createIterator()
+          {
+            return new MemberIterator();
+          }
+        };
+    }
+    return null;
+  }
+
+  private IDatabaseSchema createSchema() throws SchemaException
+  {
+    final ISchemaFactory factory = PractqlFactory.getDefault().schemaFactory();
+    final IDatabaseSchema result = factory.newDatabaseSchema("jive");
+    IRelationSchema rs = factory.newRelationSchema(TemporalDatabase.REL_EVENT, factory
+        .newFieldSchema("eventId", Type.INTEGER));
+    rs.getSignature().append(factory.newFieldSchema("parentId", Type.INTEGER));
+    rs.getSignature().append(factory.newFieldSchema("thread", Type.STRING));
+    rs.getSignature().append(factory.newFieldSchema("line", Type.INTEGER));
+    rs.getSignature().append(factory.newFieldSchema("kind", Type.STRING));
+    rs.getSignature().append(factory.newFieldSchema("t", Type.TP));
+    result.append(rs);
+    rs = factory.newRelationSchema(TemporalDatabase.REL_CONTOUR, factory.newFieldSchema(
+        "contourId", Type.INTEGER));
+    rs.getSignature().append(factory.newFieldSchema("parentId", Type.INTEGER));
+    rs.getSignature().append(factory.newFieldSchema("kind", Type.STRING));
+    rs.getSignature().append(factory.newFieldSchema("signature", Type.STRING));
+    rs.getSignature().append(factory.newFieldSchema("span", Type.TP_ENCODED));
+    result.append(rs);
+    rs = factory.newRelationSchema(TemporalDatabase.REL_CONTOUR_MEMBER, factory.newFieldSchema(
+        "contourId", Type.INTEGER));
+    rs.getSignature().append(factory.newFieldSchema("member", Type.STRING));
+    rs.getSignature().append(factory.newFieldSchema("value", Type.STRING));
+    rs.getSignature().append(factory.newFieldSchema("span", Type.TP_ENCODED));
+    result.append(rs);
+    return result;
+  }
+
+  /**
+   * Contour created by the event, if any.
+   */
+  private IContour createdContour(final IJiveEvent event)
+  {
+    return event instanceof ITypeLoadEvent ? ((ITypeLoadEvent) event).newContour()
+        : event instanceof INewObjectEvent ? ((INewObjectEvent) event).newContour()
+            : event instanceof IMethodCallEvent ? ((IMethodCallEvent) event).execution() : null;
+  }
+
+  /**
+   * Contour whose lifespan ends with the event, if any: the object destroyed by the event or the
+   * method execution whose frame is popped by the event.
+   */
+  private IContour endedContour(final IJiveEvent event)
+  {
+    if (event instanceof IDestroyObjectEvent)
+    {
+      return ((IDestroyObjectEvent) event).destroyedContour();
+    }
+    if (event instanceof IMethodTerminatorEvent && ((IMethodTerminatorEvent) event).framePopped()
+        && event.parent() != null)
+    {
+      return ((IMethodTerminatorEvent) event).parent().execution();
+    }
+    return null;
+  }
+
+  /**
+   * Contours live from the event that creates them until the event that destroys them, or the
+   * terminator of their method call. Contours still live when the trace ends have no right
+   * endpoint.
+   */
+  private final class ContourIterator extends TraceIterator
+  {
+    // contours created but not yet ended, keyed by identifier
+    private final Map<Long, Object[]> live;
+
+    private ContourIterator()
+    {
+      this.live = new HashMap<Long, Object[]>();
+    }
+
+    // records the contour and, for new objects, its superclass contours
+    private void create(final IContour contour, final IJiveEvent event)
+    {
+      if (event instanceof INewObjectEvent && contour.parent() != null)
+      {
+        create(contour.parent(), event);
+      }
+      live.put(contour.id(), new Object[]
+      { contour.id(), contour.parent() == null ? null : contour.parent().id(),
+          contour.kind().toString(), contour.signature(), event.eventId() });
+    }
+
+    // ends the contour and, for destroyed objects, its superclass contours
+    private void end(final IContour contour, final IJiveEvent event)
+    {
+      if (event instanceof IDestroyObjectEvent && contour.parent() != null)
+      {
+        end(contour.parent(), event);
+      }
+      final Object[] tuple = live.remove(contour.id());
+      if (tuple != null)
+      {
+        emit(tuple, event.eventId());
+      }
+    }
+
+    private void emit(final Object[] tuple, final Long end)
+    {
+      pending().add(new Object[]
+      { tuple[0], tuple[1], tuple[2], tuple[3], new CInterval((Long) tuple[4], end) });
+    }
+
+    @Override
+    protected void finish()
+    {
+      for (final Object[] tuple : live.values())
+      {
+        emit(tuple, null);
+      }
+      live.clear();
+    }
+
+    @Override
+    protected void process(final long eventId)
+    {
+      final IJiveEvent event = lookupStateEvent(eventId);
+      if (event == null)
+      {
+        return;
+      }
+      final IContour created = createdContour(event);
+      if (created != null)
+      {
+        create(created, event);
+      }
+      final IContour ended = endedContour(event);
+      if (ended != null)
+      {
+        end(ended, event);
+      }
+    }
+  }
+
+  /**
+   * One tuple per event of the trace.
+   */
+  private final class EventIterator extends TraceIterator
+  {
+    @Override
+    protected void finish()
+    {
+    }
+
+    @Override
+    protected void process(final long eventId)
+    {
+      final IStore store = model.store();
+      final long id = store.lookupEventId(eventId);
+      final long parentId = store.lookupParentEventId(eventId);
+      final long threadId = store.lookupEventThreadId(eventId);
+      final IThreadValue thread = threadId == -1 ? null : store.lookupThread(threadId);
+      final ILineValue line = store.lookupLineValue(store.lookupEventLineId(eventId));
+      pending().add(new Object[]
+      { id, parentId == -1 ? null : store.lookupEventId(parentId),
+          thread == null ? null : thread.name(), (long) line.lineNumber(),
+          store.lookupEventKind(eventId).toString(), id });
+    }
+  }
+
+  /**
+   * Member values live from the event that assigns them until the next assignment to the member,
+   * the deletion of the member, or the end of the contour. Values still live when the trace ends
+   * have no right endpoint.
+   */
+  private final class MemberIterator extends TraceIterator
+  {
+    // value tuples currently live for the members of each contour
+    private final Map<Long, Map<String, Object[]>> live;
+
+    private MemberIterator()
+    {
+      this.live = new HashMap<Long, Map<String, Object[]>>();
+    }
+
+    private void emit(final Object[] tuple, final Long end)
+    {
+      pending().add(new Object[]
+      { tuple[0], tuple[1], tuple[2], new CInterval((Long) tuple[3], end) });
+    }
+
+    // ends the values of the contour's members and, for destroyed objects, of its superclasses
+    private void end(final IContour contour, final IJiveEvent event)
+    {
+      if (event instanceof IDestroyObjectEvent && contour.parent() != null)
+      {
+        end(contour.parent(), event);
+      }
+      final Map<String, Object[]> values = live.remove(contour.id());
+      if (values != null)
+      {
+        for (final Object[] tuple : values.values())
+        {
+          emit(tuple, event.eventId());
+        }
+      }
+    }
+
+    @Override
+    protected void finish()
+    {
+      for (final Map<String, Object[]> values : live.values())
+      {
+        for (final Object[] tuple : values.values())
+        {
+          emit(tuple, null);
+        }
+      }
+      live.clear();
+    }
+
+    @Override
+    protected void process(final long eventId)
+    {
+      final IJiveEvent event = lookupStateEvent(eventId);
+      if (event == null)
+      {
+        return;
+      }
+      if (event instanceof IAssignEvent || event instanceof IVarDeleteEvent)
+      {
+        final IDataEvent data = (IDataEvent) event;
+        Map<String, Object[]> values = live.get(data.contour().id());
+        if (values == null)
+        {
+          values = new HashMap<String, Object[]>();
+          live.put(data.contour().id(), values);
+        }
+        final Object[] prior = values.remove(data.member().name());
+        if (prior != null)
+        {
+          emit(prior, event.eventId());
+        }
+        // a deleted variable has no value until it is assigned again
+        if (event instanceof IAssignEvent)
+        {
+          values.put(data.member().name(), new Object[]
+          { data.contour().id(), data.member().name(),
+              ((IAssignEvent) event).newValue().value(), event.eventId() });
+        }
+      }
+      final IContour ended = endedContour(event);
+      if (ended != null)
+      {
+        end(ended, event);
+      }
+    }
+  }
+
+  /**
+   * Relation whose tuples are computed by a new pass over the trace on every iteration.
+   */
+  private abstract class TemporalRelation implements IRelation, Iterable<Object[]>
+  {
+    private final String name;
+
+    private TemporalRelation(final String name)
+    {
+      this.name = name;
+    }
+
+    protected abstract TraceIterator createIterator();
+
+    @Override
+    public ISchemaSignature getSignature()
+    {
+      return schema.lookupRelation(name).getSignature();
+    }
+
+    @Override
+    public Iterable<Object[]> getTuples()
+    {
+      return this;
+    }
+
+    @Override
+    public Iterator<Object[]> iterator()
+    {
+      return createIterator();
+    }
+  }
+
+  /**
+   * Walks the identifiers of the events of the published trace, skipping the events not in the view
+   * in place, if any, and iterates over the tuples they produce.
+   */
+  private abstract class TraceIterator implements Iterator<Object[]>
+  {
+    private boolean isFinished;
+    // actual identifier of the last event walked
+    private long lastId;
+    private final LinkedList<Object[]> pending;
+
+    private TraceIterator()
+    {
+      this.isFinished = false;
+      this.lastId = 0;
+      this.pending = new LinkedList<Object[]>();
+    }
+
+    /**
+     * Produces the tuples of the values still live when the trace ends.
+     */
+    protected abstract void finish();
+
+    @Override
+    public boolean hasNext()
+    {
+      while (pending.isEmpty() && !isFinished)
+      {
+        lastId = model.store().lookupNextEventId(lastId);
+        if (lastId == 0)
+        {
+          isFinished = true;
+          finish();
+        }
+        else if (model.store().lookupEventId(lastId) > 0)
+        {
+          process(lastId);
+        }
+      }
+      return !pending.isEmpty();
+    }
+
+    @Override
+    public Object[] next()
+    {
+      if (!hasNext())
+      {
+        throw new NoSuchElementException();
+      }
+      return pending.removeFirst();
+    }
+
+    /**
+     * Returns the event with the given (actual) identifier, or null if it is a line step or method
+     * entered event. These events neither create nor end contours, and assign no members, so they
+     * are never materialized.
+     */
+    protected IJiveEvent lookupStateEvent(final long eventId)
+    {
+      final EventKind kind = model.store().lookupEventKind(eventId);
+      return kind == EventKind.LINE_STEP || kind == EventKind.METHOD_ENTERED ? null : model
+          .store().lookupRawEvent(eventId);
+    }
+
+    protected List<Object[]> pending()
+    {
+      return pending;
+    }
+
+    /**
+     * Produces the tuples completed by the event with the given (actual) identifier.
+     */
+    protected abstract void process(long eventId);
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
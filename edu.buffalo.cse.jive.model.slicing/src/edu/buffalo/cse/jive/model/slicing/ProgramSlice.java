@@ -12,6 +12,7 @@ import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
 import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
 import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
 import edu.buffalo.cse.jive.model.IEventModel.IAssignEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IDataEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IDestroyObjectEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IFieldAssignEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IFieldReadEvent;
@@ -28,7 +29,9 @@ import edu.buffalo.cse.jive.model.IEventModel.IThreadStartEvent;
 import edu.buffalo.cse.jive.model.IEventModel.ITypeLoadEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IVarDeleteEvent;
 import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.IExecutionModel.AtomicUpdate;
 import edu.buffalo.cse.jive.model.IExecutionModel.IProgramSlice;
+import edu.buffalo.cse.jive.model.IExecutionModel.IStateChange;
 import edu.buffalo.cse.jive.model.IModel.IContourReference;
 import edu.buffalo.cse.jive.model.IModel.IMethodContourReference;
 import edu.buffalo.cse.jive.model.IModel.IThreadValue;
@@ -38,6 +41,7 @@ import edu.buffalo.cse.jive.model.IStaticModel.ITypeNode;
 import edu.buffalo.cse.jive.model.IStaticModel.NodeKind;
 import edu.buffalo.cse.jive.model.IStaticModel.NodeModifier;
 import edu.buffalo.cse.jive.model.IStaticModel.NodeOrigin;
+import edu.buffalo.cse.jive.model.IStore;
 
 /**
  * One instance of this class is shared across all method slices. This guarantees that the same set
@@ -48,6 +52,11 @@ import edu.buffalo.cse.jive.model.IStaticModel.NodeOrigin;
  */
 public final class ProgramSlice implements IProgramSlice
 {
+  /**
+   * Array contours in the set of relevant contexts. An assignment to any cell of these arrays is
+   * relevant to the slice, regardless of the chased fields.
+   */
+  private final List<IContextContour> arrayContexts;
   /**
    * Exceptions currently relevant to the slice. This set is important for exceptions propagating
    * across method slices.
@@ -70,6 +79,11 @@ public final class ProgramSlice implements IProgramSlice
    * initializer is relevant to the slice.
    */
   private final Set<IContextContour> contexts;
+  /**
+   * Event currently processed by the slice computation. Used by detached slices to determine the
+   * values of contour members at the respective point of the execution.
+   */
+  private IJiveEvent current;
   /**
    * Maps each MethodCallEvent to the respective MethodEnteredEvent in order to construct a
    * consistent reduced execution model.
@@ -101,6 +115,19 @@ public final class ProgramSlice implements IProgramSlice
    * The slicing criterion must be an assign event.
    */
   private final IAssignEvent initial;
+  /**
+   * A detached slice is computed without changing the state of the execution model, so that many
+   * such slices can be computed concurrently. Its traversal does not roll back the temporal state
+   * and member values are obtained from the def-use index. Consequently, a detached slice provides
+   * the set of events in the slice but it cannot be applied as a filter to the model.
+   */
+  private final boolean isDetached;
+  /**
+   * In-slice old value of the member of each relevant assignment, i.e., the value assigned by the
+   * prior relevant assignment to the same member. Replaying the sliced model restores these values
+   * instead of the old values recorded in the trace, which may come from irrelevant assignments.
+   */
+  private final Map<IAssignEvent, IValue> lastValues;
   /**
    * <pre>
    * Method contours corresponding to method calls relevant to the program slice.  A method call is 
@@ -152,14 +179,26 @@ public final class ProgramSlice implements IProgramSlice
 
   public ProgramSlice(final IAssignEvent initial)
   {
+    this(initial, false);
+  }
+
+  /**
+   * Creates a program slice for the initial event. Detached slices require the def-use index.
+   */
+  public ProgramSlice(final IAssignEvent initial, final boolean isDetached)
+  {
+    this.arrayContexts = TypeTools.newArrayList();
     this.chaseExceptions = TypeTools.newHashSet();
     this.chaseFields = TypeTools.newHashSet();
     this.contexts = TypeTools.newHashSet();
+    this.current = null;
     this.enteredEvents = TypeTools.newHashMap();
     this.enums = TypeTools.newHashMap();
     this.eventSet = new BitSet();
     this.hasSnapshot = false;
     this.initial = initial;
+    this.isDetached = isDetached;
+    this.lastValues = TypeTools.newHashMap();
     this.members = TypeTools.newHashSet();
     this.methods = TypeTools.newHashSet();
     this.pendingCompleted = TypeTools.newHashMap();
@@ -183,7 +222,7 @@ public final class ProgramSlice implements IProgramSlice
       if (value != null)
       {
         // associate the original assignment with this member (old value)
-        valueChain.get(member).setLastAssignment(event);
+        chainLastValue(value, event);
       }
       // last operation on this member was a USE
       else
@@ -218,7 +257,7 @@ public final class ProgramSlice implements IProgramSlice
       if (ae != null)
       {
         // associate an uninitialized value with the member's assign event
-        ae.setLastAssignment(event);
+        chainLastValue(ae, event);
         System.err.println("Setting unassigned value for: " + member.name());
       }
     }
@@ -256,6 +295,12 @@ public final class ProgramSlice implements IProgramSlice
     return initial;
   }
 
+  @Override
+  public IValue lastValue(final IAssignEvent event)
+  {
+    return lastValues.get(event);
+  }
+
   @Override
   public Set<IContourMember> members()
   {
@@ -341,6 +386,55 @@ public final class ProgramSlice implements IProgramSlice
     }
   }
 
+  /**
+   * Determines whether events from threads other than the event's thread can be skipped, namely,
+   * when no array cells or exceptions are chased and only the event's thread has outstanding
+   * slices. Chased fields are defined at events located through the def-use index, which are not
+   * skipped.
+   */
+  private boolean canSkipOtherThreads(final IJiveEvent event)
+  {
+    if (model().store().isVirtual() || !arrayContexts.isEmpty() || !chaseExceptions.isEmpty())
+    {
+      return false;
+    }
+    for (final IThreadValue thread : slices.keySet())
+    {
+      if (!thread.equals(event.thread()) && !slices.get(thread).isEmpty())
+      {
+        return false;
+      }
+    }
+    for (final IThreadValue thread : pendingCompleted.keySet())
+    {
+      if (!thread.equals(event.thread()))
+      {
+        return false;
+      }
+    }
+    for (final IThreadValue thread : pendingOutOfModel.keySet())
+    {
+      if (!thread.equals(event.thread()))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Records the value of the member prior to the event as the in-slice old value of the relevant
+   * assignment.
+   */
+  private void chainLastValue(final IAssignEvent def, final IDataEvent event)
+  {
+    final List<IStateChange> changes = event.transaction().changes();
+    if (changes.size() == 1 && changes.get(0) instanceof AtomicUpdate)
+    {
+      lastValues.put(def, ((AtomicUpdate) changes.get(0)).oldValue());
+    }
+  }
+
   private MethodSlice createSlice(final Stack<MethodSlice> stack, final IJiveEvent event,
       final MethodSlice completed)
   {
@@ -426,6 +520,40 @@ public final class ProgramSlice implements IProgramSlice
     return null;
   }
 
+  /**
+   * Returns the identifier of the closest event prior to the given one at which the traversal must
+   * resume so that no definition of a chased field is skipped, or zero if no chased field is
+   * defined before the event. The last definition of each chased field is found in the def-use
+   * index. A definition from another thread is reached through the last event of its thread prior
+   * to the given event, so that the method slices of that thread are initiated as usual.
+   */
+  private long definitionBound(final IJiveEvent event)
+  {
+    final IStore store = model().store();
+    long defId = 0;
+    for (final IContourMember member : chaseFields)
+    {
+      defId = Math.max(defId, store.lookupLastDefinition(member, event.eventId()));
+    }
+    if (defId == 0)
+    {
+      return 0;
+    }
+    IJiveEvent resume = store.lookupRawEvent(defId);
+    if (resume.thread() == null || resume.thread().equals(event.thread()))
+    {
+      return defId;
+    }
+    // events of the definition's thread past the definition do not define chased fields
+    IJiveEvent next = store.lookupNextEventInThread(resume);
+    while (next != null && next.eventId() < event.eventId())
+    {
+      resume = next;
+      next = store.lookupNextEventInThread(resume);
+    }
+    return resume.eventId();
+  }
+
   private IMethodContour getMethod(final IMethodCallEvent call, final boolean isInitial)
   {
     if (call.target() instanceof IMethodContourReference)
@@ -554,12 +682,31 @@ public final class ProgramSlice implements IProgramSlice
     return slices.get(event.thread());
   }
 
+  /**
+   * Returns the value of the member at the event currently processed. For detached slices, this is
+   * the value assigned by the member's last definition up to that event, if any.
+   */
+  private IValue memberValue(final IContourMember member)
+  {
+    if (!isDetached)
+    {
+      return member.value();
+    }
+    final IStore store = model().store();
+    final long defId = current == null ? 0 : store.lookupLastDefinition(member,
+        current.eventId() + 1);
+    return defId == 0 ? null : ((IAssignEvent) store.lookupRawEvent(defId)).newValue();
+  }
+
   /**
    * Returns the prior event in the trace.
    * 
-   * POSSIBLE IMPROVEMENT: If the set of currently chased fields is empty, this method could skip
-   * events from threads with no outstanding method slice, since such threads cannot possibly affect
-   * the slice computation and threads do not share local variables.
+   * If the sets of currently chased arrays and exceptions are empty, this method skips events from
+   * threads with no outstanding method slice, since threads do not share local variables and such
+   * threads can only affect the slice computation by defining a chased field. The traversal jumps
+   * from definition to definition of the chased fields through the def-use index. Structural and
+   * snapshot events are never skipped, since they may be relevant to the slice's contexts. Skipped
+   * events are rolled back in a single step.
    */
   private IJiveEvent priorEvent(final IJiveEvent event)
   {
@@ -574,12 +721,44 @@ public final class ProgramSlice implements IProgramSlice
       return null;
     }
     // return the prior event
-    final IJiveEvent prior = event.prior();
-    initial.model().temporalState().rollback();
+    final IJiveEvent prior = canSkipOtherThreads(event) ? priorInThread(event) : event.prior();
+    if (!isDetached)
+    {
+      // the temporal state is rolled back through the event following the prior event, found by
+      // position since identifiers are not consecutive once old events are discarded
+      final IJiveEvent target = (prior == null ? model().lookupRoot() : prior).next();
+      if (target == null || target.eventId() >= event.eventId())
+      {
+        initial.model().temporalState().rollback();
+      }
+      else
+      {
+        initial.model().temporalState().consolidateTo(target);
+      }
+    }
     // ((ExecutionModel) initial.model()).transactionLog().rollback();
     return prior;
   }
 
+  /**
+   * Returns the prior event in the event's thread, or the closest structural, snapshot, or
+   * definition event from another thread occurring after it. All are found through store indexes,
+   * so skipped events are never visited.
+   */
+  private IJiveEvent priorInThread(final IJiveEvent event)
+  {
+    final IStore store = model().store();
+    final IJiveEvent prior = store.lookupPriorEventInThread(event);
+    final long boundId = Math.max(definitionBound(event), store.lookupLastStructuralEvent(event
+        .eventId()));
+    if (prior != null && prior.eventId() > boundId)
+    {
+      return prior;
+    }
+    // with no bound, the traversal resumes at the root, which is never discarded
+    return boundId == 0 ? model().lookupRoot() : store.lookupRawEvent(boundId);
+  }
+
   /**
    * Adds the context to the set of relevant contexts. For instance contours, all inherited contours
    * are included and so are the respective static contours.
@@ -591,6 +770,10 @@ public final class ProgramSlice implements IProgramSlice
     while (contour != null && !contexts.contains(contour))
     {
       contexts.add(contour);
+      if (contour.schema().kind() == NodeKind.NK_ARRAY)
+      {
+        arrayContexts.add(contour);
+      }
       contour = contour.parent();
     }
     // for instance contours, add the respective static contours
@@ -617,10 +800,11 @@ public final class ProgramSlice implements IProgramSlice
     if (member != null)
     {
       members.add(member);
+      final IValue value = memberValue(member);
       // if the member value is a contour reference, it is relevant
-      if (member.value().isContourReference())
+      if (value != null && value.isContourReference())
       {
-        addContext((IContextContour) ((IContourReference) member.value()).contour());
+        addContext((IContextContour) ((IContourReference) value).contour());
       }
     }
   }
@@ -640,6 +824,7 @@ public final class ProgramSlice implements IProgramSlice
     // while there are events to process
     while (event != null)
     {
+      current = event;
       // structural events are processed separately
       if (isStructuralEvent(event))
       {
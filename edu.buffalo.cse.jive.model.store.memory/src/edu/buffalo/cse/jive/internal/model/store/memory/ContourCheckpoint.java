@@ -0,0 +1,128 @@
+package edu.buffalo.cse.jive.internal.model.store.memory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.contours.ContourFactory.IMutableContourMember;
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IModel.IValue;
+
+/**
+ * Snapshot of the contour model taken after the transaction of a given event was committed. A
+ * checkpoint consists of a copy of the contour structure and of the values of the members of every
+ * contour in the model at that point, as well as those of the contours deleted since the prior
+ * checkpoint. The latter are necessary because a deleted contour must retain its final state in
+ * case its deletion is later rolled back.
+ * <p>
+ * Restoring a checkpoint is only valid if the current state of the model lies between the prior
+ * and the next checkpoints. Contours created after a checkpoint are not part of it, so the store
+ * reverts them to their state at creation separately.
+ */
+final class ContourCheckpoint
+{
+  private final Map<IContour, IContour> childToParent;
+  private final IJiveEvent event;
+  // number of entries in the store's creation log when this checkpoint was taken
+  private final int logSize;
+  private final Map<IContour, List<IContour>> parentToChildren;
+  private final List<MemberValue> values;
+
+  ContourCheckpoint(final IJiveEvent event, final Map<IContour, IContour> childToParent,
+      final Map<IContour, List<IContour>> parentToChildren, final Collection<IContour> deleted,
+      final int logSize)
+  {
+    this.event = event;
+    this.logSize = logSize;
+    this.childToParent = TypeTools.newHashMap(childToParent.size());
+    this.childToParent.putAll(childToParent);
+    this.parentToChildren = TypeTools.newHashMap(parentToChildren.size());
+    for (final Map.Entry<IContour, List<IContour>> entry : parentToChildren.entrySet())
+    {
+      final List<IContour> children = TypeTools.newArrayList(entry.getValue().size());
+      children.addAll(entry.getValue());
+      this.parentToChildren.put(entry.getKey(), children);
+    }
+    this.values = TypeTools.newArrayList();
+    for (final IContour contour : childToParent.keySet())
+    {
+      ContourCheckpoint.capture(contour, values);
+    }
+    for (final IContour contour : deleted)
+    {
+      ContourCheckpoint.capture(contour, values);
+    }
+  }
+
+  /**
+   * Appends the current values of the contour's mutable members to the list.
+   */
+  static void capture(final IContour contour, final List<MemberValue> values)
+  {
+    for (final IContourMember member : contour.members())
+    {
+      if (member instanceof IMutableContourMember)
+      {
+        values.add(new MemberValue((IMutableContourMember) member, member.value()));
+      }
+    }
+  }
+
+  /**
+   * Event whose transaction was the last one committed when this checkpoint was taken.
+   */
+  IJiveEvent event()
+  {
+    return event;
+  }
+
+  int logSize()
+  {
+    return logSize;
+  }
+
+  /**
+   * Replaces the contents of the contour structure maps with this checkpoint's copies and restores
+   * the member values captured by this checkpoint.
+   */
+  void restore(final Map<IContour, IContour> childToParent,
+      final Map<IContour, List<IContour>> parentToChildren)
+  {
+    childToParent.clear();
+    childToParent.putAll(this.childToParent);
+    parentToChildren.clear();
+    for (final Map.Entry<IContour, List<IContour>> entry : this.parentToChildren.entrySet())
+    {
+      final List<IContour> children = TypeTools.newArrayList(entry.getValue().size());
+      children.addAll(entry.getValue());
+      parentToChildren.put(entry.getKey(), children);
+    }
+    for (final MemberValue value : values)
+    {
+      value.restore();
+    }
+  }
+
+  /**
+   * Value of a mutable contour member at some point of the execution.
+   */
+  static final class MemberValue
+  {
+    private final IMutableContourMember member;
+    private final IValue value;
+
+    MemberValue(final IMutableContourMember member, final IValue value)
+    {
+      this.member = member;
+      this.value = value;
+    }
+
+    void restore()
+    {
+      member.setValue(value);
+    }
+  }
+}
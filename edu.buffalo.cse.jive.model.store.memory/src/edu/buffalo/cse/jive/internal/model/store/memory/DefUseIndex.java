@@ -0,0 +1,51 @@
+package edu.buffalo.cse.jive.internal.model.store.memory;
+
+import java.util.Map;
+
+import edu.buffalo.cse.jive.lib.TypeTools;
+
+/**
+ * Reverse definition index of the trace. For every contour member, the index keeps the identifiers
+ * of the assign events that define the member, in trace order. Since events are stored in
+ * increasing identifier order, each list is sorted and the last definition of a member prior to any
+ * given event is found by binary search.
+ */
+final class DefUseIndex
+{
+  private final Map<Object, EventIdList> definitions;
+
+  DefUseIndex()
+  {
+    this.definitions = TypeTools.newHashMap();
+  }
+
+  /**
+   * Records the event as a definition of the key. Events must be added in increasing identifier
+   * order.
+   */
+  void add(final Object key, final long eventId)
+  {
+    EventIdList defs = definitions.get(key);
+    if (defs == null)
+    {
+      defs = new EventIdList();
+      definitions.put(key, defs);
+    }
+    defs.add(eventId);
+  }
+
+  void clear()
+  {
+    definitions.clear();
+  }
+
+  /**
+   * Identifier of the last definition of the key prior to the given event, or zero if there is
+   * none.
+   */
+  long lastBefore(final Object key, final long eventId)
+  {
+    final EventIdList defs = definitions.get(key);
+    return defs == null ? 0 : defs.lastBefore(eventId);
+  }
+}
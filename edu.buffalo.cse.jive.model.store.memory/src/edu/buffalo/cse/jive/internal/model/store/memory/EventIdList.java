@@ -0,0 +1,50 @@
+package edu.buffalo.cse.jive.internal.model.store.memory;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of event identifiers. Events are stored in increasing identifier order, so lists
+ * built as events are stored are sorted and can be searched by binary search.
+ */
+final class EventIdList
+{
+  private static final int INITIAL_CAPACITY = 4;
+  private long[] ids;
+  private int size;
+
+  EventIdList()
+  {
+    this.ids = new long[EventIdList.INITIAL_CAPACITY];
+    this.size = 0;
+  }
+
+  void add(final long eventId)
+  {
+    if (size == ids.length)
+    {
+      ids = Arrays.copyOf(ids, size << 1);
+    }
+    ids[size++] = eventId;
+  }
+
+  void clear()
+  {
+    size = 0;
+  }
+
+  /**
+   * Last identifier in the list prior to the given one, or zero if there is none.
+   */
+  long lastBefore(final long eventId)
+  {
+    final int index = Arrays.binarySearch(ids, 0, size, eventId);
+    // position of the first identifier not prior to the event
+    final int position = index >= 0 ? index : -index - 1;
+    return position == 0 ? 0 : ids[position - 1];
+  }
+
+  long[] toArray()
+  {
+    return Arrays.copyOf(ids, size);
+  }
+}
@@ -0,0 +1,516 @@
+package edu.buffalo.cse.jive.internal.model.store.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.IEventModel.EventKind;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IExecutionModel.IStateChange;
+import edu.buffalo.cse.jive.model.events.EventFactory.JiveEvent;
+
+/**
+ * Append-only log of the events in the store, read by the model under its write lock and by views
+ * through published snapshots that require no lock at all.
+ * <p>
+ * Events are kept in pages of {@code PAGE_EVENTS} slots. A page is never reallocated and a slot is
+ * never written twice, so the events below the size of a snapshot never change once published: the
+ * writer only fills slots above the published size, and a directory that runs out of room is
+ * copied rather than grown in place. Clearing the log or retaining only some of its events starts
+ * over with a fresh directory and a new epoch, leaving the pages of older snapshots untouched.
+ * Publishing is a single volatile write, which makes every event appended before it visible to the
+ * readers of the new snapshot.
+ * <p>
+ * Each page of events has a direct buffer of primitive columns: the kind, thread, line, and parent
+ * of each event, the links to the next and prior events of the same thread, and the range of the
+ * event's changes in the state change arena of the epoch. Readers that only need these attributes
+ * read the columns and never touch the events. The log leaves the slot of an event empty when the
+ * materializer can recreate the event from its columns, and recreates the event whenever its slot
+ * is read. The columns of an event are written before it is published; the only later write is
+ * the link from the prior event of its thread to the next, which readers ignore past the size of
+ * their snapshot.
+ * <p>
+ * Event identifiers never change. They increase along the log and are consecutive, except for the
+ * events kept ahead of the others when the log retains only some of its events: each snapshot maps
+ * identifiers to positions with the identifiers of these pinned events and the identifier of the
+ * first event that follows them.
+ */
+final class EventLog
+{
+  // identifier of the parent of events with no parent
+  static final long ID_NONE = -1;
+  // position of the linked event of the first and last events of a thread
+  static final int INDEX_NONE = -1;
+  // thread identifier of events with no thread
+  static final long THREAD_NONE = -1;
+  private static final EventKind[] KINDS = EventKind.values();
+  private static final int PAGE_BITS = 12;
+  private static final int PAGE_EVENTS = 1 << EventLog.PAGE_BITS;
+  private static final int PAGE_MASK = EventLog.PAGE_EVENTS - 1;
+  // column offsets within a page of columns, in layout order
+  private static final int COL_RANGE = 0;
+  private static final int COL_THREAD = EventLog.COL_RANGE + 8 * EventLog.PAGE_EVENTS;
+  private static final int COL_PARENT = EventLog.COL_THREAD + 8 * EventLog.PAGE_EVENTS;
+  private static final int COL_LINE = EventLog.COL_PARENT + 8 * EventLog.PAGE_EVENTS;
+  private static final int COL_NEXT_IN_THREAD = EventLog.COL_LINE + 8 * EventLog.PAGE_EVENTS;
+  private static final int COL_PRIOR_IN_THREAD = EventLog.COL_NEXT_IN_THREAD + 4
+      * EventLog.PAGE_EVENTS;
+  private static final int COL_KIND = EventLog.COL_PRIOR_IN_THREAD + 4 * EventLog.PAGE_EVENTS;
+  private static final int PAGE_BYTES = EventLog.COL_KIND + EventLog.PAGE_EVENTS;
+  // range of an event whose changes are not set yet
+  private static final long RANGE_NONE = -1;
+  // state changes of the events of the current epoch
+  private StateChangeArena arena;
+  // primitive columns of the events, in pages parallel to those of the events
+  private ByteBuffer[] columns;
+  // incremented whenever the log is cleared or retains only some of its events
+  private long epoch;
+  // identifier of the first event past the pinned events
+  private long firstId;
+  // position of the last event appended for each thread
+  private final Map<Long, Integer> lastInThread;
+  private final Materializer materializer;
+  private JiveEvent[][] pages;
+  // identifiers of the events kept at the start of the log, in increasing order
+  private long[] pinnedIds;
+  // latest snapshot visible to readers
+  private volatile Snapshot published;
+  // number of events appended, published or not
+  private int size;
+
+  EventLog(final Materializer materializer)
+  {
+    this.arena = new StateChangeArena();
+    this.columns = new ByteBuffer[16];
+    this.epoch = 0;
+    this.firstId = 1;
+    this.lastInThread = TypeTools.newHashMap();
+    this.materializer = materializer;
+    this.pages = new JiveEvent[16][];
+    this.pinnedIds = new long[0];
+    this.size = 0;
+    this.published = current();
+  }
+
+  /**
+   * Changes in the arena with the given range, or null if the range is not set.
+   */
+  private static List<IStateChange> changes(final StateChangeArena arena, final long range)
+  {
+    if (range == EventLog.RANGE_NONE)
+    {
+      return null;
+    }
+    final int count = (int) range;
+    return count == 0 ? Collections.<IStateChange> emptyList() : arena.changes(
+        (int) (range >>> 32), count);
+  }
+
+  /**
+   * Position of the event with the given identifier in a log with the given pinned events, or -1 if
+   * the log has no such event.
+   */
+  private static int indexOf(final long[] pinnedIds, final long firstId, final int size,
+      final long eventId)
+  {
+    if (eventId >= firstId)
+    {
+      final long index = pinnedIds.length + eventId - firstId;
+      return index < size ? (int) index : -1;
+    }
+    final int index = Arrays.binarySearch(pinnedIds, eventId);
+    return index >= 0 && index < size ? index : -1;
+  }
+
+  private static int offset(final int column, final int index, final int width)
+  {
+    return column + (index & EventLog.PAGE_MASK) * width;
+  }
+
+  private static ByteBuffer page(final ByteBuffer[] columns, final int index)
+  {
+    return columns[index >>> EventLog.PAGE_BITS];
+  }
+
+  /**
+   * Appends the event, whose identifier follows that of the last event in the log, and links it to
+   * the prior event of its thread. The slot of the event is left empty if the event can be
+   * recreated from its columns, which requires its parent, if any, to be in the log.
+   */
+  void add(final JiveEvent event)
+  {
+    final int page = size >>> EventLog.PAGE_BITS;
+    if (page == pages.length)
+    {
+      columns = Arrays.copyOf(columns, 2 * columns.length);
+      pages = Arrays.copyOf(pages, 2 * pages.length);
+    }
+    if (pages[page] == null)
+    {
+      columns[page] = ByteBuffer.allocateDirect(EventLog.PAGE_BYTES).order(
+          ByteOrder.nativeOrder());
+      pages[page] = new JiveEvent[EventLog.PAGE_EVENTS];
+    }
+    final int index = size;
+    final long threadId = event.thread() == null ? EventLog.THREAD_NONE : event.thread().id();
+    final long parentId = event.parent() == null ? EventLog.ID_NONE : ((JiveEvent) event
+        .parent()).actualId();
+    final ByteBuffer buffer = columns[page];
+    buffer.putLong(EventLog.offset(EventLog.COL_RANGE, index, 8), EventLog.RANGE_NONE);
+    buffer.putLong(EventLog.offset(EventLog.COL_THREAD, index, 8), threadId);
+    buffer.putLong(EventLog.offset(EventLog.COL_PARENT, index, 8), parentId);
+    buffer.putLong(EventLog.offset(EventLog.COL_LINE, index, 8), event.line().id());
+    buffer.put(EventLog.offset(EventLog.COL_KIND, index, 1), (byte) event.kind().ordinal());
+    buffer.putInt(EventLog.offset(EventLog.COL_NEXT_IN_THREAD, index, 4), EventLog.INDEX_NONE);
+    final Integer prior = lastInThread.put(threadId, index);
+    buffer.putInt(EventLog.offset(EventLog.COL_PRIOR_IN_THREAD, index, 4),
+        prior == null ? EventLog.INDEX_NONE : prior);
+    if (prior != null)
+    {
+      EventLog.page(columns, prior).putInt(
+          EventLog.offset(EventLog.COL_NEXT_IN_THREAD, prior, 4), index);
+    }
+    final boolean isMaterialized = materializer.isScalar(event)
+        && (parentId == EventLog.ID_NONE || indexOf(parentId) != -1);
+    pages[page][index & EventLog.PAGE_MASK] = isMaterialized ? null : event;
+    size++;
+  }
+
+  /**
+   * Discards all events and publishes the empty log under a new epoch.
+   */
+  void clear()
+  {
+    arena = new StateChangeArena();
+    columns = new ByteBuffer[16];
+    epoch++;
+    firstId = 1;
+    lastInThread.clear();
+    pages = new JiveEvent[16][];
+    pinnedIds = new long[0];
+    size = 0;
+    publish();
+  }
+
+  /**
+   * Changes of the event with the given identifier, published or not, or null if the log has no
+   * such event or its changes are not set yet. Only the writer may call this method.
+   */
+  List<IStateChange> changes(final long eventId)
+  {
+    return current().changes(eventId);
+  }
+
+  /**
+   * Snapshot of all events appended so far, published or not. Only the writer may call this
+   * method, and only the writer may read the snapshot.
+   */
+  Snapshot current()
+  {
+    return new Snapshot(this, size);
+  }
+
+  /**
+   * Event at the given position, published or not. Only the writer may call this method.
+   */
+  JiveEvent get(final int index)
+  {
+    return current().get(index);
+  }
+
+  /**
+   * Position of the event with the given identifier, published or not, or -1 if the log has no such
+   * event. Only the writer may call this method.
+   */
+  int indexOf(final long eventId)
+  {
+    return EventLog.indexOf(pinnedIds, firstId, size, eventId);
+  }
+
+  boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Event with the given identifier, published or not, or null if the log has no such event. Only
+   * the writer may call this method.
+   */
+  JiveEvent lookup(final long eventId)
+  {
+    return current().lookup(eventId);
+  }
+
+  /**
+   * Number of events kept at the start of the log by the last call to {@code retain}, whose
+   * identifiers need not be consecutive.
+   */
+  int pinnedCount()
+  {
+    return pinnedIds.length;
+  }
+
+  /**
+   * Makes the events appended so far visible to readers. The published size is the high-water mark
+   * of the snapshot: readers never see events past it, even as the writer keeps appending.
+   */
+  void publish()
+  {
+    final Snapshot current = published;
+    if (current.size != size || current.epoch != epoch)
+    {
+      published = current();
+    }
+  }
+
+  /**
+   * Replaces the events of the log with the given events and their changes, in order, and
+   * publishes them under a new epoch with an arena of its own. The first {@code pinned} events may
+   * have any increasing identifiers below that of the next event; the identifiers of the remaining
+   * events must be consecutive. The events themselves are not modified, so the snapshots published
+   * before remain valid, along with the changes they hold.
+   */
+  void retain(final List<JiveEvent> events, final List<List<IStateChange>> changes,
+      final int pinned)
+  {
+    arena = new StateChangeArena();
+    columns = new ByteBuffer[16];
+    epoch++;
+    lastInThread.clear();
+    pages = new JiveEvent[16][];
+    pinnedIds = new long[pinned];
+    for (int i = 0; i < pinned; i++)
+    {
+      pinnedIds[i] = events.get(i).actualId();
+    }
+    firstId = pinned < events.size() ? events.get(pinned).actualId() : pinned == 0 ? 1
+        : pinnedIds[pinned - 1] + 1;
+    size = 0;
+    for (int i = 0; i < events.size(); i++)
+    {
+      add(events.get(i));
+      if (changes.get(i) != null)
+      {
+        setChanges(i, changes.get(i));
+      }
+    }
+    publish();
+  }
+
+  /**
+   * Appends the changes of the event at the given position to the arena and records their range.
+   * The event must not be published yet. Only the writer may call this method.
+   */
+  void setChanges(final int index, final List<IStateChange> changes)
+  {
+    if ((published.epoch == epoch && index < published.size) || index >= size)
+    {
+      throw new IllegalStateException("The event at " + index + " is published or absent.");
+    }
+    final int count = changes == null ? 0 : changes.size();
+    final long offset = count == 0 ? 0 : arena.append(changes);
+    EventLog.page(columns, index).putLong(EventLog.offset(EventLog.COL_RANGE, index, 8),
+        (offset << 32) | count);
+  }
+
+  int size()
+  {
+    return size;
+  }
+
+  /**
+   * Immutable view of the events published last. The view remains consistent for as long as the
+   * reader holds it, regardless of later appends or clears.
+   */
+  Snapshot snapshot()
+  {
+    return published;
+  }
+
+  /**
+   * Recreates the events that the log keeps in its columns only.
+   */
+  interface Materializer
+  {
+    /**
+     * Determines whether the event can be recreated from its kind, thread, line, and parent.
+     */
+    boolean isScalar(IJiveEvent event);
+
+    JiveEvent materialize(long eventId, EventKind kind, long threadId, long lineId,
+        JiveEvent parent);
+  }
+
+  static final class Snapshot extends AbstractList<JiveEvent> implements RandomAccess
+  {
+    // arena of the epoch, which holds the changes of the events of this snapshot
+    private final StateChangeArena arena;
+    private final ByteBuffer[] columns;
+    // snapshots of different epochs position their events independently
+    private final long epoch;
+    private final long firstId;
+    private final Materializer materializer;
+    private final JiveEvent[][] pages;
+    private final long[] pinnedIds;
+    private final int size;
+
+    private Snapshot(final EventLog log, final int size)
+    {
+      this.arena = log.arena;
+      this.columns = log.columns;
+      this.epoch = log.epoch;
+      this.firstId = log.firstId;
+      this.materializer = log.materializer;
+      this.pages = log.pages;
+      this.pinnedIds = log.pinnedIds;
+      this.size = size;
+    }
+
+    /**
+     * Returns the event at the given position, recreating it from its columns if the log does not
+     * keep the event itself.
+     */
+    @Override
+    public JiveEvent get(final int index)
+    {
+      checkIndex(index);
+      final JiveEvent event = pages[index >>> EventLog.PAGE_BITS][index & EventLog.PAGE_MASK];
+      if (event != null)
+      {
+        return event;
+      }
+      final long parentId = parentId(index);
+      return materializer.materialize(idAt(index), kind(index), threadId(index), lineId(index),
+          parentId == EventLog.ID_NONE ? null : lookup(parentId));
+    }
+
+    @Override
+    public int size()
+    {
+      return size;
+    }
+
+    private void checkIndex(final int index)
+    {
+      if (index < 0 || index >= size)
+      {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+    }
+
+    private long getLong(final int column, final int index)
+    {
+      checkIndex(index);
+      return EventLog.page(columns, index).getLong(EventLog.offset(column, index, 8));
+    }
+
+    // position of the linked event, or INDEX_NONE if it is not in this snapshot
+    private int link(final int column, final int index)
+    {
+      checkIndex(index);
+      final int result = EventLog.page(columns, index).getInt(EventLog.offset(column, index, 4));
+      return result < size ? result : EventLog.INDEX_NONE;
+    }
+
+    /**
+     * Changes of the event with the given identifier in this snapshot, or null if the snapshot has
+     * no such event or its changes are not set yet.
+     */
+    List<IStateChange> changes(final long eventId)
+    {
+      final int index = indexOf(eventId);
+      return index == -1 ? null : EventLog.changes(arena, getLong(EventLog.COL_RANGE, index));
+    }
+
+    /**
+     * Identifier of the event at the given position.
+     */
+    long idAt(final int index)
+    {
+      checkIndex(index);
+      return index < pinnedIds.length ? pinnedIds[index] : firstId + index - pinnedIds.length;
+    }
+
+    /**
+     * Position of the first event whose identifier is greater than the given identifier, or the
+     * size of this snapshot if there is no such event.
+     */
+    int indexAfter(final long eventId)
+    {
+      if (eventId >= firstId)
+      {
+        return (int) Math.min(size, pinnedIds.length + eventId - firstId + 1);
+      }
+      final int index = Arrays.binarySearch(pinnedIds, eventId);
+      return Math.min(size, index >= 0 ? index + 1 : -index - 1);
+    }
+
+    /**
+     * Position of the event with the given identifier in this snapshot, or -1 if the snapshot has
+     * no such event.
+     */
+    int indexOf(final long eventId)
+    {
+      return EventLog.indexOf(pinnedIds, firstId, size, eventId);
+    }
+
+    EventKind kind(final int index)
+    {
+      checkIndex(index);
+      return EventLog.KINDS[EventLog.page(columns, index).get(
+          EventLog.offset(EventLog.COL_KIND, index, 1))];
+    }
+
+    long lineId(final int index)
+    {
+      return getLong(EventLog.COL_LINE, index);
+    }
+
+    /**
+     * Event of this snapshot with the given identifier, or null if the snapshot has no such event.
+     */
+    JiveEvent lookup(final long eventId)
+    {
+      final int index = indexOf(eventId);
+      return index == -1 ? null : get(index);
+    }
+
+    /**
+     * Position of the next event of the same thread in this snapshot, or {@code INDEX_NONE}.
+     */
+    int nextInThread(final int index)
+    {
+      return link(EventLog.COL_NEXT_IN_THREAD, index);
+    }
+
+    /**
+     * Identifier of the parent of the event at the given position, or {@code ID_NONE}.
+     */
+    long parentId(final int index)
+    {
+      return getLong(EventLog.COL_PARENT, index);
+    }
+
+    /**
+     * Position of the prior event of the same thread, or {@code INDEX_NONE}.
+     */
+    int priorInThread(final int index)
+    {
+      return link(EventLog.COL_PRIOR_IN_THREAD, index);
+    }
+
+    /**
+     * Identifier of the thread of the event at the given position, or {@code THREAD_NONE}.
+     */
+    long threadId(final int index)
+    {
+      return getLong(EventLog.COL_THREAD, index);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package edu.buffalo.cse.jive.internal.model.store.memory;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IExecutionModel.IEventView;
+import edu.buffalo.cse.jive.model.events.EventFactory.JiveEvent;
+
+/**
+ * Immutable selection of events of the trace, such as the events of a slice, indexed for rank and
+ * select. Bit {@code i} is set if the event with identifier {@code i} is selected. The virtual
+ * identifier of a selected event is its rank, i.e., its position among the selected events
+ * (1-based), and the event with a given virtual identifier is found by select.
+ * <p>
+ * The number of selected events before each word is precomputed, so rank reads a single word.
+ * Select jumps to the word holding every {@code SAMPLE}-th selected event and scans forward from
+ * there, so it reads at most {@code SAMPLE} selected events in addition to the empty words in
+ * between. Since the selection is never modified after it is built, it can be read without
+ * locking. State that events derive from the selection, such as the nested initiators visible
+ * under it, is cached here rather than in the events, so that selections never modify the events
+ * and any number of them can be used at once.
+ */
+final class EventSelection implements IEventView
+{
+  private static final int SAMPLE_BITS = 6;
+  private static final int SAMPLE = 1 << EventSelection.SAMPLE_BITS;
+  // number of selected events
+  private final int cardinality;
+  // number of selected events before each word
+  private final int[] ranks;
+  // word holding the selected event with rank k * SAMPLE + 1, for every k
+  private final int[] samples;
+  // state derived from this selection, keyed by actual event identifier
+  private final ConcurrentMap<Long, Object> states;
+  private final EventLog trace;
+  private final long[] words;
+
+  EventSelection(final BitSet view, final EventLog trace)
+  {
+    this.states = TypeTools.newConcurrentHashMap();
+    this.trace = trace;
+    this.words = new long[(view.length() + 63) >>> 6];
+    for (int i = view.nextSetBit(0); i >= 0; i = view.nextSetBit(i + 1))
+    {
+      words[i >>> 6] |= 1L << i;
+    }
+    this.ranks = new int[words.length + 1];
+    for (int w = 0; w < words.length; w++)
+    {
+      ranks[w + 1] = ranks[w] + Long.bitCount(words[w]);
+    }
+    this.cardinality = ranks[words.length];
+    this.samples = new int[(cardinality >>> EventSelection.SAMPLE_BITS) + 1];
+    int k = 0;
+    for (int w = 0; w < words.length; w++)
+    {
+      while (k < samples.length && ranks[w + 1] > k * EventSelection.SAMPLE)
+      {
+        samples[k++] = w;
+      }
+    }
+  }
+
+  boolean contains(final long eventId)
+  {
+    return eventId >= 0 && eventId < 64L * words.length
+        && (words[(int) (eventId >>> 6)] & (1L << eventId)) != 0;
+  }
+
+  /**
+   * Selected events of the last published snapshot of the trace, in trace order. The list is a
+   * view backed by the snapshot.
+   */
+  @Override
+  public List<IJiveEvent> events()
+  {
+    return new SelectedEvents(trace.snapshot());
+  }
+
+  /**
+   * Identifier of the last selected event, or -1 if no event is selected.
+   */
+  int last()
+  {
+    return cardinality == 0 ? -1 : select(cardinality);
+  }
+
+  @Override
+  public IJiveEvent lookupEvent(final long virtualId)
+  {
+    final int eventId = select(virtualId);
+    return eventId <= 0 ? null : trace.snapshot().lookup(eventId);
+  }
+
+  /**
+   * State cached for the event with the given identifier, or null if there is none.
+   */
+  Object lookupState(final long eventId)
+  {
+    return states.get(eventId);
+  }
+
+  /**
+   * Virtual identifier of the event with the given identifier, or zero if the event is not
+   * selected.
+   */
+  long rank(final long eventId)
+  {
+    if (!contains(eventId))
+    {
+      return 0;
+    }
+    final int w = (int) (eventId >>> 6);
+    // selected events of the word below the event, plus the event itself
+    return ranks[w] + Long.bitCount(words[w] & ((1L << eventId) - 1)) + 1;
+  }
+
+  /**
+   * Identifier of the event with the given virtual identifier, or -1 if there is no such event.
+   */
+  int select(final long virtualId)
+  {
+    if (virtualId <= 0 || virtualId > cardinality)
+    {
+      return -1;
+    }
+    int w = samples[(int) ((virtualId - 1) >>> EventSelection.SAMPLE_BITS)];
+    while (ranks[w + 1] < virtualId)
+    {
+      w++;
+    }
+    // clear the lower selected events of the word
+    long word = words[w];
+    for (int r = ranks[w] + 1; r < virtualId; r++)
+    {
+      word &= word - 1;
+    }
+    return (w << 6) + Long.numberOfTrailingZeros(word);
+  }
+
+  @Override
+  public int size()
+  {
+    return cardinality;
+  }
+
+  /**
+   * Caches the state for the event with the given identifier unless some state is cached for it
+   * already. Returns the state cached for the event after the call.
+   */
+  Object storeState(final long eventId, final Object state)
+  {
+    final Object result = states.putIfAbsent(eventId, state);
+    return result == null ? state : result;
+  }
+
+  @Override
+  public long virtualId(final IJiveEvent event)
+  {
+    return rank(((JiveEvent) event).actualId());
+  }
+
+  private final class SelectedEvents extends AbstractList<IJiveEvent> implements RandomAccess
+  {
+    private final EventLog.Snapshot trace;
+
+    private SelectedEvents(final EventLog.Snapshot trace)
+    {
+      this.trace = trace;
+    }
+
+    @Override
+    public IJiveEvent get(final int index)
+    {
+      if (index < 0 || index >= cardinality)
+      {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + cardinality);
+      }
+      return trace.lookup(select(index + 1));
+    }
+
+    @Override
+    public int size()
+    {
+      return cardinality;
+    }
+  }
+}
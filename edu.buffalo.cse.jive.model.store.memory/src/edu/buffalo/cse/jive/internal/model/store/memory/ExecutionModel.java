@@ -1,11 +1,21 @@
 package edu.buffalo.cse.jive.internal.model.store.memory;
 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import edu.buffalo.cse.jive.lib.TypeTools;
 import edu.buffalo.cse.jive.model.ast.StaticAnalysisFactory;
@@ -18,6 +28,7 @@ import edu.buffalo.cse.jive.model.IContourModel.IContour;
 import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
 import edu.buffalo.cse.jive.model.IEventModel.IAssignEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IEventProducer;
+import edu.buffalo.cse.jive.model.IEventModel.IExceptionThrowEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IInitiatorEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IMethodCallEvent;
@@ -32,7 +43,9 @@ import edu.buffalo.cse.jive.model.IEventModel.ITerminatorEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IThreadEndEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IThreadStartEvent;
 import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.IModel.IContourReference;
 import edu.buffalo.cse.jive.model.IModel.IThreadValue;
+import edu.buffalo.cse.jive.model.IModel.IValue;
 import edu.buffalo.cse.jive.model.ITransactionLog;
 import edu.buffalo.cse.jive.model.IVisitor;
 import edu.buffalo.cse.jive.model.factory.IContourFactory;
@@ -48,6 +61,9 @@ import edu.buffalo.cse.jive.model.values.ValueFactory;
 
 public class ExecutionModel implements IExecutionModel
 {
+  private static final String OUT_OF_MODEL_INSTANCE = "instance of ";
+  // computes detached slices for all models; idle workers terminate after a minute
+  private static final ThreadPoolExecutor SLICER = ExecutionModel.createSlicer();
   private final ContourFactory contourFactory;
   private final ContourView contourView;
   private final EventFactory eventFactory;
@@ -91,6 +107,24 @@ public class ExecutionModel implements IExecutionModel
     this.staticModelFactory = StaticModelFactory.getDefault(this);
   }
 
+  private static ThreadPoolExecutor createSlicer()
+  {
+    final int workers = Runtime.getRuntime().availableProcessors();
+    final ThreadPoolExecutor slicer = new ThreadPoolExecutor(workers, workers, 60L,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+          {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+              final Thread thread = new Thread(runnable, "JIVE Slicer");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    slicer.allowCoreThreadTimeOut(true);
+    return slicer;
+  }
+
   @Override
   public IContourFactory contourFactory()
   {
@@ -124,20 +158,27 @@ public class ExecutionModel implements IExecutionModel
   }
 
   @Override
-  public void eventOccurred(final IEventProducer source, final List<IJiveEvent> events)
+  public void eventOccurred(final IEventProducer source, final List<IJiveEvent> batch)
   {
+    // a frozen trace records no further events
+    if (traceView.isFrozen())
+    {
+      return;
+    }
+    final List<IJiveEvent> events = traceView.freezeOnException(batch);
+    boolean discarded = false;
     // updates require a write lock
     transactionLog.writeLock().lock();
     try
     {
       // update the model
       updateModel(events);
-      // commit the event's changes to the model
-      for (final IJiveEvent event : events)
-      {
-        // commit the event's changes to the model
-        ((JiveEvent) event).commit();
-      }
+      // commit the changes of the batch to the model as a group
+      transactionLog.commitBatch(events);
+      // flight recorder mode
+      discarded = store.discardOldEvents(liveEvents());
+      // readers of the trace see the batch from now on
+      store.publishEvents();
     }
     finally
     {
@@ -148,6 +189,11 @@ public class ExecutionModel implements IExecutionModel
       {
         // notify trace listeners
         traceView.notifyListeners(events);
+        // old events were discarded
+        if (discarded)
+        {
+          traceView.notifyVirtualization(false);
+        }
       }
       finally
       {
@@ -165,6 +211,11 @@ public class ExecutionModel implements IExecutionModel
   @Override
   public IJiveEvent lookupEvent(final long eventId)
   {
+    // the published trace requires no lock
+    if (!store.isVirtual())
+    {
+      return store.lookupEvent(eventId);
+    }
     readLock();
     try
     {
@@ -251,6 +302,8 @@ public class ExecutionModel implements IExecutionModel
     {
       // reset the system start
       root = null;
+      // record again
+      traceView.thaw();
       // create a new store
       // memoryStore = new MemoryStore();
       // clear helper data structure
@@ -259,6 +312,8 @@ public class ExecutionModel implements IExecutionModel
       threads.clear();
       // clear all storage
       store.reset();
+      // forget the interned primitive values
+      valueFactory.reset();
       // reinitialize known types
       staticModelFactory.createKnownTypes();
     }
@@ -363,6 +418,23 @@ public class ExecutionModel implements IExecutionModel
     return threadStacks.get(thread);
   }
 
+  /**
+   * Thread start and method call events of the executions still in progress.
+   */
+  private List<IJiveEvent> liveEvents()
+  {
+    final List<IJiveEvent> result = TypeTools.newArrayList();
+    for (final IThreadStartEvent thread : threads.values())
+    {
+      if (thread.terminator() == null)
+      {
+        result.add(thread);
+        result.addAll(getStack(thread.thread()));
+      }
+    }
+    return result;
+  }
+
   /**
    * Outstanding execution associated with the given event, which is essentially the initiator event
    * corresponding to the top of the thread's stack frame. This method throws an execution if no
@@ -684,6 +756,39 @@ public class ExecutionModel implements IExecutionModel
     }
   }
 
+  private static final class MultiSlice implements IMultiSlice
+  {
+    private final Map<Long, BitSet> slices;
+    private final BitSet union;
+    private final Map<Long, IEventView> views;
+
+    private MultiSlice(final Map<Long, BitSet> slices, final BitSet union,
+        final Map<Long, IEventView> views)
+    {
+      this.slices = slices;
+      this.union = union;
+      this.views = views;
+    }
+
+    @Override
+    public Map<Long, BitSet> slices()
+    {
+      return slices;
+    }
+
+    @Override
+    public BitSet union()
+    {
+      return union;
+    }
+
+    @Override
+    public Map<Long, IEventView> views()
+    {
+      return views;
+    }
+  }
+
   private final class SliceView implements ISliceView
   {
     private ProgramSlice slice;
@@ -758,7 +863,9 @@ public class ExecutionModel implements IExecutionModel
       while (initial != null
           && (!(initial instanceof IAssignEvent) || ((IAssignEvent) initial).member() != member))
       {
-        initial = initial.prior();
+        // jumps directly to the prior assignment when the def-use index is enabled
+        final long eventId = store.lookupLastDefinition(member, initial.eventId());
+        initial = eventId == 0 ? null : store.lookupRawEvent(eventId);
       }
       // a valid slicing criterion
       if (initial instanceof IAssignEvent)
@@ -787,6 +894,160 @@ public class ExecutionModel implements IExecutionModel
       return null;
     }
 
+    @Override
+    public IMultiSlice computeSlices(final Collection<Long> eventIds)
+    {
+      final List<IAssignEvent> criteria = TypeTools.newArrayList(eventIds.size());
+      transactionLog.readLock().lock();
+      try
+      {
+        if (slice != null || initial != null || !store.isDefUseIndexed())
+        {
+          return null;
+        }
+        for (final Long eventId : eventIds)
+        {
+          final IJiveEvent event = lookupEvent(eventId);
+          if (event instanceof IAssignEvent)
+          {
+            criteria.add((IAssignEvent) event);
+          }
+        }
+      }
+      finally
+      {
+        transactionLog.readLock().unlock();
+      }
+      return computeSlices(criteria);
+    }
+
+    @Override
+    public IMultiSlice computeSlices(final IContourMember member)
+    {
+      if (member == null)
+      {
+        return null;
+      }
+      final List<Long> eventIds = TypeTools.newArrayList();
+      transactionLog.readLock().lock();
+      try
+      {
+        if (!store.isDefUseIndexed())
+        {
+          return null;
+        }
+        // walk the member's definitions backwards through the def-use index
+        long eventId = store.lookupLastDefinition(member, Long.MAX_VALUE);
+        while (eventId != 0)
+        {
+          eventIds.add(eventId);
+          eventId = store.lookupLastDefinition(member, eventId);
+        }
+      }
+      finally
+      {
+        transactionLog.readLock().unlock();
+      }
+      return computeSlices(eventIds);
+    }
+
+    @Override
+    public IEventView createView(final BitSet events)
+    {
+      return store.createView(events);
+    }
+
+    @Override
+    public void setDefUseIndex(final boolean enabled)
+    {
+      transactionLog.writeLock().lock();
+      try
+      {
+        store.setDefUseIndex(enabled);
+      }
+      finally
+      {
+        transactionLog.writeLock().unlock();
+      }
+    }
+
+    /**
+     * Computes the detached slices of the criteria on the slicer's worker threads. Each worker holds
+     * the read lock while it computes its slice, so that the trace is stable during the traversal.
+     * The calling thread must not hold the lock while it waits for the workers, otherwise a writer
+     * queued on the lock would block the workers and, in turn, the caller. The first failure of a
+     * worker cancels the remaining slices and is rethrown to the caller.
+     */
+    private IMultiSlice computeSlices(final List<IAssignEvent> criteria)
+    {
+      final Map<Long, Future<BitSet>> futures = TypeTools.newLinkedHashMap();
+      for (final IAssignEvent criterion : criteria)
+      {
+        futures.put(criterion.eventId(), ExecutionModel.SLICER.submit(new Callable<BitSet>()
+          {
+            @Override
+            public BitSet call()
+            {
+              transactionLog.readLock().lock();
+              try
+              {
+                final ProgramSlice detached = new ProgramSlice(criterion, true);
+                detached.computeSlice();
+                return detached.eventSet();
+              }
+              finally
+              {
+                transactionLog.readLock().unlock();
+              }
+            }
+          }));
+      }
+      final Map<Long, BitSet> slices = TypeTools.newLinkedHashMap();
+      final Map<Long, IEventView> views = TypeTools.newLinkedHashMap();
+      final BitSet union = new BitSet();
+      boolean done = false;
+      try
+      {
+        for (final Map.Entry<Long, Future<BitSet>> entry : futures.entrySet())
+        {
+          final BitSet events = entry.getValue().get();
+          slices.put(entry.getKey(), events);
+          views.put(entry.getKey(), store.createView(events));
+          union.or(events);
+        }
+        done = true;
+        return new MultiSlice(slices, union, views);
+      }
+      catch (final InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+      catch (final ExecutionException e)
+      {
+        final Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException)
+        {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error)
+        {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException("The slicer found an unexpected condition.", cause);
+      }
+      finally
+      {
+        if (!done)
+        {
+          for (final Future<BitSet> future : futures.values())
+          {
+            future.cancel(true);
+          }
+        }
+      }
+    }
+
     private void computeSlice()
     {
       if (slice == null || initial == null)
@@ -832,7 +1093,7 @@ public class ExecutionModel implements IExecutionModel
         if (slice != null)
         {
           // apply the slice as a filter to the model
-          store.sliceFilterAdd(slice.eventSet());
+          store.sliceFilterAdd(store.createView(slice.eventSet()));
           // now commit the slicing criterion
           if (initial.next() != null)
           {
@@ -928,6 +1189,12 @@ public class ExecutionModel implements IExecutionModel
       transactionLog.rollback();
     }
 
+    @Override
+    public void setCheckpointInterval(final int interval)
+    {
+      transactionLog.setCheckpointInterval(interval);
+    }
+
     @Override
     public void setFinalState()
     {
@@ -946,24 +1213,61 @@ public class ExecutionModel implements IExecutionModel
    */
   private class TraceView implements ITraceView
   {
+    private volatile Set<String> freezeExceptions;
+    private volatile boolean isFrozen;
     private final Set<ITraceViewListener> traceClients;
 
     private TraceView()
     {
+      this.freezeExceptions = Collections.emptySet();
+      this.isFrozen = false;
       this.traceClients = new CopyOnWriteArraySet<ITraceViewListener>();
     }
 
+    @Override
+    public void closeWindow(final String closer)
+    {
+      transactionLog.writeLock().lock();
+      try
+      {
+        store.closeWindow(closer);
+      }
+      finally
+      {
+        transactionLog.writeLock().unlock();
+      }
+    }
+
     @Override
     public List<? extends IJiveEvent> events()
     {
-      readLock();
+      // both the published trace and the views are immutable and require no lock
+      return store.events();
+    }
+
+    @Override
+    public void freeze()
+    {
+      isFrozen = true;
+    }
+
+    @Override
+    public boolean isFrozen()
+    {
+      return isFrozen;
+    }
+
+    @Override
+    public void openWindow(final String opener)
+    {
+      transactionLog.writeLock().lock();
       try
       {
-        return store.isVirtual() ? sliceView.activeSlice().events() : store.events();
+        store.openWindow(opener);
       }
       finally
       {
-        readUnlock();
+        transactionLog.writeLock().unlock();
       }
     }
 
@@ -978,6 +1282,28 @@ public class ExecutionModel implements IExecutionModel
       traceClients.add(listener);
     }
 
+    @Override
+    public void setFreezeExceptions(final Collection<String> typeNames)
+    {
+      final Set<String> types = TypeTools.newHashSet();
+      types.addAll(typeNames);
+      freezeExceptions = types;
+    }
+
+    @Override
+    public void setRetainedEvents(final int events)
+    {
+      transactionLog.writeLock().lock();
+      try
+      {
+        store.setRetainedEvents(events);
+      }
+      finally
+      {
+        transactionLog.writeLock().unlock();
+      }
+    }
+
     @Override
     public void unregister(final ITraceViewListener listener)
     {
@@ -989,6 +1315,57 @@ public class ExecutionModel implements IExecutionModel
       traceClients.remove(listener);
     }
 
+    @Override
+    public List<ITraceWindow> windows()
+    {
+      // windows are immutable and replaced as a whole
+      return store.windows();
+    }
+
+    /**
+     * Qualified name of the type of the exception. Out-of-model objects are described as
+     * "instance of type(id=oid)".
+     */
+    private String exceptionType(final IValue exception)
+    {
+      if (exception instanceof IContourReference)
+      {
+        return ((IContourReference) exception).contour().schema().name();
+      }
+      final String value = exception == null ? null : exception.value();
+      if (value == null || !value.startsWith(ExecutionModel.OUT_OF_MODEL_INSTANCE))
+      {
+        return null;
+      }
+      final int end = value.indexOf('(');
+      return value.substring(ExecutionModel.OUT_OF_MODEL_INSTANCE.length(), end == -1 ? value
+          .length() : end);
+    }
+
+    /**
+     * Freezes the trace if an exception of one of the freezing types is thrown in the batch, in
+     * which case only the events up to the throw are recorded.
+     */
+    private List<IJiveEvent> freezeOnException(final List<IJiveEvent> events)
+    {
+      final Set<String> types = freezeExceptions;
+      if (types.isEmpty())
+      {
+        return events;
+      }
+      for (int i = 0; i < events.size(); i++)
+      {
+        final IJiveEvent event = events.get(i);
+        if (event instanceof IExceptionThrowEvent
+            && types.contains(exceptionType(((IExceptionThrowEvent) event).exception())))
+        {
+          isFrozen = true;
+          return events.subList(0, i + 1);
+        }
+      }
+      return events;
+    }
+
     private void notifyListeners(final List<IJiveEvent> events)
     {
       // if changes were generated, dispatch them to interested subscribers
@@ -1006,5 +1383,10 @@ public class ExecutionModel implements IExecutionModel
         client.traceVirtualized(isVirtual);
       }
     }
+
+    private void thaw()
+    {
+      isFrozen = false;
+    }
   }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package edu.buffalo.cse.jive.internal.model.store.memory;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
+import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
+import edu.buffalo.cse.jive.model.IEventModel.EventKind;
+import edu.buffalo.cse.jive.model.IEventModel.IAssignEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IExceptionCatchEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IExceptionThrowEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodCallEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodExitEvent;
+import edu.buffalo.cse.jive.model.IEventModel.INewObjectEvent;
+import edu.buffalo.cse.jive.model.IModel.IContourReference;
+import edu.buffalo.cse.jive.model.IModel.IValue;
+
+/**
+ * Secondary indexes of the trace used by search queries. Events of the searchable kinds are indexed
+ * by the static entity they refer to:
+ *
+ * <pre>
+ *   METHOD_CALL, METHOD_EXIT         method node of the in-model execution
+ *   LINE_STEP                        line value
+ *   FIELD_WRITE, VAR_ASSIGN          data node of the contour member written
+ *   OBJECT_NEW                       type node of every contour created for the object
+ *   EXCEPTION_THROW, EXCEPTION_CATCH type node of the exception (null if out-of-model)
+ * </pre>
+ *
+ * Each key maps to the identifiers of its events in trace order.
+ */
+final class SearchIndex
+{
+  private final Map<EventKind, Map<Object, EventIdList>> index;
+
+  SearchIndex()
+  {
+    this.index = new EnumMap<EventKind, Map<Object, EventIdList>>(EventKind.class);
+  }
+
+  /**
+   * Records the event under its keys, if the event is of a searchable kind. Events must be added in
+   * increasing identifier order.
+   */
+  void add(final IJiveEvent event, final long eventId)
+  {
+    switch (event.kind())
+    {
+      case METHOD_CALL:
+        add(event.kind(), methodKey((IMethodCallEvent) event), eventId);
+        break;
+      case METHOD_EXIT:
+        add(event.kind(), methodKey(((IMethodExitEvent) event).parent()), eventId);
+        break;
+      case LINE_STEP:
+        add(event.kind(), event.line(), eventId);
+        break;
+      case FIELD_WRITE:
+      case VAR_ASSIGN:
+        add(event.kind(), ((IAssignEvent) event).member().schema(), eventId);
+        break;
+      case OBJECT_NEW:
+        // the object is made up of the contours of its class and all of its superclasses
+        IContour contour = ((INewObjectEvent) event).newContour();
+        while (contour != null)
+        {
+          add(event.kind(), contour.schema(), eventId);
+          contour = contour.parent();
+        }
+        break;
+      case EXCEPTION_THROW:
+        add(event.kind(), typeKey(((IExceptionThrowEvent) event).exception()), eventId);
+        break;
+      case EXCEPTION_CATCH:
+        add(event.kind(), typeKey(((IExceptionCatchEvent) event).exception()), eventId);
+        break;
+      default:
+        break;
+    }
+  }
+
+  void clear()
+  {
+    index.clear();
+  }
+
+  /**
+   * Keys under which events of the given kind are indexed.
+   */
+  Set<Object> keys(final EventKind kind)
+  {
+    final Map<Object, EventIdList> keys = index.get(kind);
+    return keys == null ? Collections.<Object> emptySet() : Collections.unmodifiableSet(keys
+        .keySet());
+  }
+
+  /**
+   * Identifiers of the events of the given kind indexed under the key, in trace order.
+   */
+  long[] lookup(final EventKind kind, final Object key)
+  {
+    final Map<Object, EventIdList> keys = index.get(kind);
+    final EventIdList ids = keys == null ? null : keys.get(key);
+    return ids == null ? new long[0] : ids.toArray();
+  }
+
+  private void add(final EventKind kind, final Object key, final long eventId)
+  {
+    // out-of-model method executions are never matched by searches
+    if (key == null && kind != EventKind.EXCEPTION_THROW && kind != EventKind.EXCEPTION_CATCH)
+    {
+      return;
+    }
+    Map<Object, EventIdList> keys = index.get(kind);
+    if (keys == null)
+    {
+      keys = TypeTools.newHashMap();
+      index.put(kind, keys);
+    }
+    EventIdList ids = keys.get(key);
+    if (ids == null)
+    {
+      ids = new EventIdList();
+      keys.put(key, ids);
+    }
+    ids.add(eventId);
+  }
+
+  private Object methodKey(final IMethodCallEvent call)
+  {
+    if (call == null || !call.inModel())
+    {
+      return null;
+    }
+    final IMethodContour execution = call.execution();
+    return execution == null ? null : execution.schema();
+  }
+
+  private Object typeKey(final IValue exception)
+  {
+    return exception instanceof IContourReference ? ((IContourReference) exception).contour()
+        .schema() : null;
+  }
+}
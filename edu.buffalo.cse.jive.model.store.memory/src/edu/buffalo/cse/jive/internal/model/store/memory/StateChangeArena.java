@@ -0,0 +1,268 @@
+package edu.buffalo.cse.jive.internal.model.store.memory;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import edu.buffalo.cse.jive.model.IContourModel.IContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
+import edu.buffalo.cse.jive.model.IExecutionModel.AtomicDelete;
+import edu.buffalo.cse.jive.model.IExecutionModel.AtomicInsert;
+import edu.buffalo.cse.jive.model.IExecutionModel.AtomicUpdate;
+import edu.buffalo.cse.jive.model.IExecutionModel.IStateChange;
+import edu.buffalo.cse.jive.model.IModel.IValue;
+
+/**
+ * Append-only, packed storage for the state changes of the transactions in the log. Each change is
+ * a record of {@code WIDTH} ints-- operation, contour, member, old value, and new value-- stored in
+ * pages of {@code PAGE_RECORDS} records. Contours, members, and values are stored once in a table
+ * of distinct objects and records refer to them by their position in the table, so a change costs
+ * a few ints rather than an object of its own. A transaction is a range of consecutive records, and
+ * the {@code IStateChange} views of its changes are created only when the transaction is committed
+ * or rolled back, or its changes are otherwise inspected.
+ * <p>
+ * The arena is written by a single writer and read without a lock. Pages of records and of table
+ * objects are never reallocated, and their directories are copied rather than grown in place. The
+ * writer fills records and table slots past the size and only then advances the volatile size, so
+ * a reader that obtained a range of records published after their append sees them complete.
+ */
+final class StateChangeArena
+{
+  private static final int COL_CONTOUR = 1;
+  private static final int COL_MEMBER = 2;
+  private static final int COL_NEW_VALUE = 4;
+  private static final int COL_OLD_VALUE = 3;
+  private static final int COL_OP = 0;
+  // table slot of absent members and values
+  private static final int NONE = -1;
+  private static final int OP_DELETE = 0;
+  private static final int OP_INSERT = 1;
+  private static final int OP_UPDATE = 2;
+  private static final int PAGE_OBJECTS = 1 << 12;
+  private static final int PAGE_RECORDS = 1 << 14;
+  private static final int WIDTH = 5;
+  // number of distinct objects in the table
+  private int objectCount;
+  // distinct contours, members, and values referred to by the records, in fixed size pages
+  private Object[][] objects;
+  private int[][] pages;
+  // number of records in the arena, advanced once the records and their objects are written
+  private volatile int size;
+  // table slots of the objects, read by the writer only
+  private final Map<Object, Integer> slots;
+
+  StateChangeArena()
+  {
+    this.objectCount = 0;
+    this.objects = new Object[16][];
+    this.pages = new int[16][];
+    this.size = 0;
+    this.slots = new IdentityHashMap<Object, Integer>();
+  }
+
+  /**
+   * Appends the changes as consecutive records and returns the position of the first one.
+   */
+  int append(final List<IStateChange> changes)
+  {
+    final int result = size;
+    int record = result;
+    for (final IStateChange change : changes)
+    {
+      final int index = record / StateChangeArena.PAGE_RECORDS;
+      if (index == pages.length)
+      {
+        pages = Arrays.copyOf(pages, 2 * pages.length);
+      }
+      if (pages[index] == null)
+      {
+        pages[index] = new int[StateChangeArena.PAGE_RECORDS * StateChangeArena.WIDTH];
+      }
+      final int[] page = pages[index];
+      final int row = (record % StateChangeArena.PAGE_RECORDS) * StateChangeArena.WIDTH;
+      page[row + StateChangeArena.COL_CONTOUR] = slot(change.contour());
+      if (change instanceof AtomicUpdate)
+      {
+        final AtomicUpdate update = (AtomicUpdate) change;
+        page[row + StateChangeArena.COL_OP] = StateChangeArena.OP_UPDATE;
+        page[row + StateChangeArena.COL_MEMBER] = slot(update.member());
+        page[row + StateChangeArena.COL_OLD_VALUE] = slot(update.oldValue());
+        page[row + StateChangeArena.COL_NEW_VALUE] = slot(update.newValue());
+      }
+      else
+      {
+        page[row + StateChangeArena.COL_OP] = change instanceof AtomicInsert
+            ? StateChangeArena.OP_INSERT : StateChangeArena.OP_DELETE;
+        page[row + StateChangeArena.COL_MEMBER] = StateChangeArena.NONE;
+        page[row + StateChangeArena.COL_OLD_VALUE] = StateChangeArena.NONE;
+        page[row + StateChangeArena.COL_NEW_VALUE] = StateChangeArena.NONE;
+      }
+      record++;
+    }
+    // publish the records
+    size = record;
+    return result;
+  }
+
+  /**
+   * Immutable views of the given number of records starting at the given position.
+   */
+  List<IStateChange> changes(final int offset, final int count)
+  {
+    return new Changes(offset, count);
+  }
+
+  private IStateChange change(final int record)
+  {
+    // the volatile read makes the records below the size visible, along with their objects
+    if (record >= size)
+    {
+      throw new IndexOutOfBoundsException("Record: " + record + ", Size: " + size);
+    }
+    final int[] page = pages[record / StateChangeArena.PAGE_RECORDS];
+    final int row = (record % StateChangeArena.PAGE_RECORDS) * StateChangeArena.WIDTH;
+    final IContour contour = (IContour) object(page[row + StateChangeArena.COL_CONTOUR]);
+    switch (page[row + StateChangeArena.COL_OP])
+    {
+      case StateChangeArena.OP_DELETE:
+        return new Delete(contour);
+      case StateChangeArena.OP_INSERT:
+        return new Insert(contour);
+      default:
+        return new Update(contour,
+            (IContourMember) object(page[row + StateChangeArena.COL_MEMBER]),
+            (IValue) object(page[row + StateChangeArena.COL_NEW_VALUE]),
+            (IValue) object(page[row + StateChangeArena.COL_OLD_VALUE]));
+    }
+  }
+
+  private Object object(final int slot)
+  {
+    return objects[slot / StateChangeArena.PAGE_OBJECTS][slot % StateChangeArena.PAGE_OBJECTS];
+  }
+
+  private int slot(final Object object)
+  {
+    final Integer result = slots.get(object);
+    if (result != null)
+    {
+      return result;
+    }
+    final int index = objectCount / StateChangeArena.PAGE_OBJECTS;
+    if (index == objects.length)
+    {
+      objects = Arrays.copyOf(objects, 2 * objects.length);
+    }
+    if (objects[index] == null)
+    {
+      objects[index] = new Object[StateChangeArena.PAGE_OBJECTS];
+    }
+    objects[index][objectCount % StateChangeArena.PAGE_OBJECTS] = object;
+    slots.put(object, objectCount);
+    return objectCount++;
+  }
+
+  private final class Changes extends AbstractList<IStateChange> implements RandomAccess
+  {
+    private final int count;
+    private final int offset;
+
+    private Changes(final int offset, final int count)
+    {
+      this.count = count;
+      this.offset = offset;
+    }
+
+    @Override
+    public IStateChange get(final int index)
+    {
+      if (index < 0 || index >= count)
+      {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+      }
+      return change(offset + index);
+    }
+
+    @Override
+    public int size()
+    {
+      return count;
+    }
+  }
+
+  private static final class Delete implements AtomicDelete
+  {
+    private final IContour contour;
+
+    private Delete(final IContour contour)
+    {
+      this.contour = contour;
+    }
+
+    @Override
+    public IContour contour()
+    {
+      return contour;
+    }
+  }
+
+  private static final class Insert implements AtomicInsert
+  {
+    private final IContour contour;
+
+    private Insert(final IContour contour)
+    {
+      this.contour = contour;
+    }
+
+    @Override
+    public IContour contour()
+    {
+      return contour;
+    }
+  }
+
+  private static final class Update implements AtomicUpdate
+  {
+    private final IContour contour;
+    private final IContourMember member;
+    private final IValue newValue;
+    private final IValue oldValue;
+
+    private Update(final IContour contour, final IContourMember member, final IValue newValue,
+        final IValue oldValue)
+    {
+      this.contour = contour;
+      this.member = member;
+      this.newValue = newValue;
+      this.oldValue = oldValue;
+    }
+
+    @Override
+    public IContour contour()
+    {
+      return contour;
+    }
+
+    @Override
+    public IContourMember member()
+    {
+      return member;
+    }
+
+    @Override
+    public IValue newValue()
+    {
+      return newValue;
+    }
+
+    @Override
+    public IValue oldValue()
+    {
+      return oldValue;
+    }
+  }
+}
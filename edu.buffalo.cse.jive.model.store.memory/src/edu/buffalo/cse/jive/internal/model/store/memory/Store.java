@@ -3,6 +3,8 @@ package edu.buffalo.cse.jive.internal.model.store.memory;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -13,12 +15,17 @@ import edu.buffalo.cse.jive.lib.IndexedOneToIndexedMany;
 import edu.buffalo.cse.jive.lib.OneToIndexedMany;
 import edu.buffalo.cse.jive.lib.OneToMany;
 import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.contours.ContourFactory.ContextContour;
 import edu.buffalo.cse.jive.model.contours.ContourFactory.IMutableContourMember;
 import edu.buffalo.cse.jive.model.IContourModel.IContour;
 import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
+import edu.buffalo.cse.jive.model.IEventModel.EventKind;
 import edu.buffalo.cse.jive.model.IEventModel.IAssignEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IDestroyObjectEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IInitiatorEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodCallEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IThreadStartEvent;
 import edu.buffalo.cse.jive.model.IEventModel.ITransaction;
 import edu.buffalo.cse.jive.model.IExecutionModel;
 import edu.buffalo.cse.jive.model.IExecutionModel.AtomicDelete;
@@ -26,6 +33,7 @@ import edu.buffalo.cse.jive.model.IExecutionModel.AtomicInsert;
 import edu.buffalo.cse.jive.model.IExecutionModel.AtomicUpdate;
 import edu.buffalo.cse.jive.model.IExecutionModel.IProgramSlice;
 import edu.buffalo.cse.jive.model.IExecutionModel.IStateChange;
+import edu.buffalo.cse.jive.model.IExecutionModel.ITraceWindow;
 import edu.buffalo.cse.jive.model.IModel;
 import edu.buffalo.cse.jive.model.IStaticAnalysis.IResolvedNode;
 import edu.buffalo.cse.jive.model.IStaticModel.IDataNode;
@@ -37,7 +45,8 @@ import edu.buffalo.cse.jive.model.IStaticModel.IRootNode;
 import edu.buffalo.cse.jive.model.IStaticModel.ITypeNode;
 import edu.buffalo.cse.jive.model.IStaticModel.ITypeNodeRef;
 import edu.buffalo.cse.jive.model.IStore;
-import edu.buffalo.cse.jive.model.events.EventFactory.AssignEvent;
+import edu.buffalo.cse.jive.model.events.EventFactory;
+import edu.buffalo.cse.jive.model.events.EventFactory.InitiatorEvent;
 import edu.buffalo.cse.jive.model.events.EventFactory.JiveEvent;
 
 class Store implements IModel, IStore
@@ -47,6 +56,9 @@ class Store implements IModel, IStore
   private static final String PREFIX_CONTOUR_STATIC = "/contour/s/";
   private static final String PREFIX_COUNTER = "/counter/";
   private static final String PREFIX_OID = "/oid/";
+  // kinds of the events that change the structure of the model
+  private static final Set<EventKind> STRUCTURAL_KINDS = EnumSet.of(EventKind.OBJECT_DESTROY,
+      EventKind.OBJECT_NEW, EventKind.SYSTEM_START, EventKind.THREAD_START, EventKind.TYPE_LOAD);
   private static final int SZ_MEDIUM = 1024;
   private static final int SZ_NODEREFS = 512;
   private static final int SZ_SMALL = 32;
@@ -62,14 +74,29 @@ class Store implements IModel, IStore
    * elements are removed from the model.
    */
   private final Map<Long, IDestroyObjectEvent> oidToGC;
+  // number of transactions between contour model checkpoints (zero disables checkpoints)
+  private int checkpointInterval;
+  // contours deleted since the last checkpoint
+  private final List<IContour> checkpointDeleted;
+  // checkpoints of the contour model, in increasing event order
+  private final List<ContourCheckpoint> checkpoints;
+  // member values of every contour at the time it was first inserted in the model
+  private final List<ContourCheckpoint.MemberValue> contourCreationLog;
   private final Map<IContour, IContour> contourChildToParent;
   private final Map<IContour, List<IContour>> contourParentToChildren;
   private final ConcurrentMap<Object, IContour> contourStore;
   private final ConcurrentMap<Object, AtomicLong> counters;
-  private final List<JiveEvent> eventStore;
+  // assign events of every contour member and array contour
+  private final DefUseIndex defUseIndex;
+  // append-only; readers see the snapshot published after each batch
+  private final EventLog eventStore;
   private final IndexedOneToIndexedMany<String, IFileValue, Integer, ILineValue> fileValueStore;
+  // determines whether assign events are recorded in the def-use index
+  private boolean isDefUseIndexed;
   // last event that was associated with a transaction in the model-- not modified by the view
   private IJiveEvent lastTransactionEvent;
+  // line values of the stored events, by identifier, from which events are recreated
+  private final ConcurrentMap<Long, ILineValue> lineValues;
   private final OneToMany<IMethodNode, ITypeNodeRef> methodToExceptions;
   private final ExecutionModel model;
   private final ConcurrentMap<String, INodeRef> noderefStore;
@@ -77,10 +104,16 @@ class Store implements IModel, IStore
   private final OneToIndexedMany<INode, Integer, IDataNode> nodeToMemberData;
   private final OneToMany<INode, ITypeNode> nodeToTypes;
   private final Map<Long, IResolvedNode> resolvedNodes;
+  // number of most recent events kept in the trace (zero keeps the full trace)
+  private int retainedEvents;
   private IRootNode root;
   private final Map<String, IFileNode> rootFiles;
-  // currently active view on the model, if any
-  private BitSet slicedView;
+  // events of the searchable kinds, by the entities they refer to
+  private final SearchIndex searchIndex;
+  // currently active view on the model, if any; read without the lock by trace readers
+  private volatile EventSelection slicedView;
+  // structural events and events with no thread, in trace order
+  private final EventIdList structuralEvents;
   private final ConcurrentMap<Long, IThreadValue> threadStore;
   // number of transactions in the log
   private int transactionCount;
@@ -90,17 +123,26 @@ class Store implements IModel, IStore
   private final OneToMany<ITypeNode, ITypeNodeRef> typeToSuperInterfaces;
   private final ConcurrentMap<Object, IValue> valueIndex;
   private final ConcurrentMap<Long, IValue> valueStore;
+  // recording windows of the trace; replaced as a whole, so readers require no lock
+  private volatile List<TraceWindow> windows;
 
   Store(final ExecutionModel model)
   {
     this.model = model;
+    this.checkpointInterval = 0;
+    this.checkpointDeleted = TypeTools.newArrayList();
+    this.checkpoints = TypeTools.newArrayList();
+    this.contourCreationLog = TypeTools.newArrayList();
     this.contourChildToParent = TypeTools.newHashMap(Store.SZ_MEDIUM);
     this.contourParentToChildren = TypeTools.newHashMap(Store.SZ_MEDIUM);
     this.contourStore = TypeTools.newConcurrentHashMap(Store.SZ_MEDIUM);
     this.counters = TypeTools.newConcurrentHashMap(Store.SZ_SMALL);
-    this.eventStore = TypeTools.newArrayList(); // new PagedArrayList<JiveEvent>();
+    this.defUseIndex = new DefUseIndex();
+    this.eventStore = new EventLog(new EventMaterializer());
     this.fileValueStore = new IndexedOneToIndexedMany<String, IFileValue, Integer, ILineValue>();
+    this.isDefUseIndexed = true;
     this.lastTransactionEvent = null;
+    this.lineValues = TypeTools.newConcurrentHashMap(Store.SZ_MEDIUM);
     this.methodToExceptions = new OneToMany<IMethodNode, ITypeNodeRef>();
     this.noderefStore = TypeTools.newConcurrentHashMap(Store.SZ_NODEREFS);
     this.nodeToMemberData = new OneToIndexedMany<INode, Integer, IDataNode>(true);
@@ -108,9 +150,12 @@ class Store implements IModel, IStore
     this.nodeToTypes = new OneToMany<INode, ITypeNode>();
     this.oidToGC = TypeTools.newHashMap(Store.SZ_MEDIUM);
     this.resolvedNodes = TypeTools.newHashMap();
+    this.retainedEvents = 0;
     this.root = null;
     this.rootFiles = TypeTools.newLinkedHashMap();
+    this.searchIndex = new SearchIndex();
     this.slicedView = null;
+    this.structuralEvents = new EventIdList();
     this.threadStore = TypeTools.newConcurrentHashMap(Store.SZ_SMALL);
     this.transactionCount = 0;
     this.transactionReplayCursor = null;
@@ -118,6 +163,7 @@ class Store implements IModel, IStore
     this.typeToSuperInterfaces = new OneToMany<ITypeNode, ITypeNodeRef>();
     this.valueIndex = TypeTools.newConcurrentHashMap(Store.SZ_VALUES);
     this.valueStore = TypeTools.newConcurrentHashMap(Store.SZ_VALUES);
+    this.windows = Collections.emptyList();
   }
 
   @Override
@@ -135,7 +181,16 @@ class Store implements IModel, IStore
   @Override
   public IJiveEvent lookupRawEvent(final long eventId)
   {
-    return eventStore.get((int) eventId - 1);
+    return lookupTrace(eventId).lookup(eventId);
+  }
+
+  @Override
+  public IJiveEvent lookupRawPriorEvent(final IJiveEvent event)
+  {
+    final long eventId = ((JiveEvent) event).actualId();
+    final EventLog.Snapshot trace = lookupTrace(eventId);
+    final int index = trace.indexOf(eventId);
+    return index <= 0 ? null : trace.get(index - 1);
   }
 
   /**
@@ -190,6 +245,89 @@ class Store implements IModel, IStore
     return valueStore.values();
   }
 
+  /**
+   * Returns the index of the first checkpoint taken after the event with the given identifier, or
+   * the number of checkpoints if there is no such checkpoint.
+   */
+  private int checkpointAfter(final long eventId)
+  {
+    int low = 0;
+    int high = checkpoints.size();
+    while (low < high)
+    {
+      final int mid = (low + high) >>> 1;
+      if (checkpoints.get(mid).event().eventId() <= eventId)
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Restores checkpoints, one checkpoint interval at a time, for as long as the next checkpoint in
+   * the direction of the target is closer to the target than the current state. Once this method
+   * returns, the target is within one checkpoint interval of the current state.
+   */
+  private void checkpointJump(final long targetId)
+  {
+    while (true)
+    {
+      final long currentId = committedEventId();
+      final int index = currentId < targetId ? checkpointAfter(currentId)
+          : checkpointAfter(currentId - 1) - 1;
+      if (index < 0 || index >= checkpoints.size())
+      {
+        return;
+      }
+      final long checkpointId = checkpoints.get(index).event().eventId();
+      if (Math.abs(targetId - checkpointId) >= Math.abs(targetId - currentId))
+      {
+        return;
+      }
+      checkpointRestore(index, currentId);
+    }
+  }
+
+  /**
+   * Restores the checkpoint at the given index. The current state must lie between the prior and
+   * the next checkpoints.
+   */
+  private void checkpointRestore(final int index, final long currentId)
+  {
+    final ContourCheckpoint checkpoint = checkpoints.get(index);
+    // contours created after the checkpoint revert to their state at creation
+    if (currentId > checkpoint.event().eventId())
+    {
+      final int end = index + 1 < checkpoints.size() ? checkpoints.get(index + 1).logSize()
+          : contourCreationLog.size();
+      for (int i = end - 1; i >= checkpoint.logSize(); i--)
+      {
+        contourCreationLog.get(i).restore();
+      }
+    }
+    checkpoint.restore(contourChildToParent, contourParentToChildren);
+    // the event after the checkpoint is the last uncommitted event
+    transactionReplayCursor = checkpoint.event().equals(lastTransactionEvent) ? null
+        : lookupNextEvent(checkpoint.event());
+  }
+
+  /**
+   * Returns the identifier of the last event whose transaction is committed.
+   */
+  private long committedEventId()
+  {
+    if (transactionReplayCursor != null)
+    {
+      return transactionReplayCursor.eventId() - 1;
+    }
+    return lastTransactionEvent == null ? 0 : lastTransactionEvent.eventId();
+  }
+
   /**
    * Thread-safe verification if an element has children in the model. This method is an accessor.
    * 
@@ -262,6 +400,27 @@ class Store implements IModel, IStore
     return counters.get(key);
   }
 
+  /**
+   * Adds the event, whose identifier is set, to the secondary indexes.
+   */
+  private void indexEvent(final JiveEvent event)
+  {
+    if (event instanceof IDestroyObjectEvent)
+    {
+      oidToGC.put(((IDestroyObjectEvent) event).destroyedContour().oid(),
+          (IDestroyObjectEvent) event);
+    }
+    if (isDefUseIndexed && event instanceof IAssignEvent)
+    {
+      defUseIndex.add(((IAssignEvent) event).member(), event.actualId());
+    }
+    searchIndex.add(event, event.actualId());
+    if (event.thread() == null || Store.STRUCTURAL_KINDS.contains(event.kind()))
+    {
+      structuralEvents.add(event.actualId());
+    }
+  }
+
   private String instanceContourKey(final String typeName, final long oid)
   {
     return Store.PREFIX_CONTOUR_INSTANCE + typeName + Store.PREFIX_OID + oid;
@@ -272,7 +431,17 @@ class Store implements IModel, IStore
    */
   private int lastVirtualId()
   {
-    return slicedView == null ? -1 : slicedView.length() - 1;
+    return slicedView == null ? -1 : slicedView.last();
+  }
+
+  /**
+   * Returns the published trace if it holds the event with the given identifier. Otherwise, returns
+   * the trace of all events appended so far, which only the writer may read.
+   */
+  private EventLog.Snapshot lookupTrace(final long eventId)
+  {
+    final EventLog.Snapshot published = eventStore.snapshot();
+    return published.indexOf(eventId) != -1 ? published : eventStore.current();
   }
 
   private IProgramSlice slice()
@@ -287,10 +456,11 @@ class Store implements IModel, IStore
 
   private void transactionCommit(final ITransaction transaction)
   {
+    final List<IStateChange> changes = transaction.changes();
     // apply all changes in this transaction to the model, in the order in which they occurred
-    for (int i = 0; i < transaction.changes().size(); i++)
+    for (int i = 0; i < changes.size(); i++)
     {
-      final IStateChange change = transaction.changes().get(i);
+      final IStateChange change = changes.get(i);
       if (change instanceof AtomicInsert)
       {
         final AtomicInsert added = (AtomicInsert) change;
@@ -311,7 +481,7 @@ class Store implements IModel, IStore
     if (transactionReplayCursor != null)
     {
       // if we committed the last transaction, we are back in normal mode
-      if (transactionReplayCursor == lastTransactionEvent())
+      if (transactionReplayCursor.equals(lastTransactionEvent()))
       {
         transactionReplayCursor = null;
       }
@@ -445,6 +615,28 @@ class Store implements IModel, IStore
     return ((IMutableContourMember) member).setValue(newValue);
   }
 
+  /**
+   * Closes the open window, or the window opened when recording started if none is open, after
+   * the last event stored.
+   */
+  void closeWindow(final String closer)
+  {
+    final List<TraceWindow> result = TypeTools.newArrayList(windows.size() + 1);
+    result.addAll(windows);
+    TraceWindow window = result.isEmpty() ? null : result.remove(result.size() - 1);
+    if (window != null && !window.isOpen())
+    {
+      result.add(window);
+      window = new TraceWindow("start", window.lastEvent() + 1);
+    }
+    else if (window == null)
+    {
+      window = new TraceWindow("start", 1);
+    }
+    result.add(window.close(closer, currentCount(IJiveEvent.class)));
+    windows = result;
+  }
+
   List<IContour> contourChildren(final IContour parent)
   {
     final List<IContour> model = contourParentToChildren.get(parent);
@@ -522,6 +714,15 @@ class Store implements IModel, IStore
     return contourChildren(null);
   }
 
+  /**
+   * Creates a view of the events in the set. The view reads the trace as published when it is
+   * read and may be used whether or not it is placed on top of the model.
+   */
+  EventSelection createView(final BitSet events)
+  {
+    return new EventSelection(events, eventStore);
+  }
+
   /**
    * Return the current counter value for the key.
    */
@@ -531,24 +732,135 @@ class Store implements IModel, IStore
   }
 
   /**
-   * Returns the events in the model. This method considers whether a view is currently in place.
+   * Discards the oldest events once the trace exceeds the number of retained events by a quarter,
+   * so that the cost of reindexing the trace is amortized over the events stored in between. The
+   * given live events (executions still in progress), the root, and the ancestors of the retained
+   * events are kept in trace order ahead of the retained events, but their transactions are
+   * emptied: their changes, like those of the discarded events, become part of the initial state of
+   * the trace. Events keep their identifiers, and the remaining events are published as a new
+   * epoch of the event log, so readers of earlier snapshots are unaffected. Events are only
+   * discarded in normal mode, outside of slices. Returns true if events were discarded.
    */
-  List<? extends IJiveEvent> events()
+  boolean discardOldEvents(final Collection<? extends IJiveEvent> live)
   {
-    if (slicedView == null)
+    if (retainedEvents == 0 || eventStore.size() <= retainedEvents + retainedEvents / 4
+        || transactionReplayCursor != null || slicedView != null)
     {
-      return eventStore;
+      return false;
     }
-    // create the list to hold the events
-    final List<IJiveEvent> result = TypeTools.newArrayList(slicedView.cardinality());
-    // add only those in the view
-    for (int eventId = slicedView.nextSetBit(0); eventId >= 0; eventId = slicedView
-        .nextSetBit(eventId + 1))
+    // events positioned before the cut are discarded unless pinned; the events pinned by the last
+    // discard are all positioned before the cut, so the identifiers past the cut are consecutive
+    final int cut = Math.max(eventStore.size() - retainedEvents, eventStore.pinnedCount());
+    final Set<IJiveEvent> pinned = TypeTools.newHashSet();
+    pinned.add(model.lookupRoot());
+    for (final IJiveEvent event : live)
     {
-      result.add(eventStore.get(eventId - 1));
+      if (eventStore.indexOf(((JiveEvent) event).actualId()) < cut)
+      {
+        pinned.add(event);
+      }
     }
-    // return the newly created view
-    return result;
+    // the ancestors are found in the parent column, so retained events are not materialized
+    final EventLog.Snapshot trace = eventStore.current();
+    for (int i = cut; i < trace.size(); i++)
+    {
+      int parent = trace.indexOf(trace.parentId(i));
+      while (parent != -1 && parent < cut && pinned.add(trace.get(parent)))
+      {
+        parent = trace.indexOf(trace.parentId(parent));
+      }
+    }
+    int pinnedCount = 0;
+    final List<JiveEvent> events = TypeTools.newArrayList(pinned.size() + retainedEvents);
+    // the changes of the retained events move to the arena of a new epoch, those of pinned events
+    // are part of the initial state of the trace
+    final List<List<IStateChange>> changes = TypeTools.newArrayList(pinned.size()
+        + retainedEvents);
+    final Set<ContextContour> contexts = TypeTools.newHashSet();
+    final List<InitiatorEvent> initiators = TypeTools.newArrayList();
+    for (int i = 0; i < eventStore.size(); i++)
+    {
+      final JiveEvent event = eventStore.get(i);
+      if (i >= cut)
+      {
+        events.add(event);
+        changes.add(eventStore.changes(event.actualId()));
+      }
+      else if (pinned.contains(event))
+      {
+        events.add(event);
+        changes.add(Collections.<IStateChange> emptyList());
+        pinnedCount++;
+        if (event instanceof InitiatorEvent)
+        {
+          initiators.add((InitiatorEvent) event);
+        }
+      }
+      else
+      {
+        // threads that ended are still referenced by the model
+        if (event instanceof IThreadStartEvent)
+        {
+          initiators.add((InitiatorEvent) event);
+        }
+        else if (event instanceof IMethodCallEvent
+            && ((IMethodCallEvent) event).executionContext() instanceof ContextContour)
+        {
+          contexts.add((ContextContour) ((IMethodCallEvent) event).executionContext());
+        }
+      }
+    }
+    // drop the references to discarded method calls
+    for (final ContextContour context : contexts)
+    {
+      context.discardInitiators();
+    }
+    for (final InitiatorEvent initiator : initiators)
+    {
+      initiator.discardInitiators();
+    }
+    final Iterator<IDestroyObjectEvent> destroyed = oidToGC.values().iterator();
+    while (destroyed.hasNext())
+    {
+      if (eventStore.indexOf(((JiveEvent) destroyed.next()).actualId()) < cut)
+      {
+        destroyed.remove();
+      }
+    }
+    // publish and reindex the remaining events under a new epoch of the log
+    eventStore.retain(events, changes, pinnedCount);
+    defUseIndex.clear();
+    searchIndex.clear();
+    structuralEvents.clear();
+    transactionCount = 0;
+    for (int i = 0; i < events.size(); i++)
+    {
+      indexEvent(events.get(i));
+      if (changes.get(i) != null)
+      {
+        transactionCount++;
+      }
+    }
+    // checkpoints refer to the discarded state
+    checkpointDeleted.clear();
+    checkpoints.clear();
+    contourCreationLog.clear();
+    return true;
+  }
+
+  /**
+   * Returns the events in the model. This method considers whether a view is currently in place.
+   * Outside of views, the result is the last published snapshot of the trace.
+   */
+  List<? extends IJiveEvent> events()
+  {
+    final EventSelection view = slicedView;
+    if (view == null)
+    {
+      return eventStore.snapshot();
+    }
+    // the events in the view, backed by the current snapshot of the trace
+    return view.events();
   }
 
   @Override
@@ -573,9 +885,15 @@ class Store implements IModel, IStore
   }
 
   @Override
-  public void indexValue(final Object key, final IValue value)
+  public IValue indexValue(final Object key, final IValue value)
   {
-    valueIndex.putIfAbsent(key, value);
+    final IValue result = valueIndex.putIfAbsent(key, value);
+    return result == null ? value : result;
+  }
+
+  boolean isDefUseIndexed()
+  {
+    return isDefUseIndexed;
   }
 
   @Override
@@ -604,7 +922,7 @@ class Store implements IModel, IStore
     {
       return lastTransactionEvent;
     }
-    return eventStore.get(lastVirtualId() - 1);
+    return eventStore.lookup(lastVirtualId());
   }
 
   IContour lookupContour(final long contourId)
@@ -626,22 +944,42 @@ class Store implements IModel, IStore
   {
     if (slicedView == null)
     {
-      return eventId > eventStore.size() || eventId <= 0 ? null : eventStore.get((int) eventId - 1);
-    }
-    // number of bits set seen so far
-    int seenCount = 0;
-    // set the virtual identifier for the events in the view
-    for (int index = slicedView.nextSetBit(0); index >= 0; index = slicedView.nextSetBit(index + 1))
-    {
-      seenCount++;
-      if (seenCount == eventId)
-      {
-        // the eventId was seen at this index
-        return eventStore.get(index - 1);
-      }
+      // the published trace maps identifiers to events as of its own epoch
+      return eventStore.snapshot().lookup(eventId);
     }
-    // this should NEVER happen
-    return null;
+    return slicedView.lookupEvent(eventId);
+  }
+
+  @Override
+  public long lookupEventId(final long eventId)
+  {
+    final EventSelection view = slicedView;
+    // the virtual identifier is derived from the view, never stored in the event
+    return view == null ? eventId : view.rank(eventId);
+  }
+
+  @Override
+  public EventKind lookupEventKind(final long eventId)
+  {
+    final EventLog.Snapshot trace = lookupTrace(eventId);
+    final int index = trace.indexOf(eventId);
+    return index == -1 ? null : trace.kind(index);
+  }
+
+  @Override
+  public long lookupEventLineId(final long eventId)
+  {
+    final EventLog.Snapshot trace = lookupTrace(eventId);
+    final int index = trace.indexOf(eventId);
+    return index == -1 ? -1 : trace.lineId(index);
+  }
+
+  @Override
+  public long lookupEventThreadId(final long eventId)
+  {
+    final EventLog.Snapshot trace = lookupTrace(eventId);
+    final int index = trace.indexOf(eventId);
+    return index == -1 ? EventLog.THREAD_NONE : trace.threadId(index);
   }
 
   @Override
@@ -682,9 +1020,21 @@ class Store implements IModel, IStore
   {
     if (slicedView == null)
     {
-      return eventStore.get((int) currentCount(IJiveEvent.class) - 1 - 1);
+      return eventStore.lookup(currentCount(IJiveEvent.class) - 1);
     }
-    return eventStore.get(lastVirtualId() - 1);
+    return eventStore.lookup(lastVirtualId());
+  }
+
+  @Override
+  public long lookupLastDefinition(final IContourMember member, final long eventId)
+  {
+    return isDefUseIndexed ? defUseIndex.lastBefore(member, eventId) : eventId - 1;
+  }
+
+  @Override
+  public long lookupLastStructuralEvent(final long eventId)
+  {
+    return structuralEvents.lastBefore(eventId);
   }
 
   @Override
@@ -693,6 +1043,12 @@ class Store implements IModel, IStore
     return fileValueStore.lookupValue(fileName, lineNumber);
   }
 
+  @Override
+  public ILineValue lookupLineValue(final long lineId)
+  {
+    return lineValues.get(lineId);
+  }
+
   @Override
   public Set<ITypeNodeRef> lookupMethodExceptions(final IMethodNode node)
   {
@@ -708,9 +1064,44 @@ class Store implements IModel, IStore
   @Override
   public IJiveEvent lookupNextEvent(final IJiveEvent event)
   {
+    if (slicedView == null)
+    {
+      // identifiers are not consecutive past the pinned events
+      final EventLog.Snapshot published = eventStore.snapshot();
+      final int index = published.indexOf(((JiveEvent) event).actualId());
+      return index == -1 || index + 1 >= published.size() ? null : published.get(index + 1);
+    }
     return lookupEvent(event.eventId() + 1);
   }
 
+  @Override
+  public long lookupNextEventId(final long eventId)
+  {
+    final EventLog.Snapshot published = eventStore.snapshot();
+    final int index = published.indexAfter(eventId);
+    return index < published.size() ? published.idAt(index) : 0;
+  }
+
+  /**
+   * The thread links of published events are read from the published snapshot, which requires no
+   * lock. Only the writer holds events past the snapshot, whose links it reads from the log.
+   */
+  @Override
+  public IJiveEvent lookupNextEventInThread(final IJiveEvent event)
+  {
+    final long eventId = ((JiveEvent) event).actualId();
+    final EventLog.Snapshot trace = lookupTrace(eventId);
+    final EventSelection view = slicedView;
+    final int index = trace.indexOf(eventId);
+    int row = index == -1 ? EventLog.INDEX_NONE : trace.nextInThread(index);
+    // skip events not in the view
+    while (view != null && row != EventLog.INDEX_NONE && !view.contains(trace.idAt(row)))
+    {
+      row = trace.nextInThread(row);
+    }
+    return row == EventLog.INDEX_NONE ? null : trace.get(row);
+  }
+
   @Override
   public INode lookupNode(final String key)
   {
@@ -730,12 +1121,59 @@ class Store implements IModel, IStore
     return nodeToTypes.lookupChildren(node);
   }
 
+  @Override
+  public long lookupParentEventId(final long eventId)
+  {
+    final EventLog.Snapshot trace = lookupTrace(eventId);
+    final int index = trace.indexOf(eventId);
+    return index == -1 ? EventLog.ID_NONE : trace.parentId(index);
+  }
+
   @Override
   public IJiveEvent lookupPriorEvent(final IJiveEvent event)
   {
+    if (slicedView == null)
+    {
+      // identifiers are not consecutive past the pinned events
+      final EventLog.Snapshot published = eventStore.snapshot();
+      final int index = published.indexOf(((JiveEvent) event).actualId());
+      return index <= 0 ? null : published.get(index - 1);
+    }
     return lookupEvent(event.eventId() - 1);
   }
 
+  /**
+   * The thread links of published events are read from the published snapshot, which requires no
+   * lock. Only the writer holds events past the snapshot, whose links it reads from the log.
+   */
+  @Override
+  public IJiveEvent lookupPriorEventInThread(final IJiveEvent event)
+  {
+    final long eventId = ((JiveEvent) event).actualId();
+    final EventLog.Snapshot trace = lookupTrace(eventId);
+    final EventSelection view = slicedView;
+    final int index = trace.indexOf(eventId);
+    int row = index == -1 ? EventLog.INDEX_NONE : trace.priorInThread(index);
+    // skip events not in the view
+    while (view != null && row != EventLog.INDEX_NONE && !view.contains(trace.idAt(row)))
+    {
+      row = trace.priorInThread(row);
+    }
+    return row == EventLog.INDEX_NONE ? null : trace.get(row);
+  }
+
+  @Override
+  public long[] lookupSearchEvents(final EventKind kind, final Object key)
+  {
+    return searchIndex.lookup(kind, key);
+  }
+
+  @Override
+  public Set<Object> lookupSearchKeys(final EventKind kind)
+  {
+    return searchIndex.keys(kind);
+  }
+
   @Override
   public IContour lookupStaticContour(final String typeName)
   {
@@ -758,6 +1196,36 @@ class Store implements IModel, IStore
     return threadStore.get(key);
   }
 
+  /**
+   * The transaction is a view of the event's range of changes in the log. Published events are
+   * resolved in the published snapshot, which requires no lock. Only the writer holds events past
+   * the snapshot, whose changes it reads from the log.
+   */
+  @Override
+  public ITransaction lookupTransaction(final IJiveEvent event)
+  {
+    final long eventId = ((JiveEvent) event).actualId();
+    final EventLog.Snapshot published = eventStore.snapshot();
+    List<IStateChange> changes = published.changes(eventId);
+    if (changes == null)
+    {
+      if (published.isEmpty() || eventId > published.idAt(published.size() - 1))
+      {
+        changes = eventStore.changes(eventId);
+        if (changes == null)
+        {
+          return null;
+        }
+      }
+      else
+      {
+        // the event was discarded from the trace
+        changes = Collections.emptyList();
+      }
+    }
+    return new Transaction(event, changes);
+  }
+
   @Override
   public Set<ITypeNode> lookupTypeMembers(final INode node)
   {
@@ -770,6 +1238,13 @@ class Store implements IModel, IStore
     return valueIndex.get(key);
   }
 
+  @Override
+  public Object lookupViewState(final IJiveEvent event)
+  {
+    final EventSelection view = slicedView;
+    return view == null ? null : view.lookupState(((JiveEvent) event).actualId());
+  }
+
   long nextCount()
   {
     return nextCount(Store.PREFIX_COUNTER);
@@ -794,15 +1269,45 @@ class Store implements IModel, IStore
     return nextCount(INode.class);
   }
 
+  /**
+   * Opens a window that begins with the next event stored, closing the open window if any.
+   */
+  void openWindow(final String opener)
+  {
+    if (!windows.isEmpty() && windows.get(windows.size() - 1).isOpen())
+    {
+      closeWindow(opener);
+    }
+    final List<TraceWindow> result = TypeTools.newArrayList(windows.size() + 1);
+    result.addAll(windows);
+    result.add(new TraceWindow(opener, currentCount(IJiveEvent.class) + 1));
+    windows = result;
+  }
+
+  /**
+   * Publishes the events stored so far to the readers of the trace. The writer calls this method
+   * once the changes of a batch of events are committed, so that readers never observe an event
+   * whose transaction is still being built.
+   */
+  void publishEvents()
+  {
+    eventStore.publish();
+  }
+
   void reset()
   {
+    checkpointDeleted.clear();
+    checkpoints.clear();
+    contourCreationLog.clear();
     contourChildToParent.clear();
     contourParentToChildren.clear();
     contourStore.clear();
     counters.clear();
+    defUseIndex.clear();
     eventStore.clear();
     fileValueStore.clear();
     lastTransactionEvent = null;
+    lineValues.clear();
     methodToExceptions.clear();
     noderefStore.clear();
     nodeToChildNodes.clear();
@@ -811,7 +1316,9 @@ class Store implements IModel, IStore
     resolvedNodes.clear();
     root = null;
     rootFiles.clear();
+    searchIndex.clear();
     slicedView = null;
+    structuralEvents.clear();
     threadStore.clear();
     transactionCount = 0;
     transactionReplayCursor = null;
@@ -819,50 +1326,26 @@ class Store implements IModel, IStore
     typeToSuperInterfaces.clear();
     valueIndex.clear();
     valueStore.clear();
+    windows = Collections.emptyList();
   }
 
   /**
-   * Creates a virtualId for every event in the view, where the virtual identifier is the position
-   * of the event in the view (1-based). This method updates the transactional state of the view.
+   * Places the view on top of the model. Virtual identifiers are derived from the view as events
+   * are read, so neither the events in the view nor those of other views are modified.
    */
-  void sliceFilterAdd(final BitSet view)
+  void sliceFilterAdd(final EventSelection view)
   {
-    // only one view is supported at any given time
+    // only one view is active at any given time
     if (slicedView != null)
     {
       sliceFilterRemove();
     }
-    // the model becomes virtual at this point (virtualization relies on this being set)
+    // the model becomes virtual at this point
     this.slicedView = view;
-    // clone for a destructive traversal
-    final BitSet copy = (BitSet) view.clone();
-    // the first virtual identifier
-    int virtualId = copy.cardinality();
-    /**
-     * Set the virtual identifier for the events in the view by traversing a copy of the view in
-     * reverse order. Unfortunately, BitSet does not provide reverse order traversal, so we must
-     * carry the traversal on a copy since the process is destructive, i.e., modifies the state of
-     * the bit set.
-     */
-    while (!copy.isEmpty())
-    {
-      final long eventId = copy.length() - 1;
-      // the highest bit set in the view
-      final JiveEvent event = eventStore.get((int) eventId - 1);
-      // little sanity check
-      assert event.transaction() != null : "All events in a view must have an associated transaction.";
-      // virtualize the event
-      event.setVirtualId(virtualId);
-      // decrease the virtual identifier
-      virtualId--;
-      // clear the last bit
-      copy.clear((int) eventId);
-    }
   }
 
   /**
-   * Clears the virtualId of every event in the view. This method updates the transactional state of
-   * the view.
+   * Removes the view from the model. This method updates the transactional state of the view.
    */
   void sliceFilterRemove()
   {
@@ -870,20 +1353,8 @@ class Store implements IModel, IStore
     {
       return;
     }
-    final BitSet view = slicedView;
     // the model is no longer virtual at this point
     slicedView = null;
-    // reset the virtual identifier for the events in the view
-    for (int eventId = view.nextSetBit(0); eventId >= 0; eventId = view.nextSetBit(eventId + 1))
-    {
-      final JiveEvent event = eventStore.get(eventId - 1);
-      event.resetVirtualId();
-      if (event instanceof AssignEvent)
-      {
-        ((AssignEvent) event).setLastAssignment(null);
-        // System.err.println("LAST_ASSIGN_OLD_CLEARED[" + event + "]");
-      }
-    }
     /**
      * The caller code must have set the transaction log to its initial state. Any contours left in
      * these maps are residual contours from the non-filtered model, which were "invisible" but now
@@ -896,12 +1367,14 @@ class Store implements IModel, IStore
   void storeEvent(final JiveEvent event)
   {
     event.setEventId(nextCount(IJiveEvent.class));
-    eventStore.add(event);
-    if (event instanceof IDestroyObjectEvent)
+    // the values from which the event may be recreated
+    lineValues.putIfAbsent(event.line().id(), event.line());
+    if (event.thread() != null)
     {
-      oidToGC.put(((IDestroyObjectEvent) event).destroyedContour().oid(),
-          (IDestroyObjectEvent) event);
+      threadStore.putIfAbsent(event.thread().id(), event.thread());
     }
+    eventStore.add(event);
+    indexEvent(event);
   }
 
   @Override
@@ -984,6 +1457,43 @@ class Store implements IModel, IStore
     return result;
   }
 
+  /**
+   * Sets the number of transactions between checkpoints of the contour model. A value of zero
+   * disables checkpoints and discards the checkpoints taken so far. Each checkpoint copies the
+   * entire contour model, so checkpoints are disabled by default.
+   */
+  void setCheckpointInterval(final int interval)
+  {
+    this.checkpointInterval = Math.max(0, interval);
+    if (checkpointInterval == 0)
+    {
+      checkpointDeleted.clear();
+      checkpoints.clear();
+      contourCreationLog.clear();
+    }
+  }
+
+  /**
+   * Enables or disables the def-use index. The index must cover the entire trace, so it can only be
+   * enabled before any event is stored.
+   */
+  void setDefUseIndex(final boolean enabled)
+  {
+    this.isDefUseIndexed = enabled && eventStore.isEmpty();
+    if (!isDefUseIndexed)
+    {
+      defUseIndex.clear();
+    }
+  }
+
+  /**
+   * Sets the number of most recent events kept in the trace. A value of zero keeps the full trace.
+   */
+  void setRetainedEvents(final int events)
+  {
+    this.retainedEvents = Math.max(0, events);
+  }
+
   @Override
   public void storeThread(final Long uniqueId, final IThreadValue value)
   {
@@ -997,13 +1507,35 @@ class Store implements IModel, IStore
   void storeTransaction(final IJiveEvent event, final List<IStateChange> changes)
   {
     // associate a new, uncommitted transaction with the event
-    ((JiveEvent) event).setTransaction(new Transaction(event, changes));
+    eventStore.setChanges(eventStore.indexOf(((JiveEvent) event).actualId()), changes);
+    final ITransaction transaction = new Transaction(event, changes == null ? Collections
+        .<IStateChange> emptyList() : changes);
+    // record the initial state of new contours and the contours deleted since the last checkpoint
+    for (final IStateChange change : changes == null || checkpointInterval == 0 ? Collections
+        .<IStateChange> emptyList() : changes)
+    {
+      if (change instanceof AtomicInsert)
+      {
+        ContourCheckpoint.capture(change.contour(), contourCreationLog);
+      }
+      else if (change instanceof AtomicDelete)
+      {
+        checkpointDeleted.add(change.contour());
+      }
+    }
     // commit the transaction
-    transactionCommit(event.transaction());
+    transactionCommit(transaction);
     // remember the transaction count
     transactionCount++;
     // remember the last committed transaction
     lastTransactionEvent = event;
+    // periodically checkpoint the contour model
+    if (checkpointInterval > 0 && transactionCount % checkpointInterval == 0)
+    {
+      checkpoints.add(new ContourCheckpoint(event, contourChildToParent, contourParentToChildren,
+          checkpointDeleted, contourCreationLog.size()));
+      checkpointDeleted.clear();
+    }
   }
 
   @Override
@@ -1037,6 +1569,13 @@ class Store implements IModel, IStore
     return id;
   }
 
+  @Override
+  public Object storeViewState(final IJiveEvent event, final Object state)
+  {
+    final EventSelection view = slicedView;
+    return view == null ? state : view.storeState(((JiveEvent) event).actualId(), state);
+  }
+
   void transactionCommitReplay()
   {
     // retrieve an uncommitted (normal mode) or rolled back transaction (replay mode) to commit
@@ -1052,7 +1591,7 @@ class Store implements IModel, IStore
     {
       return this.transactionCount;
     }
-    return slicedView.cardinality();
+    return slicedView.size();
   }
 
   IJiveEvent transactionLogCursor()
@@ -1086,11 +1625,11 @@ class Store implements IModel, IStore
     {
       replayEvent = replayEvent.prior();
     }
-    final ITransaction transaction = replayEvent.transaction();
+    final List<IStateChange> changes = replayEvent.transaction().changes();
     // revert all changes in this transaction, in the reverse order in which they occurred
-    for (int i = transaction.changes().size() - 1; i >= 0; i--)
+    for (int i = changes.size() - 1; i >= 0; i--)
     {
-      final IStateChange change = transaction.changes().get(i);
+      final IStateChange change = changes.get(i);
       if (change instanceof AtomicInsert)
       {
         final AtomicInsert added = (AtomicInsert) change;
@@ -1105,10 +1644,12 @@ class Store implements IModel, IStore
       {
         final AtomicUpdate updated = (AtomicUpdate) change;
         final IValue oldValue;
-        if (replayEvent instanceof IAssignEvent
-            && ((IAssignEvent) replayEvent).getLastValue() != null)
+        // the in-slice old value recorded by the active slice, if any
+        final IValue lastValue = slicedView == null || !(replayEvent instanceof IAssignEvent) ? null
+            : slice().lastValue((IAssignEvent) replayEvent);
+        if (lastValue != null)
         {
-          oldValue = ((IAssignEvent) replayEvent).getLastValue();
+          oldValue = lastValue;
           // System.err.println("LAST_ASSIGN_OLD_VALUE[" + oldValue + ", " + replayEvent + "]");
         }
         else
@@ -1128,6 +1669,11 @@ class Store implements IModel, IStore
    */
   void transactionSetLastUncommittedEvent(final IJiveEvent event)
   {
+    // checkpoints are not used under a view, since they refer to actual events
+    if (slicedView == null)
+    {
+      checkpointJump(event.eventId() - 1);
+    }
     if (transactionReplayCursor == null || !transactionReplayCursor.isVisible()
         || transactionReplayCursor.eventId() > event.eventId())
     {
@@ -1150,23 +1696,53 @@ class Store implements IModel, IStore
     // post-condition: replayEvent == event
   }
 
+  /**
+   * Recording windows of the trace, in order.
+   */
+  List<ITraceWindow> windows()
+  {
+    return Collections.<ITraceWindow> unmodifiableList(windows);
+  }
+
   /**
    * Standard implementation of a transaction-- a container for a list of atomic changes associated
-   * with an event. A transaction has one of two states-- committed or uncommitted.
+   * with an event. A transaction has one of two states-- committed or uncommitted. The changes are
+   * kept packed in the state change arena of the event log, and a transaction is a transient view
+   * of their range of records created on demand.
    * 
    * TODO: push the transactions to the event model. Instead of making the transactions part of the
    * stored model, make them transient and compute them on a per-need basis.
    */
+  /**
+   * Recreates line step and method entered events from the columns of the event log, with the
+   * thread and line values recorded when the events were stored.
+   */
+  private final class EventMaterializer implements EventLog.Materializer
+  {
+    @Override
+    public boolean isScalar(final IJiveEvent event)
+    {
+      return ((EventFactory) model.eventFactory()).isScalarEvent(event);
+    }
+
+    @Override
+    public JiveEvent materialize(final long eventId, final EventKind kind, final long threadId,
+        final long lineId, final JiveEvent parent)
+    {
+      return ((EventFactory) model.eventFactory()).createScalarEvent(kind, eventId,
+          threadStore.get(threadId), lineValues.get(lineId), (IInitiatorEvent) parent);
+    }
+  }
+
   private final static class Transaction implements ITransaction
   {
     private final List<IStateChange> changes;
     private final IJiveEvent parent;
 
-    @SuppressWarnings("unchecked")
     private Transaction(final IJiveEvent parent, final List<IStateChange> changes)
     {
       // this.isCommitted = false;
-      this.changes = (List<IStateChange>) (changes == null ? Collections.emptyList() : changes);
+      this.changes = changes;
       this.parent = parent;
     }
 
@@ -0,0 +1,63 @@
+package edu.buffalo.cse.jive.internal.model.store.memory;
+
+import edu.buffalo.cse.jive.model.IExecutionModel.ITraceWindow;
+
+/**
+ * Recording window of the trace. Windows are immutable: closing a window replaces it in the store
+ * with a closed copy, so the windows handed out to readers never change.
+ */
+final class TraceWindow implements ITraceWindow
+{
+  private final String closer;
+  private final long firstEvent;
+  private final long lastEvent;
+  private final String opener;
+
+  TraceWindow(final String opener, final long firstEvent)
+  {
+    this(opener, firstEvent, null, -1);
+  }
+
+  private TraceWindow(final String opener, final long firstEvent, final String closer,
+      final long lastEvent)
+  {
+    this.closer = closer;
+    this.firstEvent = firstEvent;
+    this.lastEvent = lastEvent;
+    this.opener = opener;
+  }
+
+  @Override
+  public String closer()
+  {
+    return closer;
+  }
+
+  @Override
+  public long firstEvent()
+  {
+    return firstEvent;
+  }
+
+  @Override
+  public long lastEvent()
+  {
+    return lastEvent;
+  }
+
+  @Override
+  public String opener()
+  {
+    return opener;
+  }
+
+  TraceWindow close(final String closer, final long lastEvent)
+  {
+    return new TraceWindow(opener, firstEvent, closer, lastEvent);
+  }
+
+  boolean isOpen()
+  {
+    return closer == null;
+  }
+}
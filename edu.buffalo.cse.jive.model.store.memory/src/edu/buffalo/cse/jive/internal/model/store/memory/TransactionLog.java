@@ -1,9 +1,8 @@
 package edu.buffalo.cse.jive.internal.model.store.memory;
 
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Stack;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
@@ -19,6 +18,7 @@ import edu.buffalo.cse.jive.model.IExecutionModel.IStateChange;
 import edu.buffalo.cse.jive.model.IModel.IValue;
 import edu.buffalo.cse.jive.model.ITransactionLog;
 import edu.buffalo.cse.jive.model.IVisitor;
+import edu.buffalo.cse.jive.model.events.EventFactory.JiveEvent;
 
 /**
  * Thread-safe transaction log implementation that delegates fine-grained state management to a
@@ -32,6 +32,9 @@ import edu.buffalo.cse.jive.model.IVisitor;
  * 
  * Subclassing ReentrantReadWriteLock opportunistically simplifies locking and avoids separate
  * construction.
+ * 
+ * The recorder commits the events of a batch as a group: the write lock is acquired and the log is
+ * validated once for the whole batch, rather than once per event.
  */
 class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
 {
@@ -92,6 +95,21 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
       };
   }
 
+  /**
+   * Number of contours in the chain of the given contour and its parents.
+   */
+  private static int depth(final IContextContour contour)
+  {
+    int result = 0;
+    for (IContextContour instance = contour; instance != null; instance = instance.parent())
+    {
+      result++;
+    }
+    return result;
+  }
+
+  // true while the changes of a batch are committed, guarded by the write lock
+  private boolean isBatch;
   protected final ExecutionModel model;
 
   TransactionLog(final ExecutionModel model)
@@ -103,19 +121,18 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
   @Override
   public void atomicObjectDestroy(final IJiveEvent event, final IContextContour contour)
   {
-    writeLock().lock();
+    // makes sure a new transaction can begin
+    final boolean isLocked = beginTransaction();
     try
     {
-      // makes sure a new transaction can begin
-      assertStatus(checkBegin());
-      // create the list of changes
-      final List<IStateChange> changes = new LinkedList<IStateChange>();
+      // create the array of changes
+      final IStateChange[] changes = new IStateChange[TransactionLog.depth(contour)];
       IContextContour instance = contour;
       // virtual contour removed first, most generic contour last
-      while (instance != null)
+      for (int i = 0; i < changes.length; i++)
       {
         // System.err.println("ATOMIC_DESTROY[" + instance.toString() + "]");
-        changes.add(TransactionLog.atomicDelete(instance));
+        changes[i] = TransactionLog.atomicDelete(instance);
         instance = instance.parent();
       }
       // encapsulates changes in a transaction and commits
@@ -123,7 +140,7 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
     }
     finally
     {
-      writeLock().unlock();
+      endTransaction(isLocked);
     }
   }
 
@@ -143,6 +160,30 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
     }
   }
 
+  /**
+   * Acquires the write lock and makes sure a new transaction can begin. Within a batch, the lock is
+   * already held and the log was validated for the whole batch, so neither is repeated. Returns
+   * true if the lock was acquired here, in which case {@code endTransaction} releases it.
+   */
+  private boolean beginTransaction()
+  {
+    if (isBatch && isWriteLockedByCurrentThread())
+    {
+      return false;
+    }
+    writeLock().lock();
+    try
+    {
+      assertStatus(checkBegin());
+    }
+    catch (final IllegalStateException e)
+    {
+      writeLock().unlock();
+      throw e;
+    }
+    return true;
+  }
+
   private String checkBegin()
   {
     readLock().lock();
@@ -247,6 +288,14 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
     }
   }
 
+  private void endTransaction(final boolean isLocked)
+  {
+    if (isLocked)
+    {
+      writeLock().unlock();
+    }
+  }
+
   private Store store()
   {
     return model.store();
@@ -258,9 +307,9 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
    * 
    * @requires a write lock to be obtained by the caller
    */
-  private void storeTransaction(final IJiveEvent event, final List<IStateChange> changes)
+  private void storeTransaction(final IJiveEvent event, final IStateChange[] changes)
   {
-    store().storeTransaction(event, changes);
+    store().storeTransaction(event, changes == null ? null : Arrays.asList(changes));
   }
 
   /**
@@ -284,17 +333,16 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
   @Override
   public void atomicEmpty(final IJiveEvent event)
   {
-    writeLock().lock();
+    // makes sure a new transaction can begin
+    final boolean isLocked = beginTransaction();
     try
     {
-      // makes sure a new transaction can begin
-      assertStatus(checkBegin());
       // encapsulates changes in a transaction and commits
       storeTransaction(event, null);
     }
     finally
     {
-      writeLock().unlock();
+      endTransaction(isLocked);
     }
   }
 
@@ -302,25 +350,21 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
   public void atomicMethodEnter(final IJiveEvent event, final IValue caller,
       final IMethodContour method)
   {
-    writeLock().lock();
+    // makes sure a new transaction can begin
+    final boolean isLocked = beginTransaction();
     try
     {
-      // makes sure a new transaction can begin
-      assertStatus(checkBegin());
-      // create the list of changes
-      final List<IStateChange> changes = new LinkedList<IStateChange>();
-      // method contour inserted
-      changes.add(TransactionLog.atomicInsert(method));
       // retrieve the rpdl variable instance
       final IContourMember rpdl = method.lookupRPDLMember();
-      // return point member of the method contour updated
-      changes.add(TransactionLog.atomicUpdate(method, rpdl, caller, rpdl.value()));
+      // method contour inserted, then its return point member updated
+      final IStateChange[] changes = new IStateChange[] { TransactionLog.atomicInsert(method),
+          TransactionLog.atomicUpdate(method, rpdl, caller, rpdl.value()) };
       // encapsulates changes in a transaction and commits
       storeTransaction(event, changes);
     }
     finally
     {
-      writeLock().unlock();
+      endTransaction(isLocked);
     }
   }
 
@@ -328,21 +372,18 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
   @Override
   public void atomicMethodExit(final IJiveEvent event, final IMethodContour method)
   {
-    writeLock().lock();
+    // makes sure a new transaction can begin
+    final boolean isLocked = beginTransaction();
     try
     {
-      // makes sure a new transaction can begin
-      assertStatus(checkBegin());
-      // create the list of changes
-      final List<IStateChange> changes = new LinkedList<IStateChange>();
       // method contour deleted
-      changes.add(TransactionLog.atomicDelete(method));
+      final IStateChange[] changes = new IStateChange[] { TransactionLog.atomicDelete(method) };
       // encapsulates changes in a transaction and commits
       storeTransaction(event, changes);
     }
     finally
     {
-      writeLock().unlock();
+      endTransaction(isLocked);
     }
   }
 
@@ -350,31 +391,25 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
   @Override
   public void atomicObjectNew(final IJiveEvent event, final IContextContour contour)
   {
-    writeLock().lock();
+    // makes sure a new transaction can begin
+    final boolean isLocked = beginTransaction();
     try
     {
-      // makes sure a new transaction can begin
-      assertStatus(checkBegin());
-      // create the list of changes
-      final List<IStateChange> changes = new LinkedList<IStateChange>();
-      final Stack<IContextContour> stack = new Stack<IContextContour>();
+      // create the array of changes
+      final IStateChange[] changes = new IStateChange[TransactionLog.depth(contour)];
       IContextContour instance = contour;
-      while (instance != null)
-      {
-        stack.push(instance);
-        instance = instance.parent();
-      }
       // most generic contour added first, virtual contour last
-      while (!stack.isEmpty())
+      for (int i = changes.length - 1; i >= 0; i--)
       {
-        changes.add(TransactionLog.atomicInsert(stack.pop()));
+        changes[i] = TransactionLog.atomicInsert(instance);
+        instance = instance.parent();
       }
       // encapsulates changes in a transaction and commits
       storeTransaction(event, changes);
     }
     finally
     {
-      writeLock().unlock();
+      endTransaction(isLocked);
     }
   }
 
@@ -382,21 +417,18 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
   @Override
   public void atomicRemoveContour(final IJiveEvent event, final IMethodContour method)
   {
-    writeLock().lock();
+    // makes sure a new transaction can begin
+    final boolean isLocked = beginTransaction();
     try
     {
-      // makes sure a new transaction can begin
-      assertStatus(checkBegin());
-      // create the list of changes
-      final List<IStateChange> changes = new LinkedList<IStateChange>();
       // method contour deleted
-      changes.add(TransactionLog.atomicDelete(method));
+      final IStateChange[] changes = new IStateChange[] { TransactionLog.atomicDelete(method) };
       // encapsulates changes in a transaction and commits
       storeTransaction(event, changes);
     }
     finally
     {
-      writeLock().unlock();
+      endTransaction(isLocked);
     }
   }
 
@@ -404,21 +436,18 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
   @Override
   public void atomicTypeLoad(final IJiveEvent event, final IContextContour contour)
   {
-    writeLock().lock();
+    // makes sure a new transaction can begin
+    final boolean isLocked = beginTransaction();
     try
     {
-      // makes sure a new transaction can begin
-      assertStatus(checkBegin());
-      // create the list of changes
-      final List<IStateChange> changes = new LinkedList<IStateChange>();
       // static contour inserted
-      changes.add(TransactionLog.atomicInsert(contour));
+      final IStateChange[] changes = new IStateChange[] { TransactionLog.atomicInsert(contour) };
       // encapsulates changes in a transaction and commits
       storeTransaction(event, changes);
     }
     finally
     {
-      writeLock().unlock();
+      endTransaction(isLocked);
     }
   }
 
@@ -427,24 +456,22 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
   public void atomicValueSet(final IJiveEvent event, final IContour contour,
       final IContourMember member, final IValue newValue)
   {
-    writeLock().lock();
+    // makes sure a new transaction can begin
+    final boolean isLocked = beginTransaction();
     try
     {
-      // makes sure a new transaction can begin
-      assertStatus(checkBegin());
-      // create the list of changes
-      final List<IStateChange> changes = new LinkedList<IStateChange>();
       if (contour == null)
       {
         System.err.println("Unexpected condition: null contour for " + contour);
       }
-      changes.add(TransactionLog.atomicUpdate(contour, member, newValue, member.value()));
+      final IStateChange[] changes = new IStateChange[] { TransactionLog.atomicUpdate(contour,
+          member, newValue, member.value()) };
       // encapsulates changes in a transaction and commits
       storeTransaction(event, changes);
     }
     finally
     {
-      writeLock().unlock();
+      endTransaction(isLocked);
     }
   }
 
@@ -552,6 +579,36 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
     }
   }
 
+  /**
+   * Commits the changes of the events of a batch, in order, under a single acquisition of the write
+   * lock. The log is validated once: every event commits its transaction before the next one
+   * begins, so the log remains ready for the rest of the batch.
+   */
+  void commitBatch(final List<IJiveEvent> events)
+  {
+    if (events.isEmpty())
+    {
+      return;
+    }
+    writeLock().lock();
+    try
+    {
+      // makes sure new transactions can begin
+      assertStatus(checkBegin());
+      isBatch = true;
+      for (final IJiveEvent event : events)
+      {
+        // commits the event's changes to the model
+        ((JiveEvent) event).commit();
+      }
+    }
+    finally
+    {
+      isBatch = false;
+      writeLock().unlock();
+    }
+  }
+
   /**
    * Returns true if this element is either a child or a parent in the model. This method is an
    * accessor.
@@ -687,6 +744,19 @@ class TransactionLog extends ReentrantReadWriteLock implements ITransactionLog
     }
   }
 
+  void setCheckpointInterval(final int interval)
+  {
+    writeLock().lock();
+    try
+    {
+      store().setCheckpointInterval(interval);
+    }
+    finally
+    {
+      writeLock().unlock();
+    }
+  }
+
   void setFinalState()
   {
     writeLock().lock();
@@ -0,0 +1,239 @@
+package edu.buffalo.cse.jive.internal.model.store.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import edu.buffalo.cse.jive.lib.BinaryTraceDecoder;
+import edu.buffalo.cse.jive.lib.BinaryTraceEncoder;
+import edu.buffalo.cse.jive.lib.BinaryTraceTools;
+import edu.buffalo.cse.jive.lib.BinaryTraceTools.TraceReader;
+import edu.buffalo.cse.jive.lib.BinaryTraceTools.TraceWriter;
+import edu.buffalo.cse.jive.lib.TypeTools;
+import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
+import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
+import edu.buffalo.cse.jive.model.IContourModel.IObjectContour;
+import edu.buffalo.cse.jive.model.IEventModel.IEventListener;
+import edu.buffalo.cse.jive.model.IEventModel.IEventProducer;
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IEventModel.IMethodTerminatorEvent;
+import edu.buffalo.cse.jive.model.IEventModel.LockOperation;
+import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.IModel.ILineValue;
+import edu.buffalo.cse.jive.model.IModel.IThreadValue;
+import edu.buffalo.cse.jive.model.IStaticModel.IDataNode;
+import edu.buffalo.cse.jive.model.IStaticModel.IMethodNode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNode;
+import edu.buffalo.cse.jive.model.IStaticModel.ITypeNodeRef;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeKind;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeModifier;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeOrigin;
+import edu.buffalo.cse.jive.model.IStaticModel.NodeVisibility;
+import edu.buffalo.cse.jive.model.factory.IEventFactory;
+import edu.buffalo.cse.jive.model.factory.IStaticModelFactory;
+import edu.buffalo.cse.jive.model.factory.IValueFactory;
+import edu.buffalo.cse.jive.model.store.Factory;
+
+/**
+ * Round trip of a trace through the binary trace format: the events of a hand made trace are
+ * exported to a binary trace file, imported into a fresh model, and compared to the original ones.
+ */
+class BinaryTraceTest
+{
+  private static final String FILE = "Point.java";
+  private static final Set<NodeModifier> NONE = Collections.emptySet();
+  private final IExecutionModel model;
+
+  private BinaryTraceTest(final IExecutionModel model)
+  {
+    this.model = model;
+  }
+
+  /**
+   * Models are cached by their producer, so each model needs a producer of its own.
+   */
+  private static IEventProducer createProducer()
+  {
+    return new IEventProducer()
+      {
+        @Override
+        public void subscribe(final IEventListener listener)
+        {
+        }
+
+        @Override
+        public void unsubscribe(final IEventListener listener)
+        {
+        }
+      };
+  }
+
+  public static void main(final String[] args) throws IOException
+  {
+    final IExecutionModel source = Factory.memoryExecutionModel(BinaryTraceTest.createProducer());
+    new BinaryTraceTest(source).createTrace();
+    final File file = File.createTempFile("jive", BinaryTraceTools.EXTENSION);
+    file.deleteOnExit();
+    final TraceWriter writer = new TraceWriter(file);
+    try
+    {
+      final BinaryTraceEncoder encoder = new BinaryTraceEncoder(writer);
+      for (final IJiveEvent event : source.traceView().events())
+      {
+        encoder.write(event);
+      }
+    }
+    finally
+    {
+      writer.close();
+    }
+    final IExecutionModel target = Factory.memoryExecutionModel(BinaryTraceTest.createProducer());
+    final TraceReader reader = new TraceReader(file);
+    try
+    {
+      new BinaryTraceDecoder(target).decode(reader);
+    }
+    finally
+    {
+      reader.close();
+    }
+    final List<? extends IJiveEvent> expected = source.traceView().events();
+    final List<? extends IJiveEvent> actual = target.traceView().events();
+    int failures = expected.size() == actual.size() ? 0 : 1;
+    System.out.format("%d events exported, %d events imported\n\n", expected.size(),
+        actual.size());
+    for (int i = 0; i < Math.min(expected.size(), actual.size()); i++)
+    {
+      final String before = BinaryTraceTest.toString(expected.get(i));
+      final String after = BinaryTraceTest.toString(actual.get(i));
+      System.out.format("%2d) %s\n", i + 1, before);
+      if (!before.equals(after))
+      {
+        System.out.format("    imported as: %s\n", after);
+        failures++;
+      }
+    }
+    System.out.println("------------------------------------------------------------\n");
+    System.out.format("%s\n", failures == 0 ? "PASSED" : failures + " FAILURE(S)");
+  }
+
+  /**
+   * Creates a trace with at least one event of each kind supported by the binary trace format.
+   */
+  private void createTrace()
+  {
+    final IStaticModelFactory statics = model.staticModelFactory();
+    final IValueFactory values = model.valueFactory();
+    final IEventFactory events = model.eventFactory();
+    final ITypeNodeRef intType = statics.lookupTypeNodeByName("int");
+    // class Point { static int count; int x; static void main() {...} int getX() {...} }
+    final ITypeNode point = statics.createTypeNode("LPoint;", "Point", statics.lookupRoot(), 1,
+        30, NodeKind.NK_CLASS, NodeOrigin.NO_AST, BinaryTraceTest.NONE, NodeVisibility.NV_PUBLIC,
+        statics.lookupObjectType(), Collections.<ITypeNodeRef> emptySet(), values
+            .createNullValue());
+    final ITypeNode intArray = statics.createTypeNode("[I", "int[]", statics.lookupRoot(), -1, -1,
+        NodeKind.NK_ARRAY, NodeOrigin.NO_JIVE, BinaryTraceTest.NONE, NodeVisibility.NV_PUBLIC,
+        statics.lookupObjectType(), Collections.<ITypeNodeRef> emptySet(), values
+            .createNullValue());
+    final IDataNode count = point.addDataMember("count", 3, 3, intType, NodeOrigin.NO_AST,
+        Collections.singleton(NodeModifier.NM_STATIC), NodeVisibility.NV_PRIVATE,
+        values.createPrimitiveValue(0));
+    final IDataNode x = point.addDataMember("x", 4, 4, intType, NodeOrigin.NO_AST,
+        BinaryTraceTest.NONE, NodeVisibility.NV_PRIVATE, values.createPrimitiveValue(0));
+    final IMethodNode main = point.addMethodMember("LPoint;.main()V", "main", 6, 20,
+        statics.lookupVoidType(), NodeOrigin.NO_AST, Collections.singleton(NodeModifier.NM_STATIC),
+        NodeVisibility.NV_PUBLIC, Collections.<ITypeNodeRef> emptySet());
+    final IDataNode p = main.addDataMember("p", 8, 20, point, NodeOrigin.NO_AST,
+        BinaryTraceTest.NONE, NodeVisibility.NV_LOCAL, values.createUninitializedValue());
+    final IDataNode a = main.addDataMember("a", 11, 20, intArray, NodeOrigin.NO_AST,
+        BinaryTraceTest.NONE, NodeVisibility.NV_LOCAL, values.createUninitializedValue());
+    final IDataNode e = main.addDataMember("e", 17, 18, statics.lookupObjectType(),
+        NodeOrigin.NO_AST, Collections.singleton(NodeModifier.NM_CATCH_VARIABLE),
+        NodeVisibility.NV_LOCAL, values.createUninitializedValue());
+    final IMethodNode getX = point.addMethodMember("LPoint;.getX()I", "getX", 22, 25, intType,
+        NodeOrigin.NO_AST, BinaryTraceTest.NONE, NodeVisibility.NV_PUBLIC,
+        Collections.<ITypeNodeRef> emptySet());
+    final IThreadValue thread = values.createThread(1, "main");
+    // main
+    emit(events.createTypeLoadEvent(thread, line(1),
+        statics.lookupObjectType().createStaticContour()));
+    final IContextContour pointStatic = point.createStaticContour();
+    emit(events.createTypeLoadEvent(thread, line(1), pointStatic));
+    final IMethodContour mainFrame = pointStatic.createMethodContour(main, thread);
+    emit(events.createMethodCallEvent(thread, line(6), values.createSystemCaller(),
+        values.createReference(mainFrame)));
+    emit(events.createMethodEnteredEvent(thread, line(7)));
+    emit(events.createFieldWriteEvent(thread, line(7), pointStatic, values.createPrimitiveValue(1),
+        pointStatic.lookupMember(count)));
+    final IObjectContour pointObject = point.createInstanceContour(100);
+    emit(events.createNewObjectEvent(thread, line(8), pointObject));
+    emit(events.createFieldWriteEvent(thread, line(8), pointObject,
+        values.createPrimitiveValue(-7), pointObject.lookupMember(x)));
+    emit(events.createVarAssignEvent(thread, line(8), values.createReference(pointObject),
+        mainFrame.lookupMember(p)));
+    // p.getX()
+    final IMethodContour getXFrame = pointObject.createMethodContour(getX, thread);
+    emit(events.createMethodCallEvent(thread, line(9), values.createReference(mainFrame),
+        values.createReference(getXFrame)));
+    emit(events.createMethodEnteredEvent(thread, line(23)));
+    emit(events.createFieldReadEvent(thread, line(24), pointObject, pointObject.lookupMember(x)));
+    emit(events.createVarAssignEvent(thread, line(24), values.createPrimitiveValue(-7),
+        getXFrame.lookupResultMember()));
+    final IJiveEvent getXExit = emit(events.createMethodExitEvent(thread, line(25)));
+    emit(events.createMethodReturnedEvent((IMethodTerminatorEvent) getXExit));
+    emit(events.createLineStepEvent(thread, line(10)));
+    // int[] a = new int[3]; a[1] = 42;
+    final IObjectContour array = intArray.createArrayContour(101, 3);
+    emit(events.createNewObjectEvent(thread, line(11), array));
+    emit(events.createVarAssignEvent(thread, line(11), values.createReference(array),
+        mainFrame.lookupMember(a)));
+    emit(events.createFieldWriteEvent(thread, line(12), array, values.createPrimitiveValue(42),
+        array.lookupMember(1)));
+    // synchronized (p) { ... }
+    emit(events.createLockEvent(thread, line(13), LockOperation.LOCK_ACQUIRE, pointObject,
+        "Point:100"));
+    emit(events.createLockEvent(thread, line(14), LockOperation.LOCK_RELEASE, null, "Point:100"));
+    // Math.sqrt(2.5)
+    emit(events.createMethodCallEvent(thread, line(15), values.createReference(mainFrame),
+        values.createOutOfModelMethodKeyReference("java.lang.Math.sqrt(double)",
+        "Ljava/lang/Math;.sqrt(D)D")));
+    final IJiveEvent sqrtExit = emit(events.createMethodExitEvent(thread, line(15)));
+    emit(events.createMethodReturnedEvent((IMethodTerminatorEvent) sqrtExit));
+    emit(events.createVarAssignEvent(thread, line(15), values.createPrimitiveValue(2.5),
+        mainFrame.lookupMember(p)));
+    // try { throw ... } catch (e) { ... }
+    emit(events.createExceptionThrowEvent(thread, line(16), values.createResolvedValue("boom",
+        "java.lang.RuntimeException"), values.createReference(mainFrame), false));
+    emit(events.createExceptionCatchEvent(thread, line(17), values.createResolvedValue("boom",
+        "java.lang.RuntimeException"), mainFrame.lookupMember(e)));
+    emit(events.createVarAssignEvent(thread, line(18), values.createPrimitiveValue("\"text\""),
+        mainFrame.lookupMember(p)));
+    emit(events.createVarDeleteEvent(thread, line(19), mainFrame.lookupMember(e)));
+    emit(events.createDestroyEvent(thread, line(19), pointObject));
+    final IJiveEvent mainExit = emit(events.createMethodExitEvent(thread, line(20)));
+    emit(events.createMethodReturnedEvent((IMethodTerminatorEvent) mainExit));
+    emit(events.createThreadEndEvent(thread));
+    emit(events.createSystemExitEvent());
+  }
+
+  private IJiveEvent emit(final IJiveEvent event)
+  {
+    final List<IJiveEvent> events = TypeTools.newArrayList();
+    events.add(event);
+    model.eventOccurred(null, events);
+    return event;
+  }
+
+  private ILineValue line(final int line)
+  {
+    return model.valueFactory().createLine(BinaryTraceTest.FILE, line);
+  }
+
+  private static String toString(final IJiveEvent event)
+  {
+    return String.format("%s [thread %d, %s:%d] %s", event.kind().eventName(), event.thread().id(),
+        event.line().file().name(), event.line().lineNumber(), event.details());
+  }
+}
@@ -0,0 +1,97 @@
+package edu.buffalo.cse.jive.model.values;
+
+import edu.buffalo.cse.jive.model.IModel.IValue;
+
+/**
+ * Intern table of the typed primitive values, keyed by the type tag and the raw bits of the value.
+ * Keys are kept in open addressing tables of primitives, so looking up a value allocates nothing--
+ * neither a boxed key nor the string form of the value. The table is not synchronized: the value
+ * factory holds its lock across a lookup and the insertion that follows a miss, so every value is
+ * created exactly once.
+ */
+final class PrimitiveValueTable
+{
+  private static final int INITIAL_CAPACITY = 1 << 10;
+  private long[] bits;
+  private int size;
+  private byte[] tags;
+  // a null value marks an empty slot
+  private IValue[] values;
+
+  PrimitiveValueTable()
+  {
+    clear();
+  }
+
+  private static int slot(final int tag, final long bits, final int capacity)
+  {
+    return (int) (((bits + tag) * 0x9E3779B97F4A7C15L) >>> 32) & (capacity - 1);
+  }
+
+  void clear()
+  {
+    this.bits = new long[PrimitiveValueTable.INITIAL_CAPACITY];
+    this.size = 0;
+    this.tags = new byte[PrimitiveValueTable.INITIAL_CAPACITY];
+    this.values = new IValue[PrimitiveValueTable.INITIAL_CAPACITY];
+  }
+
+  /**
+   * Value mapped to the key, or null if the key is not mapped.
+   */
+  IValue get(final int tag, final long bits)
+  {
+    for (int i = PrimitiveValueTable.slot(tag, bits, values.length); values[i] != null; i = (i + 1)
+        & (values.length - 1))
+    {
+      if (this.bits[i] == bits && tags[i] == tag)
+      {
+        return values[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Maps the key, which must not be mapped, to the value.
+   */
+  void put(final int tag, final long bits, final IValue value)
+  {
+    insert(tag, bits, value);
+    size++;
+    // keep the load factor at or below 3/4
+    if (4 * size > 3 * values.length)
+    {
+      resize();
+    }
+  }
+
+  private void insert(final int tag, final long bits, final IValue value)
+  {
+    int i = PrimitiveValueTable.slot(tag, bits, values.length);
+    while (values[i] != null)
+    {
+      i = (i + 1) & (values.length - 1);
+    }
+    this.bits[i] = bits;
+    tags[i] = (byte) tag;
+    values[i] = value;
+  }
+
+  private void resize()
+  {
+    final long[] oldBits = bits;
+    final byte[] oldTags = tags;
+    final IValue[] oldValues = values;
+    bits = new long[2 * oldValues.length];
+    tags = new byte[2 * oldValues.length];
+    values = new IValue[2 * oldValues.length];
+    for (int j = 0; j < oldValues.length; j++)
+    {
+      if (oldValues[j] != null)
+      {
+        insert(oldTags[j], oldBits[j], oldValues[j]);
+      }
+    }
+  }
+}
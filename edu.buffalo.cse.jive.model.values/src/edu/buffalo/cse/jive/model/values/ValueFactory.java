@@ -5,12 +5,19 @@ import edu.buffalo.cse.jive.model.IContourModel.IContour;
 import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
 import edu.buffalo.cse.jive.model.IContourModel.IObjectContour;
 import edu.buffalo.cse.jive.model.IExecutionModel;
+import edu.buffalo.cse.jive.model.IModel.IInModelValue;
 import edu.buffalo.cse.jive.model.factory.IValueFactory;
 
 public final class ValueFactory implements IValueFactory
 {
   private static final long SYSTEM_THREAD_ID = -1000;
+  private static final int TAG_BOOLEAN = 0;
+  private static final int TAG_DOUBLE = 1;
+  private static final int TAG_FLOAT = 2;
+  private static final int TAG_INTEGER = 3;
   private final IExecutionModel model;
+  // typed primitive values interned by type tag and raw bits
+  private final PrimitiveValueTable primitives;
   private final IThreadValue SYSTEM_THREAD;
   private final IFileValue UNAVAILABLE_FILE;
   private final ILineValue UNAVAILABLE_LINE;
@@ -21,6 +28,7 @@ public final class ValueFactory implements IValueFactory
   public ValueFactory(final IExecutionModel model)
   {
     this.model = model;
+    this.primitives = new PrimitiveValueTable();
     VALUE_NULL = new NullValue();
     VALUE_SYSTEM = new SystemCallerValue();
     VALUE_UNINITIALIZED = new UninitializedValue();
@@ -74,14 +82,35 @@ public final class ValueFactory implements IValueFactory
     return model.store().lookupValue(description);
   }
 
+  @Override
+  public IValue createPrimitiveValue(final boolean value)
+  {
+    return internPrimitiveValue(ValueFactory.TAG_BOOLEAN, value ? 1 : 0);
+  }
+
+  @Override
+  public IValue createPrimitiveValue(final double value)
+  {
+    return internPrimitiveValue(ValueFactory.TAG_DOUBLE, Double.doubleToLongBits(value));
+  }
+
+  @Override
+  public IValue createPrimitiveValue(final float value)
+  {
+    return internPrimitiveValue(ValueFactory.TAG_FLOAT, Float.floatToIntBits(value));
+  }
+
+  @Override
+  public IValue createPrimitiveValue(final long value)
+  {
+    return internPrimitiveValue(ValueFactory.TAG_INTEGER, value);
+  }
+
   @Override
   public IValue createPrimitiveValue(final String value)
   {
-    if (model.store().lookupValue(value) == null)
-    {
-      model.store().indexValue(value, new PrimitiveValue(value));
-    }
-    return model.store().lookupValue(value);
+    final IValue result = model.store().lookupValue(value);
+    return result != null ? result : model.store().indexValue(value, new PrimitiveValue(value));
   }
 
   @Override
@@ -141,6 +170,17 @@ public final class ValueFactory implements IValueFactory
     return model;
   }
 
+  /**
+   * Discards the interned primitive values, which belong to the store being reset.
+   */
+  public void reset()
+  {
+    synchronized (primitives)
+    {
+      primitives.clear();
+    }
+  }
+
   private IFileValue createFile(final String fileName)
   {
     if (model.store().lookupFileValue(fileName) == null)
@@ -156,6 +196,20 @@ public final class ValueFactory implements IValueFactory
     return SYSTEM_THREAD;
   }
 
+  private IValue internPrimitiveValue(final int tag, final long bits)
+  {
+    synchronized (primitives)
+    {
+      IValue result = primitives.get(tag, bits);
+      if (result == null)
+      {
+        result = new TypedPrimitiveValue(tag, bits);
+        primitives.put(tag, bits, result);
+      }
+      return result;
+    }
+  }
+
   private abstract class AbstractValue
   {
     private final long id;
@@ -189,7 +243,7 @@ public final class ValueFactory implements IValueFactory
 
     public boolean isInModel()
     {
-      return this instanceof InModelValue;
+      return this instanceof IInModelValue;
     }
 
     public boolean isMethodContourReference()
@@ -219,7 +273,7 @@ public final class ValueFactory implements IValueFactory
 
     public boolean isPrimitive()
     {
-      return this instanceof PrimitiveValue;
+      return this instanceof PrimitiveValue || this instanceof TypedPrimitiveValue;
     }
 
     public boolean isResolved()
@@ -604,6 +658,56 @@ public final class ValueFactory implements IValueFactory
     }
   }
 
+  /**
+   * Primitive value of a boolean or numeric type, held as its type tag and raw bits. The string
+   * form is computed each time the value is displayed and never retained.
+   */
+  private final class TypedPrimitiveValue extends AbstractValue implements IInModelValue
+  {
+    private final long bits;
+    private final int tag;
+
+    private TypedPrimitiveValue(final int tag, final long bits)
+    {
+      this.bits = bits;
+      this.tag = tag;
+    }
+
+    @Override
+    public ValueKind kind()
+    {
+      return ValueKind.IM_PRIMITIVE;
+    }
+
+    @Override
+    public String toString()
+    {
+      return value();
+    }
+
+    @Override
+    public String value()
+    {
+      switch (tag)
+      {
+        case TAG_BOOLEAN:
+          return bits != 0 ? "true" : "false";
+        case TAG_DOUBLE:
+          return Double.toString(Double.longBitsToDouble(bits));
+        case TAG_FLOAT:
+          return Float.toString(Float.intBitsToFloat((int) bits));
+        default:
+          return Long.toString(bits);
+      }
+    }
+
+    @Override
+    protected long createId()
+    {
+      return model.store().storeValue(this);
+    }
+  }
+
   private final class UninitializedValue extends Value
   {
     private UninitializedValue()
@@ -114,12 +114,6 @@ public interface IEventModel extends IModel
    */
   public interface IAssignEvent extends IDataEvent
   {
-    /**
-     * Lookup method (TODO: push to store).
-     * 
-     */
-    public IValue getLastValue();
-
     /**
      * Data method.
      * 
@@ -128,13 +122,6 @@ public interface IEventModel extends IModel
      * @return the variable's new value
      */
     public IValue newValue();
-
-    /**
-     * Business action method (TODO: push to store).
-     * 
-     * Used during slicing to keep track of the in-slice old value of this event's contour member.
-     */
-    public void setLastAssignment(IDataEvent event);
   }
 
   /**
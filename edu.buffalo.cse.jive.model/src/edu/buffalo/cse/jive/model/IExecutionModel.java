@@ -1,6 +1,9 @@
 package edu.buffalo.cse.jive.model;
 
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
@@ -8,6 +11,7 @@ import edu.buffalo.cse.jive.model.IContourModel.IContextContour;
 import edu.buffalo.cse.jive.model.IContourModel.IContour;
 import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
 import edu.buffalo.cse.jive.model.IContourModel.IMethodContour;
+import edu.buffalo.cse.jive.model.IEventModel.IAssignEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IEventListener;
 import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
 import edu.buffalo.cse.jive.model.IEventModel.IMethodCallEvent;
@@ -174,6 +178,60 @@ public interface IExecutionModel extends IEventListener
     public void visit(IVisitor<IContour> visitor);
   }
 
+  /**
+   * Events of the trace selected by an event set, such as the events of a slice. The virtual
+   * identifier of a selected event is its position among the selected events (1-based) and is
+   * derived from the event set whenever it is read. A view never modifies the events it selects,
+   * so any number of views can be open at once, e.g., to compare slices side by side, and each can
+   * be read without the model's lock.
+   */
+  public interface IEventView
+  {
+    /**
+     * Selected events of the trace, in trace order. The element at position {@code i} is the event
+     * with virtual identifier {@code i + 1}.
+     */
+    public List<IJiveEvent> events();
+
+    /**
+     * Event with the given virtual identifier, or null if there is no such event.
+     */
+    public IJiveEvent lookupEvent(long virtualId);
+
+    /**
+     * Number of selected events.
+     */
+    public int size();
+
+    /**
+     * Virtual identifier of the event in this view, or zero if the event is not selected.
+     */
+    public long virtualId(IJiveEvent event);
+  }
+
+  /**
+   * Event sets of the slices computed for a number of slicing criteria. Event sets are indexed by
+   * event identifier.
+   */
+  public interface IMultiSlice
+  {
+    /**
+     * Events in the slice of each criterion, keyed by the identifier of the criterion's event.
+     * Criteria that are not valid slicing criteria have no entry.
+     */
+    public Map<Long, BitSet> slices();
+
+    /**
+     * Events in any of the slices.
+     */
+    public BitSet union();
+
+    /**
+     * Views of the slices, keyed as the event sets of {@code slices()}.
+     */
+    public Map<Long, IEventView> views();
+  }
+
   /**
    * All information produced by a program slice and used for rendering client views.
    */
@@ -189,6 +247,13 @@ public interface IExecutionModel extends IEventListener
      */
     public List<IJiveEvent> events();
 
+    /**
+     * Value of the event's member prior to the event when only the events in this slice are
+     * replayed, i.e., the value assigned by the prior relevant assignment, or null if this slice
+     * recorded no such value for the event.
+     */
+    public IValue lastValue(IAssignEvent event);
+
     /**
      * Static, object, and method contour members relevant to the slice. Used to render the reduced
      * object diagram.
@@ -221,6 +286,35 @@ public interface IExecutionModel extends IEventListener
      * given event. Code executed in all threads is traversed in the slice computation.
      */
     public IProgramSlice computeSlice(long eventId);
+
+    /**
+     * Computes the slices of the given events in parallel. Each slice is computed as by
+     * {@code computeSlice(long)}, except that the slices are neither applied to the model nor
+     * change its temporal state. Requires the def-use index and returns null if the index is
+     * disabled or a slice is active. The caller must not hold the model's lock. An unexpected
+     * condition found by the slicer on any criterion is rethrown.
+     */
+    public IMultiSlice computeSlices(Collection<Long> eventIds);
+
+    /**
+     * Computes the slices of all assignments to the given contour member in parallel, as by
+     * {@code computeSlices(Collection)}.
+     */
+    public IMultiSlice computeSlices(IContourMember member);
+
+    /**
+     * Creates a view of the events in the given event set, indexed by event identifier. Creating or
+     * reading a view does not change the model, which keeps showing the active slice, if any.
+     */
+    public IEventView createView(BitSet events);
+
+    /**
+     * Enables or disables the def-use index, which records the assignments to every contour member
+     * as events are committed. The index allows slice computations to skip the executions of other
+     * threads that cannot define any of the fields chased by the slice. Since the index must cover
+     * the entire trace, it can only be enabled before any event is recorded.
+     */
+    public void setDefUseIndex(boolean enabled);
   }
 
   public interface IStateChange
@@ -263,7 +357,9 @@ public interface IExecutionModel extends IEventListener
 
     /**
      * The transaction log places the replay cursor exactly on this event. This amounts to setting
-     * this event as the last uncommitted event in the log.
+     * this event as the last uncommitted event in the log. The nearest checkpoint of the contour
+     * model is restored first, so that only the transactions between the checkpoint and the event
+     * are replayed.
      */
     public void consolidateTo(IJiveEvent event);
 
@@ -298,6 +394,14 @@ public interface IExecutionModel extends IEventListener
      */
     public void rollback();
 
+    /**
+     * Sets the number of transactions between checkpoints of the contour model. Checkpoints bound
+     * the cost of moving to an arbitrary event by the interval, at the expense of memory: each one
+     * copies the entire contour model. Only transactions recorded after this call are affected. A
+     * value of zero, the default, disables checkpoints and discards those taken so far.
+     */
+    public void setCheckpointInterval(int interval);
+
     /**
      * Advances the state of the transaction log to its final state. Equivalent to committing all
      * transactions from the current state.
@@ -316,20 +420,62 @@ public interface IExecutionModel extends IEventListener
    */
   public interface ITraceView
   {
+    /**
+     * Closes the current recording window after the last event stored. If no window is open, the
+     * closed window is the one opened when recording started, which begins after the last closed
+     * window, or with the first event of the trace.
+     */
+    public void closeWindow(String closer);
+
     /**
      * Read-only view of the underlying event trace as an event set.
      */
     public List<? extends IJiveEvent> events();
 
+    /**
+     * Stops recording. Events that occur after this call are discarded, so the trace keeps the
+     * history leading up to this point.
+     */
+    public void freeze();
+
+    public boolean isFrozen();
+
+    /**
+     * Opens a recording window that begins with the next event stored. An open window is closed
+     * first.
+     */
+    public void openWindow(String opener);
+
     /**
      * Registers a listener interested in trace view notifications.
      */
     public void register(ITraceViewListener listener);
 
+    /**
+     * Freezes the trace when an exception of one of the given types is thrown. Type names are fully
+     * qualified. The throw event is the last event recorded.
+     */
+    public void setFreezeExceptions(Collection<String> typeNames);
+
+    /**
+     * Keeps only the given number of most recent events in the trace (flight recorder mode), along
+     * with the thread start and method call events of the executions still in progress. Older
+     * events are discarded together with their transactions, so the initial state of the trace is
+     * the state at the oldest retained event. Events keep their identifiers, which are therefore
+     * not consecutive past the events of the executions in progress. A value of zero keeps the
+     * full trace.
+     */
+    public void setRetainedEvents(int events);
+
     /**
      * Unregisters a trace view listener.
      */
     public void unregister(ITraceViewListener listener);
+
+    /**
+     * Recording windows of the trace, in order, including the current window.
+     */
+    public List<ITraceWindow> windows();
   }
 
   /**
@@ -347,4 +493,28 @@ public interface IExecutionModel extends IEventListener
      */
     public void traceVirtualized(boolean isVirtual);
   }
+
+  /**
+   * Recording window of the trace, delimited by the identifiers of its first and last events. A
+   * window records no events if its last event precedes its first.
+   */
+  public interface ITraceWindow
+  {
+    /**
+     * Description of what closed the window, or null while the window is open.
+     */
+    public String closer();
+
+    public long firstEvent();
+
+    /**
+     * Identifier of the last event of the window, or -1 while the window is open.
+     */
+    public long lastEvent();
+
+    /**
+     * Description of what opened the window.
+     */
+    public String opener();
+  }
 }
\ No newline at end of file
@@ -169,6 +169,14 @@ public interface IQueryModel extends IModel
     public String eventText();
   }
 
+  public interface TemporalQueryParams
+  {
+    /**
+     * A temporal query whose first field is the identifier of an event in the execution trace.
+     */
+    public String queryText();
+  }
+
   public interface VariableChangedQueryParams
   {
     /**
@@ -5,7 +5,10 @@ import java.util.Map;
 import java.util.Set;
 
 import edu.buffalo.cse.jive.model.IContourModel.IContour;
+import edu.buffalo.cse.jive.model.IContourModel.IContourMember;
+import edu.buffalo.cse.jive.model.IEventModel.EventKind;
 import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IEventModel.ITransaction;
 import edu.buffalo.cse.jive.model.IModel.IFileValue;
 import edu.buffalo.cse.jive.model.IModel.ILineValue;
 import edu.buffalo.cse.jive.model.IModel.IThreadValue;
@@ -40,7 +43,11 @@ public interface IStore
 
   public void indexStaticContour(IContour contour);
 
-  public void indexValue(Object key, IValue value);
+  /**
+   * Indexes the value under the key unless some value is already indexed under it. Returns the
+   * value indexed under the key after the call.
+   */
+  public IValue indexValue(Object key, IValue value);
 
   // ------------------------------------------------------------------------
   // Data queries
@@ -62,10 +69,55 @@ public interface IStore
 
   public IFileValue lookupFileValue(String fileName);
 
+  /**
+   * Returns the identifier in the model of the event with the given (actual) identifier. This
+   * method observes whether a view is currently in place: under a view, the identifier is the
+   * virtual identifier of the event in the view, or zero if the view does not select the event.
+   */
+  public long lookupEventId(long eventId);
+
+  /**
+   * Returns the kind of the event with the given (actual) identifier without materializing the
+   * event. This method does not consider whether a view is currently in place.
+   */
+  public EventKind lookupEventKind(long eventId);
+
+  /**
+   * Returns the identifier of the line value of the event with the given (actual) identifier. This
+   * method does not consider whether a view is currently in place.
+   */
+  public long lookupEventLineId(long eventId);
+
+  /**
+   * Returns the unique identifier of the thread of the event with the given (actual) identifier, or
+   * -1 for system events. This method does not consider whether a view is currently in place.
+   */
+  public long lookupEventThreadId(long eventId);
+
   public IContour lookupInstanceContour(String typeName, long oid);
 
+  /**
+   * Returns the actual identifier of the last event prior to the given (actual) identifier that may
+   * assign a value to the member, or zero if there is none. If the def-use index is disabled, every
+   * event may be an assignment, so the identifier of the prior event is returned. This method does
+   * not consider whether a view is currently in place.
+   */
+  public long lookupLastDefinition(IContourMember member, long eventId);
+
+  /**
+   * Returns the actual identifier of the last event prior to the given (actual) identifier that
+   * creates or destroys an object, loads a type, starts a thread or the system, or has no thread, or
+   * zero if there is none. This method does not consider whether a view is currently in place.
+   */
+  public long lookupLastStructuralEvent(long eventId);
+
   public ILineValue lookupLineValue(String fileName, int lineNumber);
 
+  /**
+   * Returns the line value with the given identifier, as returned by {@code lookupEventLineId}.
+   */
+  public ILineValue lookupLineValue(long lineId);
+
   public Set<ITypeNodeRef> lookupMethodExceptions(IMethodNode node);
 
   public Map<Integer, IMethodNode> lookupMethodMembers(ITypeNode node);
@@ -76,6 +128,20 @@ public interface IStore
    */
   public IJiveEvent lookupNextEvent(final IJiveEvent event);
 
+  /**
+   * Returns the (actual) identifier of the event that follows the event with the given (actual)
+   * identifier in the published trace, or zero if there is no such event. The first event of the
+   * trace follows identifier zero. This method does not consider whether a view is currently in
+   * place.
+   */
+  public long lookupNextEventId(long eventId);
+
+  /**
+   * Returns the next event in the same thread as the given event that is visible in the model. This
+   * method observes whether a view is currently in place.
+   */
+  public IJiveEvent lookupNextEventInThread(final IJiveEvent event);
+
   public INode lookupNode(String fileName);
 
   public INodeRef lookupNodeRef(String key);
@@ -84,12 +150,25 @@ public interface IStore
 
   public Set<ITypeNode> lookupNodeTypes(INode node);
 
+  /**
+   * Returns the actual identifier of the parent initiator of the event with the given (actual)
+   * identifier, or -1 if the event has no parent. This method does not consider whether a view is
+   * currently in place.
+   */
+  public long lookupParentEventId(long eventId);
+
   /**
    * Returns the prior event that is visible in the model. This method observes whether a view is
    * currently in place.
    */
   public IJiveEvent lookupPriorEvent(final IJiveEvent event);
 
+  /**
+   * Returns the prior event in the same thread as the given event that is visible in the model.
+   * This method observes whether a view is currently in place.
+   */
+  public IJiveEvent lookupPriorEventInThread(final IJiveEvent event);
+
   /**
    * Returns the event matching the identifier in the model. This method does not consider whether a
    * view is currently in place and uses the actual event identifier as a key. This means that an
@@ -97,20 +176,53 @@ public interface IStore
    */
   public IJiveEvent lookupRawEvent(long eventId);
 
+  /**
+   * Returns the event stored right before the given event in the model. This method does not
+   * consider whether a view is currently in place. Event identifiers increase along the trace, but
+   * are not consecutive once old events are discarded.
+   */
+  public IJiveEvent lookupRawPriorEvent(IJiveEvent event);
+
   public Collection<? extends IResolvedNode> lookupResolvedNodes();
 
   public IRootNode lookupRoot();
 
+  /**
+   * Returns the actual identifiers of the events of the given kind indexed under the key by the
+   * search index, in trace order. Keys are the static entities searched for-- method, data, and
+   * type nodes, and line values. This method does not consider whether a view is currently in
+   * place.
+   */
+  public long[] lookupSearchEvents(EventKind kind, Object key);
+
+  /**
+   * Returns the keys under which events of the given kind are indexed by the search index.
+   */
+  public Set<Object> lookupSearchKeys(EventKind kind);
+
   public IContour lookupStaticContour(String typeName);
 
   public Set<ITypeNodeRef> lookupSuperInterfaces(ITypeNode node);
 
   public IThreadValue lookupThread(Long uniqueId);
 
+  /**
+   * Transaction of the event in the trace, or null if the event has no transaction yet. Events
+   * discarded from the trace have a transaction with no changes.
+   */
+  public ITransaction lookupTransaction(IJiveEvent event);
+
   public Set<ITypeNode> lookupTypeMembers(INode node);
 
   public IValue lookupValue(Object object);
 
+  /**
+   * Returns the state cached for the event by the view currently in place, or null if no state is
+   * cached or no view is in place. Events keep the state they derive from a view in the view
+   * itself, so that views never modify the events they select.
+   */
+  public Object lookupViewState(IJiveEvent event);
+
   // ------------------------------------------------------------------------
   // Key generation helpers
   // ------------------------------------------------------------------------
@@ -140,4 +252,11 @@ public interface IStore
   public long storeTypeNode(ITypeNode node);
 
   public long storeValue(IValue value);
+
+  /**
+   * Caches the state for the event in the view currently in place unless some state is cached for
+   * it already. Returns the state cached for the event after the call, or the given state if no
+   * view is in place.
+   */
+  public Object storeViewState(IJiveEvent event, Object state);
 }
\ No newline at end of file
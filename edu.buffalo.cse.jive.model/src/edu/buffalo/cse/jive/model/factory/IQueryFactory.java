@@ -20,5 +20,7 @@ public interface IQueryFactory extends IQueryModel
 
   public EventQuery createSlicingQuery(final SlicingQueryParams params);
 
+  public EventQuery createTemporalQuery(final TemporalQueryParams params);
+
   public EventQuery createVariableChangedQuery(final VariableChangedQueryParams params);
 }
\ No newline at end of file
@@ -16,6 +16,18 @@ public interface IValueFactory extends IModel
 
   public IValue createOutOfModelValue(String description);
 
+  public IValue createPrimitiveValue(boolean value);
+
+  public IValue createPrimitiveValue(double value);
+
+  public IValue createPrimitiveValue(float value);
+
+  /**
+   * Primitive value of an integral type (byte, short, int, or long). Typed primitive values are
+   * interned by their type and raw bits, and rendered as strings only when displayed.
+   */
+  public IValue createPrimitiveValue(long value);
+
   public IValue createPrimitiveValue(String value);
 
   public IValue createReference(IContour contour);
@@ -1,12 +1,15 @@
 package edu.buffalo.cse.jive.internal.practql;
 
 import edu.buffalo.cse.jive.internal.practql.compiler.CompilerUtils;
+import edu.buffalo.cse.jive.internal.practql.execution.ExecutionUtils;
 import edu.buffalo.cse.jive.internal.practql.expression.ExpressionFactory;
 import edu.buffalo.cse.jive.internal.practql.expression.query.QueryExpressionFactory;
 import edu.buffalo.cse.jive.internal.practql.parser.ParserFactory;
 import edu.buffalo.cse.jive.internal.practql.schema.SchemaFactory;
 import edu.buffalo.cse.jive.practql.IFactory;
 import edu.buffalo.cse.jive.practql.IQueryCompiler;
+import edu.buffalo.cse.jive.practql.execution.IDatabase;
+import edu.buffalo.cse.jive.practql.execution.IQueryExecutor;
 import edu.buffalo.cse.jive.practql.expression.IExpressionFactory;
 import edu.buffalo.cse.jive.practql.expression.query.IQueryExpressionFactory;
 import edu.buffalo.cse.jive.practql.parser.IParser;
@@ -28,6 +31,12 @@ public enum Factory implements IFactory
     return CompilerUtils.createCompiler(schema);
   }
 
+  @Override
+  public IQueryExecutor createExecutor(final IDatabase database)
+  {
+    return ExecutionUtils.createExecutor(database);
+  }
+
   @Override
   public IParser createParser()
   {
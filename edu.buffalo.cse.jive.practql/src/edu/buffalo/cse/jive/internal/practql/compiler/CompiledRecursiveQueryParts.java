@@ -35,8 +35,11 @@ import edu.buffalo.cse.jive.practql.schema.Type;
  * 
  *   CTEi(X,T) AS (...) --> CTEi(X,I) AS (SELECT * FROM compiled_CTEi())
  * </pre>
+ * 
+ * The parts are also exposed so that the recursion can be evaluated without the generated
+ * function, e.g., by an in-memory executor.
  */
-class CompiledRecursiveQueryParts
+public class CompiledRecursiveQueryParts
 {
   private final String FMT_CTE = "WITH %s(%s) AS\n  (SELECT %s FROM %s())";
   private final String FMT_FUNCTION = "CREATE OR REPLACE FUNCTION %s() RETURNS TABLE%s AS $BODY$";
@@ -218,8 +221,38 @@ class CompiledRecursiveQueryParts
     return buffer.toString();
   }
 
+  // compiled base case: TNP^0 = compile(base_case - except_case)(D)
+  public IQueryExpression baseExpression()
+  {
+    return TNP0_expression;
+  }
+
   String compiledString()
   {
     return compiledString;
   }
+
+  // compiled recursive case: DELTA^r = compile(recursive_case - (TNP^(r-1) U except_case))(D)
+  public IQueryExpression deltaExpression()
+  {
+    return DELTAr_expression;
+  }
+
+  // compiled except case, if any
+  public INamedQuery exceptQuery()
+  {
+    return QE;
+  }
+
+  // the recursive named query being compiled
+  public INamedQuery source()
+  {
+    return source;
+  }
+
+  // accumulated tuples: the named query's signature extended with the __round field
+  public IRelationSchema tnpSchema()
+  {
+    return __TNP;
+  }
 }
@@ -136,4 +136,14 @@ public enum CompilerUtils
   {
     return "__U" + (++CompilerUtils.UNION_ID);
   }
+
+  /**
+   * Parts of the recursive query compiled last by the compiler, or null if the last compiled query
+   * was not recursive.
+   */
+  public static CompiledRecursiveQueryParts recursiveParts(final IQueryCompiler compiler)
+  {
+    return compiler instanceof QueryCompilerVisitor ? ((QueryCompilerVisitor) compiler)
+        .recursiveParts() : null;
+  }
 }
\ No newline at end of file
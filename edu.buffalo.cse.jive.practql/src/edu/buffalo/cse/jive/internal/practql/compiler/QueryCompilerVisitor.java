@@ -29,6 +29,7 @@ class QueryCompilerVisitor implements IQueryExpressionVisitor, IQueryCompiler
   private IQueryExpression queryExpression;
   private final List<ISimpleQuery> simpleQueries = new ArrayList<ISimpleQuery>();
   private final IDatabaseSchema schema;
+  private CompiledRecursiveQueryParts recursiveParts;
   private String recursiveQuery;
 
   QueryCompilerVisitor(final IDatabaseSchema schema)
@@ -145,6 +146,7 @@ class QueryCompilerVisitor implements IQueryExpressionVisitor, IQueryCompiler
     {
       currentQuery = null;
       queryExpression = null;
+      recursiveParts = null;
       recursiveQuery = null;
       namedQueries.clear();
       helperNamedQueries.clear();
@@ -153,7 +155,7 @@ class QueryCompilerVisitor implements IQueryExpressionVisitor, IQueryCompiler
       {
         final RecursiveQueryCompiler rqc = new RecursiveQueryCompiler(schema,
             expression.getMember(0));
-        final CompiledRecursiveQueryParts recursiveParts = rqc.compile(expression.getMember(0));
+        recursiveParts = rqc.compile(expression.getMember(0));
         recursiveQuery = recursiveParts.compiledString();
         // query as an expression
         final IQueryExpression newExpression = factory.queryExpressionFactory().newQueryExpression(
@@ -203,4 +205,9 @@ class QueryCompilerVisitor implements IQueryExpressionVisitor, IQueryCompiler
     }
     return false;
   }
+
+  CompiledRecursiveQueryParts recursiveParts()
+  {
+    return recursiveParts;
+  }
 }
\ No newline at end of file
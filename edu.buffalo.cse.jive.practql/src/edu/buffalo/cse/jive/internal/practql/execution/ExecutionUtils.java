@@ -0,0 +1,232 @@
+package edu.buffalo.cse.jive.internal.practql.execution;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import edu.buffalo.cse.jive.practql.execution.CInterval;
+import edu.buffalo.cse.jive.practql.execution.IDatabase;
+import edu.buffalo.cse.jive.practql.execution.IQueryExecutor;
+import edu.buffalo.cse.jive.practql.expression.query.QueryException;
+
+/**
+ * Operations on the values of evaluated expressions. Nulls are interpreted as SQL nulls, hence most
+ * operations return null when some argument is null, and boolean operations follow the three-valued
+ * logic of SQL.
+ */
+public enum ExecutionUtils
+{
+  INSTANCE;
+  public static IQueryExecutor createExecutor(final IDatabase database)
+  {
+    return new QueryExecutor(database);
+  }
+
+  static Object add(final Object v1, final Object v2, final boolean subtract) throws QueryException
+  {
+    if (v1 == null || v2 == null)
+    {
+      return null;
+    }
+    if (v1 instanceof Long && v2 instanceof Long)
+    {
+      return subtract ? (Long) v1 - (Long) v2 : (Long) v1 + (Long) v2;
+    }
+    final double d1 = ExecutionUtils.toDouble(v1);
+    final double d2 = ExecutionUtils.toDouble(v2);
+    return subtract ? d1 - d2 : d1 + d2;
+  }
+
+  static Boolean and(final Boolean b1, final Boolean b2)
+  {
+    if (Boolean.FALSE.equals(b1) || Boolean.FALSE.equals(b2))
+    {
+      return false;
+    }
+    return b1 == null || b2 == null ? null : true;
+  }
+
+  /**
+   * Compares two non-null values of compatible types. Intervals are ordered by their left and then
+   * by their right endpoints.
+   */
+  @SuppressWarnings("unchecked")
+  static int compare(final Object v1, final Object v2) throws QueryException
+  {
+    if (v1 instanceof Long && v2 instanceof Long)
+    {
+      return ((Long) v1).compareTo((Long) v2);
+    }
+    if (v1 instanceof Number && v2 instanceof Number)
+    {
+      return Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
+    }
+    if (v1 instanceof CInterval && v2 instanceof CInterval)
+    {
+      final CInterval i1 = (CInterval) v1;
+      final CInterval i2 = (CInterval) v2;
+      final int result = ExecutionUtils.compareEndpoints(i1.getLeft(), i2.getLeft(), -1);
+      return result != 0 ? result : ExecutionUtils.compareEndpoints(i1.getRight(),
+          i2.getRight(), 1);
+    }
+    if (v1 instanceof Comparable && v1.getClass() == v2.getClass())
+    {
+      return ((Comparable<Object>) v1).compareTo(v2);
+    }
+    throw new QueryException(String.format("Error comparing incompatible values '%s' and '%s'.",
+        v1, v2));
+  }
+
+  static Object concatenate(final Object v1, final Object v2)
+  {
+    return v1 == null || v2 == null ? null : v1.toString() + v2.toString();
+  }
+
+  static Object divide(final Object v1, final Object v2) throws QueryException
+  {
+    if (v1 == null || v2 == null)
+    {
+      return null;
+    }
+    if (v1 instanceof Long && v2 instanceof Long)
+    {
+      if ((Long) v2 == 0)
+      {
+        throw new QueryException("Division by zero.");
+      }
+      // integer division truncates, as in SQL
+      return (Long) v1 / (Long) v2;
+    }
+    return ExecutionUtils.toDouble(v1) / ExecutionUtils.toDouble(v2);
+  }
+
+  /**
+   * Key used to hash and compare tuples in joins, grouping, and set operations.
+   */
+  static List<Object> key(final Object[] values)
+  {
+    return Arrays.asList(values);
+  }
+
+  // SQL pattern matching: '%' matches any sequence of characters and '_' any single character
+  static Boolean like(final Object value, final Object pattern)
+  {
+    if (value == null || pattern == null)
+    {
+      return null;
+    }
+    final String source = pattern.toString();
+    final StringBuffer regex = new StringBuffer("");
+    int start = 0;
+    for (int i = 0; i < source.length(); i++)
+    {
+      final char c = source.charAt(i);
+      if (c == '%' || c == '_')
+      {
+        if (start < i)
+        {
+          regex.append(Pattern.quote(source.substring(start, i)));
+        }
+        regex.append(c == '%' ? ".*" : ".");
+        start = i + 1;
+      }
+    }
+    if (start < source.length())
+    {
+      regex.append(Pattern.quote(source.substring(start)));
+    }
+    return Pattern.compile(regex.toString(), Pattern.DOTALL).matcher(value.toString()).matches();
+  }
+
+  static Object multiply(final Object v1, final Object v2) throws QueryException
+  {
+    if (v1 == null || v2 == null)
+    {
+      return null;
+    }
+    if (v1 instanceof Long && v2 instanceof Long)
+    {
+      return (Long) v1 * (Long) v2;
+    }
+    return ExecutionUtils.toDouble(v1) * ExecutionUtils.toDouble(v2);
+  }
+
+  static Object negate(final Object value) throws QueryException
+  {
+    if (value == null)
+    {
+      return null;
+    }
+    if (value instanceof Long)
+    {
+      return -(Long) value;
+    }
+    return -ExecutionUtils.toDouble(value);
+  }
+
+  static Boolean not(final Boolean b)
+  {
+    return b == null ? null : !b;
+  }
+
+  static Boolean or(final Boolean b1, final Boolean b2)
+  {
+    if (Boolean.TRUE.equals(b1) || Boolean.TRUE.equals(b2))
+    {
+      return true;
+    }
+    return b1 == null || b2 == null ? null : false;
+  }
+
+  static Boolean toBoolean(final Object value) throws QueryException
+  {
+    if (value == null || value instanceof Boolean)
+    {
+      return (Boolean) value;
+    }
+    throw new QueryException(String.format("Error evaluating '%s' as a boolean value.", value));
+  }
+
+  static double toDouble(final Object value) throws QueryException
+  {
+    if (value instanceof Number)
+    {
+      return ((Number) value).doubleValue();
+    }
+    throw new QueryException(String.format("Error evaluating '%s' as a numeric value.", value));
+  }
+
+  static CInterval toInterval(final Object value) throws QueryException
+  {
+    if (value == null || value instanceof CInterval)
+    {
+      return (CInterval) value;
+    }
+    // a time point is the unit interval [p, p+1)
+    final Long point = ExecutionUtils.toLong(value);
+    return new CInterval(point, point + 1);
+  }
+
+  static Long toLong(final Object value) throws QueryException
+  {
+    if (value == null || value instanceof Long)
+    {
+      return (Long) value;
+    }
+    if (value instanceof Integer)
+    {
+      return ((Integer) value).longValue();
+    }
+    throw new QueryException(String.format("Error evaluating '%s' as a time point.", value));
+  }
+
+  // null endpoints are infinite: -infty on the left (sign -1) and +infty on the right (sign 1)
+  private static int compareEndpoints(final Long e1, final Long e2, final int sign)
+  {
+    if (e1 == null || e2 == null)
+    {
+      return e1 == e2 ? 0 : e1 == null ? sign : -sign;
+    }
+    return e1.compareTo(e2);
+  }
+}
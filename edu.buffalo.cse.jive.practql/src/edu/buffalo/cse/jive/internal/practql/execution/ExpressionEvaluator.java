@@ -0,0 +1,521 @@
+package edu.buffalo.cse.jive.internal.practql.execution;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import edu.buffalo.cse.jive.practql.execution.CInterval;
+import edu.buffalo.cse.jive.practql.expression.IExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.AggregateType;
+import edu.buffalo.cse.jive.practql.expression.atomic.CFunctionType;
+import edu.buffalo.cse.jive.practql.expression.atomic.FunctionType;
+import edu.buffalo.cse.jive.practql.expression.atomic.IAggregateExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.ICAggregateExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.ICFunctionCallExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.ICIntervalExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.IFieldExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.IFunctionCallExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.ILeftEndpointFieldExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.IRightEndpointFieldExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.IWildcardExpression;
+import edu.buffalo.cse.jive.practql.expression.literal.IIntegerLiteral;
+import edu.buffalo.cse.jive.practql.expression.literal.ILiteral;
+import edu.buffalo.cse.jive.practql.expression.nary.AdditionConnective;
+import edu.buffalo.cse.jive.practql.expression.nary.IAddition;
+import edu.buffalo.cse.jive.practql.expression.nary.IConjunction;
+import edu.buffalo.cse.jive.practql.expression.nary.IDisjunction;
+import edu.buffalo.cse.jive.practql.expression.nary.IMultiplication;
+import edu.buffalo.cse.jive.practql.expression.nary.INAryExpression;
+import edu.buffalo.cse.jive.practql.expression.nary.MultiplicationConnective;
+import edu.buffalo.cse.jive.practql.expression.query.IClauseFrom;
+import edu.buffalo.cse.jive.practql.expression.query.QueryException;
+import edu.buffalo.cse.jive.practql.expression.relational.IRelationalExpression;
+import edu.buffalo.cse.jive.practql.expression.relational.RelationalConnective;
+import edu.buffalo.cse.jive.practql.expression.unary.INamedExpression;
+import edu.buffalo.cse.jive.practql.expression.unary.INegatedExpression;
+import edu.buffalo.cse.jive.practql.expression.unary.INegativeExpression;
+import edu.buffalo.cse.jive.practql.expression.unary.IUnaryExpression;
+import edu.buffalo.cse.jive.practql.schema.IFieldReference;
+import edu.buffalo.cse.jive.practql.schema.IRelationReference;
+import edu.buffalo.cse.jive.practql.schema.ISchemaSignature;
+
+/**
+ * Evaluates the expressions of a simple query against bindings of its FROM clause. A binding is an
+ * array holding one tuple for each relation reference in the FROM clause, in clause order. Since
+ * the concrete expressions produced by the compiler are not visited by expression visitors, the
+ * evaluator dispatches on the expression interfaces directly.
+ */
+class ExpressionEvaluator
+{
+  private final Map<IFieldReference, int[]> fields;
+  private final IClauseFrom from;
+
+  ExpressionEvaluator(final IClauseFrom from)
+  {
+    this.fields = new IdentityHashMap<IFieldReference, int[]>();
+    this.from = from;
+  }
+
+  /**
+   * Sets the bits of the positions of the FROM clause relations referenced by the expression.
+   */
+  void collectRelations(final IExpression expression, final BitSet relations)
+      throws QueryException
+  {
+    if (expression instanceof IFieldExpression)
+    {
+      relations.set(resolve(((IFieldExpression) expression).getFieldReference())[0]);
+    }
+    else if (expression instanceof ICFunctionCallExpression)
+    {
+      collectRelations(((ICFunctionCallExpression) expression).getArgument1(), relations);
+      collectRelations(((ICFunctionCallExpression) expression).getArgument2(), relations);
+    }
+    else if (expression instanceof ICAggregateExpression)
+    {
+      collectRelations(((ICAggregateExpression) expression).getArgument(), relations);
+    }
+    else if (expression instanceof IAggregateExpression)
+    {
+      collectRelations(((IAggregateExpression) expression).getArgument(), relations);
+    }
+    else if (expression instanceof ICIntervalExpression)
+    {
+      collectRelations(((ICIntervalExpression) expression).getLeft(), relations);
+      collectRelations(((ICIntervalExpression) expression).getRight(), relations);
+    }
+    else if (expression instanceof IFunctionCallExpression)
+    {
+      for (final IExpression argument : ((IFunctionCallExpression) expression).getArguments())
+      {
+        collectRelations(argument, relations);
+      }
+    }
+    else if (expression instanceof INAryExpression)
+    {
+      final INAryExpression nary = (INAryExpression) expression;
+      for (int i = 0; i < nary.size(); i++)
+      {
+        collectRelations(nary.getMember(i), relations);
+      }
+    }
+    else if (expression instanceof IRelationalExpression)
+    {
+      collectRelations(((IRelationalExpression) expression).getLHS(), relations);
+      collectRelations(((IRelationalExpression) expression).getRHS(), relations);
+    }
+    else if (expression instanceof IUnaryExpression)
+    {
+      collectRelations(((IUnaryExpression) expression).getExpression(), relations);
+    }
+  }
+
+  /**
+   * Evaluates a scalar expression on the binding.
+   */
+  Object evaluate(final IExpression expression, final Object[][] binding) throws QueryException
+  {
+    return evaluate(expression, binding, null);
+  }
+
+  /**
+   * Evaluates the expression on the binding. Aggregates are computed over the bindings of the
+   * group, which must be non-null if the expression contains aggregates.
+   */
+  Object evaluate(final IExpression expression, final Object[][] binding,
+      final List<Object[][]> group) throws QueryException
+  {
+    if (expression instanceof ILiteral)
+    {
+      final Object value = ((ILiteral) expression).getValue();
+      return expression instanceof IIntegerLiteral ? ExecutionUtils.toLong(value) : value;
+    }
+    if (expression instanceof ILeftEndpointFieldExpression)
+    {
+      final CInterval interval = ExecutionUtils.toInterval(field(expression, binding));
+      return interval == null ? null : interval.getLeft();
+    }
+    if (expression instanceof IRightEndpointFieldExpression)
+    {
+      final CInterval interval = ExecutionUtils.toInterval(field(expression, binding));
+      return interval == null ? null : interval.getRight();
+    }
+    if (expression instanceof IFieldExpression)
+    {
+      return field(expression, binding);
+    }
+    if (expression instanceof ICFunctionCallExpression)
+    {
+      return evaluateCFunction((ICFunctionCallExpression) expression, binding, group);
+    }
+    if (expression instanceof ICIntervalExpression)
+    {
+      final ICIntervalExpression interval = (ICIntervalExpression) expression;
+      return new CInterval(ExecutionUtils.toLong(evaluate(interval.getLeft(), binding, group)),
+          ExecutionUtils.toLong(evaluate(interval.getRight(), binding, group)));
+    }
+    if (expression instanceof ICAggregateExpression)
+    {
+      return evaluateCAggregate((ICAggregateExpression) expression, group);
+    }
+    if (expression instanceof IAggregateExpression)
+    {
+      return evaluateAggregate((IAggregateExpression) expression, group);
+    }
+    if (expression instanceof IFunctionCallExpression)
+    {
+      return evaluateFunction((IFunctionCallExpression) expression, binding, group);
+    }
+    if (expression instanceof IAddition)
+    {
+      final IAddition addition = (IAddition) expression;
+      Object result = evaluate(addition.getMember(0), binding, group);
+      for (int i = 1; i < addition.size(); i++)
+      {
+        final Object value = evaluate(addition.getMember(i), binding, group);
+        final AdditionConnective connective = addition.getConnective(i - 1);
+        result = connective == AdditionConnective.AC_CONCATENATE ? ExecutionUtils.concatenate(
+            result, value) : ExecutionUtils.add(result, value,
+            connective == AdditionConnective.AC_MINUS);
+      }
+      return result;
+    }
+    if (expression instanceof IMultiplication)
+    {
+      final IMultiplication multiplication = (IMultiplication) expression;
+      Object result = evaluate(multiplication.getMember(0), binding, group);
+      for (int i = 1; i < multiplication.size(); i++)
+      {
+        final Object value = evaluate(multiplication.getMember(i), binding, group);
+        final MultiplicationConnective connective = multiplication.getConnective(i - 1);
+        result = connective == MultiplicationConnective.AC_DIVIDE ? ExecutionUtils.divide(result,
+            value) : ExecutionUtils.multiply(result, value);
+      }
+      return result;
+    }
+    if (expression instanceof IConjunction)
+    {
+      final IConjunction conjunction = (IConjunction) expression;
+      Boolean result = true;
+      for (int i = 0; i < conjunction.size() && !Boolean.FALSE.equals(result); i++)
+      {
+        result = ExecutionUtils.and(result, ExecutionUtils.toBoolean(evaluate(conjunction
+            .getMember(i), binding, group)));
+      }
+      return result;
+    }
+    if (expression instanceof IDisjunction)
+    {
+      final IDisjunction disjunction = (IDisjunction) expression;
+      Boolean result = false;
+      for (int i = 0; i < disjunction.size() && !Boolean.TRUE.equals(result); i++)
+      {
+        result = ExecutionUtils.or(result, ExecutionUtils.toBoolean(evaluate(disjunction
+            .getMember(i), binding, group)));
+      }
+      return result;
+    }
+    if (expression instanceof IRelationalExpression)
+    {
+      return evaluateRelational((IRelationalExpression) expression, binding, group);
+    }
+    if (expression instanceof INegatedExpression)
+    {
+      return ExecutionUtils.not(ExecutionUtils.toBoolean(evaluate(
+          ((INegatedExpression) expression).getExpression(), binding, group)));
+    }
+    if (expression instanceof INegativeExpression)
+    {
+      return ExecutionUtils.negate(evaluate(((INegativeExpression) expression).getExpression(),
+          binding, group));
+    }
+    if (expression instanceof IUnaryExpression)
+    {
+      return evaluate(((IUnaryExpression) expression).getExpression(), binding, group);
+    }
+    throw new QueryException(String.format("Error evaluating unsupported expression '%s'.",
+        expression));
+  }
+
+  /**
+   * Evaluates a projected expression on the binding. The result has one value for each tuple
+   * produced by the expression: a single value for scalar expressions, and one interval for each
+   * piece of an interval projected onto a partition.
+   */
+  List<Object> evaluateAll(final IExpression expression, final Object[][] binding,
+      final List<Object[][]> group) throws QueryException
+  {
+    IExpression inner = expression;
+    if (inner instanceof INamedExpression)
+    {
+      inner = ((INamedExpression) inner).getExpression();
+    }
+    if (inner instanceof ICFunctionCallExpression
+        && ((ICFunctionCallExpression) inner).getFunctionType() == CFunctionType.FT_PROJECT)
+    {
+      final ICFunctionCallExpression project = (ICFunctionCallExpression) inner;
+      final List<CInterval> pieces = IntervalUtils.project(ExecutionUtils.toInterval(evaluate(
+          project.getArgument1(), binding, group)), partition(evaluate(project.getArgument2(),
+          binding, group)));
+      return new ArrayList<Object>(pieces);
+    }
+    return Collections.singletonList(evaluate(inner, binding, group));
+  }
+
+  /**
+   * Evaluates a condition on the binding. Unknown is not true.
+   */
+  boolean isTrue(final IExpression expression, final Object[][] binding) throws QueryException
+  {
+    return Boolean.TRUE.equals(ExecutionUtils.toBoolean(evaluate(expression, binding, null)));
+  }
+
+  /**
+   * Position of the referenced relation in the FROM clause and of the referenced field in the
+   * relation's signature.
+   */
+  int[] resolve(final IFieldReference reference) throws QueryException
+  {
+    int[] result = fields.get(reference);
+    if (result == null)
+    {
+      final String variable = reference.getRelationReference().getVariable();
+      final String name = reference.getSchema().getName();
+      for (int i = 0; i < from.size() && result == null; i++)
+      {
+        final IRelationReference relation = from.getMember(i);
+        if (relation.getVariable().equalsIgnoreCase(variable))
+        {
+          final ISchemaSignature signature = relation.getSchema().getSignature();
+          for (int j = 0; j < signature.size() && result == null; j++)
+          {
+            if (signature.getFieldSchema(j).getName().equalsIgnoreCase(name))
+            {
+              result = new int[]
+              { i, j };
+            }
+          }
+        }
+      }
+      if (result == null)
+      {
+        throw new QueryException(String.format("Error resolving field reference '%s'.",
+            reference.getQualifiedName()));
+      }
+      fields.put(reference, result);
+    }
+    return result;
+  }
+
+  // non-null values of the aggregate's argument over the group
+  private List<Object> aggregateValues(final IExpression aggregate, final IExpression argument,
+      final List<Object[][]> group, final boolean isDistinct) throws QueryException
+  {
+    if (group == null)
+    {
+      throw new QueryException(String.format(
+          "Error evaluating aggregate '%s' outside of a grouping context.", aggregate));
+    }
+    final List<Object> values = new ArrayList<Object>(group.size());
+    for (final Object[][] member : group)
+    {
+      // COUNT(*) counts every tuple of the group
+      final Object value = argument instanceof IWildcardExpression ? Boolean.TRUE : evaluate(
+          argument, member, null);
+      if (value != null)
+      {
+        values.add(value);
+      }
+    }
+    return isDistinct ? new ArrayList<Object>(new LinkedHashSet<Object>(values)) : values;
+  }
+
+  private Object evaluateAggregate(final IAggregateExpression aggregate,
+      final List<Object[][]> group) throws QueryException
+  {
+    final AggregateType type = aggregate.getAggregateType();
+    final List<Object> values = aggregateValues(aggregate, aggregate.getArgument(), group,
+        aggregate.isDistinct());
+    if (type == AggregateType.COUNT)
+    {
+      return Long.valueOf(values.size());
+    }
+    if (values.isEmpty())
+    {
+      return null;
+    }
+    if (type == AggregateType.AVG || type == AggregateType.SUM)
+    {
+      Object sum = 0L;
+      for (final Object value : values)
+      {
+        sum = ExecutionUtils.add(sum, value, false);
+      }
+      return type == AggregateType.SUM ? sum : ExecutionUtils.toDouble(sum) / values.size();
+    }
+    // MIN and MAX
+    Object result = values.get(0);
+    for (final Object value : values)
+    {
+      final int order = ExecutionUtils.compare(value, result);
+      if (type == AggregateType.MIN ? order < 0 : order > 0)
+      {
+        result = value;
+      }
+    }
+    return result;
+  }
+
+  private Object evaluateCAggregate(final ICAggregateExpression aggregate,
+      final List<Object[][]> group) throws QueryException
+  {
+    final List<Object> values = aggregateValues(aggregate, aggregate.getArgument(), group, false);
+    final List<CInterval> intervals = new ArrayList<CInterval>(values.size());
+    for (final Object value : values)
+    {
+      intervals.add(ExecutionUtils.toInterval(value));
+    }
+    switch (aggregate.getAggregateType())
+    {
+      case CCOUNT:
+        return IntervalUtils.aggCount(intervals);
+      case CMAX:
+        return IntervalUtils.aggMax(intervals);
+      case CMIN:
+        return IntervalUtils.aggMin(intervals);
+      default:
+        return IntervalUtils.aggPartition(intervals);
+    }
+  }
+
+  private Object evaluateCFunction(final ICFunctionCallExpression function,
+      final Object[][] binding, final List<Object[][]> group) throws QueryException
+  {
+    final CInterval interval = ExecutionUtils.toInterval(evaluate(function.getArgument1(),
+        binding, group));
+    final Object argument = evaluate(function.getArgument2(), binding, group);
+    switch (function.getFunctionType())
+    {
+      case FT_HAS_PRED:
+        return IntervalUtils.hasPred(interval, ExecutionUtils.toLong(argument));
+      case FT_HAS_PRED_INCLUSIVE:
+        return IntervalUtils.hasPredInclusive(interval, ExecutionUtils.toLong(argument));
+      case FT_HAS_SUCC:
+        return IntervalUtils.hasSucc(interval, ExecutionUtils.toLong(argument));
+      case FT_HAS_SUCC_INCLUSIVE:
+        return IntervalUtils.hasSuccInclusive(interval, ExecutionUtils.toLong(argument));
+      case FT_OVERLAPPING:
+        return IntervalUtils.overlapping(interval, ExecutionUtils.toInterval(argument));
+      default:
+        throw new QueryException(String.format(
+            "Error evaluating '%s': interval projections are only supported in projection lists.",
+            function));
+    }
+  }
+
+  private Object evaluateFunction(final IFunctionCallExpression function,
+      final Object[][] binding, final List<Object[][]> group) throws QueryException
+  {
+    final List<Object> values = new ArrayList<Object>(function.getArguments().size());
+    for (final IExpression argument : function.getArguments())
+    {
+      values.add(evaluate(argument, binding, group));
+    }
+    final FunctionType type = function.getFunctionType();
+    if (type == FunctionType.FT_GREATEST || type == FunctionType.FT_LEAST)
+    {
+      // nulls are ignored, as in SQL
+      Object result = null;
+      for (final Object value : values)
+      {
+        if (value != null)
+        {
+          final int order = result == null ? 0 : ExecutionUtils.compare(value, result);
+          if (result == null || (type == FunctionType.FT_GREATEST ? order > 0 : order < 0))
+          {
+            result = value;
+          }
+        }
+      }
+      return result;
+    }
+    final Object value = values.get(0);
+    if (value == null || value instanceof Long && type != FunctionType.FT_ABS)
+    {
+      return value;
+    }
+    if (value instanceof Long)
+    {
+      return Math.abs((Long) value);
+    }
+    final double number = ExecutionUtils.toDouble(value);
+    return type == FunctionType.FT_ABS ? Math.abs(number) : type == FunctionType.FT_CEIL ? Math
+        .ceil(number) : Math.floor(number);
+  }
+
+  private Object evaluateRelational(final IRelationalExpression relational,
+      final Object[][] binding, final List<Object[][]> group) throws QueryException
+  {
+    final Object lhs = evaluate(relational.getLHS(), binding, group);
+    final Object rhs = evaluate(relational.getRHS(), binding, group);
+    final RelationalConnective connective = relational.getConnective();
+    // IS and IS NOT compare nulls as values
+    if (connective == RelationalConnective.RC_IS || connective == RelationalConnective.RC_IS_NOT)
+    {
+      final boolean same = lhs == null ? rhs == null : rhs != null
+          && ExecutionUtils.compare(lhs, rhs) == 0;
+      return connective == RelationalConnective.RC_IS ? same : !same;
+    }
+    if (connective == RelationalConnective.RC_LIKE)
+    {
+      return ExecutionUtils.like(lhs, rhs);
+    }
+    if (connective == RelationalConnective.RC_NOT_LIKE)
+    {
+      return ExecutionUtils.not(ExecutionUtils.like(lhs, rhs));
+    }
+    if (lhs == null || rhs == null)
+    {
+      return null;
+    }
+    final int order = ExecutionUtils.compare(lhs, rhs);
+    switch (connective)
+    {
+      case RC_EQ:
+        return order == 0;
+      case RC_GE:
+        return order >= 0;
+      case RC_GT:
+        return order > 0;
+      case RC_LE:
+        return order <= 0;
+      case RC_LT:
+        return order < 0;
+      default:
+        return order != 0;
+    }
+  }
+
+  private Object field(final IExpression expression, final Object[][] binding)
+      throws QueryException
+  {
+    final int[] position = resolve(((IFieldExpression) expression).getFieldReference());
+    // bindings of empty groups have no tuples
+    return binding[position[0]] == null ? null : binding[position[0]][position[1]];
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<CInterval> partition(final Object value) throws QueryException
+  {
+    if (value == null || value instanceof List)
+    {
+      return (List<CInterval>) value;
+    }
+    throw new QueryException(String.format("Error evaluating '%s' as an interval partition.",
+        value));
+  }
+}
@@ -0,0 +1,188 @@
+package edu.buffalo.cse.jive.internal.practql.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import edu.buffalo.cse.jive.practql.execution.CInterval;
+
+/**
+ * In-memory counterparts of the cinterval functions and aggregates of the compiled temporal
+ * database (ctdb.sql). Intervals are half-open and null endpoints denote infinity. The semantics,
+ * including the treatment of null endpoints, follows the SQL definitions exactly, so that queries
+ * evaluated in memory produce the same tuples as the compiled queries evaluated by the database.
+ */
+enum IntervalUtils
+{
+  INSTANCE;
+  // agg_count: number of time points covered by the intervals, null if any interval is unbounded
+  static Long aggCount(final List<CInterval> intervals)
+  {
+    long result = 0;
+    for (final CInterval i : intervals)
+    {
+      if (i.getLeft() == null || i.getRight() == null)
+      {
+        return null;
+      }
+      result += i.getRight() - i.getLeft();
+    }
+    return result;
+  }
+
+  // agg_max: largest right endpoint, null if any interval is unbounded to the right
+  static Long aggMax(final List<CInterval> intervals)
+  {
+    Long result = null;
+    for (final CInterval i : intervals)
+    {
+      if (i.getRight() == null)
+      {
+        return null;
+      }
+      result = result == null ? i.getRight() : Math.max(result, i.getRight());
+    }
+    return result;
+  }
+
+  // agg_min: smallest left endpoint, null if any interval is unbounded to the left
+  static Long aggMin(final List<CInterval> intervals)
+  {
+    Long result = null;
+    for (final CInterval i : intervals)
+    {
+      if (i.getLeft() == null)
+      {
+        return null;
+      }
+      result = result == null ? i.getLeft() : Math.min(result, i.getLeft());
+    }
+    return result;
+  }
+
+  // agg_partition: minimal partition of the intervals, built from their sorted distinct endpoints
+  static List<CInterval> aggPartition(final List<CInterval> intervals)
+  {
+    final TreeSet<Long> endpoints = new TreeSet<Long>();
+    boolean lnull = false;
+    boolean rnull = false;
+    for (final CInterval i : intervals)
+    {
+      if (i.getLeft() != null)
+      {
+        endpoints.add(i.getLeft());
+      }
+      if (i.getRight() != null)
+      {
+        endpoints.add(i.getRight());
+      }
+      lnull = lnull || i.getLeft() == null;
+      rnull = rnull || i.getRight() == null;
+    }
+    final List<Long> points = new ArrayList<Long>(endpoints.size() + 2);
+    if (lnull)
+    {
+      points.add(null);
+    }
+    points.addAll(endpoints);
+    if (rnull)
+    {
+      points.add(null);
+    }
+    final List<CInterval> result = new ArrayList<CInterval>(points.size());
+    for (int k = 1; k < points.size(); k++)
+    {
+      result.add(new CInterval(points.get(k - 1), points.get(k)));
+    }
+    return result;
+  }
+
+  // has_pred: there exists a point q in i such that q < p
+  static Boolean hasPred(final CInterval i, final Long p)
+  {
+    return i == null ? null : p != null && (i.getLeft() == null || i.getLeft() < p);
+  }
+
+  // has_predi: there exists a point q in i such that q <= p
+  static Boolean hasPredInclusive(final CInterval i, final Long p)
+  {
+    return i == null ? null : p != null && (i.getLeft() == null || i.getLeft() <= p);
+  }
+
+  // has_succ: there exists a point q in i such that q > p
+  static Boolean hasSucc(final CInterval i, final Long p)
+  {
+    return i == null ? null : p != null && (i.getRight() == null || i.getRight() > p + 1);
+  }
+
+  // has_succi: there exists a point q in i such that q >= p
+  static Boolean hasSuccInclusive(final CInterval i, final Long p)
+  {
+    return i == null ? null : p != null && (i.getRight() == null || i.getRight() > p);
+  }
+
+  // overlapping: i1 and i2 have at least one common point
+  static Boolean overlapping(final CInterval i1, final CInterval i2)
+  {
+    if (i1 == null || i2 == null)
+    {
+      return null;
+    }
+    final Long l1 = i1.getLeft();
+    final Long r1 = i1.getRight();
+    final Long l2 = i2.getLeft();
+    final Long r2 = i2.getRight();
+    return IntervalUtils.coalesce(l1, r2 == null ? null : r2 - 1, 0) < IntervalUtils.coalesce(r2,
+        l1 == null ? null : l1 + 1, 1)
+        && IntervalUtils.coalesce(l2, r1 == null ? null : r1 - 1, 0) < IntervalUtils.coalesce(r1,
+            l2 == null ? null : l2 + 1, 1);
+  }
+
+  // project: pieces of the interval I=[L,R) along the minimal partition P
+  static List<CInterval> project(final CInterval interval, final List<CInterval> partition)
+  {
+    final List<CInterval> result = new ArrayList<CInterval>();
+    if (interval == null || partition == null)
+    {
+      return result;
+    }
+    Long left = interval.getLeft();
+    final Long right = interval.getRight();
+    for (final CInterval p : partition)
+    {
+      if (IntervalUtils.containsLeft(left, p))
+      {
+        if (IntervalUtils.containsRight(right == null ? null : right - 1, p))
+        {
+          result.add(new CInterval(left, right));
+          break;
+        }
+        result.add(new CInterval(left, p.getRight()));
+        left = p.getRight();
+      }
+    }
+    return result;
+  }
+
+  private static long coalesce(final Long first, final Long second, final long third)
+  {
+    return first != null ? first : second != null ? second : third;
+  }
+
+  private static boolean contains(final CInterval i, final long p)
+  {
+    return (i.getLeft() == null || i.getLeft() <= p) && (i.getRight() == null || p < i.getRight());
+  }
+
+  // contains_left: p is -infty and i is unbounded to the left, or p is a point in i
+  private static boolean containsLeft(final Long p, final CInterval i)
+  {
+    return p == null ? i.getLeft() == null : IntervalUtils.contains(i, p);
+  }
+
+  // contains_right: p is +infty and i is unbounded to the right, or p is a point in i
+  private static boolean containsRight(final Long p, final CInterval i)
+  {
+    return p == null ? i.getRight() == null : IntervalUtils.contains(i, p);
+  }
+}
@@ -0,0 +1,248 @@
+package edu.buffalo.cse.jive.internal.practql.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.buffalo.cse.jive.internal.practql.compiler.CompiledRecursiveQueryParts;
+import edu.buffalo.cse.jive.practql.execution.CInterval;
+import edu.buffalo.cse.jive.practql.execution.IDatabase;
+import edu.buffalo.cse.jive.practql.execution.IRelation;
+import edu.buffalo.cse.jive.practql.expression.query.INamedQuery;
+import edu.buffalo.cse.jive.practql.expression.query.IQuery;
+import edu.buffalo.cse.jive.practql.expression.query.IQueryExpression;
+import edu.buffalo.cse.jive.practql.expression.query.ISimpleQuery;
+import edu.buffalo.cse.jive.practql.expression.query.QueryConnective;
+import edu.buffalo.cse.jive.practql.expression.query.QueryException;
+import edu.buffalo.cse.jive.practql.schema.IRelationReference;
+import edu.buffalo.cse.jive.practql.schema.IRelationSchema;
+import edu.buffalo.cse.jive.practql.schema.ISchemaSignature;
+
+/**
+ * Evaluates compiled query expressions against a database. The instances of the common table
+ * expressions evaluated so far are kept by name, so that later queries can reference them, and
+ * shadow the database tables with the same name.
+ */
+class QueryEvaluator
+{
+  // built-in views of the compiled temporal database
+  private static final Map<String, CInterval> VIEWS = new HashMap<String, CInterval>();
+  static
+  {
+    QueryEvaluator.VIEWS.put("_true", new CInterval(null, null));
+    QueryEvaluator.VIEWS.put("_ptrue", new CInterval(0L, null));
+    QueryEvaluator.VIEWS.put("_ntrue", new CInterval(null, 0L));
+  }
+  private final Map<String, IRelation> bindings;
+  private final IDatabase database;
+  // tuples derived in the prior round of a recursive evaluation
+  private IRelation delta;
+  // name of the relation accumulating the tuples of a recursive evaluation
+  private String recursiveName;
+
+  QueryEvaluator(final IDatabase database)
+  {
+    this.bindings = new HashMap<String, IRelation>();
+    this.database = database;
+  }
+
+  Relation evaluate(final IQueryExpression expression) throws QueryException
+  {
+    for (int i = 0; i < expression.size(); i++)
+    {
+      final INamedQuery cte = expression.getMember(i);
+      bindings.put(cte.getSchema().getName().toLowerCase(), new Relation(cte.getSchema()
+          .getSignature(), evaluate(cte).getTuples()));
+    }
+    return evaluate(expression.getQuery());
+  }
+
+  /**
+   * Evaluates the recursive query from its compiled parts and binds the result to the name of the
+   * recursive query. The evaluation is semi-naive: tuples are accumulated in the __TNP relation
+   * along with the round in which they were derived, and each round joins the recursive reference
+   * with the tuples derived in the prior round only, while the difference that discards tuples
+   * derived before is taken against all accumulated tuples.
+   */
+  void evaluateRecursive(final CompiledRecursiveQueryParts parts) throws QueryException
+  {
+    final IRelationSchema tnpSchema = parts.tnpSchema();
+    final int width = tnpSchema.getSignature().size() - 1;
+    final Relation tnp = new Relation(tnpSchema.getSignature());
+    recursiveName = tnpSchema.getName();
+    bindings.put(recursiveName.toLowerCase(), tnp);
+    // tuples of the except case are never part of the result
+    if (parts.exceptQuery() != null)
+    {
+      append(tnp, evaluate(parts.exceptQuery()).getTuples(), -1);
+    }
+    List<Object[]> derived = evaluate(parts.baseExpression()).getTuples();
+    long round = 0;
+    while (!derived.isEmpty())
+    {
+      append(tnp, derived, round);
+      final Relation prior = new Relation(tnpSchema.getSignature());
+      append(prior, derived, round);
+      delta = prior;
+      round++;
+      derived = evaluate(parts.deltaExpression()).getTuples();
+    }
+    delta = null;
+    final ISchemaSignature signature = parts.source().getSchema().getSignature();
+    final Relation result = new Relation(signature);
+    for (final Object[] tuple : tnp.getTuples())
+    {
+      if ((Long) tuple[width] >= 0)
+      {
+        result.getTuples().add(Arrays.copyOf(tuple, width));
+      }
+    }
+    bindings.put(parts.source().getSchema().getName().toLowerCase(), result);
+  }
+
+  // appends the tuples extended with the round in which they were derived
+  private void append(final Relation relation, final List<Object[]> tuples, final long round)
+  {
+    for (final Object[] tuple : tuples)
+    {
+      final Object[] extended = Arrays.copyOf(tuple, tuple.length + 1);
+      extended[tuple.length] = round;
+      relation.getTuples().add(extended);
+    }
+  }
+
+  private List<Object[]> combine(final List<Object[]> left, final List<Object[]> right,
+      final QueryConnective connective)
+  {
+    if (connective == QueryConnective.QC_BAG_UNION)
+    {
+      final List<Object[]> result = new ArrayList<Object[]>(left.size() + right.size());
+      result.addAll(left);
+      result.addAll(right);
+      return result;
+    }
+    if (connective == QueryConnective.QC_SET_UNION)
+    {
+      final Set<List<Object>> result = keys(left);
+      result.addAll(keys(right));
+      return tuples(result);
+    }
+    if (connective.isSet())
+    {
+      // set difference and intersection
+      final Set<List<Object>> result = keys(left);
+      final Set<List<Object>> other = new HashSet<List<Object>>(keys(right));
+      if (connective == QueryConnective.QC_SET_DIFFERENCE)
+      {
+        result.removeAll(other);
+      }
+      else
+      {
+        result.retainAll(other);
+      }
+      return tuples(result);
+    }
+    // bag difference and intersection: each tuple on the right matches one tuple on the left
+    final Map<List<Object>, Integer> counts = new HashMap<List<Object>, Integer>();
+    for (final Object[] tuple : right)
+    {
+      final List<Object> key = ExecutionUtils.key(tuple);
+      final Integer count = counts.get(key);
+      counts.put(key, count == null ? 1 : count + 1);
+    }
+    final List<Object[]> result = new ArrayList<Object[]>();
+    for (final Object[] tuple : left)
+    {
+      final List<Object> key = ExecutionUtils.key(tuple);
+      final Integer count = counts.get(key);
+      if (count != null && count > 0)
+      {
+        counts.put(key, count - 1);
+      }
+      if ((count != null && count > 0) == (connective == QueryConnective.QC_BAG_INTERSECTION))
+      {
+        result.add(tuple);
+      }
+    }
+    return result;
+  }
+
+  private Relation evaluate(final IQuery query) throws QueryException
+  {
+    List<Object[]> result = evaluate(query.getMember(0)).getTuples();
+    for (int i = 1; i < query.size(); i++)
+    {
+      result = combine(result, evaluate(query.getMember(i)).getTuples(), query
+          .getConnective(i - 1));
+    }
+    return new Relation(query.getSignature(), result);
+  }
+
+  private Relation evaluate(final ISimpleQuery query) throws QueryException
+  {
+    final List<IRelation> inputs = new ArrayList<IRelation>(query.getFrom().size());
+    for (int i = 0; i < query.getFrom().size(); i++)
+    {
+      inputs.add(resolve(query.getFrom().getMember(i)));
+    }
+    return new SimpleQueryEvaluator(query, inputs).evaluate();
+  }
+
+  private Set<List<Object>> keys(final List<Object[]> tuples)
+  {
+    final Set<List<Object>> result = new LinkedHashSet<List<Object>>();
+    for (final Object[] tuple : tuples)
+    {
+      result.add(ExecutionUtils.key(tuple));
+    }
+    return result;
+  }
+
+  /**
+   * Instance of the referenced relation. During a recursive evaluation, the recursive reference--
+   * the only reference to the accumulated tuples not named after the relation itself-- is bound to
+   * the tuples derived in the prior round.
+   */
+  private IRelation resolve(final IRelationReference reference) throws QueryException
+  {
+    final String name = reference.getSchema().getName();
+    if (delta != null && name.equalsIgnoreCase(recursiveName)
+        && !reference.getVariable().equalsIgnoreCase(recursiveName))
+    {
+      return delta;
+    }
+    IRelation result = bindings.get(name.toLowerCase());
+    if (result == null)
+    {
+      result = database.lookupRelation(name);
+    }
+    if (result == null && QueryEvaluator.VIEWS.containsKey(name.toLowerCase()))
+    {
+      final List<Object[]> tuples = new ArrayList<Object[]>(1);
+      tuples.add(new Object[]
+      { QueryEvaluator.VIEWS.get(name.toLowerCase()) });
+      result = new Relation(reference.getSchema().getSignature(), tuples);
+    }
+    if (result == null)
+    {
+      throw new QueryException(String.format("Error evaluating query: relation '%s' not found.",
+          name));
+    }
+    return result;
+  }
+
+  private List<Object[]> tuples(final Set<List<Object>> keys)
+  {
+    final List<Object[]> result = new ArrayList<Object[]>(keys.size());
+    for (final List<Object> key : keys)
+    {
+      result.add(key.toArray());
+    }
+    return result;
+  }
+}
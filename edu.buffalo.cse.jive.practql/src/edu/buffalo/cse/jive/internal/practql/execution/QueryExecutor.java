@@ -0,0 +1,42 @@
+package edu.buffalo.cse.jive.internal.practql.execution;
+
+import java.util.Collections;
+
+import edu.buffalo.cse.jive.internal.practql.Factory;
+import edu.buffalo.cse.jive.internal.practql.compiler.CompiledRecursiveQueryParts;
+import edu.buffalo.cse.jive.internal.practql.compiler.CompilerUtils;
+import edu.buffalo.cse.jive.practql.IQueryCompiler;
+import edu.buffalo.cse.jive.practql.execution.IDatabase;
+import edu.buffalo.cse.jive.practql.execution.IQueryExecutor;
+import edu.buffalo.cse.jive.practql.execution.IRelation;
+import edu.buffalo.cse.jive.practql.expression.query.INamedQuery;
+import edu.buffalo.cse.jive.practql.expression.query.IQueryExpression;
+import edu.buffalo.cse.jive.practql.expression.query.QueryException;
+
+class QueryExecutor implements IQueryExecutor
+{
+  private final IDatabase database;
+
+  QueryExecutor(final IDatabase database)
+  {
+    this.database = database;
+  }
+
+  @Override
+  public IRelation execute(final IQueryExpression expression) throws QueryException
+  {
+    final IQueryCompiler compiler = CompilerUtils.createCompiler(database.getSchema());
+    compiler.compile(expression);
+    final QueryEvaluator evaluator = new QueryEvaluator(database);
+    final CompiledRecursiveQueryParts parts = CompilerUtils.recursiveParts(compiler);
+    if (parts == null)
+    {
+      return evaluator.evaluate(compiler.queryExpression());
+    }
+    // the recursive query is bound by name and referenced by the main query
+    evaluator.evaluateRecursive(parts);
+    final IQueryExpression main = Factory.INSTANCE.queryExpressionFactory().newQueryExpression(
+        false, Collections.<INamedQuery> emptyList(), expression.getQuery());
+    return evaluator.evaluate(CompilerUtils.createCompiler(database.getSchema()).compile(main));
+  }
+}
@@ -0,0 +1,53 @@
+package edu.buffalo.cse.jive.internal.practql.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.buffalo.cse.jive.practql.execution.IRelation;
+import edu.buffalo.cse.jive.practql.schema.ISchemaSignature;
+
+// relation instance computed during the evaluation of a query
+class Relation implements IRelation
+{
+  private final ISchemaSignature signature;
+  private final List<Object[]> tuples;
+
+  Relation(final ISchemaSignature signature)
+  {
+    this(signature, new ArrayList<Object[]>());
+  }
+
+  Relation(final ISchemaSignature signature, final List<Object[]> tuples)
+  {
+    this.signature = signature;
+    this.tuples = tuples;
+  }
+
+  @Override
+  public ISchemaSignature getSignature()
+  {
+    return this.signature;
+  }
+
+  @Override
+  public List<Object[]> getTuples()
+  {
+    return this.tuples;
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuffer buffer = new StringBuffer("");
+    for (final Object[] tuple : tuples)
+    {
+      for (int i = 0; i < tuple.length; i++)
+      {
+        buffer.append(i == 0 ? "" : " | ");
+        buffer.append(tuple[i]);
+      }
+      buffer.append("\n");
+    }
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,554 @@
+package edu.buffalo.cse.jive.internal.practql.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.buffalo.cse.jive.practql.execution.IRelation;
+import edu.buffalo.cse.jive.practql.expression.IExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.ILeftEndpointFieldExpression;
+import edu.buffalo.cse.jive.practql.expression.atomic.IRightEndpointFieldExpression;
+import edu.buffalo.cse.jive.practql.expression.nary.IConjunction;
+import edu.buffalo.cse.jive.practql.expression.query.IClauseOrderBy;
+import edu.buffalo.cse.jive.practql.expression.query.IClauseSelect;
+import edu.buffalo.cse.jive.practql.expression.query.ISimpleQuery;
+import edu.buffalo.cse.jive.practql.expression.query.QueryException;
+import edu.buffalo.cse.jive.practql.expression.relational.IRelationalExpression;
+import edu.buffalo.cse.jive.practql.expression.relational.RelationalConnective;
+import edu.buffalo.cse.jive.practql.expression.unary.SortDirection;
+
+/**
+ * Evaluates a simple query over the instances of the relations in its FROM clause. The WHERE
+ * clause is split into conjuncts and each conjunct is applied as soon as all relations it
+ * references are bound. Relations are joined in FROM clause order, using the first applicable
+ * strategy:
+ *
+ * <pre>
+ *   hash join:     equality conjuncts between the new relation and the bound ones are used as keys
+ *                  of a hash table built on the new relation;
+ *   interval join: an overlap conjunct get_right(T) > get_left(T') in which T' belongs to the new
+ *                  relation restricts the scan of the new relation, sorted on get_left(T'), to the
+ *                  tuples that start before T ends;
+ *   nested loops:  otherwise.
+ * </pre>
+ *
+ * Grouping, aggregation, interval projection, duplicate elimination, and ordering are performed on
+ * the joined bindings.
+ */
+class SimpleQueryEvaluator
+{
+  private final List<IExpression> conjuncts;
+  private final ExpressionEvaluator evaluator;
+  private final List<IRelation> inputs;
+  private final ISimpleQuery query;
+  private final List<BitSet> references;
+
+  SimpleQueryEvaluator(final ISimpleQuery query, final List<IRelation> inputs)
+      throws QueryException
+  {
+    this.conjuncts = new ArrayList<IExpression>();
+    this.evaluator = new ExpressionEvaluator(query.getFrom());
+    this.inputs = inputs;
+    this.query = query;
+    this.references = new ArrayList<BitSet>();
+    if (query.getWhere() != null)
+    {
+      flatten(query.getWhere().getExpression());
+    }
+  }
+
+  Relation evaluate() throws QueryException
+  {
+    final boolean[] applied = new boolean[conjuncts.size()];
+    // conjuncts that reference no relation
+    final BitSet bound = new BitSet();
+    final List<Object[][]> seed = new ArrayList<Object[][]>();
+    seed.add(new Object[inputs.size()][]);
+    List<Object[][]> bindings = filter(seed, bound, applied);
+    for (int j = 0; j < inputs.size() && !bindings.isEmpty(); j++)
+    {
+      bindings = join(bindings, j, bound, applied);
+      bound.set(j);
+      bindings = filter(bindings, bound, applied);
+    }
+    return project(bindings);
+  }
+
+  // number of sorted starts strictly smaller than the end
+  private int countBefore(final long[] starts, final long end)
+  {
+    int low = 0;
+    int high = starts.length;
+    while (low < high)
+    {
+      final int mid = (low + high) >>> 1;
+      if (starts[mid] < end)
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  // cartesian product of the values produced by each projected expression
+  private void emit(final List<Object[]> tuples, final List<List<Object>> columns,
+      final Object[] tuple, final int column)
+  {
+    if (column == columns.size())
+    {
+      tuples.add(tuple.clone());
+      return;
+    }
+    for (final Object value : columns.get(column))
+    {
+      tuple[column] = value;
+      emit(tuples, columns, tuple, column + 1);
+    }
+  }
+
+  // bindings extended with the tuples of the j-th relation that satisfy the local conjuncts
+  private List<Object[][]> extend(final List<Object[][]> bindings, final int j,
+      final List<Object[]> tuples)
+  {
+    final List<Object[][]> result = new ArrayList<Object[][]>(bindings.size() * tuples.size());
+    for (final Object[][] binding : bindings)
+    {
+      for (final Object[] tuple : tuples)
+      {
+        final Object[][] extended = binding.clone();
+        extended[j] = tuple;
+        result.add(extended);
+      }
+    }
+    return result;
+  }
+
+  // applies the conjuncts whose relations are all bound
+  private List<Object[][]> filter(final List<Object[][]> bindings, final BitSet bound,
+      final boolean[] applied) throws QueryException
+  {
+    final List<IExpression> pending = new ArrayList<IExpression>();
+    for (int i = 0; i < conjuncts.size(); i++)
+    {
+      if (!applied[i] && isCovered(references.get(i), bound))
+      {
+        pending.add(conjuncts.get(i));
+        applied[i] = true;
+      }
+    }
+    if (pending.isEmpty())
+    {
+      return bindings;
+    }
+    final List<Object[][]> result = new ArrayList<Object[][]>(bindings.size());
+    for (final Object[][] binding : bindings)
+    {
+      if (satisfies(pending, binding))
+      {
+        result.add(binding);
+      }
+    }
+    return result;
+  }
+
+  private void flatten(final IExpression expression) throws QueryException
+  {
+    if (expression instanceof IConjunction)
+    {
+      final IConjunction conjunction = (IConjunction) expression;
+      for (int i = 0; i < conjunction.size(); i++)
+      {
+        flatten(conjunction.getMember(i));
+      }
+    }
+    else
+    {
+      final BitSet relations = new BitSet();
+      evaluator.collectRelations(expression, relations);
+      conjuncts.add(expression);
+      references.add(relations);
+    }
+  }
+
+  private List<Object[][]> hashJoin(final List<Object[][]> bindings, final int j,
+      final List<Object[]> tuples, final List<IExpression> probes, final List<IExpression> keys)
+      throws QueryException
+  {
+    final Object[][] single = new Object[inputs.size()][];
+    final Map<List<Object>, List<Object[]>> table = new HashMap<List<Object>, List<Object[]>>();
+    for (final Object[] tuple : tuples)
+    {
+      single[j] = tuple;
+      final List<Object> key = key(keys, single);
+      if (key != null)
+      {
+        List<Object[]> bucket = table.get(key);
+        if (bucket == null)
+        {
+          bucket = new ArrayList<Object[]>(1);
+          table.put(key, bucket);
+        }
+        bucket.add(tuple);
+      }
+    }
+    final List<Object[][]> result = new ArrayList<Object[][]>();
+    for (final Object[][] binding : bindings)
+    {
+      final List<Object> key = key(probes, binding);
+      final List<Object[]> bucket = key == null ? null : table.get(key);
+      if (bucket != null)
+      {
+        for (final Object[] tuple : bucket)
+        {
+          final Object[][] extended = binding.clone();
+          extended[j] = tuple;
+          result.add(extended);
+        }
+      }
+    }
+    return result;
+  }
+
+  private List<Object[][]> intervalJoin(final List<Object[][]> bindings, final int j,
+      final List<Object[]> tuples, final IExpression end, final IExpression start)
+      throws QueryException
+  {
+    // (start, tuple) pairs of the new relation's tuples with a known start, sorted on the start
+    final Object[][] single = new Object[inputs.size()][];
+    final List<Object[]> sorted = new ArrayList<Object[]>(tuples.size());
+    for (final Object[] tuple : tuples)
+    {
+      single[j] = tuple;
+      final Long value = ExecutionUtils.toLong(evaluator.evaluate(start, single));
+      if (value != null)
+      {
+        sorted.add(new Object[]
+        { value, tuple });
+      }
+    }
+    Collections.sort(sorted, new Comparator<Object[]>()
+      {
+        @Override
+        public int compare(final Object[] p1, final Object[] p2)
+        {
+          return ((Long) p1[0]).compareTo((Long) p2[0]);
+        }
+      });
+    final long[] starts = new long[sorted.size()];
+    for (int k = 0; k < starts.length; k++)
+    {
+      starts[k] = (Long) sorted.get(k)[0];
+    }
+    final List<Object[][]> result = new ArrayList<Object[][]>();
+    for (final Object[][] binding : bindings)
+    {
+      final Long value = ExecutionUtils.toLong(evaluator.evaluate(end, binding));
+      // an unknown end satisfies no overlap condition
+      final int count = value == null ? 0 : countBefore(starts, value);
+      for (int k = 0; k < count; k++)
+      {
+        final Object[][] extended = binding.clone();
+        extended[j] = (Object[]) sorted.get(k)[1];
+        result.add(extended);
+      }
+    }
+    return result;
+  }
+
+  private boolean isCovered(final BitSet relations, final BitSet bound)
+  {
+    final BitSet uncovered = (BitSet) relations.clone();
+    uncovered.andNot(bound);
+    return uncovered.isEmpty();
+  }
+
+  private List<Object[][]> join(final List<Object[][]> bindings, final int j, final BitSet bound,
+      final boolean[] applied) throws QueryException
+  {
+    final BitSet self = new BitSet();
+    self.set(j);
+    // tuples of the new relation that satisfy its local conjuncts
+    final List<IExpression> local = new ArrayList<IExpression>();
+    for (int i = 0; i < conjuncts.size(); i++)
+    {
+      if (!applied[i] && references.get(i).equals(self))
+      {
+        local.add(conjuncts.get(i));
+        applied[i] = true;
+      }
+    }
+    final Object[][] single = new Object[inputs.size()][];
+    final List<Object[]> tuples = new ArrayList<Object[]>();
+    for (final Object[] tuple : inputs.get(j).getTuples())
+    {
+      single[j] = tuple;
+      if (satisfies(local, single))
+      {
+        tuples.add(tuple);
+      }
+    }
+    // first relation
+    if (bound.isEmpty())
+    {
+      return extend(bindings, j, tuples);
+    }
+    // equality conjuncts between the new relation and the bound ones
+    final List<IExpression> probes = new ArrayList<IExpression>();
+    final List<IExpression> keys = new ArrayList<IExpression>();
+    IExpression intervalBound = null;
+    IExpression intervalStart = null;
+    int intervalConjunct = -1;
+    for (int i = 0; i < conjuncts.size(); i++)
+    {
+      if (applied[i] || !(conjuncts.get(i) instanceof IRelationalExpression))
+      {
+        continue;
+      }
+      final IRelationalExpression relational = (IRelationalExpression) conjuncts.get(i);
+      final BitSet lhs = new BitSet();
+      final BitSet rhs = new BitSet();
+      evaluator.collectRelations(relational.getLHS(), lhs);
+      evaluator.collectRelations(relational.getRHS(), rhs);
+      final boolean lhsNew = lhs.equals(self);
+      final boolean rhsNew = rhs.equals(self);
+      final boolean lhsBound = !lhs.isEmpty() && isCovered(lhs, bound);
+      final boolean rhsBound = !rhs.isEmpty() && isCovered(rhs, bound);
+      if (relational.getConnective() == RelationalConnective.RC_EQ
+          && ((lhsNew && rhsBound) || (lhsBound && rhsNew)))
+      {
+        keys.add(lhsNew ? relational.getLHS() : relational.getRHS());
+        probes.add(lhsNew ? relational.getRHS() : relational.getLHS());
+        applied[i] = true;
+      }
+      else if (intervalConjunct == -1)
+      {
+        // get_right(T) > get_left(T') or get_left(T') < get_right(T)
+        final boolean isGT = relational.getConnective() == RelationalConnective.RC_GT;
+        final boolean isLT = relational.getConnective() == RelationalConnective.RC_LT;
+        final IExpression end = isGT ? relational.getLHS() : relational.getRHS();
+        final IExpression start = isGT ? relational.getRHS() : relational.getLHS();
+        if ((isGT || isLT) && end instanceof IRightEndpointFieldExpression
+            && start instanceof ILeftEndpointFieldExpression && (isGT ? rhsNew : lhsNew)
+            && (isGT ? lhsBound : rhsBound))
+        {
+          intervalBound = end;
+          intervalStart = start;
+          intervalConjunct = i;
+        }
+      }
+    }
+    if (!keys.isEmpty())
+    {
+      return hashJoin(bindings, j, tuples, probes, keys);
+    }
+    if (intervalConjunct != -1)
+    {
+      applied[intervalConjunct] = true;
+      return intervalJoin(bindings, j, tuples, intervalBound, intervalStart);
+    }
+    return extend(bindings, j, tuples);
+  }
+
+  // values of the expressions on the binding, or null if some value is null
+  private List<Object> key(final List<IExpression> expressions, final Object[][] binding)
+      throws QueryException
+  {
+    final Object[] values = new Object[expressions.size()];
+    for (int i = 0; i < values.length; i++)
+    {
+      values[i] = evaluator.evaluate(expressions.get(i), binding);
+      if (values[i] == null)
+      {
+        return null;
+      }
+    }
+    return ExecutionUtils.key(values);
+  }
+
+  private Relation project(final List<Object[][]> bindings) throws QueryException
+  {
+    final IClauseSelect select = query.getSelect();
+    boolean isAggregate = query.getGroupBy() != null || query.getHaving() != null;
+    for (int i = 0; i < select.size(); i++)
+    {
+      isAggregate = isAggregate || select.getMember(i).isAggregate();
+    }
+    // groups of bindings, each group represented by its first binding
+    final Map<List<Object>, List<Object[][]>> groups;
+    groups = new LinkedHashMap<List<Object>, List<Object[][]>>();
+    if (isAggregate)
+    {
+      // without GROUP BY, all bindings form a single, possibly empty, group
+      if (query.getGroupBy() == null)
+      {
+        groups.put(ExecutionUtils.key(new Object[0]), new ArrayList<Object[][]>());
+      }
+      for (final Object[][] binding : bindings)
+      {
+        final Object[] values = new Object[query.getGroupBy() == null ? 0 : query.getGroupBy()
+            .size()];
+        for (int i = 0; i < values.length; i++)
+        {
+          values[i] = evaluator.evaluate(query.getGroupBy().getMember(i), binding);
+        }
+        final List<Object> key = ExecutionUtils.key(values);
+        List<Object[][]> group = groups.get(key);
+        if (group == null)
+        {
+          group = new ArrayList<Object[][]>();
+          groups.put(key, group);
+        }
+        group.add(binding);
+      }
+    }
+    final List<Object[]> tuples = new ArrayList<Object[]>();
+    final List<Object[]> sortKeys = new ArrayList<Object[]>();
+    final Object[] tuple = new Object[select.size()];
+    final List<List<Object>> columns = new ArrayList<List<Object>>(select.size());
+    final int count = isAggregate ? groups.size() : bindings.size();
+    final List<List<Object[][]>> groupList = new ArrayList<List<Object[][]>>(groups.values());
+    for (int g = 0; g < count; g++)
+    {
+      final List<Object[][]> group = isAggregate ? groupList.get(g) : null;
+      Object[][] binding = isAggregate ? null : bindings.get(g);
+      if (isAggregate)
+      {
+        // the binding of an empty group has no tuples
+        binding = group.isEmpty() ? new Object[inputs.size()][] : group.get(0);
+      }
+      if (query.getHaving() != null
+          && !Boolean.TRUE.equals(ExecutionUtils.toBoolean(evaluator.evaluate(query.getHaving()
+              .getExpression(), binding, group))))
+      {
+        continue;
+      }
+      columns.clear();
+      for (int i = 0; i < select.size(); i++)
+      {
+        columns.add(evaluator.evaluateAll(select.getMember(i), binding, group));
+      }
+      final int size = tuples.size();
+      emit(tuples, columns, tuple, 0);
+      if (query.getOrderBy() != null)
+      {
+        final Object[] sortKey = sortKey(query.getOrderBy(), binding, group);
+        for (int k = size; k < tuples.size(); k++)
+        {
+          sortKeys.add(sortKey);
+        }
+      }
+    }
+    List<Object[]> result = tuples;
+    if (query.getOrderBy() != null)
+    {
+      result = sort(tuples, sortKeys, query.getOrderBy());
+    }
+    if (select.isDistinct())
+    {
+      final Set<List<Object>> distinct = new LinkedHashSet<List<Object>>();
+      for (final Object[] t : result)
+      {
+        distinct.add(ExecutionUtils.key(t));
+      }
+      result = new ArrayList<Object[]>(distinct.size());
+      for (final List<Object> t : distinct)
+      {
+        result.add(t.toArray());
+      }
+    }
+    return new Relation(query.getSignature(), result);
+  }
+
+  private boolean satisfies(final List<IExpression> conditions, final Object[][] binding)
+      throws QueryException
+  {
+    for (final IExpression condition : conditions)
+    {
+      if (!evaluator.isTrue(condition, binding))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private List<Object[]> sort(final List<Object[]> tuples, final List<Object[]> sortKeys,
+      final IClauseOrderBy orderBy) throws QueryException
+  {
+    final Integer[] order = new Integer[tuples.size()];
+    for (int i = 0; i < order.length; i++)
+    {
+      order[i] = i;
+    }
+    final QueryException[] error = new QueryException[1];
+    Arrays.sort(order, new Comparator<Integer>()
+      {
+        @Override
+        public int compare(final Integer i1, final Integer i2)
+        {
+          final Object[] k1 = sortKeys.get(i1);
+          final Object[] k2 = sortKeys.get(i2);
+          for (int k = 0; k < k1.length; k++)
+          {
+            // nulls sort last in ascending order, as in SQL
+            int result;
+            if (k1[k] == null || k2[k] == null)
+            {
+              result = k1[k] == k2[k] ? 0 : k1[k] == null ? 1 : -1;
+            }
+            else
+            {
+              try
+              {
+                result = ExecutionUtils.compare(k1[k], k2[k]);
+              }
+              catch (final QueryException e)
+              {
+                error[0] = e;
+                result = 0;
+              }
+            }
+            if (result != 0)
+            {
+              return orderBy.getMember(k).getSortDirection() == SortDirection.SD_DESC ? -result
+                  : result;
+            }
+          }
+          return 0;
+        }
+      });
+    if (error[0] != null)
+    {
+      throw error[0];
+    }
+    final List<Object[]> result = new ArrayList<Object[]>(order.length);
+    for (final Integer i : order)
+    {
+      result.add(tuples.get(i));
+    }
+    return result;
+  }
+
+  private Object[] sortKey(final IClauseOrderBy orderBy, final Object[][] binding,
+      final List<Object[][]> group) throws QueryException
+  {
+    final Object[] result = new Object[orderBy.size()];
+    for (int i = 0; i < result.length; i++)
+    {
+      result[i] = evaluator.evaluate(orderBy.getMember(i).getExpression(), binding, group);
+    }
+    return result;
+  }
+}
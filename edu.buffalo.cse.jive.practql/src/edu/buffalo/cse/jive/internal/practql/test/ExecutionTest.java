@@ -0,0 +1,142 @@
+package edu.buffalo.cse.jive.internal.practql.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.buffalo.cse.jive.internal.practql.Factory;
+import edu.buffalo.cse.jive.practql.execution.CInterval;
+import edu.buffalo.cse.jive.practql.execution.IDatabase;
+import edu.buffalo.cse.jive.practql.execution.IRelation;
+import edu.buffalo.cse.jive.practql.expression.query.IQueryExpression;
+import edu.buffalo.cse.jive.practql.expression.query.QueryException;
+import edu.buffalo.cse.jive.practql.parser.ParserException;
+import edu.buffalo.cse.jive.practql.schema.IDatabaseSchema;
+import edu.buffalo.cse.jive.practql.schema.IRelationSchema;
+import edu.buffalo.cse.jive.practql.schema.ISchemaSignature;
+import edu.buffalo.cse.jive.practql.schema.SchemaException;
+
+/**
+ * Executes queries in memory against a small temporal graph and compares the results with the
+ * expected bags of tuples. Edges are valid over the intervals of time points:
+ *
+ * <pre>
+ *   1 --> 2  [0, 10)
+ *   2 --> 3  [5, 15)
+ *   3 --> 4  [12, 20)
+ *   2 --> 4  [0, 3)
+ * </pre>
+ */
+class ExecutionTest
+{
+  private static final String[] JOINS =
+  { "SELECT A.E1, B.E2 FROM graph AS A, graph AS B WHERE A.E2 = B.E1;",
+      "SELECT A.E1, B.E2, A.T FROM graph AS A, graph AS B WHERE A.E2 = B.E1 AND A.T = B.T;" };
+  private static final String[][] JOINS_EXPECTED =
+  {
+  { "1|3", "1|4", "2|4" },
+  { "1|3|(5,10)", "1|4|(0,3)", "2|4|(12,15)" } };
+  private static final String[][] RECURSIVE_EXPECTED =
+  { { "1|2|(0,10)", "1|3|(5,10)", "1|4|(0,3)", "2|3|(5,15)", "2|4|(0,3)", "2|4|(12,15)",
+      "3|4|(12,20)" } };
+
+  private static IDatabase createDatabase(final IDatabaseSchema schema)
+  {
+    final Map<String, IRelation> relations = new HashMap<String, IRelation>();
+    final List<Object[]> edges = new ArrayList<Object[]>();
+    edges.add(ExecutionTest.edge(1, 2, 0, 10));
+    edges.add(ExecutionTest.edge(2, 3, 5, 15));
+    edges.add(ExecutionTest.edge(3, 4, 12, 20));
+    edges.add(ExecutionTest.edge(2, 4, 0, 3));
+    relations.put("graph", ExecutionTest.createRelation(schema.lookupRelation("graph"), edges));
+    return new IDatabase()
+      {
+        @Override
+        public IDatabaseSchema getSchema()
+        {
+          return schema;
+        }
+
+        @Override
+        public IRelation lookupRelation(final String name)
+        {
+          return relations.get(name.toLowerCase());
+        }
+      };
+  }
+
+  private static IRelation createRelation(final IRelationSchema schema, final List<Object[]> tuples)
+  {
+    return new IRelation()
+      {
+        @Override
+        public ISchemaSignature getSignature()
+        {
+          return schema.getSignature();
+        }
+
+        @Override
+        public Iterable<Object[]> getTuples()
+        {
+          return tuples;
+        }
+      };
+  }
+
+  private static Object[] edge(final long from, final long to, final long left, final long right)
+  {
+    return new Object[]
+    { from, to, new CInterval(left, right) };
+  }
+
+  public static void main(final String[] args) throws ParserException, QueryException,
+      SchemaException
+  {
+    final IDatabaseSchema dbSchema = Factory.INSTANCE.schemaFactory().newDatabaseSchema("db");
+    dbSchema.append(Test.getGraph());
+    dbSchema.append(Test.getTrue());
+    final IDatabase database = ExecutionTest.createDatabase(dbSchema);
+    int failures = 0;
+    System.out.println("------------------------------------------------------------\n");
+    failures += ExecutionTest.testExecution(database, ExecutionTest.JOINS,
+        ExecutionTest.JOINS_EXPECTED);
+    System.out.println("------------------------------------------------------------\n");
+    failures += ExecutionTest.testExecution(database, Test.TEMPORAL_RECURSIVE,
+        ExecutionTest.RECURSIVE_EXPECTED);
+    System.out.println("------------------------------------------------------------\n");
+    System.out.format("%s\n", failures == 0 ? "PASSED" : failures + " FAILURE(S)");
+  }
+
+  static int testExecution(final IDatabase database, final String[] queries,
+      final String[][] expected) throws ParserException, QueryException
+  {
+    int failures = 0;
+    for (int i = 0; i < queries.length; i++)
+    {
+      System.out.format("%2d) %s\n", i + 1, queries[i]);
+      final IQueryExpression expression = Factory.INSTANCE.createParser().parse(queries[i],
+          database.getSchema());
+      final IRelation result = Factory.INSTANCE.createExecutor(database).execute(expression);
+      final List<String> actual = new ArrayList<String>();
+      for (final Object[] tuple : result.getTuples())
+      {
+        final StringBuffer buffer = new StringBuffer();
+        for (int j = 0; j < tuple.length; j++)
+        {
+          buffer.append(j == 0 ? "" : "|");
+          buffer.append(tuple[j]);
+        }
+        actual.add(buffer.toString());
+      }
+      Collections.sort(actual);
+      final boolean passed = actual.equals(Arrays.asList(expected[i]));
+      System.out.format("%s\n%s\n\n", actual, passed ? "OK" : "expected " + Arrays
+          .asList(expected[i]));
+      failures += passed ? 0 : 1;
+    }
+    return failures;
+  }
+}
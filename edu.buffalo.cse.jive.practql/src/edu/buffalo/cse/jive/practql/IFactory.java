@@ -1,5 +1,7 @@
 package edu.buffalo.cse.jive.practql;
 
+import edu.buffalo.cse.jive.practql.execution.IDatabase;
+import edu.buffalo.cse.jive.practql.execution.IQueryExecutor;
 import edu.buffalo.cse.jive.practql.expression.IExpressionFactory;
 import edu.buffalo.cse.jive.practql.expression.query.IQueryExpressionFactory;
 import edu.buffalo.cse.jive.practql.parser.IParser;
@@ -10,6 +12,8 @@ public interface IFactory
 {
   public IQueryCompiler createCompiler(IDatabaseSchema schema);
 
+  public IQueryExecutor createExecutor(IDatabase database);
+
   public IParser createParser();
 
   public IExpressionFactory expressionFactory();
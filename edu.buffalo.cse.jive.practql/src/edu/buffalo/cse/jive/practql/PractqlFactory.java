@@ -0,0 +1,14 @@
+package edu.buffalo.cse.jive.practql;
+
+import edu.buffalo.cse.jive.internal.practql.Factory;
+
+/**
+ * Entry point for parsing, compiling, and executing queries.
+ */
+public final class PractqlFactory
+{
+  public static IFactory getDefault()
+  {
+    return Factory.INSTANCE;
+  }
+}
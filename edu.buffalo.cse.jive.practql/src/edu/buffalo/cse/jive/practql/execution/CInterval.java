@@ -0,0 +1,52 @@
+package edu.buffalo.cse.jive.practql.execution;
+
+/**
+ * Value of a concrete interval, i.e., the half-open interval [left, right) of time points. A null
+ * left (right) endpoint denotes an interval unbounded to the left (right).
+ */
+public final class CInterval
+{
+  private final Long left;
+  private final Long right;
+
+  public CInterval(final Long left, final Long right)
+  {
+    this.left = left;
+    this.right = right;
+  }
+
+  @Override
+  public boolean equals(final Object other)
+  {
+    if (!(other instanceof CInterval))
+    {
+      return false;
+    }
+    final CInterval interval = (CInterval) other;
+    return (left == null ? interval.left == null : left.equals(interval.left))
+        && (right == null ? interval.right == null : right.equals(interval.right));
+  }
+
+  public Long getLeft()
+  {
+    return this.left;
+  }
+
+  public Long getRight()
+  {
+    return this.right;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return 31 * (left == null ? 0 : left.hashCode()) + (right == null ? 0 : right.hashCode());
+  }
+
+  // same representation as the cinterval composite type
+  @Override
+  public String toString()
+  {
+    return "(" + (left == null ? "" : left) + "," + (right == null ? "" : right) + ")";
+  }
+}
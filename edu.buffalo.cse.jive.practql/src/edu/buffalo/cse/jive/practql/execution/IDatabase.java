@@ -0,0 +1,15 @@
+package edu.buffalo.cse.jive.practql.execution;
+
+import edu.buffalo.cse.jive.practql.schema.IDatabaseSchema;
+
+/**
+ * Source of the relation instances against which queries are executed.
+ */
+public interface IDatabase
+{
+  // schema against which queries are parsed and compiled
+  public IDatabaseSchema getSchema();
+
+  // instance of the table with the given name, or null if there is no such table
+  public IRelation lookupRelation(String name);
+}
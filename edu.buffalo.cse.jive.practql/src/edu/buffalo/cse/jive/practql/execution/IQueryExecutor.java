@@ -0,0 +1,21 @@
+package edu.buffalo.cse.jive.practql.execution;
+
+import edu.buffalo.cse.jive.practql.expression.query.IQueryExpression;
+import edu.buffalo.cse.jive.practql.expression.query.QueryException;
+
+public interface IQueryExecutor
+{
+  /**
+   * Compiles the query expression and evaluates the compiled expression in memory, against the
+   * relations of the executor's database. Recursive queries are evaluated semi-naively from the
+   * compiled base and recursive cases, so each round only joins the tuples derived in the prior
+   * round.
+   *
+   * @param expression
+   *          query expression obtained by parsing a query against the database schema
+   * @return the tuples of the query's result, with the query's signature
+   * @throws QueryException
+   *           if the expression cannot be compiled or evaluated
+   */
+  public IRelation execute(IQueryExpression expression) throws QueryException;
+}
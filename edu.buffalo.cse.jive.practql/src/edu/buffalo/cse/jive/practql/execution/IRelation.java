@@ -0,0 +1,26 @@
+package edu.buffalo.cse.jive.practql.execution;
+
+import edu.buffalo.cse.jive.practql.schema.ISchemaSignature;
+
+/**
+ * Instance of a relation, i.e., a bag of tuples with the given signature. The values of each tuple
+ * are given in signature order and are represented according to the type of the respective field:
+ *
+ * <pre>
+ *   boolean                   --> Boolean
+ *   decimal                   --> Double
+ *   integer, tp               --> Long
+ *   string                    --> String
+ *   tp_encoded, cinterval     --> CInterval
+ *   cinterval[]               --> List&lt;CInterval&gt;
+ * </pre>
+ *
+ * SQL nulls are represented by null values. Tuples of a database relation may be computed as they
+ * are iterated, so each iteration may reflect the relation at the time it starts.
+ */
+public interface IRelation
+{
+  public ISchemaSignature getSignature();
+
+  public Iterable<Object[]> getTuples();
+}
@@ -68,6 +68,18 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer
   {
     final IPreferenceStore store = PreferencesPlugin.getDefault().getPreferenceStore();
     store.setDefault(PreferenceKeys.PREF_UPDATE_INTERVAL, 2500L);
+    store.setDefault(PreferenceKeys.PREF_ARRAY_MAX_CELLS, 1024);
+    store.setDefault(PreferenceKeys.PREF_CHECKPOINT_INTERVAL, 0);
+    store.setDefault(PreferenceKeys.PREF_DEF_USE_INDEX, true);
+    store.setDefault(PreferenceKeys.PREF_DISPATCH_BACKPRESSURE, PreferenceKeys.PREF_DISPATCH_BLOCK);
+    store.setDefault(PreferenceKeys.PREF_DISPATCH_BATCH_SIZE, 1024);
+    store.setDefault(PreferenceKeys.PREF_DISPATCH_FLUSH_LATENCY, 5);
+    store.setDefault(PreferenceKeys.PREF_FREEZE_EXCEPTIONS, "");
+    store.setDefault(PreferenceKeys.PREF_MONITOR_EVENTS, false);
+    store.setDefault(PreferenceKeys.PREF_PIPELINED_TRANSLATION, false);
+    store.setDefault(PreferenceKeys.PREF_RETAINED_EVENTS, 0);
+    store.setDefault(PreferenceKeys.PREF_SNAPSHOT_MAX_INSTANCES, 0);
+    store.setDefault(PreferenceKeys.PREF_TARGETED_LOCALS, true);
     store.setDefault(PreferenceKeys.PREF_OD_STATE, PreferenceKeys.PREF_OD_STACKED);
     store.setDefault(PreferenceKeys.PREF_OD_CALLPATH_FOCUS, false);
     store.setDefault(PreferenceKeys.PREF_SCROLL_LOCK, false);
@@ -2,16 +2,52 @@ package edu.buffalo.cse.jive.preferences;
 
 public interface PreferenceKeys
 {
+  // largest array whose cells are tracked; longer arrays are described by their length only
+  final String PREF_ARRAY_MAX_CELLS = PreferencesPlugin.ID_BASE + ".array_max_cells";
+  // number of transactions between checkpoints of the contour model (zero disables checkpoints)
+  final String PREF_CHECKPOINT_INTERVAL = PreferencesPlugin.ID_BASE + ".checkpoint_interval";
+  // record the def-use index used by the slicer
+  final String PREF_DEF_USE_INDEX = PreferencesPlugin.ID_BASE + ".def_use_index";
+  // policy applied by the event dispatcher when its queue is full
+  final String PREF_DISPATCH_BACKPRESSURE = PreferencesPlugin.ID_BASE + ".dispatch_backpressure";
+  // number of events delivered to the model at once by the event dispatcher
+  final String PREF_DISPATCH_BATCH_SIZE = PreferencesPlugin.ID_BASE + ".dispatch_batch_size";
+  // backpressure policy-- block the JDI event thread until the queue has room
+  final String PREF_DISPATCH_BLOCK = PreferencesPlugin.ID_BASE + ".dispatch_block";
+  // backpressure policy-- drop and count the events (leaves the model inconsistent)
+  final String PREF_DISPATCH_DROP = PreferencesPlugin.ID_BASE + ".dispatch_drop";
+  // maximum time (ms) an event waits for its batch to fill before being delivered
+  final String PREF_DISPATCH_FLUSH_LATENCY = PreferencesPlugin.ID_BASE + ".dispatch_flush_latency";
+  // backpressure policy-- spill the events to an unbounded overflow queue
+  final String PREF_DISPATCH_SPILL = PreferencesPlugin.ID_BASE + ".dispatch_spill";
   // Attribute key used to obtain the class exclusion filters from the launch configuration.
   // final String PREF_EXCLUSION_FILTERS = ID_BASE + ".exclusionFilters";
+  // comma separated exception types whose throw freezes the trace
+  final String PREF_FREEZE_EXCEPTIONS = PreferencesPlugin.ID_BASE + ".freeze_exceptions";
   // Attribute key used to obtain the generate local events flag from the launch configuration.
   final String PREF_GENERATE_LOCAL_EVENTS = PreferencesPlugin.ID_BASE + ".generateLocalEvents";
   // Attribute key used to obtain the generate lock events flag from the launch configuration.
   final String PREF_GENERATE_ARRAY_EVENTS = PreferencesPlugin.ID_BASE + ".generateArrayEvents";
+  // Attribute key used to obtain the instrumented (in-process agent) recording flag from the launch
+  // configuration.
+  final String PREF_INSTRUMENTED_RECORDING = PreferencesPlugin.ID_BASE + ".instrumentedRecording";
+  // Attribute key used to obtain the lightweight (memory mapped) recording flag from the launch
+  // configuration.
+  final String PREF_LITE_RECORDING = PreferencesPlugin.ID_BASE + ".liteRecording";
   // Attribute key used to obtain the manual start flag from the launch configuration.
   final String PREF_MANUAL_START = PreferencesPlugin.ID_BASE + ".manualStart";
+  // record monitor contention and wait events, and the contention report
+  final String PREF_MONITOR_EVENTS = PreferencesPlugin.ID_BASE + ".monitor_events";
   // Attribute key used to obtain the offline launch URL.
   final String PREF_OFFLINE_URL = PreferencesPlugin.ID_BASE + ".offlineURL";
+  // translate field writes off the JDI event thread, after the target thread resumes
+  final String PREF_PIPELINED_TRANSLATION = PreferencesPlugin.ID_BASE + ".pipelined_translation";
+  // number of most recent events kept in the trace (zero keeps the full trace)
+  final String PREF_RETAINED_EVENTS = PreferencesPlugin.ID_BASE + ".retained_events";
+  // maximum number of instances per type captured by a snapshot (zero captures all instances)
+  final String PREF_SNAPSHOT_MAX_INSTANCES = PreferencesPlugin.ID_BASE + ".snapshot_max_instances";
+  // capture only the local variables defined on the line just executed, when static analysis allows
+  final String PREF_TARGETED_LOCALS = PreferencesPlugin.ID_BASE + ".targeted_locals";
   // common package/class filter keys
   final String PREF_FILTERS_COMMON = PreferencesPlugin.ID_BASE + ".common_filters";
   // object diagram view state-- call path focus flag
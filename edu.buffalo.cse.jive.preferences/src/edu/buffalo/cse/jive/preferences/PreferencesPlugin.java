@@ -99,11 +99,76 @@ public class PreferencesPlugin extends AbstractUIPlugin implements IPropertyChan
     }
   }
 
+  /**
+   * Number of cells of the largest array whose cells are tracked when array events are generated.
+   */
+  public int arrayMaxCells()
+  {
+    return getPreferenceStore().getInt(PreferenceKeys.PREF_ARRAY_MAX_CELLS);
+  }
+
+  /**
+   * Number of transactions between checkpoints of the contour model.
+   */
+  public int checkpointInterval()
+  {
+    return getPreferenceStore().getInt(PreferenceKeys.PREF_CHECKPOINT_INTERVAL);
+  }
+
+  /**
+   * Determines whether the def-use index used by the slicer is recorded.
+   */
+  public boolean defUseIndex()
+  {
+    return getPreferenceStore().getBoolean(PreferenceKeys.PREF_DEF_USE_INDEX);
+  }
+
+  /**
+   * Policy applied by the event dispatcher when its queue is full.
+   */
+  public String dispatchBackpressure()
+  {
+    return getPreferenceStore().getString(PreferenceKeys.PREF_DISPATCH_BACKPRESSURE);
+  }
+
+  /**
+   * Number of events delivered to the model at once by the event dispatcher.
+   */
+  public int dispatchBatchSize()
+  {
+    return getPreferenceStore().getInt(PreferenceKeys.PREF_DISPATCH_BATCH_SIZE);
+  }
+
+  /**
+   * Maximum time, in milliseconds, an event waits for its batch to fill before being delivered.
+   */
+  public int dispatchFlushLatency()
+  {
+    return getPreferenceStore().getInt(PreferenceKeys.PREF_DISPATCH_FLUSH_LATENCY);
+  }
+
   public int eventHeight()
   {
     return eventHeight;
   }
 
+  /**
+   * Fully qualified names of the exception types whose throw freezes the trace.
+   */
+  public List<String> freezeExceptions()
+  {
+    final List<String> result = new ArrayList<String>();
+    for (final String type : getPreferenceStore().getString(PreferenceKeys.PREF_FREEZE_EXCEPTIONS)
+        .split(","))
+    {
+      if (type.trim().length() > 0)
+      {
+        result.add(type.trim());
+      }
+    }
+    return result;
+  }
+
   public int getActivationWidth()
   {
     return activationWidth;
@@ -124,6 +189,16 @@ public class PreferencesPlugin extends AbstractUIPlugin implements IPropertyChan
     return PreferenceKeys.PREF_GENERATE_ARRAY_EVENTS;
   }
 
+  public String getInstrumentedRecordingKey()
+  {
+    return PreferenceKeys.PREF_INSTRUMENTED_RECORDING;
+  }
+
+  public String getLiteRecordingKey()
+  {
+    return PreferenceKeys.PREF_LITE_RECORDING;
+  }
+
   public String getManualStartEventsKey()
   {
     return PreferenceKeys.PREF_MANUAL_START;
@@ -134,6 +209,22 @@ public class PreferencesPlugin extends AbstractUIPlugin implements IPropertyChan
     return PreferenceKeys.PREF_OFFLINE_URL;
   }
 
+  /**
+   * Determines whether monitor contention and wait events are recorded.
+   */
+  public boolean monitorEvents()
+  {
+    return getPreferenceStore().getBoolean(PreferenceKeys.PREF_MONITOR_EVENTS);
+  }
+
+  /**
+   * Determines whether field writes are translated to JIVE events after their threads resume.
+   */
+  public boolean pipelinedTranslation()
+  {
+    return getPreferenceStore().getBoolean(PreferenceKeys.PREF_PIPELINED_TRANSLATION);
+  }
+
   @Override
   public void propertyChange(final PropertyChangeEvent event)
   {
@@ -152,6 +243,22 @@ public class PreferencesPlugin extends AbstractUIPlugin implements IPropertyChan
     }
   }
 
+  /**
+   * Number of most recent events kept in the trace, or zero to keep the full trace.
+   */
+  public int retainedEvents()
+  {
+    return getPreferenceStore().getInt(PreferenceKeys.PREF_RETAINED_EVENTS);
+  }
+
+  /**
+   * Maximum number of instances per type captured by a snapshot, or zero for all instances.
+   */
+  public int snapshotMaxInstances()
+  {
+    return getPreferenceStore().getInt(PreferenceKeys.PREF_SNAPSHOT_MAX_INSTANCES);
+  }
+
   @Override
   public void start(final BundleContext context) throws Exception
   {
@@ -172,6 +279,14 @@ public class PreferencesPlugin extends AbstractUIPlugin implements IPropertyChan
     super.stop(context);
   }
 
+  /**
+   * Determines whether only the local variables defined on the line just executed are captured.
+   */
+  public boolean targetedLocals()
+  {
+    return getPreferenceStore().getBoolean(PreferenceKeys.PREF_TARGETED_LOCALS);
+  }
+
   public void updateConfiguration(final ILaunchConfigurationWorkingCopy configuration,
       final String preferenceName)
   {
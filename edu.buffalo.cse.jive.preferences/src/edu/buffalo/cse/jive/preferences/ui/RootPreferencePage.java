@@ -1,7 +1,10 @@
 package edu.buffalo.cse.jive.preferences.ui;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.jface.preference.RadioGroupFieldEditor;
+import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
@@ -15,6 +18,18 @@ import edu.buffalo.cse.jive.preferences.PreferencesPlugin;
 public class RootPreferencePage extends FieldEditorPreferencePage implements
     IWorkbenchPreferencePage
 {
+  private IntegerFieldEditor arrayMaxCells;
+  private IntegerFieldEditor checkpointInterval;
+  private BooleanFieldEditor defUseIndex;
+  private RadioGroupFieldEditor dispatchBackpressure;
+  private IntegerFieldEditor dispatchBatchSize;
+  private IntegerFieldEditor dispatchFlushLatency;
+  private StringFieldEditor freezeExceptions;
+  private BooleanFieldEditor monitorEvents;
+  private BooleanFieldEditor pipelinedTranslation;
+  private IntegerFieldEditor retainedEvents;
+  private IntegerFieldEditor snapshotMaxInstances;
+  private BooleanFieldEditor targetedLocals;
   private IntegerFieldEditor updateInterval;
 
   public RootPreferencePage()
@@ -38,5 +53,64 @@ public class RootPreferencePage extends FieldEditorPreferencePage implements
         "Visualization update interval (ms):", getFieldEditorParent(), 5);
     updateInterval.setValidRange(250, 60000);
     addField(updateInterval);
+    // PREFERENCE: checkpoint interval
+    checkpointInterval = new IntegerFieldEditor(PreferenceKeys.PREF_CHECKPOINT_INTERVAL,
+        "Temporal checkpoint interval (transactions, 0 to disable):", getFieldEditorParent(), 7);
+    checkpointInterval.setValidRange(0, 1000000);
+    addField(checkpointInterval);
+    // PREFERENCE: def-use index
+    defUseIndex = new BooleanFieldEditor(PreferenceKeys.PREF_DEF_USE_INDEX,
+        "Record the def-use index for program slicing", getFieldEditorParent());
+    addField(defUseIndex);
+    // PREFERENCE: targeted local variable capture
+    targetedLocals = new BooleanFieldEditor(PreferenceKeys.PREF_TARGETED_LOCALS,
+        "Capture only the local variables defined on each executed line", getFieldEditorParent());
+    addField(targetedLocals);
+    // PREFERENCE: snapshot instances per type
+    snapshotMaxInstances = new IntegerFieldEditor(PreferenceKeys.PREF_SNAPSHOT_MAX_INSTANCES,
+        "Snapshot instances per type (0 for all):", getFieldEditorParent(), 7);
+    snapshotMaxInstances.setValidRange(0, 10000000);
+    addField(snapshotMaxInstances);
+    // PREFERENCE: array cells tracked
+    arrayMaxCells = new IntegerFieldEditor(PreferenceKeys.PREF_ARRAY_MAX_CELLS,
+        "Largest array whose cells are tracked (cells):", getFieldEditorParent(), 9);
+    arrayMaxCells.setValidRange(0, Integer.MAX_VALUE);
+    addField(arrayMaxCells);
+    // PREFERENCE: event dispatch batch size
+    dispatchBatchSize = new IntegerFieldEditor(PreferenceKeys.PREF_DISPATCH_BATCH_SIZE,
+        "Event dispatch batch size (events):", getFieldEditorParent(), 5);
+    dispatchBatchSize.setValidRange(1, 65536);
+    addField(dispatchBatchSize);
+    // PREFERENCE: event dispatch flush latency
+    dispatchFlushLatency = new IntegerFieldEditor(PreferenceKeys.PREF_DISPATCH_FLUSH_LATENCY,
+        "Event dispatch flush latency (ms):", getFieldEditorParent(), 5);
+    dispatchFlushLatency.setValidRange(0, 10000);
+    addField(dispatchFlushLatency);
+    // PREFERENCE: event dispatch backpressure policy
+    dispatchBackpressure = new RadioGroupFieldEditor(PreferenceKeys.PREF_DISPATCH_BACKPRESSURE,
+        "When the event queue is full:", 1, new String[][]
+        {
+        { "Wait for the queue to drain", PreferenceKeys.PREF_DISPATCH_BLOCK },
+        { "Spill events to an overflow queue", PreferenceKeys.PREF_DISPATCH_SPILL },
+        { "Drop events (measurement only)", PreferenceKeys.PREF_DISPATCH_DROP } },
+        getFieldEditorParent());
+    addField(dispatchBackpressure);
+    // PREFERENCE: pipelined event translation
+    pipelinedTranslation = new BooleanFieldEditor(PreferenceKeys.PREF_PIPELINED_TRANSLATION,
+        "Translate field writes after resuming the target thread", getFieldEditorParent());
+    addField(pipelinedTranslation);
+    // PREFERENCE: flight recorder
+    retainedEvents = new IntegerFieldEditor(PreferenceKeys.PREF_RETAINED_EVENTS,
+        "Keep only the most recent events (0 for the full trace):", getFieldEditorParent(), 9);
+    retainedEvents.setValidRange(0, Integer.MAX_VALUE);
+    addField(retainedEvents);
+    // PREFERENCE: exceptions that freeze the trace
+    freezeExceptions = new StringFieldEditor(PreferenceKeys.PREF_FREEZE_EXCEPTIONS,
+        "Freeze the trace on exceptions (comma separated types):", getFieldEditorParent());
+    addField(freezeExceptions);
+    // PREFERENCE: monitor events
+    monitorEvents = new BooleanFieldEditor(PreferenceKeys.PREF_MONITOR_EVENTS,
+        "Record monitor contention and wait events", getFieldEditorParent());
+    addField(monitorEvents);
   }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import edu.buffalo.cse.jive.ui.search.form.SearchForm.MethodForm;
 import edu.buffalo.cse.jive.ui.search.form.SearchForm.MethodReturnedForm;
 import edu.buffalo.cse.jive.ui.search.form.SearchForm.ObjectCreatedForm;
 import edu.buffalo.cse.jive.ui.search.form.SearchForm.SlicingForm;
+import edu.buffalo.cse.jive.ui.search.form.SearchForm.TemporalQueryForm;
 import edu.buffalo.cse.jive.ui.search.form.SearchForm.VariableChangedForm;
 import edu.buffalo.cse.jive.ui.search.page.SlicingSearchPage;
 
@@ -64,6 +65,12 @@ public final class FormFactory
     return new SlicingFormImpl(owner, parent);
   }
 
+  public static TemporalQueryForm createTemporalQueryForm(final JiveSearchPage owner,
+      final Composite parent)
+  {
+    return new TemporalQueryFormImpl(owner, parent);
+  }
+
   public static VariableChangedForm createVariableChangedForm(final JiveSearchPage owner,
       final Composite parent)
   {
@@ -756,6 +763,57 @@ public final class FormFactory
     }
   }
 
+  private final static class TemporalQueryFormImpl implements TemporalQueryForm, ModifyListener
+  {
+    private final Composite control;
+    private final Text widgetQuery;
+    private String textQuery = "";
+
+    private TemporalQueryFormImpl(final JiveSearchPage owner, final Composite parent)
+    {
+      control = new Composite(parent, SWT.NONE);
+      control.setLayout(new GridLayout(1, false));
+      final Label label = new Label(control, SWT.NONE);
+      label.setText("Query (the first field is an event number):");
+      widgetQuery = new Text(control, SWT.BORDER | SWT.MULTI | SWT.WRAP | SWT.V_SCROLL);
+      widgetQuery.addModifyListener(this);
+      widgetQuery.addModifyListener(owner);
+      final GridData gd = new GridData();
+      gd.horizontalAlignment = GridData.FILL;
+      gd.verticalAlignment = GridData.FILL;
+      gd.grabExcessHorizontalSpace = true;
+      gd.grabExcessVerticalSpace = true;
+      widgetQuery.setLayoutData(gd);
+    }
+
+    @Override
+    public Control control()
+    {
+      return control;
+    }
+
+    @Override
+    public void modifyText(final ModifyEvent e)
+    {
+      if (e.widget == widgetQuery)
+      {
+        textQuery = widgetQuery.getText();
+      }
+    }
+
+    @Override
+    public String queryText()
+    {
+      return textQuery;
+    }
+
+    @Override
+    public String toString()
+    {
+      return queryText().trim();
+    }
+  }
+
   private final static class VariableChangedFormImpl implements VariableChangedForm, ModifyListener
   {
     private final Composite control;
@@ -9,6 +9,7 @@ import edu.buffalo.cse.jive.model.IQueryModel.MethodQueryParams;
 import edu.buffalo.cse.jive.model.IQueryModel.MethodReturnedQueryParams;
 import edu.buffalo.cse.jive.model.IQueryModel.ObjectCreatedQueryParams;
 import edu.buffalo.cse.jive.model.IQueryModel.SlicingQueryParams;
+import edu.buffalo.cse.jive.model.IQueryModel.TemporalQueryParams;
 import edu.buffalo.cse.jive.model.IQueryModel.VariableChangedQueryParams;
 
 public interface SearchForm
@@ -90,6 +91,10 @@ public interface SearchForm
   {
   }
 
+  public interface TemporalQueryForm extends SearchForm, TemporalQueryParams
+  {
+  }
+
   public interface VariableChangedForm extends SearchForm, VariableChangedQueryParams
   {
     /**
@@ -0,0 +1,88 @@
+package edu.buffalo.cse.jive.ui.search.page;
+
+import static edu.buffalo.cse.jive.preferences.ImageInfo.IM_BASE_SEARCH;
+
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+
+import edu.buffalo.cse.jive.model.IEventModel.IJiveEvent;
+import edu.buffalo.cse.jive.model.IQueryModel.EventQuery;
+import edu.buffalo.cse.jive.model.factory.IQueryFactory;
+import edu.buffalo.cse.jive.ui.search.IJiveSearchQuery;
+import edu.buffalo.cse.jive.ui.search.JiveSearchPage;
+import edu.buffalo.cse.jive.ui.search.JiveSearchQuery;
+import edu.buffalo.cse.jive.ui.search.form.FormFactory;
+import edu.buffalo.cse.jive.ui.search.form.SearchForm.TemporalQueryForm;
+
+/**
+ * View portion encapsulating a search form.
+ * 
+ * The query is evaluated over the event, contour, and contour_member relations of the trace, and
+ * the events whose numbers appear in the first field of the result are reported.
+ */
+public class TemporalQuerySearchPage extends JiveSearchPage
+{
+  private TemporalQueryForm searchForm;
+
+  @Override
+  public void createControl(final Composite parent)
+  {
+    searchForm = FormFactory.createTemporalQueryForm(this, parent);
+  }
+
+  @Override
+  public IJiveSearchQuery createSearchQuery()
+  {
+    return new TemporalSearchQuery();
+  }
+
+  @Override
+  public Control getControl()
+  {
+    return searchForm.control();
+  }
+
+  @Override
+  public void initializeInput(final ISelection selection)
+  {
+  }
+
+  @Override
+  public boolean isInputValid()
+  {
+    return searchForm.queryText().trim().length() > 0;
+  }
+
+  /**
+   * View portion encapsulating an event predicate query.
+   */
+  private class TemporalSearchQuery extends JiveSearchQuery
+  {
+    @Override
+    public ImageDescriptor getImageDescriptor()
+    {
+      return IM_BASE_SEARCH.enabledDescriptor();
+    }
+
+    @Override
+    public String getResultLabel(final int matchCount)
+    {
+      return "'" + searchForm.toString() + "' - " + matchCount
+          + (matchCount == 1 ? " event" : " events");
+    }
+
+    @Override
+    public Class<? extends Object> getResultType()
+    {
+      return IJiveEvent.class;
+    }
+
+    @Override
+    protected EventQuery createQuery(final IQueryFactory predicateFactory)
+    {
+      return predicateFactory.createTemporalQuery(searchForm);
+    }
+  }
+}
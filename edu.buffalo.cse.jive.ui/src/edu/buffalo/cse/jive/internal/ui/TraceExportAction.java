@@ -41,9 +41,9 @@ final class TraceExportAction extends Action implements IUpdatableAction
     final Shell shell = view.getSite().getShell();
     final FileDialog saveDialog = new FileDialog(shell, SWT.SAVE);
     saveDialog.setFilterExtensions(new String[]
-    { "*.csv", "*.xml" });
+    { "*.csv", "*.xml", "*.jtb" });
     saveDialog.setFilterNames(new String[]
-    { "CSV format (*.csv)", "XML format (*.xml)" });
+    { "CSV format (*.csv)", "XML format (*.xml)", "Binary trace format (*.jtb)" });
     final String filePath = saveDialog.open();
     final IJiveDebugTarget target = TraceExportAction.activeTarget();
     IJiveExporter je = JiveExporterPlugin.getDefault().getJiveExporters().get("TRACE");